@@ -84,6 +84,9 @@ statement
     | MOVE STRING_LITERAL STRING_LITERAL #moveFile
     | DELETE PARTITION prefixPath INT(COMMA INT)* #deletePartition
     | CREATE SNAPSHOT FOR SCHEMA #createSnapshot
+    | CREATE SCHEMA TEMPLATE templateName=ID
+    LR_BRACKET templateMeasurementClause (COMMA templateMeasurementClause)* RR_BRACKET #createSchemaTemplate
+    | SET SCHEMA TEMPLATE templateName=ID TO fullPath #setSchemaTemplate
     | SELECT INDEX func=ID //not support yet
     LR_BRACKET
     p1=fullPath COMMA p2=fullPath COMMA n1=timeValue COMMA n2=timeValue COMMA
@@ -150,6 +153,11 @@ attributeClauses
     attributeClause
     ;
 
+templateMeasurementClause
+    : nodeNameWithoutStar WITH DATATYPE OPERATOR_EQ dataType COMMA ENCODING OPERATOR_EQ encoding
+    (COMMA (COMPRESSOR | COMPRESSION) OPERATOR_EQ compressor)?
+    ;
+
 compressor
     : UNCOMPRESSED
     | SNAPPY
@@ -177,8 +185,23 @@ whereClause
     ;
 
 showWhereClause
-    : WHERE (property | containsExpression)
+    : WHERE tagOrExpression
+    ;
+
+tagOrExpression
+    : tagAndExpression (OPERATOR_OR tagAndExpression)*
+    ;
+
+tagAndExpression
+    : tagPredicate (OPERATOR_AND tagPredicate)*
     ;
+
+tagPredicate
+    : property
+    | containsExpression
+    | LR_BRACKET tagOrExpression RR_BRACKET
+    ;
+
 containsExpression
     : name=ID OPERATOR_CONTAINS value=propertyValue
     ;
@@ -192,7 +215,7 @@ andExpression
     ;
 
 predicate
-    : (TIME | TIMESTAMP | suffixPath | fullPath) comparisonOperator constant
+    : (TIME | TIMESTAMP | suffixPath | fullPath) comparisonOperator (constant | QUESTION_MARK)
     | (TIME | TIMESTAMP | suffixPath | fullPath) inClause
     | OPERATOR_NOT? LR_BRACKET orExpression RR_BRACKET
     ;
@@ -476,6 +499,7 @@ nodeName
     | SNAPSHOT
     | FOR
     | SCHEMA
+    | TEMPLATE
     | TRACING
     | OFF
     | (ID | OPERATOR_IN)? LS_BRACKET ID? RS_BRACKET ID?
@@ -586,6 +610,7 @@ nodeNameWithoutStar
     | SNAPSHOT
     | FOR
     | SCHEMA
+    | TEMPLATE
     | TRACING
     | OFF
     | (ID | OPERATOR_IN)? LS_BRACKET ID? RS_BRACKET ID?
@@ -1143,6 +1168,10 @@ SCHEMA
     : S C H E M A
     ;
 
+TEMPLATE
+    : T E M P L A T E
+    ;
+
 //============================
 // End of the keywords list
 //============================
@@ -1204,6 +1233,8 @@ R_BRACKET : '}';
 
 UNDERLINE : '_';
 
+QUESTION_MARK : '?';
+
 NaN : 'NaN';
 
 STRING_LITERAL
@@ -19,12 +19,19 @@
 
 package org.apache.iotdb.tool;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -35,7 +42,18 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 import jline.console.ConsoleReader;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -51,7 +69,9 @@ import org.apache.iotdb.jdbc.IoTDBConnection;
 import org.apache.thrift.TException;
 
 /**
- * Export CSV file.
+ * Export CSV file. A raw data query is split into time ranges, which are queried in parallel by a
+ * pool of connections into part files, and the part files are merged in time order into the
+ * target file.
  *
  * @version 1.0.0 20170719
  */
@@ -66,6 +86,12 @@ public class ExportCsv extends AbstractCsvTool {
   private static final String SQL_FILE_ARGS = "s";
   private static final String SQL_FILE_NAME = "sqlfile";
 
+  private static final String THREAD_NUM_ARGS = "tn";
+  private static final String THREAD_NUM_NAME = "threadNum";
+
+  private static final String COMPRESS_ARGS = "c";
+  private static final String COMPRESS_NAME = "compress";
+
   private static final String TSFILEDB_CLI_PREFIX = "ExportCsv";
 
   private static final String DUMP_FILE_NAME_DEFAULT = "dump";
@@ -75,9 +101,29 @@ public class ExportCsv extends AbstractCsvTool {
 
   private static final int EXPORT_PER_LINE_COUNT = 10000;
 
+  private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+  private static final String GZIP = "gzip";
+
   private static String TIMESTAMP_PRECISION = "ms";
 
-  private static List<Integer> typeList = new ArrayList<>();
+  private static int threadNum = 1;
+
+  private static boolean gzip = false;
+
+  // only a raw data query of some series can be split by time
+  private static final Pattern RAW_QUERY_PATTERN = Pattern
+      .compile("^\\s*select\\s+(.+?)\\s+from\\s+(.+?)(?:\\s+where\\s+(.+?))?\\s*$",
+          Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final Pattern UNSPLITTABLE_PATTERN = Pattern
+      .compile("\\b(group\\s+by|fill|limit|offset|slimit|soffset|align\\s+by|disable\\s+align"
+          + "|order\\s+by|last)\\b|\\(", Pattern.CASE_INSENSITIVE);
+
+  private static BlockingQueue<IoTDBConnection> connections;
+
+  private static ExecutorService exportPool;
+
+  private static final AtomicLong exportedLines = new AtomicLong();
 
   /**
    * main function of export csv tool.
@@ -121,9 +167,14 @@ public class ExportCsv extends AbstractCsvTool {
       String sqlFile = commandLine.getOptionValue(SQL_FILE_ARGS);
       String sql;
 
-      connection = (IoTDBConnection) DriverManager
-          .getConnection(Config.IOTDB_URL_PREFIX + host + ":" + port + "/", username, password);
+      connection = createConnection();
       setTimeZone();
+      connections = new ArrayBlockingQueue<>(threadNum);
+      connections.add(connection);
+      for (int i = 1; i < threadNum; i++) {
+        connections.add(createConnection());
+      }
+      exportPool = Executors.newFixedThreadPool(threadNum);
 
       if (sqlFile == null) {
         sql = reader.readLine(TSFILEDB_CLI_PREFIX + "> please input query: ");
@@ -147,12 +198,28 @@ public class ExportCsv extends AbstractCsvTool {
       System.out.println("Invalid args: " + e.getMessage());
     } finally {
       reader.close();
-      if (connection != null) {
+      if (exportPool != null) {
+        exportPool.shutdownNow();
+      }
+      if (connections != null) {
+        for (IoTDBConnection conn : connections) {
+          conn.close();
+        }
+      } else if (connection != null) {
         connection.close();
       }
     }
   }
 
+  private static IoTDBConnection createConnection() throws SQLException, TException {
+    IoTDBConnection conn = (IoTDBConnection) DriverManager
+        .getConnection(Config.IOTDB_URL_PREFIX + host + ":" + port + "/", username, password);
+    if (timeZoneID != null) {
+      conn.setTimeZone(timeZoneID);
+    }
+    return conn;
+  }
+
   private static void parseSpecialParams(CommandLine commandLine)
       throws ArgsErrorException {
     targetDirectory = checkRequiredArg(TARGET_DIR_ARGS, TARGET_DIR_NAME, commandLine);
@@ -168,6 +235,27 @@ public class ExportCsv extends AbstractCsvTool {
     if (!targetDirectory.endsWith(File.separator)) {
       targetDirectory += File.separator;
     }
+    String threadNumStr = commandLine.getOptionValue(THREAD_NUM_ARGS);
+    if (threadNumStr != null) {
+      try {
+        threadNum = Integer.parseInt(threadNumStr);
+      } catch (NumberFormatException e) {
+        threadNum = 0;
+      }
+      if (threadNum <= 0) {
+        throw new ArgsErrorException(
+            String.format("%s should be a positive integer: %s", THREAD_NUM_NAME, threadNumStr));
+      }
+    }
+    String compress = commandLine.getOptionValue(COMPRESS_ARGS);
+    if (compress != null) {
+      if (!GZIP.equalsIgnoreCase(compress)) {
+        throw new ArgsErrorException(
+            String.format("%s %s is not supported, only %s is supported", COMPRESS_NAME, compress,
+                GZIP));
+      }
+      gzip = true;
+    }
   }
 
   /**
@@ -221,6 +309,15 @@ public class ExportCsv extends AbstractCsvTool {
         .desc("Time Zone eg. +08:00 or -01:00 (optional)").build();
     options.addOption(opTimeZone);
 
+    Option opThreadNum = Option.builder(THREAD_NUM_ARGS).argName(THREAD_NUM_NAME).hasArg()
+        .desc("Number of connections querying the time ranges of a raw data query in parallel, "
+            + "default 1 (optional)").build();
+    options.addOption(opThreadNum);
+
+    Option opCompress = Option.builder(COMPRESS_ARGS).argName(COMPRESS_NAME).hasArg()
+        .desc("Compress the exported file, only gzip is supported (optional)").build();
+    options.addOption(opCompress);
+
     Option opHelp = Option.builder(HELP_ARGS).longOpt(HELP_ARGS).hasArg(false)
         .desc("Display help information")
         .build();
@@ -255,7 +352,7 @@ public class ExportCsv extends AbstractCsvTool {
   private static void dumpResult(String sql, int index)
       throws SQLException {
 
-    final String path = targetDirectory + targetFile + index + ".csv";
+    final String path = targetDirectory + targetFile + index + (gzip ? ".csv.gz" : ".csv");
     File tf = new File(path);
     try {
       if (!tf.exists() && !tf.createNewFile()) {
@@ -267,59 +364,215 @@ public class ExportCsv extends AbstractCsvTool {
       return;
     }
     System.out.println("Start to export data from sql statement: " + sql);
+    long startTime = System.currentTimeMillis();
+    exportedLines.set(0);
+    List<String> parts = splitQuery(sql);
+    List<File> partFiles = new ArrayList<>(parts.size());
+    try {
+      if (parts.size() == 1) {
+        partFiles.add(tf);
+        dumpPart(parts.get(0), tf, true, startTime);
+      } else {
+        System.out.println(String.format("The statement is split into %d time ranges",
+            parts.size()));
+        List<Future<Void>> futures = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+          File partFile = new File(path + ".part" + i);
+          partFiles.add(partFile);
+          String part = parts.get(i);
+          boolean withHeader = i == 0;
+          futures.add(exportPool.submit(() -> {
+            dumpPart(part, partFile, withHeader, startTime);
+            return null;
+          }));
+        }
+        waitForParts(futures);
+        // the time ranges are disjoint and ordered, so the parts are merged by concatenation
+        mergeParts(partFiles, tf);
+      }
+      long timeCost = Math.max(System.currentTimeMillis() - startTime, 1);
+      double sizeInMB = tf.length() / 1024.0 / 1024.0;
+      System.out
+          .println(String.format("Statement [%s] has dumped to file %s successfully! It costs "
+                  + "%dms to export %d lines of %.2f MB, %.2f MB/s.", sql, path, timeCost,
+              exportedLines.get(), sizeInMB, sizeInMB * 1000 / timeCost));
+    } catch (IOException e) {
+      System.out.println("Cannot dump result because: " + e.getMessage());
+    } finally {
+      if (parts.size() > 1) {
+        for (File partFile : partFiles) {
+          try {
+            Files.deleteIfExists(partFile.toPath());
+          } catch (IOException e) {
+            System.out.println("Cannot delete part file " + partFile + " because: "
+                + e.getMessage());
+          }
+        }
+      }
+    }
+  }
+
+  private static void waitForParts(List<Future<Void>> futures) throws SQLException, IOException {
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted when exporting data");
+    } catch (ExecutionException e) {
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      if (e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      } else if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new SQLException(e.getCause());
+    }
+  }
+
+  private static void mergeParts(List<File> partFiles, File target) throws IOException {
+    // concatenated gzip members are still a valid gzip file
+    try (OutputStream out = new FileOutputStream(target)) {
+      byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+      for (File partFile : partFiles) {
+        try (InputStream in = new FileInputStream(partFile)) {
+          int length;
+          while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Split a raw data query into queries of disjoint time ranges in time order, one for each
+   * connection. Other queries are not split.
+   */
+  private static List<String> splitQuery(String sql) throws SQLException {
+    Matcher matcher = RAW_QUERY_PATTERN.matcher(sql);
+    if (threadNum == 1 || !matcher.matches() || UNSPLITTABLE_PATTERN.matcher(sql).find()) {
+      return Collections.singletonList(sql);
+    }
+    String[] columns = matcher.group(1).split(",");
+    String from = matcher.group(2);
+    String where = matcher.group(3);
+
+    StringBuilder timeRangeSql = new StringBuilder("select ");
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0) {
+        timeRangeSql.append(", ");
+      }
+      timeRangeSql.append("min_time(").append(columns[i].trim()).append("), max_time(")
+          .append(columns[i].trim()).append(")");
+    }
+    timeRangeSql.append(" from ").append(from);
+    if (where != null) {
+      timeRangeSql.append(" where ").append(where);
+    }
+
+    long minTime = Long.MAX_VALUE;
+    long maxTime = Long.MIN_VALUE;
     try (Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery(timeRangeSql.toString())) {
+      int count = rs.getMetaData().getColumnCount();
+      if (rs.next()) {
+        // the result of an aggregation has no time column
+        for (int i = 1; i <= count; i++) {
+          String value = rs.getString(i);
+          if (value == null || "null".equalsIgnoreCase(value)) {
+            continue;
+          }
+          long time = Long.parseLong(value);
+          minTime = Math.min(minTime, time);
+          maxTime = Math.max(maxTime, time);
+        }
+      }
+    }
+    if (minTime >= maxTime) {
+      return Collections.singletonList(sql);
+    }
+
+    long step = Math.max((maxTime - minTime) / threadNum + 1, 1);
+    List<String> parts = new ArrayList<>(threadNum);
+    String prefix = "select " + matcher.group(1) + " from " + from + " where "
+        + (where == null ? "" : "(" + where + ") and ");
+    for (long start = minTime; start <= maxTime; start += step) {
+      if (maxTime - start < step) {
+        // the last range is open, so the data newer than the max time is exported too
+        parts.add(prefix + "time >= " + start);
+        break;
+      }
+      parts.add(prefix + "time >= " + start + " and time < " + (start + step));
+    }
+    return parts;
+  }
+
+  private static void dumpPart(String sql, File file, boolean withHeader, long startTime)
+      throws SQLException, IOException {
+    IoTDBConnection conn;
+    try {
+      conn = connections.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted when exporting data");
+    }
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE);
+    if (gzip) {
+      out = new GZIPOutputStream(out, WRITE_BUFFER_SIZE);
+    }
+    try (Statement statement = conn.createStatement();
         ResultSet rs = statement.executeQuery(sql);
-        BufferedWriter bw = new BufferedWriter(new FileWriter(tf))) {
+        BufferedWriter bw = new BufferedWriter(
+            new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
       ResultSetMetaData metadata = rs.getMetaData();
-      long startTime = System.currentTimeMillis();
 
       int count = metadata.getColumnCount();
+      List<Integer> typeList = new ArrayList<>(count);
       // write data in csv file
-      writeMetadata(bw, count, metadata);
+      writeMetadata(bw, count, metadata, typeList, withHeader);
 
-      int line = writeResultSet(rs, bw, count);
-      System.out
-          .println(String.format("Statement [%s] has dumped to file %s successfully! It costs "
-                  + "%dms to export %d lines.", sql, path, System.currentTimeMillis() - startTime,
-              line));
-    } catch (IOException e) {
-      System.out.println("Cannot dump result because: " + e.getMessage());
+      writeResultSet(rs, bw, count, typeList, startTime);
+    } finally {
+      out.close();
+      connections.add(conn);
     }
   }
 
-  private static void writeMetadata(BufferedWriter bw, int count, ResultSetMetaData metadata)
-      throws SQLException, IOException {
+  private static void writeMetadata(BufferedWriter bw, int count, ResultSetMetaData metadata,
+      List<Integer> typeList, boolean withHeader) throws SQLException, IOException {
     for (int i = 1; i <= count; i++) {
-      if (i < count) {
-        bw.write(metadata.getColumnLabel(i) + ",");
-      } else {
-        bw.write(metadata.getColumnLabel(i) + "\n");
+      if (withHeader) {
+        if (i < count) {
+          bw.write(metadata.getColumnLabel(i) + ",");
+        } else {
+          bw.write(metadata.getColumnLabel(i) + "\n");
+        }
       }
       typeList.add(metadata.getColumnType(i));
     }
   }
 
-  private static int writeResultSet(ResultSet rs, BufferedWriter bw, int count)
-      throws SQLException, IOException {
-    int line = 0;
-    long timestamp = System.currentTimeMillis();
+  private static void writeResultSet(ResultSet rs, BufferedWriter bw, int count,
+      List<Integer> typeList, long startTime) throws SQLException, IOException {
     while (rs.next()) {
       if (rs.getString(1) == null ||
           "null".equalsIgnoreCase(rs.getString(1))) {
         bw.write(",");
       } else {
         writeTime(rs, bw);
-        writeValue(rs, count, bw);
+        writeValue(rs, count, bw, typeList);
       }
-      line++;
+      long line = exportedLines.incrementAndGet();
       if (line % EXPORT_PER_LINE_COUNT == 0) {
-        long tmp = System.currentTimeMillis();
-        System.out.println(
-            String.format("%d lines have been exported, it takes %dms", line, (tmp - timestamp)));
-        timestamp = tmp;
+        long timeCost = Math.max(System.currentTimeMillis() - startTime, 1);
+        System.out.println(String.format("%d lines have been exported, it takes %dms, %.2f "
+            + "lines/s", line, timeCost, line * 1000.0 / timeCost));
       }
     }
-    return line;
   }
 
   private static void writeTime(ResultSet rs, BufferedWriter bw) throws SQLException, IOException {
@@ -345,8 +598,8 @@ public class ExportCsv extends AbstractCsvTool {
     }
   }
 
-  private static void writeValue(ResultSet rs, int count, BufferedWriter bw)
-      throws SQLException, IOException {
+  private static void writeValue(ResultSet rs, int count, BufferedWriter bw,
+      List<Integer> typeList) throws SQLException, IOException {
     for (int j = 2; j <= count; j++) {
       if (j < count) {
         if ("null".equals(rs.getString(j))) {
@@ -26,16 +26,29 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.LineNumberReader;
-import java.sql.DatabaseMetaData;
+import java.nio.file.Files;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import jline.console.ConsoleReader;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.commons.cli.CommandLine;
@@ -48,31 +61,70 @@ import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.FileUtils;
 import org.apache.iotdb.exception.ArgsErrorException;
 import org.apache.iotdb.jdbc.Config;
-import org.apache.iotdb.jdbc.Constant;
 import org.apache.iotdb.jdbc.IoTDBConnection;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.Tablet;
+import org.apache.iotdb.tsfile.write.record.datapoint.DataPoint;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.apache.thrift.TException;
 
 /**
  * read a CSV formatted data File and insert all the data into IoTDB.
+ * <p>
+ * The rows are not inserted by SQL. By default, they are converted into the tablets of their
+ * devices, which are sent by a pool of threads. With -tsfile, they are written into local TsFiles
+ * instead, which are streamed to the server and loaded as a whole.
  */
 public class ImportCsv extends AbstractCsvTool {
   private static final String FILE_ARGS = "f";
   private static final String FILE_NAME = "file or folder";
   private static final String FILE_SUFFIX = "csv";
 
+  private static final String THREAD_NUM_ARGS = "tn";
+  private static final String THREAD_NUM_NAME = "threadNum";
+
+  private static final String TSFILE_ARGS = "tsfile";
+
   private static final String TSFILEDB_CLI_PREFIX = "ImportCsv";
   private static final String ERROR_INFO_STR = "csvInsertError.error";
 
-  private static final String STRING_DATA_TYPE = "TEXT";
-  private static final int BATCH_EXECUTE_COUNT = 100;
+  private static final int DEFAULT_THREAD_NUM = 4;
+  // the max number of rows in a tablet
+  private static final int TABLET_SIZE = 10_000;
+  // a local TsFile is closed and loaded once it is larger than this
+  private static final long TSFILE_SIZE = 256L * 1024 * 1024;
+  // the data points buffered and sorted in memory before they are written into a local TsFile
+  private static final int TSFILE_BUFFER_POINTS = 1_000_000;
+  private static final String TSFILE_DIR = "iotdb-import";
+
+  // the time formats of the CSV exported by ExportCsv other than numbers
+  private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter
+      .ofPattern("yyyy[-][/][.]MM[-][/][.]dd['T'][ ]HH:mm:ss[.SSS][XXX]");
 
   private static String errorInsertInfo = "";
   private static boolean errorFlag;
 
   private static String IOTDB_CLI_HOME = "IOTDB_CLI_HOME";
 
-  private static int count;
-  private static Statement statement;
+  private static int threadNum = DEFAULT_THREAD_NUM;
+  private static boolean loadTsFile;
+
+  private static SessionPool sessionPool;
+  private static ExecutorService sendThreadPool;
+  // bounds the tablets or TsFiles waiting to be sent, so the import does not run out of memory
+  private static Semaphore sendPermits;
+  private static List<Future<?>> sendFutures = new ArrayList<>();
+  // the errors of sending, written into the error file of the CSV file
+  private static Queue<String> sendErrors = new ConcurrentLinkedQueue<>();
+  private static long tsFileVersion = 0;
 
   /**
    * create the commandline options.
@@ -114,6 +166,16 @@ public class ImportCsv extends AbstractCsvTool {
         .desc("Time Zone eg. +08:00 or -01:00 (optional)").build();
     options.addOption(opTimeZone);
 
+    Option opThreadNum = Option.builder(THREAD_NUM_ARGS).argName(THREAD_NUM_NAME).hasArg()
+        .desc("Number of threads sending the data, default " + DEFAULT_THREAD_NUM + " (optional)")
+        .build();
+    options.addOption(opThreadNum);
+
+    Option opTsFile = Option.builder(TSFILE_ARGS).hasArg(false)
+        .desc("Write the data into local TsFiles and load them into the server (optional)")
+        .build();
+    options.addOption(opTsFile);
+
     return options;
   }
 
@@ -121,7 +183,6 @@ public class ImportCsv extends AbstractCsvTool {
    * Data from csv To tsfile.
    */
   private static void loadDataFromCSV(File file, int index) {
-    statement = null;
     int fileLine;
     try {
       fileLine = getFileLineCount(file);
@@ -175,126 +236,423 @@ public class ImportCsv extends AbstractCsvTool {
         errorFlag = false;
         return;
       }
-
-      statement = connection.createStatement();
-
-
-      List<String> tmp = new ArrayList<>();
-      success = readAndGenSqls(br, timeseriesDataType, deviceToColumn, colInfo, headInfo,
-          bw, tmp, pb);
-      if (!success) {
-        return;
+      List<TSDataType> dataTypes = new ArrayList<>(headInfo.size());
+      for (String timeseries : headInfo) {
+        dataTypes.add(TSDataType.valueOf(timeseriesDataType.get(timeseries)));
       }
 
-      executeSqls(bw, tmp, startTime, file);
+      long rowCount;
+      if (loadTsFile) {
+        rowCount = readAndWriteTsFiles(br, deviceToColumn, colInfo, dataTypes, bw, pb);
+      } else {
+        rowCount = readAndSendTablets(br, deviceToColumn, colInfo, dataTypes, bw, pb);
+      }
+      waitForSending(bw);
       pb.stepTo(fileLine);
+
+      double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+      double megabytes = file.length() / 1024.0 / 1024.0;
+      System.out.println(String.format("Imported %d rows of %.2f MB in %.2f s, %.2f MB/s",
+          rowCount, megabytes, seconds, megabytes / seconds));
     } catch (FileNotFoundException e) {
       System.out.println("Cannot find " + file.getName() + " because: "+e.getMessage());
     } catch (IOException e) {
       System.out.println("CSV file read exception because: " + e.getMessage());
     } catch (SQLException e) {
       System.out.println("Database connection exception because: " + e.getMessage());
+    } catch (InterruptedException e) {
+      System.out.println("The import is interrupted");
+      Thread.currentThread().interrupt();
     } finally {
       try {
-        if (statement != null) {
-          statement.close();
-        }
         if (errorFlag) {
           FileUtils.forceDelete(errorFile);
         } else {
           System.out.println("Format of some lines in "+ file.getAbsolutePath() + " error, please "
               + "check "+errorFile.getAbsolutePath()+" for more information");
         }
-      } catch (SQLException e) {
-        System.out.println("Sql statement can not be closed because: " + e.getMessage());
       } catch (IOException e) {
         System.out.println("Close file error because: " + e.getMessage());
       }
     }
   }
 
-  private static void executeSqls(BufferedWriter bw, List<String> tmp, long startTime, File file)
-      throws IOException {
+  /**
+   * convert the rows into the tablets of their devices and send the full tablets. As a tablet can
+   * not contain null values, the rows of a device are put into different tablets by their
+   * non-empty columns.
+   *
+   * @return the number of imported rows
+   */
+  private static long readAndSendTablets(BufferedReader br,
+      Map<String, ArrayList<Integer>> deviceToColumn, List<String> colInfo,
+      List<TSDataType> dataTypes, BufferedWriter bw, ProgressBar pb)
+      throws IOException, InterruptedException {
+    Map<String, Tablet> tablets = new LinkedHashMap<>();
+    List<Integer> columns = new ArrayList<>();
+    long rowCount = 0;
+    String line;
+    while ((line = br.readLine()) != null) {
+      pb.step();
+      String[] data = line.split(",", colInfo.size() + 1);
+      long time;
+      List<Object[]> rows = new ArrayList<>(deviceToColumn.size());
+      List<Tablet> rowTablets = new ArrayList<>(deviceToColumn.size());
+      try {
+        time = parseTime(data[0]);
+        for (Map.Entry<String, ArrayList<Integer>> entry : deviceToColumn.entrySet()) {
+          columns.clear();
+          StringBuilder key = new StringBuilder(entry.getKey());
+          for (int column : entry.getValue()) {
+            if (!"".equals(data[column + 1])) {
+              columns.add(column);
+              key.append(',').append(column);
+            }
+          }
+          if (columns.isEmpty()) {
+            continue;
+          }
+          Object[] values = new Object[columns.size()];
+          for (int i = 0; i < columns.size(); i++) {
+            values[i] = parseValue(dataTypes.get(columns.get(i)), data[columns.get(i) + 1]);
+          }
+          rows.add(values);
+          rowTablets.add(tablets.computeIfAbsent(key.toString(),
+              k -> newTablet(entry.getKey(), columns, colInfo, dataTypes)));
+        }
+      } catch (Exception e) {
+        writeErrorLine(bw, line, e);
+        continue;
+      }
+
+      for (int i = 0; i < rows.size(); i++) {
+        Tablet tablet = rowTablets.get(i);
+        addRow(tablet, time, rows.get(i));
+        if (tablet.rowSize == tablet.getMaxRowNumber()) {
+          sendTablet(tablet);
+          tablets.replaceAll((k, v) -> v == tablet
+              ? new Tablet(tablet.deviceId, tablet.getSchemas(), TABLET_SIZE) : v);
+        }
+      }
+      rowCount++;
+    }
+    for (Tablet tablet : tablets.values()) {
+      if (tablet.rowSize > 0) {
+        sendTablet(tablet);
+      }
+    }
+    return rowCount;
+  }
+
+  /**
+   * write the rows into local TsFiles and load each of them once it is closed. As the data of a
+   * series in a TsFile must be ordered, the rows are buffered and sorted by time per device before
+   * they are written. A TsFile is closed when it is large enough, or when the buffered time of a
+   * device goes back to what is already written.
+   *
+   * @return the number of imported rows
+   */
+  private static long readAndWriteTsFiles(BufferedReader br,
+      Map<String, ArrayList<Integer>> deviceToColumn, List<String> colInfo,
+      List<TSDataType> dataTypes, BufferedWriter bw, ProgressBar pb)
+      throws IOException, InterruptedException {
+    File dir = new File(System.getProperty("java.io.tmpdir"), TSFILE_DIR);
+    if (!dir.exists() && !dir.mkdirs()) {
+      throw new IOException("Cannot create the dir of TsFiles " + dir);
+    }
+    TsFileBuffer buffer = new TsFileBuffer(dir, deviceToColumn, colInfo, dataTypes);
+    long rowCount = 0;
     try {
-      int[] result = statement.executeBatch();
-      for (int i = 0; i < result.length; i++) {
-        if (result[i] != Statement.SUCCESS_NO_INFO && i < tmp.size()) {
-          bw.write(tmp.get(i));
-          bw.newLine();
-          errorFlag = false;
+      String line;
+      while ((line = br.readLine()) != null) {
+        pb.step();
+        String[] data = line.split(",", colInfo.size() + 1);
+        List<TSRecord> records = new ArrayList<>(deviceToColumn.size());
+        try {
+          long time = parseTime(data[0]);
+          for (Map.Entry<String, ArrayList<Integer>> entry : deviceToColumn.entrySet()) {
+            TSRecord record = new TSRecord(time, entry.getKey());
+            for (int column : entry.getValue()) {
+              if (!"".equals(data[column + 1])) {
+                TSDataType dataType = dataTypes.get(column);
+                String value = data[column + 1];
+                record.addTuple(DataPoint.getDataPoint(dataType, colInfo.get(column),
+                    dataType == TSDataType.TEXT ? unquote(value) : value));
+              }
+            }
+            if (!record.dataPointList.isEmpty()) {
+              records.add(record);
+            }
+          }
+        } catch (Exception e) {
+          writeErrorLine(bw, line, e);
+          continue;
         }
+
+        for (TSRecord record : records) {
+          buffer.add(record);
+        }
+        if (buffer.pointCount >= TSFILE_BUFFER_POINTS) {
+          buffer.flush();
+        }
+        rowCount++;
       }
-      statement.clearBatch();
-      tmp.clear();
-    } catch (SQLException e) {
-      bw.write(e.getMessage());
-      bw.newLine();
-      errorFlag = false;
-      System.out.println("Cannot execute sql because: " + e.getMessage());
+      buffer.flush();
+      buffer.close();
+    } catch (WriteProcessException e) {
+      throw new IOException(e);
+    } finally {
+      if (buffer.writer != null) {
+        buffer.writer.close();
+      }
+    }
+    return rowCount;
+  }
+
+  /**
+   * buffers the records of each device sorted by time, and writes them into the current TsFile.
+   */
+  private static class TsFileBuffer {
+
+    private final File dir;
+    private final Map<String, ArrayList<Integer>> deviceToColumn;
+    private final List<String> colInfo;
+    private final List<TSDataType> dataTypes;
+
+    private final Map<String, TreeMap<Long, TSRecord>> deviceRecords = new HashMap<>();
+    private long pointCount = 0;
+
+    private File tsFile;
+    private TsFileWriter writer;
+    // the last written time of each device in the current TsFile
+    private final Map<String, Long> lastTimes = new HashMap<>();
+
+    private TsFileBuffer(File dir, Map<String, ArrayList<Integer>> deviceToColumn,
+        List<String> colInfo, List<TSDataType> dataTypes) {
+      this.dir = dir;
+      this.deviceToColumn = deviceToColumn;
+      this.colInfo = colInfo;
+      this.dataTypes = dataTypes;
+    }
+
+    private void add(TSRecord record) {
+      TSRecord existing = deviceRecords.computeIfAbsent(record.deviceId, d -> new TreeMap<>())
+          .putIfAbsent(record.time, record);
+      if (existing != null) {
+        // a later row of the same time overwrites the values of the earlier one
+        for (DataPoint dataPoint : record.dataPointList) {
+          if (existing.dataPointList.removeIf(
+              p -> p.getMeasurementId().equals(dataPoint.getMeasurementId()))) {
+            pointCount--;
+          }
+          existing.addTuple(dataPoint);
+        }
+      }
+      pointCount += record.dataPointList.size();
+    }
+
+    private void flush() throws IOException, WriteProcessException, InterruptedException {
+      if (deviceRecords.isEmpty()) {
+        return;
+      }
+      if (writer == null || writer.getIOWriter().getPos() > TSFILE_SIZE || goesBack()) {
+        close();
+        tsFile = new File(dir, System.currentTimeMillis() + "-" + (++tsFileVersion) + "-0.tsfile");
+        writer = new TsFileWriter(tsFile);
+        registerTimeseries(writer, deviceToColumn, colInfo, dataTypes);
+      }
+      for (Map.Entry<String, TreeMap<Long, TSRecord>> entry : deviceRecords.entrySet()) {
+        for (TSRecord record : entry.getValue().values()) {
+          writer.write(record);
+        }
+        lastTimes.put(entry.getKey(), entry.getValue().lastKey());
+      }
+      deviceRecords.clear();
+      pointCount = 0;
+    }
+
+    private boolean goesBack() {
+      for (Map.Entry<String, TreeMap<Long, TSRecord>> entry : deviceRecords.entrySet()) {
+        Long lastTime = lastTimes.get(entry.getKey());
+        if (lastTime != null && lastTime >= entry.getValue().firstKey()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * close the current TsFile and load it.
+     */
+    private void close() throws IOException, InterruptedException {
+      if (writer == null) {
+        return;
+      }
+      writer.close();
+      writer = null;
+      lastTimes.clear();
+      sendTsFile(tsFile);
     }
   }
 
-  private static boolean readAndGenSqls(BufferedReader br, Map<String, String> timeseriesDataType,
+  private static void registerTimeseries(TsFileWriter writer,
       Map<String, ArrayList<Integer>> deviceToColumn, List<String> colInfo,
-      List<String> headInfo, BufferedWriter bw, List<String> tmp, ProgressBar pb) throws IOException {
-    String line;
-    count = 0;
-    while ((line = br.readLine()) != null) {
-      List<String> sqls;
-      try {
-        sqls = createInsertSQL(line, timeseriesDataType, deviceToColumn, colInfo, headInfo);
-      } catch (Exception e) {
-        bw.write(String.format("error input line, maybe it is not complete: %s", line));
-        bw.newLine();
-        System.out.println("Cannot create sql for " + line + " because: " + e.getMessage());
-        errorFlag = false;
-        return false;
+      List<TSDataType> dataTypes) throws WriteProcessException {
+    for (Map.Entry<String, ArrayList<Integer>> entry : deviceToColumn.entrySet()) {
+      for (int column : entry.getValue()) {
+        writer.registerTimeseries(new Path(entry.getKey(), colInfo.get(column)),
+            new MeasurementSchema(colInfo.get(column), dataTypes.get(column)));
       }
-      boolean success = addSqlsToBatch(sqls, tmp, bw);
-      pb.step();
-      if (!success) {
-        return false;
+    }
+  }
+
+  private static Tablet newTablet(String deviceId, List<Integer> columns, List<String> colInfo,
+      List<TSDataType> dataTypes) {
+    List<MeasurementSchema> schemas = new ArrayList<>(columns.size());
+    for (int column : columns) {
+      schemas.add(new MeasurementSchema(colInfo.get(column), dataTypes.get(column)));
+    }
+    return new Tablet(deviceId, schemas, TABLET_SIZE);
+  }
+
+  private static void addRow(Tablet tablet, long time, Object[] values) {
+    int row = tablet.rowSize++;
+    tablet.timestamps[row] = time;
+    for (int i = 0; i < values.length; i++) {
+      switch (tablet.getSchemas().get(i).getType()) {
+        case BOOLEAN:
+          ((boolean[]) tablet.values[i])[row] = (Boolean) values[i];
+          break;
+        case INT32:
+          ((int[]) tablet.values[i])[row] = (Integer) values[i];
+          break;
+        case INT64:
+          ((long[]) tablet.values[i])[row] = (Long) values[i];
+          break;
+        case FLOAT:
+          ((float[]) tablet.values[i])[row] = (Float) values[i];
+          break;
+        case DOUBLE:
+          ((double[]) tablet.values[i])[row] = (Double) values[i];
+          break;
+        default:
+          ((Binary[]) tablet.values[i])[row] = (Binary) values[i];
+          break;
       }
     }
-    return true;
   }
 
-  private static boolean addSqlsToBatch(List<String> sqls, List<String> tmp, BufferedWriter bw)
+  private static Object parseValue(TSDataType dataType, String value) {
+    switch (dataType) {
+      case BOOLEAN:
+        return Boolean.parseBoolean(value);
+      case INT32:
+        return Integer.parseInt(value);
+      case INT64:
+        return Long.parseLong(value);
+      case FLOAT:
+        return Float.parseFloat(value);
+      case DOUBLE:
+        return Double.parseDouble(value);
+      case TEXT:
+        return new Binary(unquote(value));
+      default:
+        throw new IllegalArgumentException("Unsupported data type " + dataType);
+    }
+  }
+
+  /**
+   * remove the quotes around a TEXT value, e.g., 'hello'
+   */
+  private static String unquote(String value) {
+    if (value.length() >= 2 && (value.startsWith("'") && value.endsWith("'")
+        || value.startsWith("\"") && value.endsWith("\""))) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  /**
+   * parse the time of a row, which is either a number or a date time like the ones written by
+   * ExportCsv. The date time without an offset is in the time zone of the connection.
+   */
+  private static long parseTime(String time) {
+    String str = time.trim();
+    try {
+      return Long.parseLong(str);
+    } catch (NumberFormatException e) {
+      // not a number
+    }
+    try {
+      return ZonedDateTime.parse(str, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant()
+          .toEpochMilli();
+    } catch (DateTimeParseException e) {
+      // not an ISO8601 date time
+    }
+    TemporalAccessor dateTime = TIME_FORMATTER
+        .parseBest(str, ZonedDateTime::from, LocalDateTime::from);
+    if (dateTime instanceof ZonedDateTime) {
+      return ((ZonedDateTime) dateTime).toInstant().toEpochMilli();
+    }
+    return ((LocalDateTime) dateTime).atZone(zoneId).toInstant().toEpochMilli();
+  }
+
+  private static void writeErrorLine(BufferedWriter bw, String line, Exception e)
       throws IOException {
-    for (String str : sqls) {
+    bw.write(String.format("error input line, because %s: %s", e.getMessage(), line));
+    bw.newLine();
+    errorFlag = false;
+  }
+
+  private static void sendTablet(Tablet tablet) throws InterruptedException {
+    send(() -> sessionPool.insertTablet(tablet),
+        String.format("Cannot insert %d rows of %s", tablet.rowSize, tablet.deviceId));
+  }
+
+  private static void sendTsFile(File tsFile) throws InterruptedException {
+    send(() -> {
       try {
-        count++;
-        statement.addBatch(str);
-        tmp.add(str);
-        checkBatchSize(bw, tmp);
-
-      } catch (SQLException e) {
-        bw.write(e.getMessage());
-        bw.newLine();
-        errorFlag = false;
-        System.out.println("Cannot execute sql because: " + e.getMessage());
-        return false;
+        sessionPool.bulkLoadTsFile(tsFile);
+      } finally {
+        Files.deleteIfExists(tsFile.toPath());
       }
-    }
-    return true;
+    }, "Cannot load " + tsFile);
   }
 
+  private static void send(SendTask task, String errorMessage) throws InterruptedException {
+    sendPermits.acquire();
+    sendFutures.add(sendThreadPool.submit(() -> {
+      try {
+        task.send();
+      } catch (Exception e) {
+        sendErrors.add(errorMessage + " because: " + e.getMessage());
+      } finally {
+        sendPermits.release();
+      }
+    }));
+  }
 
-  private static void checkBatchSize(BufferedWriter bw, List<String> tmp)
-      throws SQLException, IOException {
-    if (count == BATCH_EXECUTE_COUNT) {
-      int[] result = statement.executeBatch();
-      for (int i = 0; i < result.length; i++) {
-        if (result[i] != Statement.SUCCESS_NO_INFO && i < tmp.size()) {
-          bw.write(tmp.get(i));
-          bw.newLine();
-          errorFlag = false;
-        }
+  private static void waitForSending(BufferedWriter bw) throws IOException, InterruptedException {
+    for (Future<?> future : sendFutures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        sendErrors.add(e.getMessage());
       }
-      statement.clearBatch();
-      count = 0;
-      tmp.clear();
     }
+    sendFutures.clear();
+    String error;
+    while ((error = sendErrors.poll()) != null) {
+      System.out.println(error);
+      bw.write(error);
+      bw.newLine();
+      errorFlag = false;
+    }
+  }
+
+  private interface SendTask {
+
+    void send() throws IoTDBConnectionException, StatementExecutionException, IOException;
   }
 
   private static boolean queryDatabaseMeta(String[] strHeadInfo, File file, BufferedWriter bw,
@@ -330,60 +688,6 @@ public class ImportCsv extends AbstractCsvTool {
     return true;
   }
 
-  private static List<String> createInsertSQL(String line, Map<String, String> timeseriesToType,
-      Map<String, ArrayList<Integer>> deviceToColumn,
-      List<String> colInfo, List<String> headInfo) {
-    String[] data = line.split(",", headInfo.size() + 1);
-    List<String> sqls = new ArrayList<>();
-    Iterator<Map.Entry<String, ArrayList<Integer>>> it = deviceToColumn.entrySet().iterator();
-    while (it.hasNext()) {
-      Map.Entry<String, ArrayList<Integer>> entry = it.next();
-      String sql = createOneSql(entry, data, colInfo, timeseriesToType, headInfo);
-      if (sql != null) {
-        sqls.add(sql);
-      }
-    }
-    return sqls;
-  }
-
-  private static String createOneSql(Map.Entry<String, ArrayList<Integer>> entry, String[] data,
-      List<String> colInfo, Map<String, String> timeseriesToType, List<String> headInfo) {
-    StringBuilder sbd = new StringBuilder();
-    ArrayList<Integer> colIndex = entry.getValue();
-    sbd.append("insert into ").append(entry.getKey()).append("(timestamp");
-    int skipCount = 0;
-    for (int j = 0; j < colIndex.size(); ++j) {
-      if ("".equals(data[entry.getValue().get(j) + 1])) {
-        skipCount++;
-        continue;
-      }
-      sbd.append(", ").append(colInfo.get(colIndex.get(j)));
-    }
-    // define every device null value' number, if the number equal the
-    // sensor number, the insert operation stop
-    if (skipCount == entry.getValue().size()) {
-      return null;
-    }
-
-    // TODO when timestampsStr is empty
-    String timestampsStr = data[0];
-    sbd.append(") values(").append(timestampsStr.trim().isEmpty()
-        ? "NO TIMESTAMP" : timestampsStr);
-
-    for (int j = 0; j < colIndex.size(); ++j) {
-      if ("".equals(data[entry.getValue().get(j) + 1])) {
-        continue;
-      }
-      if (timeseriesToType.get(headInfo.get(colIndex.get(j))).equals(STRING_DATA_TYPE)) {
-        sbd.append(", \'").append(data[colIndex.get(j) + 1]).append("\'");
-      } else {
-        sbd.append(",").append(data[colIndex.get(j) + 1]);
-      }
-    }
-    sbd.append(")");
-    return sbd.toString();
-  }
-
   public static void main(String[] args) throws IOException, SQLException {
     Options options = createOptions();
     HelpFormatter hf = new HelpFormatter();
@@ -429,8 +733,20 @@ public class ImportCsv extends AbstractCsvTool {
     }
   }
 
-  private static void parseSpecialParams(CommandLine commandLine) {
+  private static void parseSpecialParams(CommandLine commandLine) throws ArgsErrorException {
     timeZoneID = commandLine.getOptionValue(TIME_ZONE_ARGS);
+    String threadNumStr = commandLine.getOptionValue(THREAD_NUM_ARGS);
+    if (threadNumStr != null) {
+      try {
+        threadNum = Integer.parseInt(threadNumStr);
+      } catch (NumberFormatException e) {
+        throw new ArgsErrorException("Invalid thread number " + threadNumStr);
+      }
+      if (threadNum <= 0) {
+        throw new ArgsErrorException("Invalid thread number " + threadNumStr);
+      }
+    }
+    loadTsFile = commandLine.hasOption(TSFILE_ARGS);
   }
 
   public static void importCsvFromFile(String ip, String port, String username,
@@ -449,6 +765,10 @@ public class ImportCsv extends AbstractCsvTool {
           username, password);
       timeZoneID = timeZone;
       setTimeZone();
+      sessionPool = new SessionPool(ip, Integer.parseInt(port), username, password, threadNum);
+      sendThreadPool = Executors.newFixedThreadPool(threadNum);
+      // the data of at most two batches per thread is waiting in memory
+      sendPermits = new Semaphore(threadNum * 2);
 
       File file = new File(filename);
       if (file.isFile()) {
@@ -467,6 +787,12 @@ public class ImportCsv extends AbstractCsvTool {
     } catch (Exception e) {
       System.out.println("Encounter an error, because: " + e.getMessage());
     } finally {
+      if (sendThreadPool != null) {
+        sendThreadPool.shutdownNow();
+      }
+      if (sessionPool != null) {
+        sessionPool.close();
+      }
       if (connection != null) {
         connection.close();
       }
@@ -43,7 +43,13 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
+import org.apache.iotdb.rpc.RpcUtils;
+import org.apache.iotdb.rpc.StatementExecutionException;
 import org.apache.iotdb.service.rpc.thrift.TSIService.Iface;
+import org.apache.iotdb.service.rpc.thrift.TSPrepareStatementReq;
+import org.apache.iotdb.service.rpc.thrift.TSPrepareStatementResp;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
 import org.slf4j.LoggerFactory;
 
 public class IoTDBPreparedStatement extends IoTDBStatement implements PreparedStatement {
@@ -56,11 +62,37 @@ public class IoTDBPreparedStatement extends IoTDBStatement implements PreparedSt
    */
   private final Map<Integer, String> parameters = new LinkedHashMap<>();
 
+  /**
+   * whether the statement is prepared on the server. If the server does not support prepared
+   * statements, the parameters are substituted into the SQL on the client side.
+   */
+  private boolean preparedOnServer;
+
   IoTDBPreparedStatement(IoTDBConnection connection, Iface client,
       Long sessionId, String sql,
       ZoneId zoneId) throws SQLException {
     super(connection, client, sessionId, zoneId);
     this.sql = sql;
+    this.preparedOnServer = prepareOnServer(client, sessionId, sql);
+  }
+
+  private static boolean prepareOnServer(Iface client, Long sessionId, String sql)
+      throws SQLException {
+    try {
+      TSPrepareStatementResp resp = client
+          .prepareStatement(new TSPrepareStatementReq(sessionId, sql));
+      RpcUtils.verifySuccess(resp.getStatus());
+      return true;
+    } catch (StatementExecutionException e) {
+      throw new SQLException(String.format("Fail to prepare %s: %s", sql, e.getMessage()), e);
+    } catch (TApplicationException e) {
+      if (e.getType() == TApplicationException.UNKNOWN_METHOD) {
+        return false;
+      }
+      throw new SQLException(String.format("Fail to prepare %s", sql), e);
+    } catch (TException e) {
+      throw new SQLException(String.format("Fail to prepare %s", sql), e);
+    }
   }
 
   @Override
@@ -75,16 +107,29 @@ public class IoTDBPreparedStatement extends IoTDBStatement implements PreparedSt
 
   @Override
   public boolean execute() throws SQLException {
+    if (preparedOnServer) {
+      return super.executeStatement(sql, getParameterList());
+    }
     return super.execute(createCompleteSql(sql, parameters));
   }
 
   @Override
   public ResultSet executeQuery() throws SQLException {
+    if (preparedOnServer) {
+      if (!super.executeStatement(sql, getParameterList())) {
+        throw new SQLException("Statement is not a query statement.");
+      }
+      return getResultSet();
+    }
     return super.executeQuery(createCompleteSql(sql, parameters));
   }
 
   @Override
   public int executeUpdate() throws SQLException {
+    if (preparedOnServer) {
+      super.executeStatement(sql, getParameterList());
+      return 0;
+    }
     return super.executeUpdate(createCompleteSql(sql, parameters));
   }
 
@@ -444,7 +489,7 @@ public class IoTDBPreparedStatement extends IoTDBStatement implements PreparedSt
 
   private String createCompleteSql(final String sql, Map<Integer, String> parameters)
       throws SQLException {
-    List<String> parts = splitSqlStatement(sql);
+    List<String> parts = RpcUtils.splitSqlByParameters(sql);
 
     StringBuilder newSql = new StringBuilder(parts.get(0));
     for (int i = 1; i < parts.size(); i++) {
@@ -460,41 +505,19 @@ public class IoTDBPreparedStatement extends IoTDBStatement implements PreparedSt
 
   }
 
-  private List<String> splitSqlStatement(final String sql) {
-    List<String> parts = new ArrayList<>();
-    int apCount = 0;
-    int off = 0;
-    boolean skip = false;
-
-    for (int i = 0; i < sql.length(); i++) {
-      char c = sql.charAt(i);
-      if (skip) {
-        skip = false;
-        continue;
-      }
-      switch (c) {
-        case '\'':
-          // skip something like 'xxxxx'
-          apCount++;
-          break;
-        case '\\':
-          // skip something like \r\n
-          skip = true;
-          break;
-        case '?':
-          // for input like: select a from 'bc' where d, 'bc' will be skipped
-          if ((apCount & 1) == 0) {
-            parts.add(sql.substring(off, i));
-            off = i + 1;
-          }
-          break;
-        default:
-          break;
+  /**
+   * @return the values of the parameters in the order they occur in the statement
+   */
+  private List<String> getParameterList() throws SQLException {
+    int parameterCount = RpcUtils.splitSqlByParameters(sql).size() - 1;
+    List<String> parameterList = new ArrayList<>(parameterCount);
+    for (int i = 1; i <= parameterCount; i++) {
+      if (!parameters.containsKey(i)) {
+        throw new SQLException("Parameter #" + i + " is unset");
       }
+      parameterList.add(parameters.get(i));
     }
-    parts.add(sql.substring(off));
-    return parts;
-
+    return parameterList;
   }
 
 }
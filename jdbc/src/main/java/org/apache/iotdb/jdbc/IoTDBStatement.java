@@ -25,6 +25,7 @@ import org.apache.iotdb.rpc.TSStatusCode;
 import org.apache.iotdb.service.rpc.thrift.TSCancelOperationReq;
 import org.apache.iotdb.service.rpc.thrift.TSCloseOperationReq;
 import org.apache.iotdb.service.rpc.thrift.TSExecuteBatchStatementReq;
+import org.apache.iotdb.service.rpc.thrift.TSExecutePreparedStatementReq;
 import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementReq;
 import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementResp;
 import org.apache.iotdb.service.rpc.thrift.TSIService;
@@ -174,10 +175,18 @@ public class IoTDBStatement implements Statement {
 
   @Override
   public boolean execute(String sql) throws SQLException {
+    return executeStatement(sql, null);
+  }
+
+  /**
+   * @param parameters values of the parameters ('?') of a statement prepared on the server, or
+   *                   null if the statement is not prepared
+   */
+  protected boolean executeStatement(String sql, List<String> parameters) throws SQLException {
     checkConnection("execute");
     isClosed = false;
     try {
-      return executeSQL(sql);
+      return executeSQL(sql, parameters);
     } catch (TException e) {
       if (reConnect()) {
         throw new SQLException(String.format("Fail to execute %s", sql), e);
@@ -209,11 +218,20 @@ public class IoTDBStatement implements Statement {
    * (1) return IoTDBJDBCResultSet or IoTDBNonAlignJDBCResultSet
    * (2) simply get executed
    */
-  private boolean executeSQL(String sql) throws TException, SQLException {
+  private boolean executeSQL(String sql, List<String> parameters)
+      throws TException, SQLException {
     isCancelled = false;
-    TSExecuteStatementReq execReq = new TSExecuteStatementReq(sessionId, sql, stmtId);
-    execReq.setFetchSize(fetchSize);
-    TSExecuteStatementResp execResp = client.executeStatement(execReq);
+    TSExecuteStatementResp execResp;
+    if (parameters == null) {
+      TSExecuteStatementReq execReq = new TSExecuteStatementReq(sessionId, sql, stmtId);
+      execReq.setFetchSize(fetchSize);
+      execResp = client.executeStatement(execReq);
+    } else {
+      TSExecutePreparedStatementReq execReq = new TSExecutePreparedStatementReq(sessionId, sql,
+          parameters, stmtId);
+      execReq.setFetchSize(fetchSize);
+      execResp = client.executePreparedStatement(execReq);
+    }
     try {
       RpcUtils.verifySuccess(execResp.getStatus());
     } catch (StatementExecutionException e) {
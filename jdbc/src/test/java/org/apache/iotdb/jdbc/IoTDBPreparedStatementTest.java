@@ -20,16 +20,21 @@ package org.apache.iotdb.jdbc;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
 
+import org.apache.iotdb.rpc.RpcUtils;
 import org.apache.iotdb.rpc.TSStatusCode;
 import org.apache.iotdb.service.rpc.thrift.*;
 import org.apache.iotdb.service.rpc.thrift.TSIService.Iface;
+import org.apache.thrift.TApplicationException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -60,6 +65,77 @@ public class IoTDBPreparedStatementTest {
     when(execStatementResp.getQueryId()).thenReturn(queryId);
 
     when(client.executeStatement(any(TSExecuteStatementReq.class))).thenReturn(execStatementResp);
+    // the server does not support prepared statements, so the parameters are substituted into
+    // the statement on the client side
+    when(client.prepareStatement(any(TSPrepareStatementReq.class)))
+        .thenThrow(new TApplicationException(TApplicationException.UNKNOWN_METHOD));
+  }
+
+  private void prepareOnServer() throws Exception {
+    doReturn(new TSPrepareStatementResp(RpcUtils.SUCCESS_STATUS)).when(client)
+        .prepareStatement(any(TSPrepareStatementReq.class));
+    when(client.executePreparedStatement(any(TSExecutePreparedStatementReq.class)))
+        .thenReturn(execStatementResp);
+  }
+
+  @SuppressWarnings("resource")
+  @Test
+  public void testPreparedOnServer() throws Exception {
+    prepareOnServer();
+    String sql = "SELECT status, temperature FROM root.ln.wf01.wt01 WHERE status = '?' and temperature < ? and time > ?";
+    IoTDBPreparedStatement ps = new IoTDBPreparedStatement(connection, client, sessionId, sql,
+        zoneId);
+    ps.setDouble(1, 123.456);
+    ps.setTimestamp(2, Timestamp.valueOf("2017-11-01 00:13:00"));
+    ps.execute();
+
+    ArgumentCaptor<TSPrepareStatementReq> prepareArgument = ArgumentCaptor
+        .forClass(TSPrepareStatementReq.class);
+    verify(client).prepareStatement(prepareArgument.capture());
+    assertEquals(sql, prepareArgument.getValue().getStatement());
+    ArgumentCaptor<TSExecutePreparedStatementReq> argument = ArgumentCaptor
+        .forClass(TSExecutePreparedStatementReq.class);
+    verify(client).executePreparedStatement(argument.capture());
+    assertEquals(sql, argument.getValue().getStatement());
+    assertEquals(Arrays.asList("123.456", "2017-11-01T00:13:00"),
+        argument.getValue().getParameters());
+  }
+
+  @SuppressWarnings("resource")
+  @Test(expected = SQLException.class)
+  public void unsetArgumentPreparedOnServer() throws Exception {
+    prepareOnServer();
+    String sql = "SELECT status, temperature FROM root.ln.wf01.wt01 WHERE temperature < ? and time > ?";
+    IoTDBPreparedStatement ps = new IoTDBPreparedStatement(connection, client, sessionId, sql,
+        zoneId);
+    ps.setLong(2, 1233);
+    ps.execute();
+  }
+
+  @SuppressWarnings("resource")
+  @Test
+  public void testEscapedQuotePreparedOnServer() throws Exception {
+    prepareOnServer();
+    String sql = "SELECT status FROM root.ln.wf01.wt01 WHERE status = 'it\\'s ?' and time > ?";
+    IoTDBPreparedStatement ps = new IoTDBPreparedStatement(connection, client, sessionId, sql,
+        zoneId);
+    ps.setLong(1, 1233);
+    ps.execute();
+
+    ArgumentCaptor<TSExecutePreparedStatementReq> argument = ArgumentCaptor
+        .forClass(TSExecutePreparedStatementReq.class);
+    verify(client).executePreparedStatement(argument.capture());
+    assertEquals(Collections.singletonList("1233"), argument.getValue().getParameters());
+  }
+
+  @SuppressWarnings("resource")
+  @Test(expected = SQLException.class)
+  public void failedPrepareOnServer() throws Exception {
+    doReturn(new TSPrepareStatementResp(
+        RpcUtils.getStatus(TSStatusCode.SQL_PARSE_ERROR, "cannot parse"))).when(client)
+        .prepareStatement(any(TSPrepareStatementReq.class));
+    new IoTDBPreparedStatement(connection, client, sessionId, "SELECT s1 FROM root.sg.d1 WHERE",
+        zoneId);
   }
 
   @SuppressWarnings("resource")
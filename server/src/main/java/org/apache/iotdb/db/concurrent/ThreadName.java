@@ -43,7 +43,9 @@ public enum ThreadName {
   SYNC_MONITOR("Sync-Monitor"),
   LOAD_TSFILE("Load TsFile"),
   TIME_COST_STATSTIC("TIME_COST_STATSTIC"),
-  QUERY_SERVICE("Query-ServerServiceImpl");
+  QUERY_SERVICE("Query-ServerServiceImpl"),
+  WAL_DECODE("WAL-Decode"),
+  TSFILE_RECOVERY("TsFile-Recovery");
 
   private String name;
 
@@ -26,11 +26,13 @@ import java.time.ZoneId;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
+import org.apache.iotdb.db.engine.merge.schedule.CompactionStrategy;
 import org.apache.iotdb.db.engine.merge.selector.MergeFileStrategy;
 import org.apache.iotdb.db.exception.LoadConfigurationException;
 import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.service.TSServiceImpl;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.fileSystem.FSType;
@@ -201,6 +203,12 @@ public class IoTDBConfig {
    */
   private String[] dataDirs = {"data" + File.separator + "data"};
 
+  /**
+   * The data directories, among dataDirs, in which the sealed TsFiles are memory-mapped when they
+   * are queried.
+   */
+  private String[] mmapDataDirs = {};
+
   /**
    * Strategy of multiple directories.
    */
@@ -231,6 +239,19 @@ public class IoTDBConfig {
    */
   private int concurrentQueryThread = Runtime.getRuntime().availableProcessors();
 
+  /**
+   * How many threads can concurrently recover the TsFiles of a storage group at startup. When <=
+   * 0, use CPU core number.
+   */
+  private int concurrentRecoveryThread = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * How many devices of the sealed TsFiles can have their indexes in memory. When exceeded, the
+   * indexes loaded earliest are unloaded and are loaded again from the resource files when used.
+   * When <= 0, there is no limit.
+   */
+  private long resourceIndexCacheSize = 5_000_000L;
+
   private ZoneId zoneID = ZoneId.systemDefault();
 
   /**
@@ -273,6 +294,34 @@ public class IoTDBConfig {
    */
   private boolean metaDataCacheEnable = true;
 
+  /**
+   * Whether to size each batch of fetchResults by bytes and round trip time instead of using the
+   * fetch size of the client directly. The fetch size of the client is still the upper bound.
+   */
+  private boolean enableAdaptiveFetchSize = true;
+
+  /**
+   * The initial byte budget of one batch of query results returned by fetchResults.
+   */
+  private long fetchTargetSizeInByte = 4 * 1024 * 1024L;
+
+  /**
+   * The byte budget of one batch of query results can grow up to this when the round trip time of
+   * the client dominates.
+   */
+  private long fetchMaxSizeInByte = 64 * 1024 * 1024L;
+
+  /**
+   * How much memory (in byte) can be used by the result batches of all queries being returned to
+   * clients at the same time.
+   */
+  private long maxResultMemoryInByte = Runtime.getRuntime().maxMemory() / 10;
+
+  /**
+   * How many parsed plans of prepared statements are cached, 0 means the cache is disabled.
+   */
+  private int planCacheSize = 1000;
+
   /**
    * Memory allocated for timeSeriesMetaData cache in read process
    */
@@ -503,6 +552,42 @@ public class IoTDBConfig {
    */
   private boolean forceFullMerge = false;
 
+  /**
+   * When a merge rewrites a SeqFile whose time partition (or the file itself if time partitioning
+   * is disabled) ends more than coldDataAgeInMs ago, the chunks of the file are compressed by
+   * coldDataCompressor. Non-positive value disables it.
+   */
+  private long coldDataAgeInMs = 0;
+
+  /**
+   * The compressor of the cold data rewritten by merge.
+   */
+  private CompressionType coldDataCompressor = CompressionType.GZIP;
+
+  /**
+   * The policy deciding which time partitions the timed merge compacts, see CompactionStrategy.
+   */
+  private CompactionStrategy compactionStrategy = CompactionStrategy.LEVELED;
+
+  /**
+   * How many bytes of files may be merged per second by the timed merges of all storage groups.
+   * Unit: MB/s. When less than or equal to 0, the throughput is unlimited.
+   */
+  private int compactionThroughputMbPerSec = 0;
+
+  /**
+   * How many bytes may be read and written per second by the flushes, merges and vm merges. Unit:
+   * MB/s. When less than or equal to 0, the throughput is unlimited.
+   */
+  private int backgroundIOThroughputMbPerSec = 0;
+
+  /**
+   * When the average latency of the queries and insertions is above this, the merges back off to a
+   * smaller share of backgroundIOThroughputMbPerSec. Unit: millisecond. When less than or equal to
+   * 0, the merges never back off.
+   */
+  private long mergeBackoffLatencyThresholdMs = 1000;
+
   /**
    * During a merge, if a chunk with less number of chunks than this parameter, the chunk will be
    * merged with its succeeding chunks even if it is not overflowed, until the merged chunks reach
@@ -615,6 +700,12 @@ public class IoTDBConfig {
    */
   private int mtreeSnapshotThresholdTime = 3600;
 
+  /**
+   * Interval of persisting the last cache, which is also persisted at shutdown and reloaded at
+   * startup. 0 means it is only persisted at shutdown. Unit: second. Default: 10 minutes
+   */
+  private int lastCacheSnapshotInterval = 600;
+
   /**
    * Time range for partitioning data inside each storage group, the unit is second
    */
@@ -686,6 +777,14 @@ public class IoTDBConfig {
     this.mtreeSnapshotThresholdTime = mtreeSnapshotThresholdTime;
   }
 
+  public int getLastCacheSnapshotInterval() {
+    return lastCacheSnapshotInterval;
+  }
+
+  public void setLastCacheSnapshotInterval(int lastCacheSnapshotInterval) {
+    this.lastCacheSnapshotInterval = lastCacheSnapshotInterval;
+  }
+
   public long getPartitionInterval() {
     return partitionInterval;
   }
@@ -728,6 +827,9 @@ public class IoTDBConfig {
       for (int i = 0; i < dataDirs.length; i++) {
         dataDirs[i] = addHomeDir(dataDirs[i]);
       }
+      for (int i = 0; i < mmapDataDirs.length; i++) {
+        mmapDataDirs[i] = addHomeDir(mmapDataDirs[i]);
+      }
     }
   }
 
@@ -810,6 +912,14 @@ public class IoTDBConfig {
     this.dataDirs = dataDirs;
   }
 
+  public String[] getMmapDataDirs() {
+    return mmapDataDirs;
+  }
+
+  public void setMmapDataDirs(String[] mmapDataDirs) {
+    this.mmapDataDirs = mmapDataDirs;
+  }
+
   public String getRpcAddress() {
     return rpcAddress;
   }
@@ -952,6 +1062,22 @@ public class IoTDBConfig {
     this.concurrentQueryThread = concurrentQueryThread;
   }
 
+  public int getConcurrentRecoveryThread() {
+    return concurrentRecoveryThread;
+  }
+
+  public void setConcurrentRecoveryThread(int concurrentRecoveryThread) {
+    this.concurrentRecoveryThread = concurrentRecoveryThread;
+  }
+
+  public long getResourceIndexCacheSize() {
+    return resourceIndexCacheSize;
+  }
+
+  public void setResourceIndexCacheSize(long resourceIndexCacheSize) {
+    this.resourceIndexCacheSize = resourceIndexCacheSize;
+  }
+
   public long getTsFileSizeThreshold() {
     return tsFileSizeThreshold;
   }
@@ -1208,6 +1334,54 @@ public class IoTDBConfig {
     this.forceFullMerge = forceFullMerge;
   }
 
+  public long getColdDataAgeInMs() {
+    return coldDataAgeInMs;
+  }
+
+  public void setColdDataAgeInMs(long coldDataAgeInMs) {
+    this.coldDataAgeInMs = coldDataAgeInMs;
+  }
+
+  public CompressionType getColdDataCompressor() {
+    return coldDataCompressor;
+  }
+
+  public void setColdDataCompressor(CompressionType coldDataCompressor) {
+    this.coldDataCompressor = coldDataCompressor;
+  }
+
+  public CompactionStrategy getCompactionStrategy() {
+    return compactionStrategy;
+  }
+
+  public void setCompactionStrategy(CompactionStrategy compactionStrategy) {
+    this.compactionStrategy = compactionStrategy;
+  }
+
+  public int getCompactionThroughputMbPerSec() {
+    return compactionThroughputMbPerSec;
+  }
+
+  public void setCompactionThroughputMbPerSec(int compactionThroughputMbPerSec) {
+    this.compactionThroughputMbPerSec = compactionThroughputMbPerSec;
+  }
+
+  public int getBackgroundIOThroughputMbPerSec() {
+    return backgroundIOThroughputMbPerSec;
+  }
+
+  public void setBackgroundIOThroughputMbPerSec(int backgroundIOThroughputMbPerSec) {
+    this.backgroundIOThroughputMbPerSec = backgroundIOThroughputMbPerSec;
+  }
+
+  public long getMergeBackoffLatencyThresholdMs() {
+    return mergeBackoffLatencyThresholdMs;
+  }
+
+  public void setMergeBackoffLatencyThresholdMs(long mergeBackoffLatencyThresholdMs) {
+    this.mergeBackoffLatencyThresholdMs = mergeBackoffLatencyThresholdMs;
+  }
+
   public int getChunkMergePointThreshold() {
     return chunkMergePointThreshold;
   }
@@ -1748,4 +1922,44 @@ public class IoTDBConfig {
   public long getStartUpNanosecond() {
     return startUpNanosecond;
   }
+
+  public boolean isEnableAdaptiveFetchSize() {
+    return enableAdaptiveFetchSize;
+  }
+
+  public void setEnableAdaptiveFetchSize(boolean enableAdaptiveFetchSize) {
+    this.enableAdaptiveFetchSize = enableAdaptiveFetchSize;
+  }
+
+  public long getFetchTargetSizeInByte() {
+    return fetchTargetSizeInByte;
+  }
+
+  public void setFetchTargetSizeInByte(long fetchTargetSizeInByte) {
+    this.fetchTargetSizeInByte = fetchTargetSizeInByte;
+  }
+
+  public long getFetchMaxSizeInByte() {
+    return fetchMaxSizeInByte;
+  }
+
+  public void setFetchMaxSizeInByte(long fetchMaxSizeInByte) {
+    this.fetchMaxSizeInByte = fetchMaxSizeInByte;
+  }
+
+  public long getMaxResultMemoryInByte() {
+    return maxResultMemoryInByte;
+  }
+
+  public void setMaxResultMemoryInByte(long maxResultMemoryInByte) {
+    this.maxResultMemoryInByte = maxResultMemoryInByte;
+  }
+
+  public int getPlanCacheSize() {
+    return planCacheSize;
+  }
+
+  public void setPlanCacheSize(int planCacheSize) {
+    this.planCacheSize = planCacheSize;
+  }
 }
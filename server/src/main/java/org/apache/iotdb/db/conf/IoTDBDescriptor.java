@@ -33,9 +33,11 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
+import org.apache.iotdb.db.engine.merge.schedule.CompactionStrategy;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.utils.FilePathUtils;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.fileSystem.FSType;
 import org.slf4j.Logger;
@@ -218,6 +220,9 @@ public class IoTDBDescriptor {
       conf.setDataDirs(properties.getProperty("data_dirs", conf.getDataDirs()[0])
           .split(","));
 
+      String mmapDataDirs = properties.getProperty("mmap_data_dirs", "").trim();
+      conf.setMmapDataDirs(mmapDataDirs.isEmpty() ? new String[0] : mmapDataDirs.split(","));
+
       conf.setWalDir(properties.getProperty("wal_dir", conf.getWalDir()));
 
       int walBufferSize = Integer.parseInt(properties.getProperty("wal_buffer_size",
@@ -292,6 +297,18 @@ public class IoTDBDescriptor {
         conf.setConcurrentQueryThread(Runtime.getRuntime().availableProcessors());
       }
 
+      conf.setConcurrentRecoveryThread(Integer
+          .parseInt(properties.getProperty("concurrent_recovery_thread",
+              Integer.toString(conf.getConcurrentRecoveryThread()))));
+
+      if (conf.getConcurrentRecoveryThread() <= 0) {
+        conf.setConcurrentRecoveryThread(Runtime.getRuntime().availableProcessors());
+      }
+
+      conf.setResourceIndexCacheSize(Long
+          .parseLong(properties.getProperty("resource_index_cache_size",
+              Long.toString(conf.getResourceIndexCacheSize())).trim()));
+
       conf.setmManagerCacheSize(Integer
           .parseInt(properties.getProperty("metadata_node_cache_size",
               Integer.toString(conf.getmManagerCacheSize())).trim()));
@@ -334,6 +351,21 @@ public class IoTDBDescriptor {
           Long.toString(conf.getMergeIntervalSec()))));
       conf.setForceFullMerge(Boolean.parseBoolean(properties.getProperty("force_full_merge",
           Boolean.toString(conf.isForceFullMerge()))));
+      conf.setColdDataAgeInMs(Long.parseLong(properties.getProperty("cold_data_age_in_ms",
+          Long.toString(conf.getColdDataAgeInMs()))));
+      conf.setColdDataCompressor(CompressionType.valueOf(properties.getProperty(
+          "cold_data_compressor", conf.getColdDataCompressor().name()).trim()));
+      conf.setCompactionStrategy(CompactionStrategy.valueOf(properties.getProperty(
+          "compaction_strategy", conf.getCompactionStrategy().name()).trim()));
+      conf.setCompactionThroughputMbPerSec(Integer.parseInt(properties.getProperty(
+          "compaction_throughput_mb_per_sec",
+          Integer.toString(conf.getCompactionThroughputMbPerSec())).trim()));
+      conf.setBackgroundIOThroughputMbPerSec(Integer.parseInt(properties.getProperty(
+          "background_io_throughput_mb_per_sec",
+          Integer.toString(conf.getBackgroundIOThroughputMbPerSec())).trim()));
+      conf.setMergeBackoffLatencyThresholdMs(Long.parseLong(properties.getProperty(
+          "merge_backoff_latency_threshold_ms",
+          Long.toString(conf.getMergeBackoffLatencyThresholdMs())).trim()));
       conf.setChunkMergePointThreshold(Integer.parseInt(properties.getProperty(
           "chunk_merge_point_threshold", Integer.toString(conf.getChunkMergePointThreshold()))));
 
@@ -346,6 +378,9 @@ public class IoTDBDescriptor {
       conf.setMtreeSnapshotThresholdTime(Integer.parseInt(properties.getProperty(
           "mtree_snapshot_threshold_time",
           Integer.toString(conf.getMtreeSnapshotThresholdTime()))));
+      conf.setLastCacheSnapshotInterval(Integer.parseInt(properties.getProperty(
+          "last_cache_snapshot_interval",
+          Integer.toString(conf.getLastCacheSnapshotInterval()))));
 
       conf.setEnablePerformanceStat(Boolean
           .parseBoolean(properties.getProperty("enable_performance_stat",
@@ -427,6 +462,29 @@ public class IoTDBDescriptor {
           Integer.parseInt(properties.getProperty("default_fill_interval",
               String.valueOf(conf.getDefaultFillInterval()))));
 
+      conf.setEnableAdaptiveFetchSize(Boolean.parseBoolean(properties.getProperty(
+          "enable_adaptive_fetch_size", Boolean.toString(conf.isEnableAdaptiveFetchSize()))));
+      long fetchTargetSize = Long.parseLong(properties.getProperty("fetch_target_size_in_byte",
+          Long.toString(conf.getFetchTargetSizeInByte())).trim());
+      if (fetchTargetSize > 0) {
+        conf.setFetchTargetSizeInByte(fetchTargetSize);
+      }
+      long fetchMaxSize = Long.parseLong(properties.getProperty("fetch_max_size_in_byte",
+          Long.toString(conf.getFetchMaxSizeInByte())).trim());
+      if (fetchMaxSize >= conf.getFetchTargetSizeInByte()) {
+        conf.setFetchMaxSizeInByte(fetchMaxSize);
+      } else {
+        conf.setFetchMaxSizeInByte(conf.getFetchTargetSizeInByte());
+      }
+      long maxResultMemory = Long.parseLong(properties.getProperty("max_result_memory_in_byte",
+          Long.toString(conf.getMaxResultMemoryInByte())).trim());
+      if (maxResultMemory > 0) {
+        conf.setMaxResultMemoryInByte(maxResultMemory);
+      }
+
+      conf.setPlanCacheSize(Integer.parseInt(properties.getProperty("plan_cache_size",
+          Integer.toString(conf.getPlanCacheSize())).trim()));
+
       conf.setTagAttributeTotalSize(
           Integer.parseInt(properties.getProperty("tag_attribute_total_size",
               String.valueOf(conf.getTagAttributeTotalSize())))
@@ -603,6 +661,12 @@ public class IoTDBDescriptor {
     TSFileDescriptor.getInstance().getConfig().setCompressor(properties
         .getProperty("compressor",
             TSFileDescriptor.getInstance().getConfig().getCompressor().toString()));
+    TSFileDescriptor.getInstance().getConfig().setGzipCompressionLevel(Integer.parseInt(properties
+        .getProperty("gzip_compression_level", Integer
+            .toString(TSFileDescriptor.getInstance().getConfig().getGzipCompressionLevel()))));
+    TSFileDescriptor.getInstance().getConfig().setEnableAdaptiveCompression(Boolean
+        .parseBoolean(properties.getProperty("enable_adaptive_compression", Boolean.toString(
+            TSFileDescriptor.getInstance().getConfig().isEnableAdaptiveCompression()))));
     TSFileDescriptor.getInstance().getConfig().setMaxDegreeOfIndexNode(Integer.parseInt(properties
         .getProperty("max_degree_of_index_node", Integer
             .toString(TSFileDescriptor.getInstance().getConfig().getMaxDegreeOfIndexNode()))));
@@ -26,6 +26,7 @@ import org.apache.iotdb.db.conf.ServerConfigConsistent;
 import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
 import org.apache.iotdb.db.engine.flush.TsFileFlushPolicy;
 import org.apache.iotdb.db.engine.flush.TsFileFlushPolicy.DirectFlushPolicy;
+import org.apache.iotdb.db.engine.merge.schedule.PartitionCompactionStatus;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
 import org.apache.iotdb.db.engine.storagegroup.StorageGroupProcessor;
 import org.apache.iotdb.db.engine.storagegroup.StorageGroupProcessor.TimePartitionFilter;
@@ -44,6 +45,7 @@ import org.apache.iotdb.db.query.control.QueryFileManager;
 import org.apache.iotdb.db.service.IService;
 import org.apache.iotdb.db.service.IoTDB;
 import org.apache.iotdb.db.service.ServiceType;
+import org.apache.iotdb.db.service.StartupPhaseTimer;
 import org.apache.iotdb.db.utils.FilePathUtils;
 import org.apache.iotdb.db.utils.TestOnly;
 import org.apache.iotdb.db.utils.UpgradeUtils;
@@ -154,6 +156,7 @@ public class StorageEngine implements IService {
     /*
      * recover all storage group processors.
      */
+    long startTime = System.currentTimeMillis();
     List<StorageGroupMNode> sgNodes = IoTDB.metaManager.getAllStorageGroupNodes();
     List<Future> futures = new ArrayList<>();
     for (StorageGroupMNode storageGroup : sgNodes) {
@@ -179,6 +182,8 @@ public class StorageEngine implements IService {
       }
     }
     recoveryThreadPool.shutdown();
+    StartupPhaseTimer.getInstance()
+        .record("recover storage groups", System.currentTimeMillis() - startTime);
     setAllSgReady(true);
   }
 
@@ -493,6 +498,31 @@ public class StorageEngine implements IService {
     }
   }
 
+  /**
+   * merge a time partition of a storage group.
+   *
+   * @return whether a merge is submitted
+   */
+  public boolean mergePartition(String storageGroupName, long timePartition, boolean fullMerge)
+      throws StorageEngineException {
+    if (IoTDBDescriptor.getInstance().getConfig().isReadOnly()) {
+      throw new StorageEngineException("Current system mode is read only, does not support merge");
+    }
+    StorageGroupProcessor processor = processorMap.get(storageGroupName);
+    return processor != null && processor.merge(fullMerge, timePartition);
+  }
+
+  /**
+   * @return the compaction status of each time partition of each storage group
+   */
+  public List<PartitionCompactionStatus> getCompactionStatus() {
+    List<PartitionCompactionStatus> statuses = new ArrayList<>();
+    for (StorageGroupProcessor processor : processorMap.values()) {
+      statuses.addAll(processor.getCompactionStatus());
+    }
+    return statuses;
+  }
+
   /**
    * delete all data files (both memory data and file on disk) in a storage group. It is used when
    * there is no timeseries (which are all deleted) in this storage group)
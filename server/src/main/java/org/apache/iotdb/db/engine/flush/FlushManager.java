@@ -25,6 +25,8 @@ import org.apache.iotdb.db.engine.flush.pool.FlushSubTaskPoolManager;
 import org.apache.iotdb.db.engine.flush.pool.FlushTaskPoolManager;
 import org.apache.iotdb.db.engine.flush.pool.VmMergeTaskPoolManager;
 import org.apache.iotdb.db.engine.storagegroup.TsFileProcessor;
+import org.apache.iotdb.db.engine.throttle.IOPriority;
+import org.apache.iotdb.db.engine.throttle.IORateLimiter;
 import org.apache.iotdb.db.exception.StartupException;
 import org.apache.iotdb.db.service.IService;
 import org.apache.iotdb.db.service.JMXService;
@@ -90,7 +92,12 @@ public class FlushManager implements FlushManagerMBean, IService {
     @Override
     public void runMayThrow() {
       TsFileProcessor tsFileProcessor = tsFileProcessorQueue.poll();
-      tsFileProcessor.flushOneMemTable();
+      IOPriority previousPriority = IORateLimiter.setPriority(IOPriority.FLUSH);
+      try {
+        tsFileProcessor.flushOneMemTable();
+      } finally {
+        IORateLimiter.setPriority(previousPriority);
+      }
       tsFileProcessor.setManagedByFlushManager(false);
       if (logger.isDebugEnabled()) {
         logger.debug("Flush Thread re-register TSProcessor {} to the queue.",
@@ -32,6 +32,8 @@ import org.apache.iotdb.db.conf.adapter.ActiveTimeSeriesCounter;
 import org.apache.iotdb.db.engine.flush.pool.FlushSubTaskPoolManager;
 import org.apache.iotdb.db.engine.memtable.IMemTable;
 import org.apache.iotdb.db.engine.memtable.IWritableMemChunk;
+import org.apache.iotdb.db.engine.throttle.IOPriority;
+import org.apache.iotdb.db.engine.throttle.IORateLimiter;
 import org.apache.iotdb.db.exception.runtime.FlushRunTimeException;
 import org.apache.iotdb.db.utils.datastructure.TVList;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
@@ -233,8 +235,17 @@ public class MemTableFlushTask {
         .getFile(parent, writer.getFile().getName() + FLUSH_SUFFIX);
   }
 
-  @SuppressWarnings("squid:S135")
   private Runnable ioTask = () -> {
+    IOPriority previousPriority = IORateLimiter.setPriority(IOPriority.FLUSH);
+    try {
+      runIOTask();
+    } finally {
+      IORateLimiter.setPriority(previousPriority);
+    }
+  };
+
+  @SuppressWarnings("squid:S135")
+  private void runIOTask() {
     long ioTime = 0;
     boolean returnWhenNoTask = false;
     logger.debug("Storage group {} memtable {}, start io.", storageGroup, memTable.getVersion());
@@ -276,7 +287,7 @@ public class MemTableFlushTask {
     }
     logger.debug("flushing a memtable {} in storage group {}, io cost {}ms", memTable.getVersion(),
         storageGroup, ioTime);
-  };
+  }
 
   static class EndChunkGroupIoTask {
 
@@ -19,24 +19,26 @@
 
 package org.apache.iotdb.db.engine.flush;
 
-import static org.apache.iotdb.db.utils.MergeUtils.writeTVPair;
+import static org.apache.iotdb.db.utils.MergeUtils.readPage;
+import static org.apache.iotdb.db.utils.MergeUtils.writeBatchPoint;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.TreeMap;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.tsfile.file.header.ChunkHeader;
+import org.apache.iotdb.tsfile.file.header.PageHeader;
 import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
-import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
+import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Chunk;
-import org.apache.iotdb.tsfile.read.reader.BatchDataIterator;
-import org.apache.iotdb.tsfile.read.reader.IChunkReader;
-import org.apache.iotdb.tsfile.read.reader.IPointReader;
-import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReaderByTimestamp;
-import org.apache.iotdb.tsfile.utils.Pair;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
 import org.apache.iotdb.tsfile.write.chunk.ChunkWriterImpl;
 import org.apache.iotdb.tsfile.write.chunk.IChunkWriter;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
@@ -48,18 +50,25 @@ public class VmMergeUtils {
 
   private static final Logger logger = LoggerFactory.getLogger(VmMergeUtils.class);
 
+  // an unsequence chunk is written when it has so many points
+  private static int chunkPointNumThreshold = IoTDBDescriptor.getInstance().getConfig()
+      .getMergeChunkPointNumberThreshold() > 0 ? IoTDBDescriptor.getInstance().getConfig()
+      .getMergeChunkPointNumberThreshold() : Integer.MAX_VALUE;
+
   private VmMergeUtils() {
     throw new IllegalStateException("Utility class");
   }
 
-  private static Pair<ChunkMetadata, Chunk> writeSeqChunk(RestorableTsFileIOWriter writer,
-      String storageGroup,
+  /**
+   * write the sequence chunks of a series in the vm files as one chunk. The pages of the chunks
+   * are copied without being decoded, and a new chunk is started when the encoding or the
+   * compression of the chunks changes.
+   */
+  private static void writeSeqChunk(RestorableTsFileIOWriter writer, String storageGroup,
       Map<String, TsFileSequenceReader> tsFileSequenceReaderMap, String deviceId,
-      String measurementId,
-      List<RestorableTsFileIOWriter> vmWriters, ChunkMetadata lastChunkMetadata, Chunk lastChunk)
-      throws IOException {
-    ChunkMetadata newChunkMetadata = lastChunkMetadata;
-    Chunk newChunk = lastChunk;
+      String measurementId, List<RestorableTsFileIOWriter> vmWriters) throws IOException {
+    ChunkMetadata newChunkMetadata = null;
+    List<Chunk> chunks = new ArrayList<>();
     for (RestorableTsFileIOWriter vmWriter : vmWriters) {
       TsFileSequenceReader reader = buildReaderFromVmWriter(vmWriter,
           writer, tsFileSequenceReaderMap, storageGroup);
@@ -73,23 +82,43 @@ public class VmMergeUtils {
       }
       for (ChunkMetadata chunkMetadata : chunkMetadataList) {
         Chunk chunk = reader.readMemChunk(chunkMetadata);
+        if (!chunks.isEmpty() && !isSameFormat(chunks.get(0).getHeader(), chunk.getHeader())) {
+          writer.writeChunks(chunks, newChunkMetadata);
+          chunks.clear();
+          newChunkMetadata = null;
+        }
         if (newChunkMetadata == null) {
           newChunkMetadata = chunkMetadata;
-          newChunk = chunk;
         } else {
           newChunkMetadata.mergeChunkMetadata(chunkMetadata);
-          newChunk.mergeChunk(chunk);
         }
+        chunks.add(chunk);
       }
     }
-    return new Pair<>(newChunkMetadata, newChunk);
+    if (!chunks.isEmpty()) {
+      writer.writeChunks(chunks, newChunkMetadata);
+    }
+  }
+
+  private static boolean isSameFormat(ChunkHeader header1, ChunkHeader header2) {
+    return header1.getEncodingType() == header2.getEncodingType()
+        && header1.getCompressionType() == header2.getCompressionType();
   }
 
+  /**
+   * merge the unsequence chunks of a series in the vm files and write the points into the writer.
+   * The chunks are merged by their current points, and of the points of the same timestamp, the
+   * one of the chunk with the highest version (or the latest chunk if the versions are the same)
+   * is written. A chunk is only read when the merge reaches its start time, and only one page of
+   * it is decoded at a time, so the memory is bounded by the number of the chunks instead of the
+   * number of the points.
+   *
+   * @return the larger one of maxVersion and the versions of the merged chunks
+   */
   private static long writeUnseqChunk(RestorableTsFileIOWriter writer, String storageGroup,
       Map<String, TsFileSequenceReader> tsFileSequenceReaderMap, String deviceId, long maxVersion,
-      Entry<String, MeasurementSchema> entry, String measurementId,
-      Map<Long, TimeValuePair> timeValuePairMap, List<RestorableTsFileIOWriter> vmWriters)
-      throws IOException {
+      MeasurementSchema schema, List<RestorableTsFileIOWriter> vmWriters) throws IOException {
+    PriorityQueue<UnseqChunkSource> sources = new PriorityQueue<>();
     for (RestorableTsFileIOWriter vmWriter : vmWriters) {
       TsFileSequenceReader reader = buildReaderFromVmWriter(vmWriter,
           writer, tsFileSequenceReaderMap, storageGroup);
@@ -97,21 +126,42 @@ public class VmMergeUtils {
         continue;
       }
       List<ChunkMetadata> chunkMetadataList = vmWriter.getVisibleMetadataList(deviceId,
-          measurementId, entry.getValue().getType());
+          schema.getMeasurementId(), schema.getType());
       for (ChunkMetadata chunkMetadata : chunkMetadataList) {
         maxVersion = Math.max(chunkMetadata.getVersion(), maxVersion);
-        IChunkReader chunkReader = new ChunkReaderByTimestamp(
-            reader.readMemChunk(chunkMetadata));
-        while (chunkReader.hasNextSatisfiedPage()) {
-          IPointReader iPointReader = new BatchDataIterator(
-              chunkReader.nextPageData());
-          while (iPointReader.hasNextTimeValuePair()) {
-            TimeValuePair timeValuePair = iPointReader.nextTimeValuePair();
-            timeValuePairMap.put(timeValuePair.getTimestamp(), timeValuePair);
-          }
+        sources.add(new UnseqChunkSource(reader, chunkMetadata, sources.size()));
+      }
+    }
+
+    IChunkWriter chunkWriter = new ChunkWriterImpl(schema);
+    int chunkPointNum = 0;
+    boolean written = false;
+    long lastTime = Long.MIN_VALUE;
+    while (!sources.isEmpty()) {
+      UnseqChunkSource source = sources.poll();
+      if (!source.isLoaded()) {
+        // its start time is reached, find its first point and merge it again
+        if (source.load()) {
+          sources.add(source);
+        }
+        continue;
+      }
+      long time = source.currentTime();
+      // the points of the same timestamp in the other chunks have lower priorities
+      if (!written || time != lastTime) {
+        writeBatchPoint(source.pageData, source.index, chunkWriter);
+        written = true;
+        lastTime = time;
+        if (++chunkPointNum >= chunkPointNumThreshold) {
+          chunkWriter.writeToFileWriter(writer);
+          chunkPointNum = 0;
         }
       }
+      if (source.next()) {
+        sources.add(source);
+      }
     }
+    chunkWriter.writeToFileWriter(writer);
     return maxVersion;
   }
 
@@ -156,15 +206,8 @@ public class VmMergeUtils {
         long maxVersion = Long.MIN_VALUE;
         for (Entry<String, MeasurementSchema> entry : deviceMeasurementEntry.getValue()
             .entrySet()) {
-          String measurementId = entry.getKey();
-          Map<Long, TimeValuePair> timeValuePairMap = new TreeMap<>();
           maxVersion = writeUnseqChunk(writer, storageGroup, tsFileSequenceReaderMap, deviceId,
-              maxVersion, entry, measurementId, timeValuePairMap, vmWriters);
-          IChunkWriter chunkWriter = new ChunkWriterImpl(entry.getValue());
-          for (TimeValuePair timeValuePair : timeValuePairMap.values()) {
-            writeTVPair(timeValuePair, chunkWriter);
-          }
-          chunkWriter.writeToFileWriter(writer);
+              maxVersion, entry.getValue(), vmWriters);
         }
         writer.writeVersion(maxVersion);
         writer.endChunkGroup();
@@ -179,14 +222,8 @@ public class VmMergeUtils {
         writer.startChunkGroup(deviceId);
         for (Entry<String, MeasurementSchema> entry : deviceMeasurementEntry.getValue()
             .entrySet()) {
-          String measurementId = entry.getKey();
-          Pair<ChunkMetadata, Chunk> chunkPair = writeSeqChunk(writer, storageGroup,
-              tsFileSequenceReaderMap, deviceId, measurementId, vmWriters, null, null);
-          ChunkMetadata newChunkMetadata = chunkPair.left;
-          Chunk newChunk = chunkPair.right;
-          if (newChunkMetadata != null && newChunk != null) {
-            writer.writeChunk(newChunk, newChunkMetadata);
-          }
+          writeSeqChunk(writer, storageGroup, tsFileSequenceReaderMap, deviceId, entry.getKey(),
+              vmWriters);
         }
         writer.endChunkGroup();
         if (vmLogger != null) {
@@ -222,4 +259,93 @@ public class VmMergeUtils {
           }
         });
   }
-}
\ No newline at end of file
+
+  /**
+   * An unsequence chunk in the merge. Before the merge reaches the start time of the chunk, it is
+   * not read and the start time is used as its current time. Then the compressed pages of the
+   * chunk are decompressed and decoded one at a time.
+   */
+  private static class UnseqChunkSource implements Comparable<UnseqChunkSource> {
+
+    private final TsFileSequenceReader reader;
+    private final ChunkMetadata chunkMetadata;
+    // the order of the chunk in the vm files, a later chunk overwrites an earlier one
+    private final int order;
+
+    private ChunkHeader chunkHeader;
+    private ByteBuffer chunkData;
+    private List<TimeRange> deleteIntervalList;
+
+    private BatchData pageData;
+    private int index;
+
+    UnseqChunkSource(TsFileSequenceReader reader, ChunkMetadata chunkMetadata, int order) {
+      this.reader = reader;
+      this.chunkMetadata = chunkMetadata;
+      this.order = order;
+    }
+
+    boolean isLoaded() {
+      return chunkData != null;
+    }
+
+    /**
+     * read the chunk and move to its first point
+     *
+     * @return false if the chunk has no points
+     */
+    boolean load() throws IOException {
+      Chunk chunk = reader.readMemChunk(chunkMetadata);
+      chunkHeader = chunk.getHeader();
+      chunkData = chunk.getData();
+      deleteIntervalList = chunkMetadata.getDeleteIntervalList();
+      return nextPage();
+    }
+
+    long currentTime() {
+      return isLoaded() ? pageData.getTimeByIndex(index) : chunkMetadata.getStartTime();
+    }
+
+    /**
+     * @return false if the chunk has no more points
+     */
+    boolean next() throws IOException {
+      return ++index < pageData.length() || nextPage();
+    }
+
+    private boolean nextPage() throws IOException {
+      pageData = null;
+      while (chunkData.hasRemaining()) {
+        PageHeader pageHeader = PageHeader.deserializeFrom(chunkData, chunkHeader.getDataType());
+        BatchData batchData = readPage(chunkHeader, pageHeader, chunkData, deleteIntervalList);
+        if (batchData.length() > 0) {
+          pageData = batchData;
+          index = 0;
+          return true;
+        }
+      }
+      // the chunk is finished, release its data
+      chunkData = null;
+      return false;
+    }
+
+    /**
+     * the chunk whose current time is smaller goes first. Of the same current time, the chunk
+     * that is not loaded goes first, as its points may be at a larger time, and then the chunk
+     * with the higher priority goes first.
+     */
+    @Override
+    public int compareTo(UnseqChunkSource o) {
+      int cmp = Long.compare(currentTime(), o.currentTime());
+      if (cmp != 0) {
+        return cmp;
+      }
+      cmp = Boolean.compare(isLoaded(), o.isLoaded());
+      if (cmp != 0) {
+        return cmp;
+      }
+      cmp = Long.compare(o.chunkMetadata.getVersion(), chunkMetadata.getVersion());
+      return cmp != 0 ? cmp : Integer.compare(o.order, order);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.utils.FilePathUtils;
+import org.apache.iotdb.tsfile.common.constant.TsFileConstant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BulkLoadManager receives the TsFiles uploaded by clients in chunks. Each session uploads one file
+ * at a time and its chunks must arrive in order. The received file is written into the directory
+ * of the session under the bulk-load directory of the system dir, and returned once its last chunk
+ * arrives, so it can be loaded like the files of a "load" statement. The name of the file is kept,
+ * as loading a TsFile relies on its name.
+ */
+public class BulkLoadManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkLoadManager.class);
+
+  private static final String BULK_LOAD_DIR = "bulk-load";
+
+  private final File uploadDir;
+  private final Map<Long, Upload> sessionIdToUpload = new ConcurrentHashMap<>();
+
+  BulkLoadManager(File uploadDir) {
+    this.uploadDir = uploadDir;
+    // the uploads left by the last run can not be resumed
+    FileUtils.deleteQuietly(uploadDir);
+  }
+
+  public static BulkLoadManager getInstance() {
+    return BulkLoadManagerHolder.INSTANCE;
+  }
+
+  /**
+   * Append a chunk to the file being uploaded by a session. A chunk at offset 0 starts a new file
+   * and discards the unfinished one of the session.
+   *
+   * @return the received file if this is its last chunk, otherwise null
+   */
+  public File receive(long sessionId, String fileName, long offset, ByteBuffer data,
+      boolean isLast) throws IOException {
+    Upload upload = sessionIdToUpload.get(sessionId);
+    if (offset == 0) {
+      if (upload != null) {
+        upload.abort();
+      }
+      upload = new Upload(newFile(sessionId, fileName));
+      sessionIdToUpload.put(sessionId, upload);
+    } else if (upload == null || !upload.fileName.equals(new File(fileName).getName())
+        || upload.position != offset) {
+      abort(sessionId);
+      throw new IOException(String.format(
+          "Unexpected chunk of %s at %d, the upload should be restarted", fileName, offset));
+    }
+
+    try {
+      upload.write(data);
+      if (isLast) {
+        sessionIdToUpload.remove(sessionId);
+        upload.channel.close();
+        return upload.file;
+      }
+    } catch (IOException e) {
+      abort(sessionId);
+      throw e;
+    }
+    return null;
+  }
+
+  /**
+   * Discard the unfinished upload of a session, e.g., when the session is closed.
+   */
+  public void abort(long sessionId) {
+    Upload upload = sessionIdToUpload.remove(sessionId);
+    if (upload != null) {
+      upload.abort();
+    }
+  }
+
+  /**
+   * Remove a received file and its resource file if they are not moved by the loading.
+   */
+  public void clean(File file) {
+    deleteQuietly(file);
+    deleteQuietly(new File(file.getPath() + TsFileResource.RESOURCE_SUFFIX));
+  }
+
+  private File newFile(long sessionId, String fileName) throws IOException {
+    // only the name of the file is used, so an upload never escapes from the upload dir
+    String name = new File(fileName).getName();
+    if (!name.endsWith(TsFileConstant.TSFILE_SUFFIX)) {
+      throw new IOException(String.format("%s is not a TsFile", fileName));
+    }
+    File sessionDir = new File(uploadDir, String.valueOf(sessionId));
+    if (!sessionDir.exists() && !sessionDir.mkdirs()) {
+      throw new IOException(String.format("Can not create the upload dir %s", sessionDir));
+    }
+    return new File(sessionDir, name);
+  }
+
+  private static void deleteQuietly(File file) {
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      logger.warn("Can not delete {}", file, e);
+    }
+  }
+
+  private class Upload {
+
+    private final String fileName;
+    private final File file;
+    private final FileChannel channel;
+    private long position = 0;
+
+    private Upload(File file) throws IOException {
+      this.fileName = file.getName();
+      this.file = file;
+      this.channel = new FileOutputStream(file).getChannel();
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+      while (data.hasRemaining()) {
+        position += channel.write(data);
+      }
+    }
+
+    private void abort() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.warn("Can not close {}", file, e);
+      }
+      deleteQuietly(file);
+    }
+  }
+
+  private static class BulkLoadManagerHolder {
+
+    private static final BulkLoadManager INSTANCE = new BulkLoadManager(new File(
+        FilePathUtils.regularizePath(IoTDBDescriptor.getInstance().getConfig().getSystemDir())
+            + BULK_LOAD_DIR));
+
+    private BulkLoadManagerHolder() {
+    }
+  }
+}
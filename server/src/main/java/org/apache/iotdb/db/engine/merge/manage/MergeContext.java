@@ -38,6 +38,10 @@ public class MergeContext {
 
   private AtomicInteger totalChunkWritten = new AtomicInteger();
   private AtomicLong totalPointWritten = new AtomicLong();
+  // the bytes of the chunks and pages copied without being decoded
+  private AtomicLong totalByteCopied = new AtomicLong();
+  // the compressed bytes of the pages decoded and written again
+  private AtomicLong totalByteRewritten = new AtomicLong();
 
   public void clear() {
     mergedChunkCnt.clear();
@@ -87,4 +91,20 @@ public class MergeContext {
   public long getTotalPointWritten() {
     return totalPointWritten.get();
   }
+
+  public void incTotalByteCopied(long increment) {
+    totalByteCopied.addAndGet(increment);
+  }
+
+  public long getTotalByteCopied() {
+    return totalByteCopied.get();
+  }
+
+  public void incTotalByteRewritten(long increment) {
+    totalByteRewritten.addAndGet(increment);
+  }
+
+  public long getTotalByteRewritten() {
+    return totalByteRewritten.get();
+  }
 }
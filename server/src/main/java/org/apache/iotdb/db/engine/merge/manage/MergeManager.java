@@ -38,10 +38,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
-import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.engine.merge.schedule.CompactionScheduler;
 import org.apache.iotdb.db.engine.merge.task.MergeMultiChunkTask.MergeChunkHeapTask;
 import org.apache.iotdb.db.engine.merge.task.MergeTask;
-import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.service.IService;
 import org.apache.iotdb.db.service.JMXService;
 import org.apache.iotdb.db.service.ServiceType;
@@ -50,7 +49,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * MergeManager provides a ThreadPool to queue and run all merge tasks to restrain the total
- * resources occupied by merge and manages a Timer to periodically issue a global merge.
+ * resources occupied by merge and manages a Timer to periodically issue the merges chosen by the
+ * CompactionScheduler.
  */
 public class MergeManager implements IService, MergeManagerMBean {
 
@@ -65,6 +65,7 @@ public class MergeManager implements IService, MergeManagerMBean {
   private ThreadPoolExecutor mergeChunkSubTaskPool;
   private ScheduledExecutorService timedMergeThreadPool;
   private ScheduledExecutorService taskCleanerThreadPool;
+  private CompactionScheduler compactionScheduler;
 
   private Map<String, Set<MergeFuture>> storageGroupMainTasks = new ConcurrentHashMap<>();
   private Map<String, Set<MergeFuture>> storageGroupSubTasks = new ConcurrentHashMap<>();
@@ -106,11 +107,12 @@ public class MergeManager implements IService, MergeManagerMBean {
               r -> new Thread(r, "MergeThread-" + threadCnt.getAndIncrement()));
       mergeChunkSubTaskPool = new MergeThreadPool(threadNum * chunkSubThreadNum,
               r -> new Thread(r, "MergeChunkSubThread-" + threadCnt.getAndIncrement()));
+      compactionScheduler = CompactionScheduler.fromConfig();
       long mergeInterval = IoTDBDescriptor.getInstance().getConfig().getMergeIntervalSec();
       if (mergeInterval > 0) {
         timedMergeThreadPool = Executors.newSingleThreadScheduledExecutor( r -> new Thread(r,
             "TimedMergeThread"));
-        timedMergeThreadPool.scheduleAtFixedRate(this::mergeAll, mergeInterval,
+        timedMergeThreadPool.scheduleAtFixedRate(this::scheduleCompaction, mergeInterval,
             mergeInterval, TimeUnit.SECONDS);
       }
 
@@ -193,14 +195,52 @@ public class MergeManager implements IService, MergeManagerMBean {
     return ServiceType.MERGE_SERVICE;
   }
 
-  private void mergeAll() {
-    try {
-      StorageEngine.getInstance().mergeAll(IoTDBDescriptor.getInstance().getConfig().isForceFullMerge());
-    } catch (StorageEngineException e) {
-      logger.error("Cannot perform a global merge because", e);
+  private void scheduleCompaction() {
+    if (IoTDBDescriptor.getInstance().getConfig().isReadOnly()) {
+      return;
+    }
+    // the merges queued in the pool count as running ones
+    int idleThreadNum = mergeTaskPool.getMaximumPoolSize() - mergeTaskPool.getActiveCount()
+        - mergeTaskPool.getQueue().size();
+    compactionScheduler.schedule(IoTDBDescriptor.getInstance().getConfig().isForceFullMerge(),
+        idleThreadNum);
+  }
+
+  /**
+   * Called when a merge ends to count the throughput of merges.
+   */
+  public void recordCompaction(long bytes, long millis) {
+    CompactionScheduler scheduler = compactionScheduler;
+    if (scheduler != null) {
+      scheduler.recordCompaction(bytes, millis);
     }
   }
 
+  @Override
+  public long getCompactionDebt() {
+    return compactionScheduler == null ? 0 : compactionScheduler.getCompactionDebt();
+  }
+
+  @Override
+  public int getMaxReadAmplification() {
+    return compactionScheduler == null ? 0 : compactionScheduler.getMaxReadAmplification();
+  }
+
+  @Override
+  public int getPendingCompactionNum() {
+    return compactionScheduler == null ? 0 : compactionScheduler.getPendingCompactionNum();
+  }
+
+  @Override
+  public long getCompactedBytes() {
+    return compactionScheduler == null ? 0 : compactionScheduler.getCompactedBytes();
+  }
+
+  @Override
+  public long getCompactionThroughput() {
+    return compactionScheduler == null ? 0 : compactionScheduler.getCompactionThroughput();
+  }
+
   /**
    * Abort all merges of a storage group. The caller must acquire the write lock of the
    * corresponding storage group.
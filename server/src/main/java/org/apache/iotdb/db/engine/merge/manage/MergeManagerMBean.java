@@ -23,4 +23,14 @@ public interface MergeManagerMBean {
   void printMergeStatus();
 
   void abortMerge(String storageGroup);
+
+  long getCompactionDebt();
+
+  int getMaxReadAmplification();
+
+  int getPendingCompactionNum();
+
+  long getCompactedBytes();
+
+  long getCompactionThroughput();
 }
@@ -21,10 +21,12 @@ package org.apache.iotdb.db.engine.merge.manage;
 
 import static org.apache.iotdb.db.engine.merge.task.MergeTask.MERGE_SUFFIX;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -32,12 +34,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.StorageEngine;
 import org.apache.iotdb.db.engine.modification.Modification;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.tsfile.read.reader.IPointReader;
 import org.apache.iotdb.db.query.reader.resource.CachedUnseqResourceMergeReader;
 import org.apache.iotdb.db.utils.MergeUtils;
 import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
@@ -47,6 +53,8 @@ import org.apache.iotdb.tsfile.write.chunk.ChunkWriterImpl;
 import org.apache.iotdb.tsfile.write.chunk.IChunkWriter;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.apache.iotdb.tsfile.write.writer.RestorableTsFileIOWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * MergeResource manages files and caches of readers, writers, MeasurementSchemas and
@@ -54,14 +62,19 @@ import org.apache.iotdb.tsfile.write.writer.RestorableTsFileIOWriter;
  */
 public class MergeResource {
 
+  private static final Logger logger = LoggerFactory.getLogger(MergeResource.class);
+
   private List<TsFileResource> seqFiles;
   private List<TsFileResource> unseqFiles;
 
   private Map<TsFileResource, TsFileSequenceReader> fileReaderCache = new HashMap<>();
-  private Map<TsFileResource, RestorableTsFileIOWriter> fileWriterCache = new HashMap<>();
+  // keyed by identity, as the hash of a SeqFile changes when it is replaced by its merged file
+  private Map<TsFileResource, RestorableTsFileIOWriter> fileWriterCache = new IdentityHashMap<>();
   private Map<TsFileResource, List<Modification>> modificationCache = new HashMap<>();
   private Map<Path, MeasurementSchema> measurementSchemaMap = new HashMap<>(); //is this too waste?
   private Map<MeasurementSchema, IChunkWriter> chunkWriterCache = new ConcurrentHashMap<>();
+  private Map<MeasurementSchema, IChunkWriter> coldChunkWriterCache = new ConcurrentHashMap<>();
+  private Map<TsFileResource, Boolean> coldFileCache = new ConcurrentHashMap<>();
 
   private long timeLowerBound = Long.MIN_VALUE;
 
@@ -100,12 +113,51 @@ public class MergeResource {
     modificationCache.clear();
     measurementSchemaMap.clear();
     chunkWriterCache.clear();
+    coldChunkWriterCache.clear();
+    coldFileCache.clear();
   }
 
   public MeasurementSchema getSchema(Path path) {
     return measurementSchemaMap.get(path);
   }
 
+  /**
+   * Get the MeasurementSchema a timeseries of a SeqFile is rewritten with. If the SeqFile is
+   * cold, the compressor of the schema is replaced with the one of the cold data.
+   */
+  public MeasurementSchema getSchema(Path path, TsFileResource seqFile) {
+    MeasurementSchema schema = measurementSchemaMap.get(path);
+    CompressionType coldDataCompressor = IoTDBDescriptor.getInstance().getConfig()
+        .getColdDataCompressor();
+    if (schema == null || schema.getCompressor() == coldDataCompressor || !isColdFile(seqFile)) {
+      return schema;
+    }
+    return new MeasurementSchema(schema.getMeasurementId(), schema.getType(),
+        schema.getEncodingType(), coldDataCompressor, schema.getProps());
+  }
+
+  /**
+   * A SeqFile is cold if its time partition, or the file itself if time partitioning is disabled,
+   * ends more than cold_data_age_in_ms ago. The result is kept for the whole merge so all the
+   * timeseries of a file are rewritten alike.
+   */
+  public boolean isColdFile(TsFileResource seqFile) {
+    return coldFileCache.computeIfAbsent(seqFile, file -> {
+      IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+      long coldDataAge = config.getColdDataAgeInMs();
+      if (coldDataAge <= 0) {
+        return false;
+      }
+      long dataEndTime = file.getFileEndTime();
+      if (config.isEnablePartition()) {
+        long partitionInterval = StorageEngine.getTimePartitionInterval();
+        dataEndTime = Math.max(dataEndTime,
+            (file.getTimePartition() + 1) * partitionInterval - 1);
+      }
+      return dataEndTime < System.currentTimeMillis() - coldDataAge;
+    });
+  }
+
   /**
    * Construct a new or get an existing RestorableTsFileIOWriter of a merge temp file for a
    * SeqFile. The path of the merge temp file will be the seqFile's + ".merge".
@@ -114,8 +166,19 @@ public class MergeResource {
   public RestorableTsFileIOWriter getMergeFileWriter(TsFileResource resource) throws IOException {
     RestorableTsFileIOWriter writer = fileWriterCache.get(resource);
     if (writer == null) {
-      writer = new RestorableTsFileIOWriter(FSFactoryProducer.getFSFactory()
-          .getFile(resource.getTsFilePath() + MERGE_SUFFIX));
+      File mergeFile = FSFactoryProducer.getFSFactory()
+          .getFile(resource.getTsFilePath() + MERGE_SUFFIX);
+      writer = new RestorableTsFileIOWriter(mergeFile);
+      if (!writer.canWrite()) {
+        // a complete merge file is left by an earlier merge that did not clean up, the writer of
+        // which is closed, and the merge resumed by the recovery is always truncated
+        logger.warn("Remove the stale merge file {}", mergeFile);
+        writer.close();
+        if (!mergeFile.delete()) {
+          throw new IOException("Cannot remove the stale merge file " + mergeFile);
+        }
+        writer = new RestorableTsFileIOWriter(mergeFile);
+      }
       fileWriterCache.put(resource, writer);
     }
     return writer;
@@ -169,6 +232,15 @@ public class MergeResource {
     return chunkWriterCache.computeIfAbsent(measurementSchema, ChunkWriterImpl::new);
   }
 
+  /**
+   * Construct a new or get an existing ChunkWriter of a measurement in cold SeqFiles, which always
+   * compresses by the compressor of the schema.
+   */
+  public IChunkWriter getColdChunkWriter(MeasurementSchema measurementSchema) {
+    return coldChunkWriterCache.computeIfAbsent(measurementSchema,
+        schema -> new ChunkWriterImpl(schema, false));
+  }
+
   /**
    * Get the modifications of a timeseries in the ModificationFile of a TsFile. Once the
    * modifications of the timeseries are found out, they will be removed from the list to boost
@@ -205,6 +277,18 @@ public class MergeResource {
     }
   }
 
+  /**
+   * Remove and close the writer of the merge temp file of a SeqFile, which must be done before the
+   * SeqFile is replaced. The merge temp file is NOT deleted.
+   * @param tsFileResource the SeqFile
+   */
+  public void removeFileWriter(TsFileResource tsFileResource) throws IOException {
+    RestorableTsFileIOWriter newFileWriter = fileWriterCache.remove(tsFileResource);
+    if (newFileWriter != null) {
+      newFileWriter.close();
+    }
+  }
+
   /**
    * Remove and close the reader of the TsFile. The TsFile is NOT deleted.
    * @param resource the SeqFile
@@ -257,6 +341,7 @@ public class MergeResource {
 
   public void clearChunkWriterCache() {
     this.chunkWriterCache.clear();
+    this.coldChunkWriterCache.clear();
   }
 
 }
@@ -57,6 +57,10 @@ import static org.apache.iotdb.db.engine.merge.recover.MergeLogger.*;
  * server/0seq.tsfile 145462
  * end
  * merge end
+ *
+ * A series batch is merged into the seqFiles one by one, and the position of a merge file is
+ * logged after the chunks of the batch are written into it, so a batch that was being merged when
+ * the system stopped is resumed from the seqFile after the last logged one.
  */
 public class LogAnalyzer {
 
@@ -72,7 +76,12 @@ public class LogAnalyzer {
 
   private List<Path> mergedPaths = new ArrayList<>();
   private List<Path> unmergedPaths;
+  // the series batch that was being merged, and the index of the seqFile to resume it from
+  private List<Path> unfinishedPaths = Collections.emptyList();
+  private int unfinishedSeqFileIdx = 0;
   private List<TsFileResource> unmergedFiles;
+  // the seqFiles whose merged files are complete, which may not have replaced them yet
+  private Map<TsFileResource, File> completedFiles = new HashMap<>();
   private String currLine;
 
   private Status status;
@@ -148,7 +157,7 @@ public class LogAnalyzer {
     long startTime = System.currentTimeMillis();
     List<TsFileResource> mergeUnseqFiles = new ArrayList<>();
     while ((currLine = bufferedReader.readLine()) != null) {
-      if (currLine.equals(STR_TIMESERIES)) {
+      if (STR_TIMESERIES.equals(currLine) || STR_MERGE_START.equals(currLine)) {
         break;
       }
       Iterator<TsFileResource> iterator = resource.getUnseqFiles().iterator();
@@ -176,7 +185,9 @@ public class LogAnalyzer {
 
     status = Status.MERGE_START;
     for (TsFileResource seqFile : resource.getSeqFiles()) {
-      File mergeFile = SystemFileFactory.INSTANCE.getFile(seqFile.getTsFilePath() + MergeTask.MERGE_SUFFIX);
+      // the positions are logged with the absolute paths of the files
+      File mergeFile = SystemFileFactory.INSTANCE
+          .getFile(seqFile.getTsFile().getAbsolutePath() + MergeTask.MERGE_SUFFIX);
       fileLastPositions.put(mergeFile, 0L);
     }
 
@@ -186,14 +197,19 @@ public class LogAnalyzer {
       if (STR_ALL_TS_END.equals(currLine)) {
         break;
       }
-      if (currLine.contains(STR_START)) {
+      if (currLine.startsWith(STR_START + " ")) {
         // a TS starts to merge
         String[] splits = currLine.split(" ");
+        List<Path> paths = new ArrayList<>();
         for (int i = 1; i < splits.length; i ++) {
-          currTSList.add(new Path(splits[i]));
+          paths.add(new Path(splits[i]));
         }
-        tempFileLastPositions.clear();
-      } else if (!currLine.contains(STR_END)) {
+        // the same batch is logged again when it is resumed, keep its logged positions
+        if (!paths.equals(currTSList)) {
+          tempFileLastPositions.clear();
+        }
+        currTSList = paths;
+      } else if (!STR_END.equals(currLine)) {
         // file position
         String[] splits = currLine.split(" ");
         File file = SystemFileFactory.INSTANCE.getFile(splits[0]);
@@ -206,8 +222,13 @@ public class LogAnalyzer {
           fileLastPositions.put(entry.getKey(), entry.getValue());
         }
         mergedPaths.addAll(currTSList);
+        currTSList = new ArrayList<>();
+        tempFileLastPositions.clear();
       }
     }
+    if (!currTSList.isEmpty()) {
+      analyzeUnfinishedPaths(currTSList);
+    }
     tempFileLastPositions = null;
     if (logger.isDebugEnabled()) {
       logger.debug("{} found {} series have already been merged after {}ms", taskName,
@@ -215,6 +236,29 @@ public class LogAnalyzer {
     }
   }
 
+  /**
+   * Find the last seqFile the unfinished batch has been written into, the batch is resumed from
+   * the next seqFile and the merge files are truncated to the logged positions.
+   */
+  private void analyzeUnfinishedPaths(List<Path> currTSList) {
+    List<TsFileResource> seqFiles = resource.getSeqFiles();
+    for (int i = 0; i < seqFiles.size(); i++) {
+      File mergeFile = SystemFileFactory.INSTANCE
+          .getFile(seqFiles.get(i).getTsFile().getAbsolutePath() + MergeTask.MERGE_SUFFIX);
+      if (tempFileLastPositions.containsKey(mergeFile)) {
+        unfinishedSeqFileIdx = i + 1;
+      }
+    }
+    if (unfinishedSeqFileIdx > 0) {
+      fileLastPositions.putAll(tempFileLastPositions);
+      unfinishedPaths = currTSList;
+      if (logger.isInfoEnabled()) {
+        logger.info("{} found {} series have been merged into {} seqFiles", taskName,
+            currTSList.size(), unfinishedSeqFileIdx);
+      }
+    }
+  }
+
   private void analyzeMergedFiles(BufferedReader bufferedReader) throws IOException {
     if (!STR_ALL_TS_END.equals(currLine)) {
       return;
@@ -231,20 +275,22 @@ public class LogAnalyzer {
         status = Status.MERGE_END;
         break;
       }
-      if (!currLine.contains(STR_END)) {
+      if (!STR_END.equals(currLine)) {
         String[] splits = currLine.split(" ");
         currFile = SystemFileFactory.INSTANCE.getFile(splits[0]);
         Long lastPost = Long.parseLong(splits[1]);
         fileLastPositions.put(currFile, lastPost);
       } else {
         fileLastPositions.remove(currFile);
-        String seqFilePath = currFile.getAbsolutePath().replace(MergeTask.MERGE_SUFFIX, "");
+        String seqFilePath = currFile.getAbsolutePath().replace(MergeTask.MERGE_COPY_SUFFIX, "")
+            .replace(MergeTask.MERGE_SUFFIX, "");
         Iterator<TsFileResource> unmergedFileIter = unmergedFiles.iterator();
         while (unmergedFileIter.hasNext()) {
           TsFileResource seqFile = unmergedFileIter.next();
           if (seqFile.getTsFile().getAbsolutePath().equals(seqFilePath)) {
             mergedCnt ++;
             unmergedFileIter.remove();
+            completedFiles.put(seqFile, currFile);
             break;
           }
         }
@@ -264,6 +310,14 @@ public class LogAnalyzer {
     this.unmergedPaths = unmergedPaths;
   }
 
+  public List<Path> getUnfinishedPaths() {
+    return unfinishedPaths;
+  }
+
+  public int getUnfinishedSeqFileIdx() {
+    return unfinishedSeqFileIdx;
+  }
+
   public List<TsFileResource> getUnmergedFiles() {
     return unmergedFiles;
   }
@@ -281,6 +335,10 @@ public class LogAnalyzer {
     this.mergedPaths = mergedPaths;
   }
 
+  public Map<TsFileResource, File> getCompletedFiles() {
+    return completedFiles;
+  }
+
   public Map<File, Long> getFileLastPositions() {
     return fileLastPositions;
   }
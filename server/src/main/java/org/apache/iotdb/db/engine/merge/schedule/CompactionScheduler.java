@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.schedule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.exception.StorageEngineException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CompactionScheduler issues the timed merges of all storage groups. In each round, it collects
+ * the status of every time partition, lets the ICompactionPolicy pick the partitions that need a
+ * merge, and merges them in the order of their read amplification (the number of unsequence
+ * files overlapping the sequence files), at most one partition per storage group as a storage
+ * group runs one merge at a time.
+ *
+ * The merges of all storage groups share one budget: no more merges are submitted than there are
+ * idle merge threads, and the bytes of the merged files are drawn from a token bucket refilled at
+ * compaction_throughput_mb_per_sec. A merge may overdraw the bucket, the following rounds are
+ * then skipped until the bucket is refilled, so the throughput holds in the long run.
+ *
+ * It also keeps the compaction metrics exposed by MergeManagerMBean.
+ */
+public class CompactionScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(CompactionScheduler.class);
+
+  private final ICompactionPolicy policy;
+  // bytes per second, no more than 0 for unlimited
+  private final long throughput;
+  // the bucket is refilled to at most the bytes of one scheduling interval
+  private final long maxAvailableBytes;
+  private long availableBytes;
+  private long lastRefillTime;
+
+  private volatile long compactionDebt;
+  private volatile int maxReadAmplification;
+  private volatile int pendingCompactionNum;
+  private final AtomicLong compactedBytes = new AtomicLong();
+  private final AtomicLong compactionMillis = new AtomicLong();
+
+  public CompactionScheduler(ICompactionPolicy policy, long throughput, long intervalMillis) {
+    this.policy = policy;
+    this.throughput = throughput;
+    this.maxAvailableBytes = throughput * Math.max(intervalMillis, 1000L) / 1000L;
+    this.availableBytes = maxAvailableBytes;
+    this.lastRefillTime = System.currentTimeMillis();
+  }
+
+  public static CompactionScheduler fromConfig() {
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    return new CompactionScheduler(getPolicy(config.getCompactionStrategy()),
+        config.getCompactionThroughputMbPerSec() * 1024L * 1024L,
+        config.getMergeIntervalSec() * 1000L);
+  }
+
+  public static ICompactionPolicy getPolicy(CompactionStrategy strategy) {
+    switch (strategy) {
+      case LEVELED:
+        return new LeveledCompactionPolicy();
+      case SIZE_TIERED:
+        return new SizeTieredCompactionPolicy();
+      case TIME_WINDOW:
+        return new TimeWindowCompactionPolicy();
+      default:
+        throw new UnsupportedOperationException("Unknown CompactionStrategy " + strategy);
+    }
+  }
+
+  /**
+   * Run a scheduling round.
+   * @param idleThreadNum how many merges may be submitted in this round
+   */
+  public synchronized void schedule(boolean fullMerge, int idleThreadNum) {
+    List<PartitionCompactionStatus> candidates =
+        selectCandidates(StorageEngine.getInstance().getCompactionStatus());
+    Set<String> scheduledGroups = new HashSet<>();
+    int scheduledNum = 0;
+    for (PartitionCompactionStatus candidate : candidates) {
+      if (scheduledNum >= idleThreadNum || !hasBudget(System.currentTimeMillis())) {
+        break;
+      }
+      if (scheduledGroups.contains(candidate.getStorageGroup())) {
+        continue;
+      }
+      try {
+        if (StorageEngine.getInstance().mergePartition(candidate.getStorageGroup(),
+            candidate.getTimePartition(), fullMerge)) {
+          scheduledGroups.add(candidate.getStorageGroup());
+          scheduledNum++;
+          consume(candidate.getSeqFileSize() + candidate.getUnseqFileSize());
+        }
+      } catch (StorageEngineException e) {
+        logger.error("Cannot merge {}", candidate, e);
+      }
+    }
+    pendingCompactionNum = candidates.size() - scheduledNum;
+    if (logger.isInfoEnabled()) {
+      logger.info("Scheduled {} of {} time partitions to merge, compaction debt: {}B, max read "
+          + "amplification: {}", scheduledNum, candidates.size(), compactionDebt,
+          maxReadAmplification);
+    }
+  }
+
+  /**
+   * Update the debt metrics with the statuses of all time partitions.
+   * @return the partitions that need merging, the most read-amplified first
+   */
+  List<PartitionCompactionStatus> selectCandidates(List<PartitionCompactionStatus> statuses) {
+    long debt = 0;
+    int maxAmplification = 0;
+    List<PartitionCompactionStatus> candidates = new ArrayList<>();
+    for (PartitionCompactionStatus status : statuses) {
+      debt += status.getUnseqFileSize();
+      maxAmplification = Math.max(maxAmplification, status.getOverlappedUnseqFileNum());
+      if (policy.needsCompaction(status)) {
+        candidates.add(status);
+      }
+    }
+    candidates.sort(Comparator
+        .comparingInt(PartitionCompactionStatus::getOverlappedUnseqFileNum).reversed()
+        .thenComparing(Comparator.comparingLong(PartitionCompactionStatus::getUnseqFileSize)
+            .reversed()));
+    compactionDebt = debt;
+    maxReadAmplification = maxAmplification;
+    return candidates;
+  }
+
+  boolean hasBudget(long currentTime) {
+    if (throughput <= 0) {
+      return true;
+    }
+    long elapsed = currentTime - lastRefillTime;
+    if (elapsed > 0) {
+      availableBytes = Math.min(maxAvailableBytes, availableBytes + throughput * elapsed / 1000);
+      lastRefillTime = currentTime;
+    }
+    return availableBytes > 0;
+  }
+
+  void consume(long bytes) {
+    if (throughput > 0) {
+      availableBytes -= bytes;
+    }
+  }
+
+  /**
+   * Called when a merge ends.
+   */
+  public void recordCompaction(long bytes, long millis) {
+    compactedBytes.addAndGet(bytes);
+    compactionMillis.addAndGet(millis);
+  }
+
+  /**
+   * @return the bytes of the unsequence files in all time partitions when the last round ran
+   */
+  public long getCompactionDebt() {
+    return compactionDebt;
+  }
+
+  public int getMaxReadAmplification() {
+    return maxReadAmplification;
+  }
+
+  /**
+   * @return the time partitions that needed merging but were left for later rounds in the last
+   * round
+   */
+  public int getPendingCompactionNum() {
+    return pendingCompactionNum;
+  }
+
+  public long getCompactedBytes() {
+    return compactedBytes.get();
+  }
+
+  /**
+   * @return the average bytes merged per second by the ended merges
+   */
+  public long getCompactionThroughput() {
+    long millis = compactionMillis.get();
+    return millis == 0 ? 0 : compactedBytes.get() * 1000 / millis;
+  }
+}
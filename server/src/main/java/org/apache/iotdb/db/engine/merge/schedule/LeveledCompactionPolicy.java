@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.schedule;
+
+/**
+ * Treats the unsequence files of a time partition as the level above its sequence files, the
+ * level is merged down when it grows too large relative to the level below, or when too many of
+ * its files overlap the sequence files and slow the queries down.
+ */
+public class LeveledCompactionPolicy implements ICompactionPolicy {
+
+  // the unsequence files are merged when their size reaches 1/SIZE_RATIO of the sequence files
+  static final int SIZE_RATIO = 10;
+  static final int MAX_OVERLAPPED_FILE_NUM = 4;
+
+  @Override
+  public boolean needsCompaction(PartitionCompactionStatus status) {
+    if (status.getOverlappedUnseqFileNum() == 0) {
+      return false;
+    }
+    return status.getUnseqFileSize() * SIZE_RATIO >= status.getSeqFileSize()
+        || status.getOverlappedUnseqFileNum() >= MAX_OVERLAPPED_FILE_NUM;
+  }
+}
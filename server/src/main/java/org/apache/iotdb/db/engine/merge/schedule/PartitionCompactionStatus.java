@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PartitionCompactionStatus summarizes the closed files of a time partition of a storage group
+ * that are not being merged, which is what the CompactionScheduler decides on.
+ */
+public class PartitionCompactionStatus {
+
+  private final String storageGroup;
+  private final long timePartition;
+  // whether it is the latest time partition of the storage group
+  private boolean latest;
+
+  private int seqFileNum;
+  private long seqFileSize;
+  private long unseqFileSize;
+  // sorted ascending
+  private List<Long> unseqFileSizes = new ArrayList<>();
+  // the unsequence files that have some device overlapping the sequence files, each of them is
+  // one more file a query of the device has to read and merge
+  private int overlappedUnseqFileNum;
+
+  public PartitionCompactionStatus(String storageGroup, long timePartition) {
+    this.storageGroup = storageGroup;
+    this.timePartition = timePartition;
+  }
+
+  public void addSeqFile(long size) {
+    seqFileNum++;
+    seqFileSize += size;
+  }
+
+  public void addUnseqFile(long size, boolean overlapped) {
+    unseqFileSize += size;
+    int pos = Collections.binarySearch(unseqFileSizes, size);
+    unseqFileSizes.add(pos < 0 ? -pos - 1 : pos, size);
+    if (overlapped) {
+      overlappedUnseqFileNum++;
+    }
+  }
+
+  public String getStorageGroup() {
+    return storageGroup;
+  }
+
+  public long getTimePartition() {
+    return timePartition;
+  }
+
+  public boolean isLatest() {
+    return latest;
+  }
+
+  public void setLatest(boolean latest) {
+    this.latest = latest;
+  }
+
+  public int getSeqFileNum() {
+    return seqFileNum;
+  }
+
+  public long getSeqFileSize() {
+    return seqFileSize;
+  }
+
+  public int getUnseqFileNum() {
+    return unseqFileSizes.size();
+  }
+
+  public long getUnseqFileSize() {
+    return unseqFileSize;
+  }
+
+  List<Long> getUnseqFileSizes() {
+    return unseqFileSizes;
+  }
+
+  /**
+   * @return the read amplification of the partition
+   */
+  public int getOverlappedUnseqFileNum() {
+    return overlappedUnseqFileNum;
+  }
+
+  @Override
+  public String toString() {
+    return storageGroup + "-" + timePartition + "{seqFiles=" + seqFileNum + "/" + seqFileSize
+        + "B, unseqFiles=" + getUnseqFileNum() + "/" + unseqFileSize + "B, overlapped="
+        + overlappedUnseqFileNum + "}";
+  }
+}
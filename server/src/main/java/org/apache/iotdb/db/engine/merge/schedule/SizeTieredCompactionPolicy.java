@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.schedule;
+
+import java.util.List;
+
+/**
+ * Merges a time partition when enough of its unsequence files are of similar sizes (a tier), so
+ * each byte is rewritten about once per tier instead of once per small file.
+ */
+public class SizeTieredCompactionPolicy implements ICompactionPolicy {
+
+  // the files in a tier are no larger than TIER_SIZE_RATIO times the smallest one
+  static final int TIER_SIZE_RATIO = 2;
+  static final int MIN_TIER_FILE_NUM = 4;
+
+  @Override
+  public boolean needsCompaction(PartitionCompactionStatus status) {
+    if (status.getOverlappedUnseqFileNum() == 0) {
+      return false;
+    }
+    // the sizes are sorted, so a tier is a window of them
+    List<Long> sizes = status.getUnseqFileSizes();
+    int tierStart = 0;
+    for (int i = 0; i < sizes.size(); i++) {
+      while (sizes.get(i) > sizes.get(tierStart) * TIER_SIZE_RATIO) {
+        tierStart++;
+      }
+      if (i - tierStart + 1 >= MIN_TIER_FILE_NUM) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -23,6 +23,9 @@ import static org.apache.iotdb.tsfile.common.constant.TsFileConstant.TSFILE_SUFF
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -42,9 +45,11 @@ import org.apache.iotdb.tsfile.fileSystem.fsFactory.FSFactory;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.common.Chunk;
 import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.reader.TsFileInput;
 import org.apache.iotdb.tsfile.write.writer.ForceAppendTsFileWriter;
 import org.apache.iotdb.tsfile.write.writer.RestorableTsFileIOWriter;
 import org.apache.iotdb.tsfile.write.writer.TsFileIOWriter;
+import org.apache.iotdb.tsfile.write.writer.TsFileOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +61,11 @@ import org.slf4j.LoggerFactory;
 class MergeFileTask {
 
   private static final Logger logger = LoggerFactory.getLogger(MergeFileTask.class);
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+  // copying a seqFile rewrites all of it, so the merged chunks are only moved to the copies of
+  // the seqFiles not larger than this, and the unmerged chunks of the larger ones are moved to the
+  // merge files instead
+  static final long MAX_COPIED_FILE_SIZE = 64L * 1024 * 1024;
 
   private String taskName;
   private MergeContext context;
@@ -91,7 +101,7 @@ class MergeFileTask {
 
       int mergedChunkNum = context.getMergedChunkCnt().getOrDefault(seqFile, 0);
       int unmergedChunkNum = context.getUnmergedChunkCnt().getOrDefault(seqFile, 0);
-      if (mergedChunkNum >= unmergedChunkNum) {
+      if (mergedChunkNum >= unmergedChunkNum || seqFile.getTsFileSize() > MAX_COPIED_FILE_SIZE) {
         // move the unmerged data to the new file
         if (logger.isInfoEnabled()) {
           logger.info("{} moving unmerged data of {} to the merged file, {} merged chunks, {} "
@@ -135,6 +145,11 @@ class MergeFileTask {
         currentMergeIndex + 1, unmergedFiles.size());
   }
 
+  /**
+   * Append the merged chunks to a copy of the old seqFile, which replaces the old one at last, so
+   * the old seqFile is only locked when it is replaced and can be queried during the merge. If the
+   * system stops after the end of the copy is logged, the recovery finishes the replacement.
+   */
   private void moveMergedToOld(TsFileResource seqFile) throws IOException {
     int mergedChunkNum = context.getMergedChunkCnt().getOrDefault(seqFile, 0);
     if (mergedChunkNum == 0) {
@@ -142,18 +157,14 @@ class MergeFileTask {
       return;
     }
 
-    seqFile.writeLock();
+    File copyFile = fsFactory.getFile(seqFile.getTsFilePath() + MergeTask.MERGE_COPY_SUFFIX);
+    copyFile(seqFile.getTsFile(), copyFile);
+    TsFileIOWriter copyFileWriter = getCopyFileWriter(copyFile);
+    RestorableTsFileIOWriter newFileWriter = resource.getMergeFileWriter(seqFile);
     try {
-      ChunkMetadataCache.getInstance().remove(seqFile);
-      FileReaderManager.getInstance().closeFileAndRemoveReader(seqFile.getTsFilePath());
-
-      resource.removeFileReader(seqFile);
-      TsFileIOWriter oldFileWriter = getOldFileWriter(seqFile);
-
       // filter the chunks that have been merged
-      oldFileWriter.filterChunks(context.getUnmergedChunkStartTimes().get(seqFile));
+      copyFileWriter.filterChunks(context.getUnmergedChunkStartTimes().get(seqFile));
 
-      RestorableTsFileIOWriter newFileWriter = resource.getMergeFileWriter(seqFile);
       newFileWriter.close();
       try (TsFileSequenceReader newFileReader =
           new TsFileSequenceReader(newFileWriter.getFile().getPath())) {
@@ -167,75 +178,69 @@ class MergeFileTask {
             .entrySet()) {
           String deviceId = entry.getKey();
           List<ChunkMetadata> chunkMetadataList = entry.getValue();
-          writeMergedChunkGroup(chunkMetadataList, deviceId, newFileReader, oldFileWriter);
+          writeMergedChunkGroup(chunkMetadataList, deviceId, newFileReader, copyFileWriter);
 
           if (Thread.interrupted()) {
             Thread.currentThread().interrupt();
-            oldFileWriter.close();
-            restoreOldFile(seqFile);
-            return;
+            // the copy is removed below, and the merge is aborted
+            throw new InterruptedIOException(taskName + " is interrupted");
           }
         }
       }
-      oldFileWriter.endFile();
-
-      updateHistoricalVersions(seqFile);
-      seqFile.serialize();
-      mergeLogger.logFileMergeEnd();
-      logger.debug("{} moved merged chunks of {} to the old file", taskName, seqFile);
-
-      newFileWriter.getFile().delete();
-
-      File nextMergeVersionFile = getNextMergeVersionFile(seqFile.getTsFile());
-      fsFactory.moveFile(seqFile.getTsFile(), nextMergeVersionFile);
-      fsFactory.moveFile(
-          fsFactory.getFile(seqFile.getTsFile().getAbsolutePath() + TsFileResource.RESOURCE_SUFFIX),
-          fsFactory
-              .getFile(nextMergeVersionFile.getAbsolutePath() + TsFileResource.RESOURCE_SUFFIX));
-      seqFile.setFile(nextMergeVersionFile);
+      copyFileWriter.endFile();
     } catch (Exception e) {
-      restoreOldFile(seqFile);
+      copyFileWriter.close();
+      copyFile.delete();
       throw e;
-    } finally {
-      seqFile.writeUnlock();
     }
+
+    updateHistoricalVersions(seqFile);
+    seqFile.serialize();
+    mergeLogger.logFileMergeEnd();
+    logger.debug("{} moved merged chunks of {} to the old file", taskName, seqFile);
+
+    resource.removeFileAndWriter(seqFile);
+    replaceSeqFile(seqFile, copyFile);
   }
 
-  /**
-   * Restore an old seq file which is being written new chunks when exceptions occur or the task
-   * is aborted.
-   * @param seqFile
-   * @throws IOException
-   */
-  private void restoreOldFile(TsFileResource seqFile) throws IOException {
-    RestorableTsFileIOWriter oldFileRecoverWriter = new RestorableTsFileIOWriter(
-        seqFile.getTsFile());
-    if (oldFileRecoverWriter.hasCrashed() && oldFileRecoverWriter.canWrite()) {
-      oldFileRecoverWriter.endFile();
-    } else {
-      oldFileRecoverWriter.close();
+  private void copyFile(File srcFile, File destFile) throws IOException {
+    TsFileInput input = FSFactoryProducer.getFileInputFactory().getTsFileInput(srcFile.getPath());
+    TsFileOutput output = FSFactoryProducer.getFileOutputFactory()
+        .getTsFileOutput(destFile.getPath(), false);
+    try {
+      // TsFileOutput.write(ByteBuffer) writes the whole backing array, so write through the stream
+      OutputStream outputStream = output.wrapAsStream();
+      ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+      while (input.read(buffer) > 0) {
+        outputStream.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+      }
+      output.flush();
+    } finally {
+      input.close();
+      output.close();
     }
   }
 
   /**
-   * Open an appending writer for an old seq file so we can add new chunks to it.
-   * @param seqFile
+   * Open an appending writer for the copy of an old seq file so we can add new chunks to it.
+   * @param copyFile
    * @return
    * @throws IOException
    */
-  private TsFileIOWriter getOldFileWriter(TsFileResource seqFile) throws IOException {
-    TsFileIOWriter oldFileWriter;
+  private TsFileIOWriter getCopyFileWriter(File copyFile) throws IOException {
+    TsFileIOWriter copyFileWriter;
     try {
-      oldFileWriter = new ForceAppendTsFileWriter(seqFile.getTsFile());
-      mergeLogger.logFileMergeStart(seqFile.getTsFile(),
-          ((ForceAppendTsFileWriter) oldFileWriter).getTruncatePosition());
-      logger.debug("{} moving merged chunks of {} to the old file", taskName, seqFile);
-      ((ForceAppendTsFileWriter) oldFileWriter).doTruncate();
+      copyFileWriter = new ForceAppendTsFileWriter(copyFile);
+      mergeLogger.logFileMergeStart(copyFile,
+          ((ForceAppendTsFileWriter) copyFileWriter).getTruncatePosition());
+      logger.debug("{} moving merged chunks to {}", taskName, copyFile);
+      ((ForceAppendTsFileWriter) copyFileWriter).doTruncate();
     } catch (TsFileNotCompleteException e) {
-      // this file may already be truncated if this merge is a system reboot merge
-      oldFileWriter = new RestorableTsFileIOWriter(seqFile.getTsFile());
+      // the old file may have been truncated if it was merged by an older version before reboot
+      copyFileWriter = new RestorableTsFileIOWriter(copyFile);
     }
-    return oldFileWriter;
+    return copyFileWriter;
   }
 
   private void updateHistoricalVersions(TsFileResource seqFile) {
@@ -263,6 +268,7 @@ class MergeFileTask {
       maxVersion =
           chunkMetaData.getVersion() > maxVersion ? chunkMetaData.getVersion() : maxVersion;
       context.incTotalPointWritten(chunkMetaData.getNumOfPoints());
+      context.incTotalByteCopied(chunk.getHeader().getDataSize());
     }
     fileWriter.writeVersion(maxVersion);
     fileWriter.endChunkGroup();
@@ -298,7 +304,8 @@ class MergeFileTask {
 
         if (Thread.interrupted()) {
           Thread.currentThread().interrupt();
-          return;
+          // the merge is aborted, which removes the merge file
+          throw new InterruptedIOException(taskName + " is interrupted");
         }
 
         fileWriter.writeVersion(maxVersion + 1);
@@ -313,27 +320,81 @@ class MergeFileTask {
     mergeLogger.logFileMergeEnd();
     logger.debug("{} moved unmerged chunks of {} to the new file", taskName, seqFile);
 
+    resource.removeFileWriter(seqFile);
+    replaceSeqFile(seqFile, fileWriter.getFile());
+  }
+
+  /**
+   * Finish the replacement of the seqFiles by their merged files, which were completed but not
+   * renamed when the system stopped.
+   *
+   * @param completedFiles the seqFiles and their merged files whose ends are logged
+   */
+  void replaceCompletedFiles(Map<TsFileResource, File> completedFiles) throws IOException {
+    for (Entry<TsFileResource, File> entry : completedFiles.entrySet()) {
+      TsFileResource seqFile = entry.getKey();
+      File mergedFile = entry.getValue();
+      if (!mergedFile.exists()) {
+        // the seqFile has been replaced
+        continue;
+      }
+      logger.info("{} replaces {} with the merged file {}", taskName, seqFile, mergedFile);
+      // the merge file is not needed if the merged chunks were moved to the copy of the seqFile
+      File mergeFile = fsFactory.getFile(seqFile.getTsFilePath() + MergeTask.MERGE_SUFFIX);
+      if (!mergeFile.getAbsolutePath().equals(mergedFile.getAbsolutePath())) {
+        mergeFile.delete();
+      }
+      replaceSeqFile(seqFile, mergedFile);
+    }
+  }
+
+  /**
+   * Replace the old seqFile with the new file under the write lock of the seqFile, which only
+   * takes some renames. The old seqFile is deleted after the new file and the resource file are
+   * renamed, so it stays intact if a rename fails, and the failure fails the merge.
+   */
+  private void replaceSeqFile(TsFileResource seqFile, File newFile) throws IOException {
     seqFile.writeLock();
+    // the resource file is moved before the seqFile knows its new path
+    seqFile.pinTimeIndex();
     try {
       resource.removeFileReader(seqFile);
       ChunkMetadataCache.getInstance().remove(seqFile);
       FileReaderManager.getInstance().closeFileAndRemoveReader(seqFile.getTsFilePath());
-      seqFile.getTsFile().delete();
-
-      File nextMergeVersionFile = getNextMergeVersionFile(seqFile.getTsFile());
-      fsFactory.moveFile(fileWriter.getFile(), nextMergeVersionFile);
-      fsFactory.moveFile(
-          fsFactory.getFile(seqFile.getTsFile().getAbsolutePath() + TsFileResource.RESOURCE_SUFFIX),
-          fsFactory
-              .getFile(nextMergeVersionFile.getAbsolutePath() + TsFileResource.RESOURCE_SUFFIX));
+
+      File oldFile = seqFile.getTsFile();
+      File nextMergeVersionFile = getNextMergeVersionFile(oldFile);
+      moveFile(newFile, nextMergeVersionFile);
+      try {
+        moveFile(fsFactory.getFile(oldFile.getAbsolutePath() + TsFileResource.RESOURCE_SUFFIX),
+            fsFactory.getFile(
+                nextMergeVersionFile.getAbsolutePath() + TsFileResource.RESOURCE_SUFFIX));
+      } catch (IOException e) {
+        fsFactory.moveFile(nextMergeVersionFile, newFile);
+        throw e;
+      }
       seqFile.setFile(nextMergeVersionFile);
-    } catch (Exception e) {
-      logger.error(e.getMessage(), e);
+      if (!oldFile.delete() && oldFile.exists()) {
+        throw new IOException(String.format("%s cannot delete the replaced seqFile %s", taskName,
+            oldFile));
+      }
     } finally {
+      seqFile.unpinTimeIndex();
       seqFile.writeUnlock();
     }
   }
 
+  /**
+   * FSFactory.moveFile() only logs its failures, so the destination is checked.
+   */
+  private void moveFile(File srcFile, File destFile) throws IOException {
+    fsFactory.moveFile(srcFile, destFile);
+    if (!destFile.exists()) {
+      throw new IOException(String.format("%s cannot move %s to %s", taskName, srcFile,
+          destFile));
+    }
+  }
+
   private File getNextMergeVersionFile(File seqFile) {
     String[] splits = seqFile.getName().replace(TSFILE_SUFFIX, "")
         .split(IoTDBConstant.FILE_NAME_SEPARATOR);
@@ -356,6 +417,7 @@ class MergeFileTask {
           fileWriter.writeChunk(chunk, metaData);
           maxVersion = metaData.getVersion() > maxVersion ? metaData.getVersion() : maxVersion;
           context.incTotalPointWritten(metaData.getNumOfPoints());
+          context.incTotalByteCopied(chunk.getHeader().getDataSize());
           break;
         }
       }
@@ -24,7 +24,9 @@ import static org.apache.iotdb.db.utils.MergeUtils.writeTVPair;
 import static org.apache.iotdb.db.utils.QueryUtils.modifyChunkMetaData;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.PriorityQueue;
@@ -41,15 +43,21 @@ import org.apache.iotdb.db.engine.merge.selector.IMergePathSelector;
 import org.apache.iotdb.db.engine.merge.selector.NaivePathSelector;
 import org.apache.iotdb.db.engine.modification.Modification;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.engine.throttle.IOPriority;
+import org.apache.iotdb.db.engine.throttle.IORateLimiter;
 import org.apache.iotdb.tsfile.read.reader.IPointReader;
 import org.apache.iotdb.db.utils.MergeUtils;
 import org.apache.iotdb.db.utils.MergeUtils.MetaListEntry;
+import org.apache.iotdb.tsfile.exception.write.PageException;
+import org.apache.iotdb.tsfile.file.header.ChunkHeader;
+import org.apache.iotdb.tsfile.file.header.PageHeader;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Chunk;
 import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
 import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReader;
 import org.apache.iotdb.tsfile.write.chunk.IChunkWriter;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
@@ -61,7 +69,7 @@ import org.slf4j.LoggerFactory;
 public class MergeMultiChunkTask {
 
   private static final Logger logger = LoggerFactory.getLogger(MergeMultiChunkTask.class);
-  private static int minChunkPointNum = IoTDBDescriptor.getInstance().getConfig()
+  private int minChunkPointNum = IoTDBDescriptor.getInstance().getConfig()
       .getChunkMergePointThreshold();
 
   private MergeLogger mergeLogger;
@@ -81,6 +89,9 @@ public class MergeMultiChunkTask {
 
   private int concurrentMergeSeriesNum;
   private List<Path> currMergingPaths = new ArrayList<>();
+  // the batch of series to be resumed before the others and the seqFile to resume it from
+  private List<Path> resumedPaths = Collections.emptyList();
+  private int resumedSeqFileIdx = 0;
 
   private String storageGroupName;
 
@@ -97,13 +108,35 @@ public class MergeMultiChunkTask {
     this.storageGroupName = storageGroupName;
   }
 
+  /**
+   * Resume a batch of series that has been merged into the seqFiles before seqFileIdx before the
+   * system stopped, the chunks of the batch in those merge files are kept.
+   */
+  void setResumedPaths(List<Path> paths, int seqFileIdx) {
+    this.resumedPaths = paths;
+    this.resumedSeqFileIdx = seqFileIdx;
+  }
+
   void mergeSeries() throws IOException {
     if (logger.isInfoEnabled()) {
       logger.info("{} starts to merge {} series", taskName, unmergedSeries.size());
     }
     long startTime = System.currentTimeMillis();
     for (TsFileResource seqFile : resource.getSeqFiles()) {
-      mergeContext.getUnmergedChunkStartTimes().put(seqFile, new HashMap<>());
+      // the unmerged chunks of the series merged before reboot are recovered
+      mergeContext.getUnmergedChunkStartTimes().putIfAbsent(seqFile, new HashMap<>());
+    }
+    if (!resumedPaths.isEmpty()) {
+      logger.info("{} resumes merging {} series from seqFile {}", taskName, resumedPaths.size(),
+          resumedSeqFileIdx);
+      currMergingPaths = resumedPaths;
+      mergePaths(resumedSeqFileIdx);
+      resource.clearChunkWriterCache();
+      if (Thread.interrupted()) {
+        logger.info("MergeMultiChunkTask {} aborted", taskName);
+        Thread.currentThread().interrupt();
+        return;
+      }
     }
     // merge each series and write data into each seqFile's corresponding temp merge file
     List<List<Path>> devicePaths = MergeUtils.splitPathsByDevice(unmergedSeries);
@@ -112,7 +145,7 @@ public class MergeMultiChunkTask {
       IMergePathSelector pathSelector = new NaivePathSelector(pathList, concurrentMergeSeriesNum);
       while (pathSelector.hasNext()) {
         currMergingPaths = pathSelector.next();
-        mergePaths();
+        mergePaths(0);
         resource.clearChunkWriterCache();
         if (Thread.interrupted()) {
           logger.info("MergeMultiChunkTask {} aborted", taskName);
@@ -144,7 +177,12 @@ public class MergeMultiChunkTask {
     return String.format("Processed %d/%d series", mergedSeriesCnt, unmergedSeries.size());
   }
 
-  private void mergePaths() throws IOException {
+  /**
+   * Merge the current paths into the seqFiles from firstSeqFileIdx one by one. The position of a
+   * merge file is logged after the paths are merged into it, so a merge stopped at any seqFile
+   * can be resumed from the next one.
+   */
+  private void mergePaths(int firstSeqFileIdx) throws IOException {
     mergeLogger.logTSStart(currMergingPaths);
     IPointReader[] unseqReaders;
     unseqReaders = resource.getUnseqReaders(currMergingPaths);
@@ -154,8 +192,11 @@ public class MergeMultiChunkTask {
         currTimeValuePairs[i] = unseqReaders[i].currentTimeValuePair();
       }
     }
+    if (firstSeqFileIdx > 0) {
+      skipMergedUnseq(firstSeqFileIdx, unseqReaders);
+    }
 
-    for (int i = 0; i < resource.getSeqFiles().size(); i++) {
+    for (int i = firstSeqFileIdx; i < resource.getSeqFiles().size(); i++) {
       pathsMergeOneFile(i, unseqReaders);
 
       if (Thread.interrupted()) {
@@ -166,6 +207,35 @@ public class MergeMultiChunkTask {
     mergeLogger.logTSEnd();
   }
 
+  /**
+   * Skip the unseq data that have been merged into the seqFiles before firstSeqFileIdx, which are
+   * earlier than the end of the chunks of each path in the merge files of those seqFiles.
+   */
+  private void skipMergedUnseq(int firstSeqFileIdx, IPointReader[] unseqReaders)
+      throws IOException {
+    for (int i = 0; i < firstSeqFileIdx; i++) {
+      resource.getMergeFileWriter(resource.getSeqFiles().get(i)).makeMetadataVisible();
+    }
+    for (int pathIdx = 0; pathIdx < currMergingPaths.size(); pathIdx++) {
+      Path path = currMergingPaths.get(pathIdx);
+      long mergedEndTime = Long.MIN_VALUE;
+      for (int i = 0; i < firstSeqFileIdx; i++) {
+        RestorableTsFileIOWriter mergeFileWriter =
+            resource.getMergeFileWriter(resource.getSeqFiles().get(i));
+        for (ChunkMetadata chunkMetadata : mergeFileWriter
+            .getVisibleMetadataList(path.getDevice(), path.getMeasurement(), null)) {
+          mergedEndTime = Math.max(mergedEndTime, chunkMetadata.getEndTime());
+        }
+      }
+      while (currTimeValuePairs[pathIdx] != null
+          && currTimeValuePairs[pathIdx].getTimestamp() < mergedEndTime) {
+        unseqReaders[pathIdx].nextTimeValuePair();
+        currTimeValuePairs[pathIdx] = unseqReaders[pathIdx].hasNextTimeValuePair()
+            ? unseqReaders[pathIdx].currentTimeValuePair() : null;
+      }
+    }
+  }
+
   private void pathsMergeOneFile(int seqFileIdx, IPointReader[] unseqReaders)
       throws IOException {
     TsFileResource currTsFile = resource.getSeqFiles().get(seqFileIdx);
@@ -210,7 +280,7 @@ public class MergeMultiChunkTask {
 
     RestorableTsFileIOWriter mergeFileWriter = resource.getMergeFileWriter(currTsFile);
     for (Path path : currMergingPaths) {
-      MeasurementSchema schema = resource.getSchema(path);
+      MeasurementSchema schema = resource.getSchema(path, currTsFile);
       mergeFileWriter.addSchema(path, schema);
     }
     // merge unseq data with seq data in this file or small chunks in this file into a larger chunk
@@ -315,22 +385,27 @@ public class MergeMultiChunkTask {
    * 2. write SK to .merge.file without compressing when: is full merge & there isn't unclosed chunk
    * before & SK is big enough & SK isn't overflowed & SK isn't modified
    * <p>
-   * 3. other cases: need to unCompress the chunk and write 3.1 SK isn't overflowed 3.2 SK is
-   * overflowed
+   * 3. other cases: the pages of SK that neither overlap the unseq data nor are modified are
+   * copied to the chunk writer without being decoded, the other pages need to be uncompressed and
+   * written 3.1 SK isn't overflowed 3.2 SK is overflowed
    */
   @SuppressWarnings("java:S2445") // avoid writing the same writer concurrently
   private int mergeChunkV2(ChunkMetadata currMeta, boolean chunkOverflowed,
       boolean chunkTooSmall, Chunk chunk, int lastUnclosedChunkPoint, int pathIdx,
       TsFileIOWriter mergeFileWriter, IPointReader unseqReader,
-      IChunkWriter chunkWriter, TsFileResource currFile) throws IOException {
+      IChunkWriter chunkWriter, MeasurementSchema measurementSchema, TsFileResource currFile)
+      throws IOException {
 
     int unclosedChunkPoint = lastUnclosedChunkPoint;
     boolean chunkModified = (currMeta.getDeleteIntervalList() != null &&
         !currMeta.getDeleteIntervalList().isEmpty());
+    // the chunks of a cold file are rewritten until they are compressed as cold data
+    boolean chunkRecompressed = resource.isColdFile(currFile)
+        && chunk.getHeader().getCompressionType() != measurementSchema.getCompressor();
 
     // no need to write the chunk to .merge file
     if (!fullMerge && lastUnclosedChunkPoint == 0 && !chunkTooSmall && !chunkOverflowed
-        && !chunkModified) {
+        && !chunkModified && !chunkRecompressed) {
       unmergedChunkNum.incrementAndGet();
       mergeContext.getUnmergedChunkStartTimes().get(currFile).get(currMergingPaths.get(pathIdx))
           .add(currMeta.getStartTime());
@@ -339,21 +414,28 @@ public class MergeMultiChunkTask {
 
     // write SK to .merge.file without compressing
     if (fullMerge && lastUnclosedChunkPoint == 0 && !chunkTooSmall && !chunkOverflowed
-        && !chunkModified) {
+        && !chunkModified && !chunkRecompressed) {
       synchronized (mergeFileWriter) {
         mergeFileWriter.writeChunk(chunk, currMeta);
       }
+      mergeContext.incTotalByteCopied(chunk.getHeader().getDataSize());
       mergeContext.incTotalPointWritten(currMeta.getNumOfPoints());
       mergeContext.incTotalChunkWritten();
       mergedChunkNum.incrementAndGet();
       return 0;
     }
 
-    // 3.1 SK isn't overflowed, just uncompress and write sequence chunk
-    if (!chunkOverflowed) {
+    if (isSameFormat(chunk.getHeader(), measurementSchema)) {
+      unclosedChunkPoint += writeChunkByPages(chunk, chunkWriter, unseqReader,
+          currMeta.getEndTime(), pathIdx);
+      mergedChunkNum.incrementAndGet();
+    } else if (!chunkOverflowed) {
+      // 3.1 SK isn't overflowed, just uncompress and write sequence chunk
+      mergeContext.incTotalByteRewritten(chunk.getHeader().getDataSize());
       unclosedChunkPoint += MergeUtils.writeChunkWithoutUnseq(chunk, chunkWriter);
       mergedChunkNum.incrementAndGet();
     } else {
+      mergeContext.incTotalByteRewritten(chunk.getHeader().getDataSize());
       // 3.2 SK is overflowed, uncompress sequence chunk and merge with unseq chunk, then write
       unclosedChunkPoint += writeChunkWithUnseq(chunk, chunkWriter, unseqReader,
           currMeta.getEndTime(), pathIdx);
@@ -373,6 +455,64 @@ public class MergeMultiChunkTask {
     return unclosedChunkPoint;
   }
 
+  private static boolean isSameFormat(ChunkHeader chunkHeader,
+      MeasurementSchema measurementSchema) {
+    return chunkHeader.getDataType() == measurementSchema.getType()
+        && chunkHeader.getEncodingType() == measurementSchema.getEncodingType()
+        && chunkHeader.getCompressionType() == measurementSchema.getCompressor();
+  }
+
+  /**
+   * write the pages of a sequence chunk merged with the unseq data before chunkLimitTime. A page
+   * that overlaps no unseq data and has no deleted points is copied to the chunk writer as it is,
+   * only the other pages are uncompressed and decoded. The chunk must be of the same format as
+   * the chunk writer.
+   *
+   * @return the number of points written
+   */
+  private int writeChunkByPages(Chunk chunk, IChunkWriter chunkWriter, IPointReader unseqReader,
+      long chunkLimitTime, int pathIdx) throws IOException {
+    ChunkHeader chunkHeader = chunk.getHeader();
+    ByteBuffer chunkData = chunk.getData().duplicate();
+    List<TimeRange> deleteIntervalList = chunk.getDeleteIntervalList();
+    int cnt = 0;
+    while (chunkData.hasRemaining()) {
+      int headerStart = chunkData.position();
+      PageHeader pageHeader = PageHeader.deserializeFrom(chunkData, chunkHeader.getDataType());
+      int pageStart = chunkData.position();
+      int pageEnd = pageStart + pageHeader.getCompressedSize();
+      if (MergeUtils.isPageDeleted(pageHeader, deleteIntervalList)) {
+        chunkData.position(pageEnd);
+        continue;
+      }
+      // the unseq points before the page
+      cnt += writeRemainingUnseq(chunkWriter, unseqReader, pageHeader.getStartTime(), pathIdx);
+      boolean pageOverlapped = currTimeValuePairs[pathIdx] != null
+          && currTimeValuePairs[pathIdx].getTimestamp() <= pageHeader.getEndTime();
+      if (!pageOverlapped && !MergeUtils.isPageModified(pageHeader, deleteIntervalList)) {
+        ByteBuffer compressedPage = chunkData.slice();
+        compressedPage.limit(pageHeader.getCompressedSize());
+        chunkData.position(pageEnd);
+        // the points written before the page must be in the pages before it
+        chunkWriter.sealCurrentPage();
+        try {
+          chunkWriter.writePageHeaderAndDataIntoBuff(compressedPage, pageHeader);
+        } catch (PageException e) {
+          throw new IOException(e);
+        }
+        cnt += pageHeader.getNumOfValues();
+        mergeContext.incTotalByteCopied((long) pageEnd - headerStart);
+      } else {
+        BatchData batchData = MergeUtils.readPage(chunkHeader, pageHeader, chunkData,
+            deleteIntervalList);
+        cnt += mergeWriteBatch(batchData, chunkWriter, unseqReader, pathIdx);
+        mergeContext.incTotalByteRewritten((long) pageEnd - headerStart);
+      }
+    }
+    cnt += writeRemainingUnseq(chunkWriter, unseqReader, chunkLimitTime, pathIdx);
+    return cnt;
+  }
+
   private int writeRemainingUnseq(IChunkWriter chunkWriter,
       IPointReader unseqReader, long timeLimit, int pathIdx) throws IOException {
     int ptWritten = 0;
@@ -461,7 +601,12 @@ public class MergeMultiChunkTask {
 
     @Override
     public Void call() throws Exception {
-      mergeChunkHeap();
+      IOPriority previousPriority = IORateLimiter.setPriority(IOPriority.MERGE);
+      try {
+        mergeChunkHeap();
+      } finally {
+        IORateLimiter.setPriority(previousPriority);
+      }
       return null;
     }
 
@@ -470,8 +615,10 @@ public class MergeMultiChunkTask {
       while (!chunkIdxHeap.isEmpty()) {
         int pathIdx = chunkIdxHeap.poll();
         Path path = currMergingPaths.get(pathIdx);
-        MeasurementSchema measurementSchema = resource.getSchema(path);
-        IChunkWriter chunkWriter = resource.getChunkWriter(measurementSchema);
+        MeasurementSchema measurementSchema = resource.getSchema(path, currFile);
+        IChunkWriter chunkWriter = resource.isColdFile(currFile)
+            ? resource.getColdChunkWriter(measurementSchema)
+            : resource.getChunkWriter(measurementSchema);
         if (Thread.interrupted()) {
           Thread.currentThread().interrupt();
           return;
@@ -492,7 +639,7 @@ public class MergeMultiChunkTask {
           }
           ptWrittens[pathIdx] = mergeChunkV2(currMeta, chunkOverflowed, chunkTooSmall, chunk,
               ptWrittens[pathIdx], pathIdx, mergeFileWriter, unseqReaders[pathIdx], chunkWriter,
-              currFile);
+              measurementSchema, currFile);
 
           if (!isLastChunk) {
             metaListEntry.next();
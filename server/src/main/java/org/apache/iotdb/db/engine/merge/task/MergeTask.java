@@ -20,9 +20,12 @@
 package org.apache.iotdb.db.engine.merge.task;
 
 import org.apache.iotdb.db.engine.merge.manage.MergeContext;
+import org.apache.iotdb.db.engine.merge.manage.MergeManager;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
 import org.apache.iotdb.db.engine.merge.recover.MergeLogger;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.engine.throttle.IOPriority;
+import org.apache.iotdb.db.engine.throttle.IORateLimiter;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.metadata.mnode.MNode;
 import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
@@ -35,6 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
@@ -49,6 +53,8 @@ import java.util.concurrent.Callable;
 public class MergeTask implements Callable<Void> {
 
   public static final String MERGE_SUFFIX = ".merge";
+  // the copy of a seqFile that the merged chunks are appended to
+  public static final String MERGE_COPY_SUFFIX = ".merge.copy";
   private static final Logger logger = LoggerFactory.getLogger(MergeTask.class);
 
   MergeResource resource;
@@ -92,11 +98,19 @@ public class MergeTask implements Callable<Void> {
 
   @Override
   public Void call() throws Exception {
+    IOPriority previousPriority = IORateLimiter.setPriority(IOPriority.MERGE);
     try {
       doMerge();
+    } catch (InterruptedIOException e) {
+      // clear the interruption so the files can be cleaned up
+      Thread.interrupted();
+      logger.info("Merge task {} aborted", taskName);
+      abort();
     } catch (Exception e) {
       logger.error("Runtime exception in merge {}", taskName, e);
       abort();
+    } finally {
+      IORateLimiter.setPriority(previousPriority);
     }
     return null;
   }
@@ -122,18 +136,7 @@ public class MergeTask implements Callable<Void> {
 
     mergeLogger.logFiles(resource);
 
-    Set<String> devices = IoTDB.metaManager.getDevices(storageGroupName);
-    Map<Path, MeasurementSchema> measurementSchemaMap = new HashMap<>();
-    List<Path> unmergedSeries = new ArrayList<>();
-    for (String device : devices) {
-      MNode deviceNode = IoTDB.metaManager.getNodeByPath(device);
-      for (Entry<String, MNode> entry : deviceNode.getChildren().entrySet()) {
-        Path path = new Path(device, entry.getKey());
-        measurementSchemaMap.put(path, ((MeasurementMNode) entry.getValue()).getSchema());
-        unmergedSeries.add(path);
-      }
-    }
-    resource.setMeasurementSchemaMap(measurementSchemaMap);
+    List<Path> unmergedSeries = collectSeriesSchemas();
 
     mergeLogger.logMergeStart();
 
@@ -161,6 +164,8 @@ public class MergeTask implements Callable<Void> {
     states = States.CLEAN_UP;
     fileTask = null;
     cleanUp(true);
+    MergeManager.getINSTANCE().recordCompaction(totalFileSize,
+        System.currentTimeMillis() - startTime);
     if (logger.isInfoEnabled()) {
       double elapsedTime = (double) (System.currentTimeMillis() - startTime) / 1000.0;
       double byteRate = totalFileSize / elapsedTime / 1024 / 1024;
@@ -169,12 +174,38 @@ public class MergeTask implements Callable<Void> {
       double fileRate =
           (resource.getSeqFiles().size() + resource.getUnseqFiles().size()) / elapsedTime;
       double ptRate = mergeContext.getTotalPointWritten() / elapsedTime;
+      long byteCopied = mergeContext.getTotalByteCopied();
+      long byteRewritten = mergeContext.getTotalByteRewritten();
+      double copiedRatio = byteCopied + byteRewritten == 0 ? 0.0
+          : (double) byteCopied / (byteCopied + byteRewritten);
       logger.info("{} ends after {}s, byteRate: {}MB/s, seriesRate {}/s, chunkRate: {}/s, "
-              + "fileRate: {}/s, ptRate: {}/s",
-          taskName, elapsedTime, byteRate, seriesRate, chunkRate, fileRate, ptRate);
+              + "fileRate: {}/s, ptRate: {}/s, copied/rewritten bytes: {}/{}, copiedRatio: {}",
+          taskName, elapsedTime, byteRate, seriesRate, chunkRate, fileRate, ptRate, byteCopied,
+          byteRewritten, copiedRatio);
     }
   }
 
+  /**
+   * Put the schemas of the series in the storage group into the resource.
+   *
+   * @return the series in the storage group
+   */
+  List<Path> collectSeriesSchemas() throws MetadataException {
+    Set<String> devices = IoTDB.metaManager.getDevices(storageGroupName);
+    Map<Path, MeasurementSchema> measurementSchemaMap = new HashMap<>();
+    List<Path> series = new ArrayList<>();
+    for (String device : devices) {
+      MNode deviceNode = IoTDB.metaManager.getNodeByPath(device);
+      for (Entry<String, MNode> entry : deviceNode.getChildren().entrySet()) {
+        Path path = new Path(device, entry.getKey());
+        measurementSchemaMap.put(path, ((MeasurementMNode) entry.getValue()).getSchema());
+        series.add(path);
+      }
+    }
+    resource.setMeasurementSchemaMap(measurementSchemaMap);
+    return series;
+  }
+
   void cleanUp(boolean executeCallback) throws IOException {
     logger.info("{} is cleaning up", taskName);
 
@@ -188,6 +219,8 @@ public class MergeTask implements Callable<Void> {
     for (TsFileResource seqFile : resource.getSeqFiles()) {
       File mergeFile = new File(seqFile.getTsFilePath() + MERGE_SUFFIX);
       mergeFile.delete();
+      File copyFile = new File(seqFile.getTsFilePath() + MERGE_COPY_SUFFIX);
+      copyFile.delete();
       seqFile.setMerging(false);
     }
     for (TsFileResource unseqFile : resource.getUnseqFiles()) {
@@ -20,10 +20,11 @@
 package org.apache.iotdb.db.engine.merge.task;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
@@ -94,8 +95,10 @@ public class RecoverMergeTask extends MergeTask {
     }
   }
 
-  private void resumeAfterFilesLogged(boolean continueMerge) throws IOException {
+  private void resumeAfterFilesLogged(boolean continueMerge)
+      throws IOException, MetadataException {
     if (continueMerge) {
+      collectSeriesSchemas();
       resumeMergeProgress();
       calculateConcurrentSeriesNum();
       if (concurrentMergeSeriesNum == 0) {
@@ -103,8 +106,12 @@ public class RecoverMergeTask extends MergeTask {
             + "increase the budget or disable continueMergeAfterReboot");
       }
 
+      List<Path> unmergedPaths = analyzer.getUnmergedPaths();
+      unmergedPaths.removeAll(analyzer.getUnfinishedPaths());
       MergeMultiChunkTask mergeChunkTask = new MergeMultiChunkTask(mergeContext, taskName, mergeLogger, resource,
-          fullMerge, analyzer.getUnmergedPaths(), concurrentMergeSeriesNum, storageGroupName);
+          fullMerge, unmergedPaths, concurrentMergeSeriesNum, storageGroupName);
+      mergeChunkTask.setResumedPaths(analyzer.getUnfinishedPaths(),
+          analyzer.getUnfinishedSeqFileIdx());
       analyzer.setUnmergedPaths(null);
       mergeChunkTask.mergeSeries();
 
@@ -116,6 +123,10 @@ public class RecoverMergeTask extends MergeTask {
   }
 
   private void resumeAfterAllTsMerged(boolean continueMerge) throws IOException {
+    // the merged files whose ends are logged are complete and must not be cleaned up, so the
+    // replacement of their seqFiles is finished whether the merge is continued or not
+    new MergeFileTask(taskName, mergeContext, mergeLogger, resource, Collections.emptyList())
+        .replaceCompletedFiles(analyzer.getCompletedFiles());
     if (continueMerge) {
       resumeMergeProgress();
       MergeFileTask mergeFileTask = new MergeFileTask(taskName, mergeContext, mergeLogger, resource,
@@ -192,7 +203,11 @@ public class RecoverMergeTask extends MergeTask {
       RestorableTsFileIOWriter mergeFileWriter = resource.getMergeFileWriter(tsFileResource);
       mergeFileWriter.makeMetadataVisible();
       mergeContext.getUnmergedChunkStartTimes().put(tsFileResource, new HashMap<>());
-      List<Path> pathsToRecover = analyzer.getMergedPaths();
+      List<Path> pathsToRecover = new ArrayList<>(analyzer.getMergedPaths());
+      if (fileCnt <= analyzer.getUnfinishedSeqFileIdx()) {
+        // the unfinished batch has been merged into this file
+        pathsToRecover.addAll(analyzer.getUnfinishedPaths());
+      }
       int cnt = 0;
       double progress = 0.0;
       for(Path path : pathsToRecover) {
@@ -221,6 +236,12 @@ public class RecoverMergeTask extends MergeTask {
         mergeFileWriter.getVisibleMetadataList(path.getDevice(), path.getMeasurement(), null);
     mergeContext.getMergedChunkCnt().compute(tsFileResource, (k, v) -> v == null ?
         mergeFileChunks.size() : v + mergeFileChunks.size());
+    // the unseq data merged into the file may be earlier than the file
+    for (ChunkMetadata mergedChunk : mergeFileChunks) {
+      if (mergedChunk.getStartTime() < tsFileResource.getStartTime(path.getDevice())) {
+        tsFileResource.putStartTime(path.getDevice(), mergedChunk.getStartTime());
+      }
+    }
     int seqChunkIndex = 0;
     int mergeChunkIndex = 0;
     int unmergedCnt = 0;
@@ -242,6 +263,12 @@ public class RecoverMergeTask extends MergeTask {
         mergeChunkIndex ++;
       }
     }
+    // the seqChunks after the last mergedChunk are unmerged
+    for (; seqChunkIndex < seqFileChunks.size(); seqChunkIndex++) {
+      unmergedCnt ++;
+      mergeContext.getUnmergedChunkStartTimes().get(tsFileResource).get(path)
+          .add(seqFileChunks.get(seqChunkIndex).getStartTime());
+    }
     int finalUnmergedCnt = unmergedCnt;
     mergeContext.getUnmergedChunkCnt().compute(tsFileResource, (k, v) -> v == null ?
         finalUnmergedCnt : v + finalUnmergedCnt);
@@ -253,8 +280,8 @@ public class RecoverMergeTask extends MergeTask {
       File file = entry.getKey();
       Long lastPosition = entry.getValue();
       if (file.exists() && file.length() != lastPosition) {
-        try (FileInputStream fileInputStream = new FileInputStream(file)) {
-          FileChannel channel = fileInputStream.getChannel();
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file, true)) {
+          FileChannel channel = fileOutputStream.getChannel();
           channel.truncate(lastPosition);
           channel.close();
         }
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * CompactDeviceIndexMap is the read-only device -> index map of a sealed TsFileResource. The
+ * devices are kept as their ids in DeviceIdDictionary: the id of the device of each index, and
+ * the ids sorted with their indexes to find the index of a device by binary search, which is 12
+ * bytes for a device instead of an entry of a hash map.
+ */
+class CompactDeviceIndexMap extends AbstractMap<String, Integer> {
+
+  private static final DeviceIdDictionary dictionary = DeviceIdDictionary.getInstance();
+
+  // the device id of each index
+  private final int[] deviceIds;
+  private final int[] sortedIds;
+  // the index of each id in sortedIds
+  private final int[] sortedIndexes;
+
+  /**
+   * @param deviceToIndex whose indexes are from 0 to its size - 1
+   */
+  CompactDeviceIndexMap(Map<String, Integer> deviceToIndex) {
+    int size = deviceToIndex.size();
+    deviceIds = new int[size];
+    long[] idAndIndexes = new long[size];
+    for (Entry<String, Integer> entry : deviceToIndex.entrySet()) {
+      int id = dictionary.getOrCreateId(entry.getKey());
+      int index = entry.getValue();
+      deviceIds[index] = id;
+      idAndIndexes[index] = ((long) id << 32) | index;
+    }
+    Arrays.sort(idAndIndexes);
+    sortedIds = new int[size];
+    sortedIndexes = new int[size];
+    for (int i = 0; i < size; i++) {
+      sortedIds[i] = (int) (idAndIndexes[i] >>> 32);
+      sortedIndexes[i] = (int) idAndIndexes[i];
+    }
+  }
+
+  private int indexOf(Object device) {
+    if (!(device instanceof String)) {
+      return -1;
+    }
+    int id = dictionary.getId((String) device);
+    if (id < 0) {
+      return -1;
+    }
+    int pos = Arrays.binarySearch(sortedIds, id);
+    return pos < 0 ? -1 : sortedIndexes[pos];
+  }
+
+  @Override
+  public int size() {
+    return deviceIds.length;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Integer get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : index;
+  }
+
+  @Override
+  public Integer put(String key, Integer value) {
+    throw new UnsupportedOperationException("the device index of a sealed TsFile is read-only");
+  }
+
+  @Override
+  public Integer remove(Object key) {
+    throw new UnsupportedOperationException("the device index of a sealed TsFile is read-only");
+  }
+
+  /**
+   * the entries are iterated in the order of the indexes
+   */
+  @Override
+  public Set<Entry<String, Integer>> entrySet() {
+    return new AbstractSet<Entry<String, Integer>>() {
+      @Override
+      public Iterator<Entry<String, Integer>> iterator() {
+        return new Iterator<Entry<String, Integer>>() {
+          private int index = 0;
+
+          @Override
+          public boolean hasNext() {
+            return index < deviceIds.length;
+          }
+
+          @Override
+          public Entry<String, Integer> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            Entry<String, Integer> entry = new SimpleImmutableEntry<>(
+                dictionary.getDevice(deviceIds[index]), index);
+            index++;
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return deviceIds.length;
+      }
+    };
+  }
+}
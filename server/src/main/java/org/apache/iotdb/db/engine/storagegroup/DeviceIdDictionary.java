@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DeviceIdDictionary gives each device an int id that is shared by the TsFileResources of all
+ * storage groups, so a sealed TsFileResource keeps the ids of its devices instead of a map of the
+ * device names, and each device name is kept only once. An id is never reused or removed, as a
+ * device is usually written again after its files are merged or deleted.
+ */
+class DeviceIdDictionary {
+
+  private static final int INIT_CAPACITY = 1024;
+
+  private final Map<String, Integer> deviceToId = new ConcurrentHashMap<>();
+  private volatile String[] idToDevice = new String[INIT_CAPACITY];
+  private int size = 0;
+
+  private DeviceIdDictionary() {
+    // singleton
+  }
+
+  static DeviceIdDictionary getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * @return the id of the device, which is assigned if the device has none. The given name
+   * replaces an equal one kept before, so the names returned by getDevice() follow the ones
+   * interned by MManager even after the metadata is reloaded.
+   */
+  int getOrCreateId(String device) {
+    Integer id = deviceToId.get(device);
+    if (id != null) {
+      if (idToDevice[id] != device) {
+        idToDevice[id] = device;
+      }
+      return id;
+    }
+    synchronized (this) {
+      id = deviceToId.get(device);
+      if (id != null) {
+        return id;
+      }
+      if (size == idToDevice.length) {
+        idToDevice = Arrays.copyOf(idToDevice, size * 2);
+      }
+      // the device is published before its id, so getDevice() always sees the device of an id
+      idToDevice[size] = device;
+      deviceToId.put(device, size);
+      return size++;
+    }
+  }
+
+  /**
+   * @return the id of the device, or -1 if the device has none
+   */
+  int getId(String device) {
+    Integer id = deviceToId.get(device);
+    return id == null ? -1 : id;
+  }
+
+  String getDevice(int id) {
+    return idToDevice[id];
+  }
+
+  private static class InstanceHolder {
+
+    private static final DeviceIdDictionary INSTANCE = new DeviceIdDictionary();
+
+    private InstanceHolder() {
+    }
+  }
+}
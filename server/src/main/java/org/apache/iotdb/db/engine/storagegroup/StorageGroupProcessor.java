@@ -19,6 +19,7 @@
 package org.apache.iotdb.db.engine.storagegroup;
 
 import static org.apache.iotdb.db.conf.IoTDBConstant.FILE_NAME_SEPARATOR;
+import static org.apache.iotdb.db.engine.merge.task.MergeTask.MERGE_COPY_SUFFIX;
 import static org.apache.iotdb.db.engine.merge.task.MergeTask.MERGE_SUFFIX;
 import static org.apache.iotdb.db.engine.storagegroup.TsFileResource.TEMP_SUFFIX;
 import static org.apache.iotdb.tsfile.common.constant.TsFileConstant.TMP_SUFFIX;
@@ -43,9 +44,16 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.concurrent.IoTDBThreadPoolFactory;
+import org.apache.iotdb.db.concurrent.ThreadName;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
@@ -54,6 +62,8 @@ import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
 import org.apache.iotdb.db.engine.flush.TsFileFlushPolicy;
 import org.apache.iotdb.db.engine.merge.manage.MergeManager;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
+import org.apache.iotdb.db.engine.merge.recover.MergeLogger;
+import org.apache.iotdb.db.engine.merge.schedule.PartitionCompactionStatus;
 import org.apache.iotdb.db.engine.merge.selector.IMergeFileSelector;
 import org.apache.iotdb.db.engine.merge.selector.MaxFileMergeFileSelector;
 import org.apache.iotdb.db.engine.merge.selector.MaxSeriesMergeFileSelector;
@@ -85,6 +95,7 @@ import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.control.QueryFileManager;
 import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.service.StartupPhaseTimer;
 import org.apache.iotdb.db.service.UpgradeSevice;
 import org.apache.iotdb.db.utils.CopyOnReadLinkedList;
 import org.apache.iotdb.db.writelog.recover.TsFileRecoverPerformer;
@@ -175,12 +186,17 @@ public class StorageGroupProcessor {
         return rangeCompare == 0 ? compareFileName(o1.getTsFile(), o2.getTsFile()) : rangeCompare;
       });
 
+  // indexes sequenceFileTreeSet by time ranges, see getFileResourceListForQuery()
+  private TsFileIntervalIndex seqFileIndex = new TsFileIntervalIndex();
+
   // upgrading sequence TsFile resource list
   private List<TsFileResource> upgradeSeqFileList = new LinkedList<>();
 
   private CopyOnReadLinkedList<TsFileProcessor> closingSequenceTsFileProcessor = new CopyOnReadLinkedList<>();
   // includes sealed and unsealed unSequence TsFiles
   private List<TsFileResource> unSequenceFileList = new ArrayList<>();
+  // indexes unSequenceFileList by time ranges
+  private TsFileIntervalIndex unseqFileIndex = new TsFileIntervalIndex();
 
   // upgrading unsequence TsFile resource list
   private List<TsFileResource> upgradeUnseqFileList = new LinkedList<>();
@@ -219,7 +235,9 @@ public class StorageGroupProcessor {
    * deletion/update such that after they are persisted, the order of insertions, deletions and
    * updates can be re-determined.
    */
-  private HashMap<Long, VersionController> timePartitionIdVersionControllerMap = new HashMap<>();
+  // accessed concurrently by the recovery of the partitions
+  private Map<Long, VersionController> timePartitionIdVersionControllerMap =
+      new ConcurrentHashMap<>();
   /**
    * mergeLock is to be used in the merge process. Concurrent queries, deletions and merges may
    * result in losing some deletion in the merged new file, so a lock is necessary.
@@ -311,12 +329,10 @@ public class StorageGroupProcessor {
           tmpSeqTsFiles);
       Map<Long, List<TsFileResource>> partitionTmpUnseqTsFiles = splitResourcesByPartition(
           tmpUnseqTsFiles);
-      for (List<TsFileResource> value : partitionTmpSeqTsFiles.values()) {
-        recoverTsFiles(value, vmSeqFiles, true);
-      }
-      for (List<TsFileResource> value : partitionTmpUnseqTsFiles.values()) {
-        recoverTsFiles(value, vmUnseqFiles, false);
-      }
+      long recoverStartTime = System.currentTimeMillis();
+      recoverTsFiles(partitionTmpSeqTsFiles, partitionTmpUnseqTsFiles, vmSeqFiles, vmUnseqFiles);
+      StartupPhaseTimer.getInstance()
+          .record("recover TsFiles", System.currentTimeMillis() - recoverStartTime);
 
       for (TsFileResource resource : sequenceFileTreeSet) {
         long partitionNum = resource.getTimePartition();
@@ -341,8 +357,11 @@ public class StorageGroupProcessor {
           unSequenceFileList, storageGroupSysDir.getPath(), this::mergeEndAction, taskName,
           IoTDBDescriptor.getInstance().getConfig().isForceFullMerge(), storageGroupName);
       logger.info("{} a RecoverMergeTask {} starts...", storageGroupName, taskName);
+      long recoverMergeStartTime = System.currentTimeMillis();
       recoverMergeTask
           .recoverMerge(IoTDBDescriptor.getInstance().getConfig().isContinueMergeAfterReboot());
+      StartupPhaseTimer.getInstance()
+          .record("recover merges", System.currentTimeMillis() - recoverMergeStartTime);
       if (!IoTDBDescriptor.getInstance().getConfig().isContinueMergeAfterReboot()) {
         mergingMods.delete();
       }
@@ -456,7 +475,7 @@ public class StorageGroupProcessor {
 
       // some TsFiles were going to be replaced by the merged files when the system crashed and
       // the process was interrupted before the merged files could be named
-      continueFailedRenames(fileFolder, MERGE_SUFFIX);
+      continueFailedMergeRenames(fileFolder);
 
       File[] oldTsfileArray = fsFactory
           .listFilesBySuffix(fileFolder.getAbsolutePath(), TSFILE_SUFFIX);
@@ -515,7 +534,7 @@ public class StorageGroupProcessor {
 
             // some TsFiles were going to be replaced by the merged files when the system crashed and
             // the process was interrupted before the merged files could be named
-            continueFailedRenames(partitionFolder, MERGE_SUFFIX);
+            continueFailedMergeRenames(partitionFolder);
 
             Collections.addAll(tsFiles,
                 fsFactory.listFilesBySuffix(partitionFolder.getAbsolutePath(), TSFILE_SUFFIX));
@@ -590,100 +609,223 @@ public class StorageGroupProcessor {
   }
 
   private void continueFailedRenames(File fileFolder, String suffix) {
+    continueFailedRenames(fileFolder, suffix, false);
+  }
+
+  /**
+   * @param keepUnrenamed whether to keep the temp files whose origin files exist
+   */
+  private void continueFailedRenames(File fileFolder, String suffix, boolean keepUnrenamed) {
     File[] files = fsFactory.listFilesBySuffix(fileFolder.getAbsolutePath(), suffix);
     if (files != null) {
       for (File tempResource : files) {
         File originResource = fsFactory.getFile(tempResource.getPath().replace(suffix, ""));
-        if (originResource.exists()) {
-          tempResource.delete();
-        } else {
+        if (!originResource.exists()) {
           tempResource.renameTo(originResource);
+        } else if (!keepUnrenamed) {
+          tempResource.delete();
         }
       }
     }
   }
 
-  private void recoverTsFiles(List<TsFileResource> tsFiles,
-      Map<String, List<List<TsFileResource>>> vmFiles, boolean isSeq)
+  /**
+   * The merge files and the copies of the seqFiles being merged are kept if there is an
+   * unfinished merge, which will be resumed or cleaned by the RecoverMergeTask.
+   */
+  private void continueFailedMergeRenames(File fileFolder) {
+    boolean mergeUnfinished = SystemFileFactory.INSTANCE
+        .getFile(storageGroupSysDir, MergeLogger.MERGE_LOG_NAME).exists();
+    continueFailedRenames(fileFolder, MERGE_SUFFIX, mergeUnfinished);
+    continueFailedRenames(fileFolder, MERGE_COPY_SUFFIX, mergeUnfinished);
+  }
+
+  /**
+   * Recover the TsFiles of all partitions concurrently. A sealed TsFile, which has its resource
+   * file and is not the last file of its partition, is recovered by a task of its own, while the
+   * other TsFiles of a partition are recovered in order by one task, as they may redo their WALs
+   * with the version controller of the partition. The recovered TsFiles are added to the file
+   * lists in the order of the files, whichever task finishes first.
+   */
+  private void recoverTsFiles(Map<Long, List<TsFileResource>> partitionSeqFiles,
+      Map<Long, List<TsFileResource>> partitionUnseqFiles,
+      Map<String, List<List<TsFileResource>>> vmSeqFiles,
+      Map<String, List<List<TsFileResource>>> vmUnseqFiles)
       throws StorageGroupProcessorException {
-    for (int i = 0; i < tsFiles.size(); i++) {
-      TsFileResource tsFileResource = tsFiles.get(i);
-      long timePartitionId = tsFileResource.getTimePartition();
-
-      List<List<TsFileResource>> defaultVmTsFileResources = new ArrayList<>();
-      defaultVmTsFileResources.add(new ArrayList<>());
-
-      List<List<TsFileResource>> vmTsFileResources = vmFiles
-          .getOrDefault(tsFileResource.getTsFilePath(), defaultVmTsFileResources);
-      TsFileRecoverPerformer recoverPerformer = new TsFileRecoverPerformer(
-          storageGroupName + FILE_NAME_SEPARATOR,
-          getVersionControllerByTimePartitionId(timePartitionId), tsFileResource, true,
-          i == tsFiles.size() - 1, vmTsFileResources);
-
-      RestorableTsFileIOWriter writer;
-      List<List<RestorableTsFileIOWriter>> vmWriters;
-      try {
-        Pair<RestorableTsFileIOWriter, List<List<RestorableTsFileIOWriter>>> pair = recoverPerformer
-            .recover();
-        writer = pair.left;
-        vmWriters = pair.right;
-        vmWriters.forEach(
-            subVmWriters -> subVmWriters.forEach(RestorableTsFileIOWriter::makeMetadataVisible));
-      } catch (StorageGroupProcessorException e) {
-        logger.warn("Skip TsFile: {} because of error in recover: ", tsFileResource.getTsFilePath(),
-            e);
-        continue;
+    // the files failed to recover are not in it and are skipped
+    Set<TsFileResource> recoveredFiles = ConcurrentHashMap.newKeySet();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (List<TsFileResource> tsFiles : partitionSeqFiles.values()) {
+      addRecoverTasks(tsFiles, vmSeqFiles, true, recoveredFiles, tasks);
+    }
+    for (List<TsFileResource> tsFiles : partitionUnseqFiles.values()) {
+      addRecoverTasks(tsFiles, vmUnseqFiles, false, recoveredFiles, tasks);
+    }
+    runRecoverTasks(tasks);
+
+    for (List<TsFileResource> tsFiles : partitionSeqFiles.values()) {
+      for (TsFileResource tsFileResource : tsFiles) {
+        if (recoveredFiles.contains(tsFileResource)) {
+          sequenceFileTreeSet.add(tsFileResource);
+          seqFileIndex.add(tsFileResource);
+          if (tsFileResource.getProcessor() != null) {
+            workSequenceTsFileProcessors
+                .put(tsFileResource.getTimePartition(), tsFileResource.getProcessor());
+          }
+        }
       }
-      if (i != tsFiles.size() - 1 || !writer.canWrite()) {
-        if (IoTDBDescriptor.getInstance().getConfig().isEnableVm() && writer.canWrite()) {
-          // vm is enable and the writer is not the last one but it can still be written
-          // we still need to recover it
-          TsFileProcessor tsFileProcessor = new TsFileProcessor(storageGroupName, tsFileResource,
-              vmTsFileResources, getVersionControllerByTimePartitionId(timePartitionId),
-              this::closeUnsealedTsFileProcessorCallBack, this::updateLatestFlushTimeCallback,
-              isSeq, writer, vmWriters);
-          tsFileProcessor.recover();
-          // end the file if it is not the last file
-          try {
-            writer.endFile();
-            tsFileResource.cleanCloseFlag();
-            tsFileResource.serialize();
-          } catch (IOException e) {
-            throw new StorageGroupProcessorException(e);
+    }
+    for (List<TsFileResource> tsFiles : partitionUnseqFiles.values()) {
+      for (TsFileResource tsFileResource : tsFiles) {
+        if (recoveredFiles.contains(tsFileResource)) {
+          unSequenceFileList.add(tsFileResource);
+          unseqFileIndex.add(tsFileResource);
+          if (tsFileResource.getProcessor() != null) {
+            workUnsequenceTsFileProcessors
+                .put(tsFileResource.getTimePartition(), tsFileResource.getProcessor());
           }
+        }
+      }
+    }
+  }
 
+  private void addRecoverTasks(List<TsFileResource> tsFiles,
+      Map<String, List<List<TsFileResource>>> vmFiles, boolean isSeq,
+      Set<TsFileResource> recoveredFiles, List<Callable<Void>> tasks) {
+    TsFileResource lastFile = tsFiles.get(tsFiles.size() - 1);
+    List<TsFileResource> unsealedFiles = new ArrayList<>();
+    for (TsFileResource tsFileResource : tsFiles) {
+      if (tsFileResource != lastFile && tsFileResource.resourceFileExists()) {
+        tasks.add(() -> {
+          if (recoverTsFile(tsFileResource, vmFiles, isSeq, false)) {
+            recoveredFiles.add(tsFileResource);
+          }
+          return null;
+        });
+      } else {
+        unsealedFiles.add(tsFileResource);
+      }
+    }
+    tasks.add(() -> {
+      for (TsFileResource tsFileResource : unsealedFiles) {
+        if (recoverTsFile(tsFileResource, vmFiles, isSeq, tsFileResource == lastFile)) {
+          recoveredFiles.add(tsFileResource);
         }
-        tsFileResource.setClosed(true);
-      } else if (writer.canWrite()) {
-        // the last file is not closed, continue writing to in
-        TsFileProcessor tsFileProcessor;
-        if (isSeq) {
-          tsFileProcessor = new TsFileProcessor(storageGroupName, tsFileResource,
-              vmTsFileResources, getVersionControllerByTimePartitionId(timePartitionId),
-              this::closeUnsealedTsFileProcessorCallBack, this::updateLatestFlushTimeCallback,
-              true, writer, vmWriters);
-          tsFileProcessor.recover();
-          workSequenceTsFileProcessors.put(timePartitionId, tsFileProcessor);
-          tsFileResource.setProcessor(tsFileProcessor);
-        } else {
-          tsFileProcessor = new TsFileProcessor(storageGroupName, tsFileResource,
-              vmTsFileResources, getVersionControllerByTimePartitionId(timePartitionId),
-              this::closeUnsealedTsFileProcessorCallBack, this::unsequenceFlushCallback, false,
-              writer, vmWriters);
-          workUnsequenceTsFileProcessors.put(timePartitionId, tsFileProcessor);
-          tsFileResource.setProcessor(tsFileProcessor);
-          tsFileProcessor.recover();
+      }
+      return null;
+    });
+  }
+
+  private void runRecoverTasks(List<Callable<Void>> tasks) throws StorageGroupProcessorException {
+    int threadNum = Math.min(tasks.size(),
+        IoTDBDescriptor.getInstance().getConfig().getConcurrentRecoveryThread());
+    if (threadNum <= 1) {
+      for (Callable<Void> task : tasks) {
+        try {
+          task.call();
+        } catch (StorageGroupProcessorException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new StorageGroupProcessorException(e);
         }
-        tsFileResource.removeResourceFile();
-        tsFileProcessor.setTimeRangeId(timePartitionId);
-        writer.makeMetadataVisible();
       }
+      return;
+    }
+
+    ExecutorService recoveryPool = IoTDBThreadPoolFactory
+        .newFixedThreadPool(threadNum, ThreadName.TSFILE_RECOVERY.getName() + "-"
+            + storageGroupName);
+    try {
+      for (Future<Void> future : recoveryPool.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageGroupProcessorException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StorageGroupProcessorException) {
+        throw (StorageGroupProcessorException) e.getCause();
+      }
+      throw new StorageGroupProcessorException(e);
+    } finally {
+      recoveryPool.shutdownNow();
+    }
+  }
+
+  /**
+   * @return false if the file is skipped because of an error in recover
+   */
+  private boolean recoverTsFile(TsFileResource tsFileResource,
+      Map<String, List<List<TsFileResource>>> vmFiles, boolean isSeq, boolean isLastFile)
+      throws StorageGroupProcessorException {
+    long timePartitionId = tsFileResource.getTimePartition();
+
+    List<List<TsFileResource>> defaultVmTsFileResources = new ArrayList<>();
+    defaultVmTsFileResources.add(new ArrayList<>());
+
+    List<List<TsFileResource>> vmTsFileResources = vmFiles
+        .getOrDefault(tsFileResource.getTsFilePath(), defaultVmTsFileResources);
+    TsFileRecoverPerformer recoverPerformer = new TsFileRecoverPerformer(
+        storageGroupName + FILE_NAME_SEPARATOR,
+        getVersionControllerByTimePartitionId(timePartitionId), tsFileResource, true,
+        isLastFile, vmTsFileResources);
+
+    RestorableTsFileIOWriter writer;
+    List<List<RestorableTsFileIOWriter>> vmWriters;
+    try {
+      Pair<RestorableTsFileIOWriter, List<List<RestorableTsFileIOWriter>>> pair = recoverPerformer
+          .recover();
+      writer = pair.left;
+      vmWriters = pair.right;
+      vmWriters.forEach(
+          subVmWriters -> subVmWriters.forEach(RestorableTsFileIOWriter::makeMetadataVisible));
+    } catch (StorageGroupProcessorException e) {
+      logger.warn("Skip TsFile: {} because of error in recover: ", tsFileResource.getTsFilePath(),
+          e);
+      return false;
+    }
+    if (!isLastFile || !writer.canWrite()) {
+      if (IoTDBDescriptor.getInstance().getConfig().isEnableVm() && writer.canWrite()) {
+        // vm is enable and the writer is not the last one but it can still be written
+        // we still need to recover it
+        TsFileProcessor tsFileProcessor = new TsFileProcessor(storageGroupName, tsFileResource,
+            vmTsFileResources, getVersionControllerByTimePartitionId(timePartitionId),
+            this::closeUnsealedTsFileProcessorCallBack, this::updateLatestFlushTimeCallback,
+            isSeq, writer, vmWriters);
+        tsFileProcessor.recover();
+        // end the file if it is not the last file
+        try {
+          writer.endFile();
+          tsFileResource.cleanCloseFlag();
+          tsFileResource.serialize();
+        } catch (IOException e) {
+          throw new StorageGroupProcessorException(e);
+        }
+
+      }
+      tsFileResource.setClosed(true);
+    } else if (writer.canWrite()) {
+      // the last file is not closed, continue writing to in, it is put into the working
+      // processors by the caller
+      TsFileProcessor tsFileProcessor;
       if (isSeq) {
-        sequenceFileTreeSet.add(tsFileResource);
+        tsFileProcessor = new TsFileProcessor(storageGroupName, tsFileResource,
+            vmTsFileResources, getVersionControllerByTimePartitionId(timePartitionId),
+            this::closeUnsealedTsFileProcessorCallBack, this::updateLatestFlushTimeCallback,
+            true, writer, vmWriters);
       } else {
-        unSequenceFileList.add(tsFileResource);
+        tsFileProcessor = new TsFileProcessor(storageGroupName, tsFileResource,
+            vmTsFileResources, getVersionControllerByTimePartitionId(timePartitionId),
+            this::closeUnsealedTsFileProcessorCallBack, this::unsequenceFlushCallback, false,
+            writer, vmWriters);
       }
+      tsFileResource.setProcessor(tsFileProcessor);
+      tsFileProcessor.recover();
+      tsFileResource.removeResourceFile();
+      tsFileProcessor.setTimeRangeId(timePartitionId);
+      writer.makeMetadataVisible();
     }
+    return true;
   }
 
   // ({systemTime}-{versionNum}-{mergeNum}.tsfile)
@@ -978,10 +1120,10 @@ public class StorageGroupProcessor {
     try {
       if (sequence) {
         tsFileProcessor = getOrCreateTsFileProcessorIntern(timeRangeId,
-            workSequenceTsFileProcessors, sequenceFileTreeSet, true);
+            workSequenceTsFileProcessors, sequenceFileTreeSet, seqFileIndex, true);
       } else {
         tsFileProcessor = getOrCreateTsFileProcessorIntern(timeRangeId,
-            workUnsequenceTsFileProcessors, unSequenceFileList, false);
+            workUnsequenceTsFileProcessors, unSequenceFileList, unseqFileIndex, false);
       }
     } catch (DiskSpaceInsufficientException e) {
       logger.error(
@@ -1003,11 +1145,12 @@ public class StorageGroupProcessor {
    * @param timeRangeId            time partition range
    * @param tsFileProcessorTreeMap tsFileProcessorTreeMap
    * @param fileList               file list to add new processor
+   * @param fileIndex              index of the file list
    * @param sequence               whether is sequence or not
    */
   private TsFileProcessor getOrCreateTsFileProcessorIntern(long timeRangeId,
       TreeMap<Long, TsFileProcessor> tsFileProcessorTreeMap,
-      Collection<TsFileResource> fileList,
+      Collection<TsFileResource> fileList, TsFileIntervalIndex fileIndex,
       boolean sequence)
       throws IOException, DiskSpaceInsufficientException {
 
@@ -1033,6 +1176,7 @@ public class StorageGroupProcessor {
         TsFileProcessor newProcessor = createTsFileProcessor(sequence, timeRangeId);
         tsFileProcessorTreeMap.put(timeRangeId, newProcessor);
         fileList.add(newProcessor.getTsFileResource());
+        fileIndex.add(newProcessor.getTsFileResource());
         res = newProcessor;
       } else {
         res = tsFileProcessorTreeMap.get(timeRangeId);
@@ -1187,6 +1331,8 @@ public class StorageGroupProcessor {
       this.workUnsequenceTsFileProcessors.clear();
       this.sequenceFileTreeSet.clear();
       this.unSequenceFileList.clear();
+      this.seqFileIndex.clear();
+      this.unseqFileIndex.clear();
       this.partitionLatestFlushedTimeForEachDevice.clear();
       this.globalLatestFlushedTimeForEachDevice.clear();
       this.latestTimeForEachDevice.clear();
@@ -1260,8 +1406,10 @@ public class StorageGroupProcessor {
           }
           if (isSeq) {
             sequenceFileTreeSet.remove(resource);
+            seqFileIndex.remove(resource);
           } else {
             unSequenceFileList.remove(resource);
+            unseqFileIndex.remove(resource);
           }
         } finally {
           resource.writeUnlock();
@@ -1339,9 +1487,11 @@ public class StorageGroupProcessor {
     insertLock.readLock().lock();
     mergeLock.readLock().lock();
     try {
-      List<TsFileResource> seqResources = getFileResourceListForQuery(sequenceFileTreeSet,
+      List<TsFileResource> seqResources = getFileResourceListForQuery(
+          getFileCandidates(sequenceFileTreeSet, seqFileIndex, timeFilter),
           upgradeSeqFileList, deviceId, measurementId, context, timeFilter, true);
-      List<TsFileResource> unseqResources = getFileResourceListForQuery(unSequenceFileList,
+      List<TsFileResource> unseqResources = getFileResourceListForQuery(
+          getFileCandidates(unSequenceFileList, unseqFileIndex, timeFilter),
           upgradeUnseqFileList, deviceId, measurementId, context, timeFilter, false);
       QueryDataSource dataSource = new QueryDataSource(new Path(deviceId, measurementId),
           seqResources, unseqResources);
@@ -1370,6 +1520,29 @@ public class StorageGroupProcessor {
   }
 
 
+  /**
+   * @param tsFileResources the sequence or unsequence files, which are not changed when the
+   *                        insertLock or the mergeLock is read-locked
+   * @return the files whose time ranges may satisfy the filter, in the order of tsFileResources
+   */
+  private Collection<TsFileResource> getFileCandidates(Collection<TsFileResource> tsFileResources,
+      TsFileIntervalIndex fileIndex, Filter timeFilter) {
+    if (timeFilter == null) {
+      return tsFileResources;
+    }
+    if (fileIndex.size() != tsFileResources.size()) {
+      // the index should never miss a file, or the data in the file cannot be queried
+      logger.warn("{} the file index has {} files while there are {} files, rebuild it",
+          storageGroupName, fileIndex.size(), tsFileResources.size());
+      fileIndex.rebuild(tsFileResources);
+    }
+    List<TsFileResource> candidates = fileIndex.query(timeFilter);
+    if (tsFileResources == sequenceFileTreeSet) {
+      candidates.sort(sequenceFileTreeSet.comparator());
+    }
+    return candidates;
+  }
+
   /**
    * @param tsFileResources includes sealed and unsealed tsfile resources
    * @return fill unsealed tsfile resources with memory data and ChunkMetadataList of data in disk
@@ -1569,6 +1742,7 @@ public class StorageGroupProcessor {
 
       MNode measurementNode = manager.getChild(node, measurementId);
       if (measurementNode != null) {
+        manager.pollPersistedLastCache((MeasurementMNode) measurementNode);
         TimeValuePair lastPair = ((MeasurementMNode) measurementNode).getCachedLast();
         if (lastPair != null && startTime <= lastPair.getTimestamp()
             && lastPair.getTimestamp() <= endTime) {
@@ -1653,8 +1827,11 @@ public class StorageGroupProcessor {
     }
     //closingSequenceTsFileProcessor is a thread safety class.
     if (closingSequenceTsFileProcessor.contains(tsFileProcessor)) {
+      // index the file with its own time range instead of the whole one
+      seqFileIndex.add(tsFileProcessor.getTsFileResource());
       closingSequenceTsFileProcessor.remove(tsFileProcessor);
     } else {
+      unseqFileIndex.add(tsFileProcessor.getTsFileResource());
       closingUnSequenceTsFileProcessor.remove(tsFileProcessor);
     }
     logger.info("signal closing storage group condition in {}", storageGroupName);
@@ -1698,9 +1875,11 @@ public class StorageGroupProcessor {
     mergeLock.writeLock().lock();
     if (tsFileResource.isSeq()) {
       sequenceFileTreeSet.addAll(upgradedResources);
+      seqFileIndex.addAll(upgradedResources);
       upgradeSeqFileList.remove(tsFileResource);
     } else {
       unSequenceFileList.addAll(upgradedResources);
+      unseqFileIndex.addAll(upgradedResources);
       upgradeUnseqFileList.remove(tsFileResource);
     }
     mergeLock.writeLock().unlock();
@@ -1731,67 +1910,175 @@ public class StorageGroupProcessor {
   public void merge(boolean fullMerge) {
     writeLock();
     try {
-      if (isMerging) {
-        if (logger.isInfoEnabled()) {
-          logger.info("{} Last merge is ongoing, currently consumed time: {}ms", storageGroupName,
-              (System.currentTimeMillis() - mergeStartTime));
+      merge(fullMerge, sequenceFileTreeSet, unSequenceFileList);
+    } finally {
+      writeUnlock();
+    }
+  }
+
+  /**
+   * merge the files of a time partition, which is how the CompactionScheduler merges.
+   *
+   * @return whether a merge is submitted
+   */
+  public boolean merge(boolean fullMerge, long timePartition) {
+    writeLock();
+    try {
+      List<TsFileResource> seqFiles = new ArrayList<>();
+      for (TsFileResource resource : sequenceFileTreeSet) {
+        if (resource.getTimePartition() == timePartition) {
+          seqFiles.add(resource);
+        }
+      }
+      List<TsFileResource> unseqFiles = new ArrayList<>();
+      for (TsFileResource resource : unSequenceFileList) {
+        if (resource.getTimePartition() == timePartition) {
+          unseqFiles.add(resource);
         }
-        return;
       }
-      logger.info("{} will close all files for starting a merge (fullmerge = {})", storageGroupName,
-          fullMerge);
+      return merge(fullMerge, seqFiles, unseqFiles);
+    } finally {
+      writeUnlock();
+    }
+  }
 
-      if (unSequenceFileList.isEmpty() || sequenceFileTreeSet.isEmpty()) {
-        logger.info("{} no files to be merged", storageGroupName);
-        return;
+  /**
+   * the caller must hold the write lock.
+   */
+  private boolean merge(boolean fullMerge, Collection<TsFileResource> seqFiles,
+      List<TsFileResource> unseqFiles) {
+    if (isMerging) {
+      if (logger.isInfoEnabled()) {
+        logger.info("{} Last merge is ongoing, currently consumed time: {}ms", storageGroupName,
+            (System.currentTimeMillis() - mergeStartTime));
       }
+      return false;
+    }
+    logger.info("{} will close all files for starting a merge (fullmerge = {})", storageGroupName,
+        fullMerge);
 
-      long budget = IoTDBDescriptor.getInstance().getConfig().getMergeMemoryBudget();
-      long timeLowerBound = System.currentTimeMillis() - dataTTL;
-      MergeResource mergeResource = new MergeResource(sequenceFileTreeSet, unSequenceFileList,
-          timeLowerBound);
+    if (unseqFiles.isEmpty() || seqFiles.isEmpty()) {
+      logger.info("{} no files to be merged", storageGroupName);
+      return false;
+    }
 
-      IMergeFileSelector fileSelector = getMergeFileSelector(budget, mergeResource);
-      try {
-        List[] mergeFiles = fileSelector.select();
-        if (mergeFiles.length == 0) {
-          logger.info("{} cannot select merge candidates under the budget {}", storageGroupName,
-              budget);
-          return;
-        }
-        // avoid pending tasks holds the metadata and streams
-        mergeResource.clear();
-        String taskName = storageGroupName + "-" + System.currentTimeMillis();
-        // do not cache metadata until true candidates are chosen, or too much metadata will be
-        // cached during selection
-        mergeResource.setCacheDeviceMeta(true);
-
-        for (TsFileResource tsFileResource : mergeResource.getSeqFiles()) {
-          tsFileResource.setMerging(true);
-        }
-        for (TsFileResource tsFileResource : mergeResource.getUnseqFiles()) {
-          tsFileResource.setMerging(true);
-        }
+    long budget = IoTDBDescriptor.getInstance().getConfig().getMergeMemoryBudget();
+    long timeLowerBound = System.currentTimeMillis() - dataTTL;
+    MergeResource mergeResource = new MergeResource(seqFiles, unseqFiles, timeLowerBound);
 
-        MergeTask mergeTask = new MergeTask(mergeResource, storageGroupSysDir.getPath(),
-            this::mergeEndAction, taskName, fullMerge, fileSelector.getConcurrentMergeNum(),
-            storageGroupName);
-        mergingModification = new ModificationFile(
-            storageGroupSysDir + File.separator + MERGING_MODIFICATION_FILE_NAME);
-        MergeManager.getINSTANCE().submitMainTask(mergeTask);
-        if (logger.isInfoEnabled()) {
-          logger.info("{} submits a merge task {}, merging {} seqFiles, {} unseqFiles",
-              storageGroupName, taskName, mergeFiles[0].size(), mergeFiles[1].size());
-        }
-        isMerging = true;
-        mergeStartTime = System.currentTimeMillis();
+    IMergeFileSelector fileSelector = getMergeFileSelector(budget, mergeResource);
+    try {
+      List[] mergeFiles = fileSelector.select();
+      if (mergeFiles.length == 0) {
+        logger.info("{} cannot select merge candidates under the budget {}", storageGroupName,
+            budget);
+        return false;
+      }
+      // avoid pending tasks holds the metadata and streams
+      mergeResource.clear();
+      String taskName = storageGroupName + "-" + System.currentTimeMillis();
+      // do not cache metadata until true candidates are chosen, or too much metadata will be
+      // cached during selection
+      mergeResource.setCacheDeviceMeta(true);
 
-      } catch (MergeException | IOException e) {
-        logger.error("{} cannot select file for merge", storageGroupName, e);
+      for (TsFileResource tsFileResource : mergeResource.getSeqFiles()) {
+        tsFileResource.setMerging(true);
       }
+      for (TsFileResource tsFileResource : mergeResource.getUnseqFiles()) {
+        tsFileResource.setMerging(true);
+      }
+
+      MergeTask mergeTask = new MergeTask(mergeResource, storageGroupSysDir.getPath(),
+          this::mergeEndAction, taskName, fullMerge, fileSelector.getConcurrentMergeNum(),
+          storageGroupName);
+      mergingModification = new ModificationFile(
+          storageGroupSysDir + File.separator + MERGING_MODIFICATION_FILE_NAME);
+      MergeManager.getINSTANCE().submitMainTask(mergeTask);
+      if (logger.isInfoEnabled()) {
+        logger.info("{} submits a merge task {}, merging {} seqFiles, {} unseqFiles",
+            storageGroupName, taskName, mergeFiles[0].size(), mergeFiles[1].size());
+      }
+      isMerging = true;
+      mergeStartTime = System.currentTimeMillis();
+      return true;
+    } catch (MergeException | IOException e) {
+      logger.error("{} cannot select file for merge", storageGroupName, e);
+      return false;
+    }
+  }
+
+  /**
+   * @return the compaction status of each time partition, of the closed files that are not being
+   * merged
+   */
+  public List<PartitionCompactionStatus> getCompactionStatus() {
+    // the locks are only held to copy the file lists, and the time ranges are taken from the
+    // files instead of the devices, so neither the inserts are blocked nor the indexes are loaded
+    List<TsFileResource> seqFiles;
+    List<TsFileResource> unseqFiles;
+    Long workingPartition;
+    insertLock.readLock().lock();
+    mergeLock.readLock().lock();
+    try {
+      seqFiles = new ArrayList<>(sequenceFileTreeSet);
+      unseqFiles = new ArrayList<>(unSequenceFileList);
+      workingPartition = workSequenceTsFileProcessors.isEmpty() ? null
+          : workSequenceTsFileProcessors.lastKey();
     } finally {
-      writeUnlock();
+      insertLock.readLock().unlock();
+      mergeLock.readLock().unlock();
     }
+
+    TreeMap<Long, PartitionCompactionStatus> statuses = new TreeMap<>();
+    // time partition -> the time ranges of the sequence files
+    Map<Long, List<long[]>> seqRanges = new HashMap<>();
+    for (TsFileResource resource : seqFiles) {
+      if (!resource.isClosed() || resource.isMerging()) {
+        continue;
+      }
+      long partition = resource.getTimePartition();
+      statuses.computeIfAbsent(partition,
+          p -> new PartitionCompactionStatus(storageGroupName, p))
+          .addSeqFile(resource.getTsFileSize());
+      seqRanges.computeIfAbsent(partition, p -> new ArrayList<>())
+          .add(new long[]{resource.getFileStartTime(), resource.getFileEndTime()});
+    }
+    for (TsFileResource resource : unseqFiles) {
+      if (!resource.isClosed() || resource.isMerging()) {
+        continue;
+      }
+      long partition = resource.getTimePartition();
+      statuses.computeIfAbsent(partition,
+          p -> new PartitionCompactionStatus(storageGroupName, p))
+          .addUnseqFile(resource.getTsFileSize(),
+              overlaps(resource, seqRanges.getOrDefault(partition, Collections.emptyList())));
+    }
+    if (!statuses.isEmpty()) {
+      long latestPartition = statuses.lastKey();
+      if (workingPartition != null) {
+        latestPartition = Math.max(latestPartition, workingPartition);
+      }
+      PartitionCompactionStatus latest = statuses.get(latestPartition);
+      if (latest != null) {
+        latest.setLatest(true);
+      }
+    }
+    return new ArrayList<>(statuses.values());
+  }
+
+  /**
+   * @return whether the time range of the unsequence file overlaps that of any sequence file, which
+   * may overestimate the overlapping as the devices are not compared
+   */
+  private boolean overlaps(TsFileResource unseqFile, List<long[]> seqRanges) {
+    long startTime = unseqFile.getFileStartTime();
+    long endTime = unseqFile.getFileEndTime();
+    for (long[] range : seqRanges) {
+      if (startTime <= range[1] && endTime >= range[0]) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private IMergeFileSelector getMergeFileSelector(long budget, MergeResource resource) {
@@ -1810,6 +2097,7 @@ public class StorageGroupProcessor {
     mergeLock.writeLock().lock();
     try {
       unSequenceFileList.removeAll(unseqFiles);
+      unseqFileIndex.removeAll(unseqFiles);
     } finally {
       mergeLock.writeLock().unlock();
     }
@@ -1868,6 +2156,18 @@ public class StorageGroupProcessor {
       return;
     }
 
+    // the time ranges of the seqFiles may be enlarged by the merged data, so they are indexed
+    // again before the unseqFiles are removed
+    mergeLock.writeLock().lock();
+    try {
+      for (TsFileResource seqFile : seqFiles) {
+        if (sequenceFileTreeSet.contains(seqFile)) {
+          seqFileIndex.add(seqFile);
+        }
+      }
+    } finally {
+      mergeLock.writeLock().unlock();
+    }
     removeUnseqFiles(unseqFiles);
 
     for (int i = 0; i < seqFiles.size(); i++) {
@@ -2184,6 +2484,7 @@ public class StorageGroupProcessor {
       }
     }
     iterator.remove();
+    (isSeq ? seqFileIndex : unseqFileIndex).remove(tsFileResource);
     tsFileResource.remove();
   }
 
@@ -2298,6 +2599,7 @@ public class StorageGroupProcessor {
           return false;
         }
         unSequenceFileList.add(tsFileResource);
+        unseqFileIndex.add(tsFileResource);
         logger.info("Load tsfile in unsequence list, move file from {} to {}",
             syncedTsFile.getAbsolutePath(), targetFile.getAbsolutePath());
         break;
@@ -2312,6 +2614,7 @@ public class StorageGroupProcessor {
           return false;
         }
         sequenceFileTreeSet.add(tsFileResource);
+        seqFileIndex.add(tsFileResource);
         logger.info("Load tsfile in sequence list, move file from {} to {}",
             syncedTsFile.getAbsolutePath(), targetFile.getAbsolutePath());
         break;
@@ -2377,6 +2680,7 @@ public class StorageGroupProcessor {
         if (sequenceResource.getTsFile().getName().equals(tsfieToBeDeleted.getName())) {
           tsFileResourceToBeDeleted = sequenceResource;
           sequenceIterator.remove();
+          seqFileIndex.remove(sequenceResource);
           break;
         }
       }
@@ -2387,6 +2691,7 @@ public class StorageGroupProcessor {
           if (unsequenceResource.getTsFile().getName().equals(tsfieToBeDeleted.getName())) {
             tsFileResourceToBeDeleted = unsequenceResource;
             unsequenceIterator.remove();
+            unseqFileIndex.remove(unsequenceResource);
             break;
           }
         }
@@ -2435,6 +2740,7 @@ public class StorageGroupProcessor {
         if (sequenceResource.getTsFile().getName().equals(fileToBeMoved.getName())) {
           tsFileResourceToBeMoved = sequenceResource;
           sequenceIterator.remove();
+          seqFileIndex.remove(sequenceResource);
           break;
         }
       }
@@ -2445,6 +2751,7 @@ public class StorageGroupProcessor {
           if (unsequenceResource.getTsFile().getName().equals(fileToBeMoved.getName())) {
             tsFileResourceToBeMoved = unsequenceResource;
             unsequenceIterator.remove();
+            unseqFileIndex.remove(unsequenceResource);
             break;
           }
         }
@@ -2564,8 +2871,8 @@ public class StorageGroupProcessor {
       removePartitions(filter, workUnsequenceTsFileProcessors.entrySet());
 
       // remove data files
-      removePartitions(filter, sequenceFileTreeSet.iterator());
-      removePartitions(filter, unSequenceFileList.iterator());
+      removePartitions(filter, sequenceFileTreeSet.iterator(), seqFileIndex);
+      removePartitions(filter, unSequenceFileList.iterator(), unseqFileIndex);
 
     } finally {
       insertLock.writeLock().unlock();
@@ -2589,12 +2896,14 @@ public class StorageGroupProcessor {
   }
 
   //may remove the iterator's data
-  private void removePartitions(TimePartitionFilter filter, Iterator<TsFileResource> iterator) {
+  private void removePartitions(TimePartitionFilter filter, Iterator<TsFileResource> iterator,
+      TsFileIntervalIndex fileIndex) {
     while (iterator.hasNext()) {
       TsFileResource tsFileResource = iterator.next();
       if (filter.satisfy(storageGroupName, tsFileResource.getTimePartition())) {
         tsFileResource.remove();
         iterator.remove();
+        fileIndex.remove(tsFileResource);
       }
     }
   }
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.iotdb.tsfile.read.filter.basic.Filter;
+
+/**
+ * TsFileIntervalIndex indexes the TsFiles of a storage group by their time ranges, the min start
+ * time and the max end time of all their devices, so the files that may satisfy a time filter are
+ * found without checking every file. It is an AVL tree ordered by the start times, in which each
+ * node also keeps the min start time and the max end time of its subtree, and a subtree is skipped
+ * if the filter can not be satisfied within its time range.
+ *
+ * The time range of a file in the index must cover its data. An unsealed file, whose time range
+ * keeps changing, is indexed with the whole time range, and it is indexed again with its own when
+ * it is closed. A file whose time range is changed, e.g., by a merge, is also indexed again.
+ */
+class TsFileIntervalIndex {
+
+  private Node root;
+  private final Map<TsFileResource, Node> nodes = new IdentityHashMap<>();
+  // the order in which the files are added, a file indexed again keeps its order
+  private long nextOrder = 0;
+
+  /**
+   * add the file, or update its time range if it is already added
+   */
+  synchronized void add(TsFileResource resource) {
+    Node old = nodes.remove(resource);
+    long order;
+    if (old != null) {
+      root = delete(root, old.startTime, old.order);
+      order = old.order;
+    } else {
+      order = nextOrder++;
+    }
+    Node node = resource.isClosed()
+        ? new Node(resource, resource.getFileStartTime(), resource.getFileEndTime(), order)
+        : new Node(resource, Long.MIN_VALUE, Long.MAX_VALUE, order);
+    root = insert(root, node);
+    nodes.put(resource, node);
+  }
+
+  synchronized void addAll(Iterable<TsFileResource> resources) {
+    for (TsFileResource resource : resources) {
+      add(resource);
+    }
+  }
+
+  synchronized void remove(TsFileResource resource) {
+    Node node = nodes.remove(resource);
+    if (node != null) {
+      root = delete(root, node.startTime, node.order);
+    }
+  }
+
+  synchronized void removeAll(Iterable<TsFileResource> resources) {
+    for (TsFileResource resource : resources) {
+      remove(resource);
+    }
+  }
+
+  synchronized void clear() {
+    root = null;
+    nodes.clear();
+  }
+
+  /**
+   * index the given files only, in their order
+   */
+  synchronized void rebuild(Iterable<TsFileResource> resources) {
+    clear();
+    addAll(resources);
+  }
+
+  synchronized int size() {
+    return nodes.size();
+  }
+
+  /**
+   * @param timeFilter null to get all files
+   * @return the files whose time ranges may satisfy the filter, in the order they are added
+   */
+  synchronized List<TsFileResource> query(Filter timeFilter) {
+    List<Node> result = new ArrayList<>();
+    query(root, timeFilter, result);
+    result.sort((a, b) -> Long.compare(a.order, b.order));
+    List<TsFileResource> resources = new ArrayList<>(result.size());
+    for (Node node : result) {
+      resources.add(node.resource);
+    }
+    return resources;
+  }
+
+  private void query(Node node, Filter timeFilter, List<Node> result) {
+    if (node == null
+        || timeFilter != null && !timeFilter.satisfyStartEndTime(node.minStartTime,
+        node.maxEndTime)) {
+      return;
+    }
+    query(node.left, timeFilter, result);
+    if (timeFilter == null || timeFilter.satisfyStartEndTime(node.startTime, node.endTime)) {
+      result.add(node);
+    }
+    query(node.right, timeFilter, result);
+  }
+
+  private static int compare(long startTime, long order, Node node) {
+    int cmp = Long.compare(startTime, node.startTime);
+    return cmp != 0 ? cmp : Long.compare(order, node.order);
+  }
+
+  private static Node insert(Node node, Node newNode) {
+    if (node == null) {
+      return newNode;
+    }
+    if (compare(newNode.startTime, newNode.order, node) < 0) {
+      node.left = insert(node.left, newNode);
+    } else {
+      node.right = insert(node.right, newNode);
+    }
+    return balance(node);
+  }
+
+  private static Node delete(Node node, long startTime, long order) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = compare(startTime, order, node);
+    if (cmp < 0) {
+      node.left = delete(node.left, startTime, order);
+    } else if (cmp > 0) {
+      node.right = delete(node.right, startTime, order);
+    } else {
+      if (node.left == null) {
+        return node.right;
+      }
+      if (node.right == null) {
+        return node.left;
+      }
+      // replace the node with the min node of its right subtree
+      Node min = node.right;
+      while (min.left != null) {
+        min = min.left;
+      }
+      min.right = deleteMin(node.right);
+      min.left = node.left;
+      node = min;
+    }
+    return balance(node);
+  }
+
+  private static Node deleteMin(Node node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = deleteMin(node.left);
+    return balance(node);
+  }
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static void update(Node node) {
+    node.height = Math.max(height(node.left), height(node.right)) + 1;
+    node.minStartTime = node.startTime;
+    node.maxEndTime = node.endTime;
+    if (node.left != null) {
+      node.minStartTime = Math.min(node.minStartTime, node.left.minStartTime);
+      node.maxEndTime = Math.max(node.maxEndTime, node.left.maxEndTime);
+    }
+    if (node.right != null) {
+      node.minStartTime = Math.min(node.minStartTime, node.right.minStartTime);
+      node.maxEndTime = Math.max(node.maxEndTime, node.right.maxEndTime);
+    }
+  }
+
+  private static Node balance(Node node) {
+    update(node);
+    int diff = height(node.left) - height(node.right);
+    if (diff > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (diff < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private static Node rotateRight(Node node) {
+    Node left = node.left;
+    node.left = left.right;
+    left.right = node;
+    update(node);
+    update(left);
+    return left;
+  }
+
+  private static Node rotateLeft(Node node) {
+    Node right = node.right;
+    node.right = right.left;
+    right.left = node;
+    update(node);
+    update(right);
+    return right;
+  }
+
+  private static class Node {
+
+    private final TsFileResource resource;
+    private final long startTime;
+    private final long endTime;
+    private final long order;
+
+    private Node left;
+    private Node right;
+    private int height = 1;
+    // of the subtree
+    private long minStartTime;
+    private long maxEndTime;
+
+    private Node(TsFileResource resource, long startTime, long endTime, long order) {
+      this.resource = resource;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.order = order;
+      this.minStartTime = startTime;
+      this.maxEndTime = endTime;
+    }
+  }
+}
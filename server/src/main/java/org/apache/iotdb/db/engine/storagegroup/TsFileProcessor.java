@@ -63,6 +63,8 @@ import org.apache.iotdb.db.engine.modification.ModificationFile;
 import org.apache.iotdb.db.engine.querycontext.ReadOnlyMemChunk;
 import org.apache.iotdb.db.engine.storagegroup.StorageGroupProcessor.CloseTsFileCallBack;
 import org.apache.iotdb.db.engine.storagegroup.StorageGroupProcessor.UpdateEndTimeCallBack;
+import org.apache.iotdb.db.engine.throttle.IOPriority;
+import org.apache.iotdb.db.engine.throttle.IORateLimiter;
 import org.apache.iotdb.db.engine.version.VersionController;
 import org.apache.iotdb.db.exception.TsFileProcessorException;
 import org.apache.iotdb.db.exception.WriteProcessException;
@@ -1157,6 +1159,7 @@ public class TsFileProcessor {
     @Override
     public void run() {
       long startTimeMillis = System.currentTimeMillis();
+      IOPriority previousPriority = IORateLimiter.setPriority(IOPriority.MERGE);
       try {
         logger.info("{}: {} start to filter vm merge condition", storageGroupName,
             tsFileResource.getTsFile().getName());
@@ -1247,6 +1250,7 @@ public class TsFileProcessor {
       } catch (Exception e) {
         logger.error("Error occurred in Vm Merge thread", e);
       } finally {
+        IORateLimiter.setPriority(previousPriority);
         // reset the merge working state to false
         mergeWorking = false;
         logger.info("{}: {} vm merge end time consumption: {} ms", storageGroupName,
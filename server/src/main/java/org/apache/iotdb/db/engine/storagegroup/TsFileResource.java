@@ -63,20 +63,29 @@ public class TsFileResource {
   protected static final int INIT_ARRAY_SIZE = 64;
 
   /**
-   * start times array.
+   * the devices of the file and their start and end times. It is null when the file is sealed and
+   * its index is unloaded to save memory, and is loaded again from the resource file when it is
+   * used, see TsFileResourceIndexCache.
    */
-  protected long[] startTimes;
+  private volatile TimeIndex timeIndex;
 
-  /**
-   * end times array. The values in this array are Long.MIN_VALUE if it's an unsealed sequence
-   * tsfile
-   */
-  protected long[] endTimes;
+  // whether the index of the sealed file is modified after it is serialized, if so, the index can
+  // not be unloaded
+  private volatile boolean indexModified = false;
 
-  /**
-   * device -> index of start times array and end times array
-   */
-  protected Map<String, Integer> deviceToIndex;
+  // the entry of this resource in TsFileResourceIndexCache, set under the lock of this resource
+  private volatile TsFileResourceIndexCache.IndexEntry indexEntry;
+
+  // how many users need the index in memory because the resource file is being moved
+  private int indexPins = 0;
+
+  // the min start time and max end time of all devices of the sealed file, kept after the index
+  // is unloaded, see getFileTimeRange()
+  private volatile long[] fileTimeRange;
+
+  // increased after the index of the sealed file is updated, so that a time range computed from
+  // the index before the update is not cached
+  private volatile int indexVersion = 0;
 
   public TsFileProcessor getProcessor() {
     return processor;
@@ -149,9 +158,7 @@ public class TsFileResource {
 
   public TsFileResource(TsFileResource other) throws IOException {
     this.file = other.file;
-    this.deviceToIndex = other.deviceToIndex;
-    this.startTimes = other.startTimes;
-    this.endTimes = other.endTimes;
+    this.timeIndex = other.getTimeIndex();
     this.processor = other.processor;
     this.modFile = other.modFile;
     this.closed = other.closed;
@@ -170,11 +177,7 @@ public class TsFileResource {
    */
   public TsFileResource(File file) {
     this.file = file;
-    this.deviceToIndex = new ConcurrentHashMap<>();
-    this.startTimes = new long[INIT_ARRAY_SIZE];
-    this.endTimes = new long[INIT_ARRAY_SIZE];
-    initTimes(startTimes, Long.MAX_VALUE);
-    initTimes(endTimes, Long.MIN_VALUE);
+    this.timeIndex = new TimeIndex();
   }
 
   /**
@@ -182,11 +185,7 @@ public class TsFileResource {
    */
   public TsFileResource(File file, TsFileProcessor processor) {
     this.file = file;
-    this.deviceToIndex = new ConcurrentHashMap<>();
-    this.startTimes = new long[INIT_ARRAY_SIZE];
-    this.endTimes = new long[INIT_ARRAY_SIZE];
-    initTimes(startTimes, Long.MAX_VALUE);
-    initTimes(endTimes, Long.MIN_VALUE);
+    this.timeIndex = new TimeIndex();
     this.processor = processor;
   }
 
@@ -198,9 +197,7 @@ public class TsFileResource {
       List<ChunkMetadata> chunkMetadataList, TsFileResource originTsFileResource)
       throws IOException {
     this.file = file;
-    this.deviceToIndex = deviceToIndex;
-    this.startTimes = startTimes;
-    this.endTimes = endTimes;
+    this.timeIndex = new TimeIndex(deviceToIndex, startTimes, endTimes);
     this.chunkMetadataList = chunkMetadataList;
     this.readOnlyMemChunk = readOnlyMemChunk;
     this.originTsFileResource = originTsFileResource;
@@ -239,22 +236,30 @@ public class TsFileResource {
     }
   }
 
-  protected void initTimes(long[] times, long defaultTime) {
+  protected static void initTimes(long[] times, long defaultTime) {
     Arrays.fill(times, defaultTime);
   }
 
+  /**
+   * the devices are written in the order of their indexes, so the indexes stay the same when the
+   * index of a sealed file is unloaded and loaded again
+   */
   public void serialize() throws IOException {
+    // a modification during the serialization sets it again
+    indexModified = false;
+    TimeIndex index = getTimeIndex();
+    String[] devices = index.getDevicesByIndex();
     try (OutputStream outputStream = fsFactory.getBufferedOutputStream(
         file + RESOURCE_SUFFIX + TEMP_SUFFIX)) {
-      ReadWriteIOUtils.write(this.deviceToIndex.size(), outputStream);
-      for (Entry<String, Integer> entry : this.deviceToIndex.entrySet()) {
-        ReadWriteIOUtils.write(entry.getKey(), outputStream);
-        ReadWriteIOUtils.write(startTimes[entry.getValue()], outputStream);
+      ReadWriteIOUtils.write(devices.length, outputStream);
+      for (int i = 0; i < devices.length; i++) {
+        ReadWriteIOUtils.write(devices[i], outputStream);
+        ReadWriteIOUtils.write(index.startTimes[i], outputStream);
       }
-      ReadWriteIOUtils.write(this.deviceToIndex.size(), outputStream);
-      for (Entry<String, Integer> entry : this.deviceToIndex.entrySet()) {
-        ReadWriteIOUtils.write(entry.getKey(), outputStream);
-        ReadWriteIOUtils.write(endTimes[entry.getValue()], outputStream);
+      ReadWriteIOUtils.write(devices.length, outputStream);
+      for (int i = 0; i < devices.length; i++) {
+        ReadWriteIOUtils.write(devices[i], outputStream);
+        ReadWriteIOUtils.write(index.endTimes[i], outputStream);
       }
 
       if (historicalVersions != null) {
@@ -271,35 +276,19 @@ public class TsFileResource {
     }
     File src = fsFactory.getFile(file + RESOURCE_SUFFIX + TEMP_SUFFIX);
     File dest = fsFactory.getFile(file + RESOURCE_SUFFIX);
-    dest.delete();
-    fsFactory.moveFile(src, dest);
+    // the index is not unloaded or loaded while the resource file is missing
+    synchronized (this) {
+      dest.delete();
+      fsFactory.moveFile(src, dest);
+    }
   }
 
   public void deserialize() throws IOException {
     try (InputStream inputStream = fsFactory.getBufferedInputStream(
         file + RESOURCE_SUFFIX)) {
-      int size = ReadWriteIOUtils.readInt(inputStream);
-      Map<String, Integer> deviceMap = new HashMap<>();
-      long[] startTimesArray = new long[size];
-      long[] endTimesArray = new long[size];
-      for (int i = 0; i < size; i++) {
-        String path = ReadWriteIOUtils.readString(inputStream);
-        long time = ReadWriteIOUtils.readLong(inputStream);
-        // To reduce the String number in memory, 
-        // use the deviceId from MManager instead of the deviceId read from disk
-        path = IoTDB.metaManager.getDeviceId(path);
-        deviceMap.put(path, i);
-        startTimesArray[i] = time;
-      }
-      size = ReadWriteIOUtils.readInt(inputStream);
-      for (int i = 0; i < size; i++) {
-        ReadWriteIOUtils.readString(inputStream); // String path
-        long time = ReadWriteIOUtils.readLong(inputStream);
-        endTimesArray[i] = time;
-      }
-      this.startTimes = startTimesArray;
-      this.endTimes = endTimesArray;
-      this.deviceToIndex = deviceMap;
+      this.timeIndex = readTimeIndex(inputStream);
+      this.indexModified = false;
+      timeIndexUpdated();
 
       if (inputStream.available() > 0) {
         int versionSize = ReadWriteIOUtils.readInt(inputStream);
@@ -321,6 +310,146 @@ public class TsFileResource {
     }
   }
 
+  private TimeIndex readTimeIndex(InputStream inputStream) throws IOException {
+    int size = ReadWriteIOUtils.readInt(inputStream);
+    Map<String, Integer> deviceMap = new HashMap<>();
+    long[] startTimesArray = new long[size];
+    long[] endTimesArray = new long[size];
+    for (int i = 0; i < size; i++) {
+      String path = ReadWriteIOUtils.readString(inputStream);
+      long time = ReadWriteIOUtils.readLong(inputStream);
+      // To reduce the String number in memory,
+      // use the deviceId from MManager instead of the deviceId read from disk
+      path = IoTDB.metaManager.getDeviceId(path);
+      deviceMap.put(path, i);
+      startTimesArray[i] = time;
+    }
+    size = ReadWriteIOUtils.readInt(inputStream);
+    for (int i = 0; i < size; i++) {
+      ReadWriteIOUtils.readString(inputStream); // String path
+      long time = ReadWriteIOUtils.readLong(inputStream);
+      endTimesArray[i] = time;
+    }
+    return new TimeIndex(new CompactDeviceIndexMap(deviceMap), startTimesArray, endTimesArray);
+  }
+
+  private TimeIndex getTimeIndex() {
+    TimeIndex index = timeIndex;
+    if (index == null) {
+      return loadTimeIndex();
+    }
+    TsFileResourceIndexCache.IndexEntry entry = indexEntry;
+    if (entry != null) {
+      entry.touch();
+    }
+    return index;
+  }
+
+  private TimeIndex loadTimeIndex() {
+    TimeIndex index;
+    synchronized (this) {
+      index = timeIndex;
+      if (index != null) {
+        return index;
+      }
+      if (!resourceFileExists()) {
+        // the resource file is only missing when the file is removed, as the index is pinned
+        // while its resource file is moved, so the file is taken as having no device
+        logger.warn("The resource file of {} is removed, the file is taken as empty", file);
+        timeIndex = new TimeIndex();
+        return timeIndex;
+      }
+      try (InputStream inputStream = fsFactory.getBufferedInputStream(
+          file + RESOURCE_SUFFIX)) {
+        index = readTimeIndex(inputStream);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot load the device index of " + file, e);
+      }
+      timeIndex = index;
+    }
+    // not in the lock of this resource, as the cache locks the resources it unloads
+    TsFileResourceIndexCache.getInstance().put(this, index.size());
+    return index;
+  }
+
+  /**
+   * @return the index to update, which is marked modified if the file is sealed, so it will not be
+   * unloaded before it is serialized
+   */
+  private TimeIndex getTimeIndexForUpdate() {
+    while (true) {
+      TimeIndex index = getTimeIndex();
+      if (!closed) {
+        return index;
+      }
+      synchronized (this) {
+        if (timeIndex == index) {
+          indexModified = true;
+          return index;
+        }
+      }
+    }
+  }
+
+  /**
+   * replace the index of the sealed file with a compact one, which can be unloaded by
+   * TsFileResourceIndexCache
+   */
+  private void compactTimeIndex() {
+    TimeIndex index;
+    synchronized (this) {
+      index = timeIndex;
+      if (index == null) {
+        return;
+      }
+      if (!index.isCompact()) {
+        index = index.compact();
+        timeIndex = index;
+      }
+    }
+    TsFileResourceIndexCache.getInstance().put(this, index.size());
+  }
+
+  /**
+   * @return whether the index is unloaded, which is only done when the file is sealed and not
+   * merging, and its resource file has the same index
+   */
+  synchronized boolean unloadTimeIndex() {
+    if (!closed || deleted || isMerging || indexModified || originTsFileResource != null
+        || indexPins > 0 || timeIndex == null || !resourceFileExists()) {
+      return false;
+    }
+    timeIndex = null;
+    return true;
+  }
+
+  /**
+   * Load the index and keep it in memory until unpinTimeIndex() is called, which is needed before
+   * the resource file is moved, as the index can not be loaded meanwhile.
+   */
+  public void pinTimeIndex() {
+    synchronized (this) {
+      indexPins++;
+    }
+    getTimeIndex();
+  }
+
+  public synchronized void unpinTimeIndex() {
+    indexPins--;
+  }
+
+  boolean isTimeIndexLoaded() {
+    return timeIndex != null;
+  }
+
+  TsFileResourceIndexCache.IndexEntry getIndexEntry() {
+    return indexEntry;
+  }
+
+  void setIndexEntry(TsFileResourceIndexCache.IndexEntry indexEntry) {
+    this.indexEntry = indexEntry;
+  }
+
   public void updateStartTime(String device, long time) {
     long startTime = getStartTime(device);
     if (time < startTime) {
@@ -363,7 +492,7 @@ public class TsFileResource {
   }
 
   boolean containsDevice(String deviceId) {
-    return deviceToIndex.containsKey(deviceId);
+    return getTimeIndex().deviceToIndex.containsKey(deviceId);
   }
 
   public File getTsFile() {
@@ -379,25 +508,76 @@ public class TsFileResource {
   }
 
   public long getStartTime(String deviceId) {
-    if (!deviceToIndex.containsKey(deviceId)) {
-      return Long.MAX_VALUE;
-    }
-    return startTimes[deviceToIndex.get(deviceId)];
+    TimeIndex index = getTimeIndex();
+    Integer i = index.deviceToIndex.get(deviceId);
+    return i == null ? Long.MAX_VALUE : index.startTimes[i];
   }
 
   public long getStartTime(int index) {
-    return startTimes[index];
+    return getTimeIndex().startTimes[index];
   }
 
   public long getEndTime(String deviceId) {
-    if (!deviceToIndex.containsKey(deviceId)) {
-      return Long.MIN_VALUE;
-    }
-    return endTimes[deviceToIndex.get(deviceId)];
+    TimeIndex index = getTimeIndex();
+    Integer i = index.deviceToIndex.get(deviceId);
+    return i == null ? Long.MIN_VALUE : index.endTimes[i];
   }
 
   public long getEndTime(int index) {
-    return endTimes[index];
+    return getTimeIndex().endTimes[index];
+  }
+
+  /**
+   * @return the min start time of all devices, or Long.MAX_VALUE if there is no device
+   */
+  public long getFileStartTime() {
+    return getFileTimeRange()[0];
+  }
+
+  /**
+   * @return the max end time of all devices, or Long.MIN_VALUE if there is no device
+   */
+  public long getFileEndTime() {
+    return getFileTimeRange()[1];
+  }
+
+  /**
+   * The time range of a sealed file is cached, so it can be used without loading the index again
+   * after the index is unloaded.
+   */
+  private long[] getFileTimeRange() {
+    long[] range = fileTimeRange;
+    if (range != null) {
+      return range;
+    }
+    // read before the index, so the range is not cached if the index is updated meanwhile
+    boolean sealed = closed;
+    int version = indexVersion;
+    TimeIndex index = getTimeIndex();
+    range = new long[]{Long.MAX_VALUE, Long.MIN_VALUE};
+    for (int i = 0; i < Math.min(index.size(), index.startTimes.length); i++) {
+      range[0] = Math.min(range[0], index.startTimes[i]);
+    }
+    for (int i = 0; i < Math.min(index.size(), index.endTimes.length); i++) {
+      range[1] = Math.max(range[1], index.endTimes[i]);
+    }
+    if (sealed) {
+      synchronized (this) {
+        if (version == indexVersion) {
+          fileTimeRange = range;
+        }
+      }
+    }
+    return range;
+  }
+
+  private void timeIndexUpdated() {
+    if (closed || fileTimeRange != null) {
+      synchronized (this) {
+        indexVersion++;
+        fileTimeRange = null;
+      }
+    }
   }
 
   public long getOrDefaultStartTime(String deviceId, long defaultTime) {
@@ -411,61 +591,41 @@ public class TsFileResource {
   }
 
   public void putStartTime(String deviceId, long startTime) {
-    int index;
-    if (containsDevice(deviceId)) {
-      index = deviceToIndex.get(deviceId);
-    } else {
-      index = deviceToIndex.size();
-      deviceToIndex.put(deviceId, index);
-      if (startTimes.length <= index) {
-        startTimes = enLargeArray(startTimes, Long.MAX_VALUE);
-        endTimes = enLargeArray(endTimes, Long.MIN_VALUE);
-      }
-    }
-    startTimes[index] = startTime;
+    TimeIndex index = getTimeIndexForUpdate();
+    int i = index.getOrCreateIndex(deviceId);
+    index.startTimes[i] = startTime;
+    timeIndexUpdated();
   }
 
   public void putEndTime(String deviceId, long endTime) {
-    int index;
-    if (containsDevice(deviceId)) {
-      index = deviceToIndex.get(deviceId);
-    } else {
-      index = deviceToIndex.size();
-      deviceToIndex.put(deviceId, index);
-      if (endTimes.length <= index) {
-        startTimes = enLargeArray(startTimes, Long.MAX_VALUE);
-        endTimes = enLargeArray(endTimes, Long.MIN_VALUE);
-      }
-    }
-    endTimes[index] = endTime;
-  }
-
-  private long[] enLargeArray(long[] array, long defaultValue) {
-    long[] tmp = new long[(int) (array.length * 1.5)];
-    initTimes(tmp, defaultValue);
-    System.arraycopy(array, 0, tmp, 0, array.length);
-    return tmp;
+    TimeIndex index = getTimeIndexForUpdate();
+    int i = index.getOrCreateIndex(deviceId);
+    index.endTimes[i] = endTime;
+    timeIndexUpdated();
   }
 
   public Map<String, Integer> getDeviceToIndexMap() {
-    return deviceToIndex;
+    return getTimeIndex().deviceToIndex;
   }
 
   public long[] getStartTimes() {
-    return startTimes;
+    return getTimeIndex().startTimes;
   }
 
   public long[] getEndTimes() {
-    return endTimes;
+    return getTimeIndex().endTimes;
   }
 
   public void clearEndTimes() {
-    endTimes = new long[endTimes.length];
+    TimeIndex index = getTimeIndexForUpdate();
+    long[] endTimes = new long[index.endTimes.length];
     initTimes(endTimes, Long.MIN_VALUE);
+    index.endTimes = endTimes;
+    timeIndexUpdated();
   }
 
   public boolean areEndTimesEmpty() {
-    for (long endTime : endTimes) {
+    for (long endTime : getTimeIndex().endTimes) {
       if (endTime != -1) {
         return false;
       }
@@ -473,11 +633,6 @@ public class TsFileResource {
     return true;
   }
 
-  private void trimStartEndTimes() {
-    startTimes = Arrays.copyOfRange(startTimes, 0, deviceToIndex.size());
-    endTimes = Arrays.copyOfRange(endTimes, 0, deviceToIndex.size());
-  }
-
   public boolean isClosed() {
     return closed;
   }
@@ -490,7 +645,7 @@ public class TsFileResource {
     }
     processor = null;
     chunkMetadataList = null;
-    trimStartEndTimes();
+    compactTimeIndex();
   }
 
   TsFileProcessor getUnsealedFileProcessor() {
@@ -567,6 +722,8 @@ public class TsFileResource {
   }
 
   void moveTo(File targetDir) {
+    // the index can not be loaded from the old path any more
+    pinTimeIndex();
     fsFactory.moveFile(file, fsFactory.getFile(targetDir, file.getName()));
     fsFactory.moveFile(fsFactory.getFile(file.getPath() + RESOURCE_SUFFIX),
         fsFactory.getFile(targetDir, file.getName() + RESOURCE_SUFFIX));
@@ -597,6 +754,9 @@ public class TsFileResource {
 
   public void setClosed(boolean closed) {
     this.closed = closed;
+    if (closed) {
+      compactTimeIndex();
+    }
   }
 
   public boolean isDeleted() {
@@ -622,7 +782,7 @@ public class TsFileResource {
     if (timeLowerBound == Long.MAX_VALUE) {
       return true;
     }
-    for (long endTime : endTimes) {
+    for (long endTime : getTimeIndex().endTimes) {
       // the file cannot be deleted if any device still lives
       if (endTime >= timeLowerBound) {
         return true;
@@ -632,11 +792,13 @@ public class TsFileResource {
   }
 
   protected void setStartTimes(long[] startTimes) {
-    this.startTimes = startTimes;
+    getTimeIndexForUpdate().startTimes = startTimes;
+    timeIndexUpdated();
   }
 
   protected void setEndTimes(long[] endTimes) {
-    this.endTimes = endTimes;
+    getTimeIndexForUpdate().endTimes = endTimes;
+    timeIndexUpdated();
   }
 
   /**
@@ -711,8 +873,10 @@ public class TsFileResource {
    * make sure Either the deviceToIndex is not empty Or the path contains a partition folder
    */
   public long getTimePartition() {
-    if (deviceToIndex != null && !deviceToIndex.isEmpty()) {
-      return StorageEngine.getTimePartition(startTimes[deviceToIndex.values().iterator().next()]);
+    TimeIndex index = getTimeIndex();
+    if (!index.deviceToIndex.isEmpty()) {
+      return StorageEngine
+          .getTimePartition(index.startTimes[index.deviceToIndex.values().iterator().next()]);
     }
     String[] splits = FilePathUtils.splitTsFilePath(this);
     return Long.parseLong(splits[splits.length - 2]);
@@ -726,7 +890,8 @@ public class TsFileResource {
    */
   public long getTimePartitionWithCheck() throws PartitionViolationException {
     long partitionId = -1;
-    for (Long startTime : startTimes) {
+    TimeIndex index = getTimeIndex();
+    for (Long startTime : index.startTimes) {
       long p = StorageEngine.getTimePartition(startTime);
       if (partitionId == -1) {
         partitionId = p;
@@ -736,7 +901,7 @@ public class TsFileResource {
         }
       }
     }
-    for (Long endTime : endTimes) {
+    for (Long endTime : index.endTimes) {
       long p = StorageEngine.getTimePartition(endTime);
       if (partitionId == -1) {
         partitionId = p;
@@ -804,4 +969,91 @@ public class TsFileResource {
     }
     return maxVersion;
   }
+
+  /**
+   * the device -> index map and the start and end times of the devices at the indexes. A method
+   * of TsFileResource gets the index once, so it is not affected if the index is unloaded
+   * meanwhile.
+   */
+  private static class TimeIndex {
+
+    private Map<String, Integer> deviceToIndex;
+
+    /**
+     * start times array.
+     */
+    private long[] startTimes;
+
+    /**
+     * end times array. The values in this array are Long.MIN_VALUE if it's an unsealed sequence
+     * tsfile
+     */
+    private long[] endTimes;
+
+    private TimeIndex() {
+      this.deviceToIndex = new ConcurrentHashMap<>();
+      this.startTimes = new long[INIT_ARRAY_SIZE];
+      this.endTimes = new long[INIT_ARRAY_SIZE];
+      initTimes(startTimes, Long.MAX_VALUE);
+      initTimes(endTimes, Long.MIN_VALUE);
+    }
+
+    private TimeIndex(Map<String, Integer> deviceToIndex, long[] startTimes, long[] endTimes) {
+      this.deviceToIndex = deviceToIndex;
+      this.startTimes = startTimes;
+      this.endTimes = endTimes;
+    }
+
+    private int size() {
+      return deviceToIndex.size();
+    }
+
+    private boolean isCompact() {
+      return deviceToIndex instanceof CompactDeviceIndexMap;
+    }
+
+    private TimeIndex compact() {
+      int size = deviceToIndex.size();
+      return new TimeIndex(new CompactDeviceIndexMap(deviceToIndex),
+          Arrays.copyOfRange(startTimes, 0, size), Arrays.copyOfRange(endTimes, 0, size));
+    }
+
+    private String[] getDevicesByIndex() {
+      String[] devices = new String[deviceToIndex.size()];
+      for (Entry<String, Integer> entry : deviceToIndex.entrySet()) {
+        // skip the devices added meanwhile
+        if (entry.getValue() < devices.length) {
+          devices[entry.getValue()] = entry.getKey();
+        }
+      }
+      return devices;
+    }
+
+    /**
+     * a compact index is turned back into a modifiable one when a device is added
+     */
+    private int getOrCreateIndex(String deviceId) {
+      Integer index = deviceToIndex.get(deviceId);
+      if (index != null) {
+        return index;
+      }
+      if (isCompact()) {
+        deviceToIndex = new ConcurrentHashMap<>(deviceToIndex);
+      }
+      index = deviceToIndex.size();
+      deviceToIndex.put(deviceId, index);
+      if (startTimes.length <= index) {
+        startTimes = enLargeArray(startTimes, Long.MAX_VALUE);
+        endTimes = enLargeArray(endTimes, Long.MIN_VALUE);
+      }
+      return index;
+    }
+
+    private static long[] enLargeArray(long[] array, long defaultValue) {
+      long[] tmp = new long[Math.max((int) (array.length * 1.5), INIT_ARRAY_SIZE)];
+      initTimes(tmp, defaultValue);
+      System.arraycopy(array, 0, tmp, 0, array.length);
+      return tmp;
+    }
+  }
 }
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+
+/**
+ * TsFileResourceIndexCache limits how many devices of the sealed TsFileResources have their
+ * indexes in memory. When the limit is exceeded, the least recently used indexes are unloaded,
+ * and an unloaded index is loaded again from the resource file by the first method of
+ * TsFileResource that uses it. An index that can not be unloaded now, e.g., of a merging file, is
+ * skipped and tried again later.
+ *
+ * The recency is approximated by the second chance (clock) algorithm: a use of an index only sets
+ * a flag of its entry without any lock, and an entry whose flag is set is moved to the tail of the
+ * queue instead of being unloaded. Only one thread unloads indexes at a time, and the other
+ * threads loading indexes meanwhile leave the unloading to it.
+ *
+ * The resources are weakly referenced, so a resource removed from its storage group is not kept
+ * by the cache, and its entry is dropped when it is found cleared.
+ */
+class TsFileResourceIndexCache {
+
+  private final Queue<IndexEntry> entries = new ConcurrentLinkedQueue<>();
+  private final AtomicLong loadedDeviceNum = new AtomicLong();
+  private final ReentrantLock unloadLock = new ReentrantLock();
+
+  private TsFileResourceIndexCache() {
+    // singleton
+  }
+
+  static TsFileResourceIndexCache getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * record that the index of the resource with deviceNum devices is loaded or compacted, and
+   * unload the least recently used indexes if there are too many devices loaded
+   */
+  void put(TsFileResource resource, int deviceNum) {
+    long cacheSize = IoTDBDescriptor.getInstance().getConfig().getResourceIndexCacheSize();
+    IndexEntry entry = cacheSize > 0 ? new IndexEntry(resource, deviceNum) : null;
+    IndexEntry previous;
+    synchronized (resource) {
+      previous = resource.getIndexEntry();
+      resource.setIndexEntry(entry);
+    }
+    if (previous != null) {
+      // it is removed from the queue when it is polled
+      invalidate(previous);
+    }
+    if (entry == null) {
+      // no limit, nothing is unloaded
+      return;
+    }
+    entries.add(entry);
+    if (loadedDeviceNum.addAndGet(deviceNum) > cacheSize && unloadLock.tryLock()) {
+      try {
+        unloadEldest(entry, cacheSize);
+      } finally {
+        unloadLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * unload the indexes from the head of the queue until the limit is met, or each entry has been
+   * polled twice, i.e., the remaining indexes can not be unloaded now
+   *
+   * @param current the entry just put, whose index is being used
+   */
+  private void unloadEldest(IndexEntry current, long cacheSize) {
+    int chances = 2 * entries.size();
+    IndexEntry eldest;
+    while (loadedDeviceNum.get() > cacheSize && chances-- > 0
+        && (eldest = entries.poll()) != null) {
+      if (!eldest.valid.get()) {
+        continue;
+      }
+      TsFileResource eldestResource = eldest.get();
+      if (eldestResource == null) {
+        invalidate(eldest);
+      } else if (eldest == current || eldest.accessed.getAndSet(false)
+          || !unload(eldestResource, eldest)) {
+        // used recently or can not be unloaded now
+        entries.add(eldest);
+      }
+    }
+  }
+
+  private boolean unload(TsFileResource resource, IndexEntry entry) {
+    synchronized (resource) {
+      // the index may have been reloaded with another entry
+      if (resource.getIndexEntry() != entry || !resource.unloadTimeIndex()) {
+        return false;
+      }
+      resource.setIndexEntry(null);
+    }
+    invalidate(entry);
+    return true;
+  }
+
+  private void invalidate(IndexEntry entry) {
+    if (entry.valid.compareAndSet(true, false)) {
+      loadedDeviceNum.addAndGet(-entry.deviceNum);
+    }
+  }
+
+  long getLoadedDeviceNum() {
+    return loadedDeviceNum.get();
+  }
+
+  void clear() {
+    unloadLock.lock();
+    try {
+      IndexEntry entry;
+      while ((entry = entries.poll()) != null) {
+        TsFileResource resource = entry.get();
+        if (resource != null) {
+          synchronized (resource) {
+            if (resource.getIndexEntry() == entry) {
+              resource.setIndexEntry(null);
+            }
+          }
+        }
+        invalidate(entry);
+      }
+    } finally {
+      unloadLock.unlock();
+    }
+  }
+
+  static class IndexEntry extends WeakReference<TsFileResource> {
+
+    private final int deviceNum;
+    private final AtomicBoolean valid = new AtomicBoolean(true);
+    private final AtomicBoolean accessed = new AtomicBoolean();
+
+    private IndexEntry(TsFileResource resource, int deviceNum) {
+      super(resource);
+      this.deviceNum = deviceNum;
+    }
+
+    /**
+     * mark the index used, which is only written when the flag changes so that the frequent uses
+     * do not contend on it
+     */
+    void touch() {
+      if (!accessed.get()) {
+        accessed.set(true);
+      }
+    }
+  }
+
+  private static class InstanceHolder {
+
+    private static final TsFileResourceIndexCache INSTANCE = new TsFileResourceIndexCache();
+
+    private InstanceHolder() {
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.throttle;
+
+/**
+ * The priorities of the background tasks whose IO is limited by the IORateLimiter. The IO of the
+ * threads without a priority, e.g., the queries and the insertions, is not limited.
+ */
+public enum IOPriority {
+  /**
+   * flushes never wait for the limiter, but the bytes they write are counted, so the merges wait
+   * longer when the flushes are busy
+   */
+  FLUSH,
+  /**
+   * merges and vm merges wait for the limiter, and back off when the foreground operations slow
+   * down
+   */
+  MERGE
+}
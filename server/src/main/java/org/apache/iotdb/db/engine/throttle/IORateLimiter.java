@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.throttle;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.service.IService;
+import org.apache.iotdb.db.service.JMXService;
+import org.apache.iotdb.db.service.ServiceType;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.fileSystem.IOThrottle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * IORateLimiter limits the bytes read and written by the background tasks, i.e., flushes, merges
+ * and vm merges, to background_io_throughput_mb_per_sec, so they leave the disks to the queries
+ * and the insertions. A task tells its IOPriority by setPriority() and the TsFileInputs and
+ * TsFileOutputs acquire the limiter for every read and write, the IO of the threads without a
+ * priority is not limited.
+ *
+ * The limiter is a token bucket which holds the bytes of one second at most. A read or write takes
+ * its bytes from the bucket at once and, if the bucket is overdrawn, sleeps until the bucket is
+ * refilled. Flushes never sleep, as a slow flush blocks the insertions, but their bytes still
+ * overdraw the bucket, so the merges give way to them.
+ *
+ * Each foreground RPC reports its latency by recordForegroundLatency(). While the average
+ * latency is above merge_backoff_latency_threshold_ms, the share of the throughput left to the
+ * merges is halved each second, down to 1/16, and it recovers by 1/16 each second once the
+ * latency falls. The backoff only works when the throughput is limited.
+ */
+public class IORateLimiter implements IOThrottle, IService, IORateLimiterMBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(IORateLimiter.class);
+  private static final long MB = 1024L * 1024L;
+  private static final double MIN_MERGE_RATE_RATIO = 1.0 / 16;
+  // how much the latency of each foreground operation weighs in the average latency
+  private static final double LATENCY_WEIGHT = 0.1;
+  private static final long ADJUST_INTERVAL_MS = 1000;
+
+  private static final ThreadLocal<IOPriority> PRIORITY = new ThreadLocal<>();
+
+  private final String mbeanName = String
+      .format("%s:%s=%s", IoTDBConstant.IOTDB_PACKAGE, IoTDBConstant.JMX_TYPE,
+          getID().getJmxName());
+
+  // bytes per second, no more than 0 for unlimited
+  private volatile long throughput;
+  private volatile long backoffThreshold;
+
+  private double availableBytes;
+  private long lastRefillTime;
+  private long lastAdjustTime;
+  private volatile double mergeRateRatio = 1.0;
+  // the bits of the average latency in millis, which is updated by many RPC threads at once
+  private final AtomicLong averageLatencyBits = new AtomicLong(Double.doubleToLongBits(0));
+
+  private final AtomicLong flushBytes = new AtomicLong();
+  private final AtomicLong mergeBytes = new AtomicLong();
+
+  private IORateLimiter() {
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    this.throughput = config.getBackgroundIOThroughputMbPerSec() * MB;
+    this.backoffThreshold = config.getMergeBackoffLatencyThresholdMs();
+    this.availableBytes = throughput;
+    this.lastRefillTime = System.currentTimeMillis();
+    this.lastAdjustTime = lastRefillTime;
+  }
+
+  public static IORateLimiter getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Set the IO priority of the current thread, null for a foreground thread.
+   *
+   * @return the previous priority, which should be restored when the task ends
+   */
+  public static IOPriority setPriority(IOPriority priority) {
+    IOPriority previous = PRIORITY.get();
+    if (priority == null) {
+      PRIORITY.remove();
+    } else {
+      PRIORITY.set(priority);
+    }
+    return previous;
+  }
+
+  @Override
+  public void acquire(long bytes) throws InterruptedIOException {
+    IOPriority priority = PRIORITY.get();
+    if (priority == null) {
+      return;
+    }
+    if (priority == IOPriority.FLUSH) {
+      flushBytes.addAndGet(bytes);
+      if (throughput > 0) {
+        take(bytes, System.currentTimeMillis());
+      }
+      return;
+    }
+    mergeBytes.addAndGet(bytes);
+    if (throughput > 0) {
+      // a backing off merge pays more for the same bytes
+      long waitMillis = take(bytes / mergeRateRatio, System.currentTimeMillis());
+      if (waitMillis > 0) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(waitMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for the IO rate limiter");
+        }
+      }
+    }
+  }
+
+  /**
+   * Take the bytes from the bucket.
+   *
+   * @return how long to wait until the bucket is no longer overdrawn
+   */
+  synchronized long take(double bytes, long currentTime) {
+    long currentThroughput = throughput;
+    if (currentThroughput <= 0) {
+      return 0;
+    }
+    long elapsed = currentTime - lastRefillTime;
+    if (elapsed > 0) {
+      availableBytes = Math.min(currentThroughput,
+          availableBytes + (double) currentThroughput * elapsed / 1000);
+      lastRefillTime = currentTime;
+    }
+    if (currentTime - lastAdjustTime >= ADJUST_INTERVAL_MS) {
+      adjustMergeRateRatio();
+      lastAdjustTime = currentTime;
+    }
+    availableBytes -= bytes;
+    return availableBytes >= 0 ? 0 : (long) Math.ceil(-availableBytes * 1000 / currentThroughput);
+  }
+
+  private void adjustMergeRateRatio() {
+    long threshold = backoffThreshold;
+    double averageLatency = getAverageLatency();
+    if (threshold > 0 && averageLatency > threshold) {
+      if (mergeRateRatio > MIN_MERGE_RATE_RATIO) {
+        mergeRateRatio = Math.max(MIN_MERGE_RATE_RATIO, mergeRateRatio / 2);
+        logger.info("The average latency of the foreground operations is {}ms, merges back off "
+            + "to {} of the IO throughput", averageLatency, mergeRateRatio);
+      }
+    } else if (mergeRateRatio < 1.0) {
+      mergeRateRatio = Math.min(1.0, mergeRateRatio + MIN_MERGE_RATE_RATIO);
+    }
+  }
+
+  /**
+   * Called when a foreground RPC, e.g., a query or an insertion, ends.
+   */
+  public void recordForegroundLatency(long millis) {
+    if (backoffThreshold > 0) {
+      averageLatencyBits.updateAndGet(bits -> {
+        double averageLatency = Double.longBitsToDouble(bits);
+        return Double.doubleToLongBits(averageLatency + (millis - averageLatency) * LATENCY_WEIGHT);
+      });
+    }
+  }
+
+  double getAverageLatency() {
+    return Double.longBitsToDouble(averageLatencyBits.get());
+  }
+
+  @Override
+  public int getThroughputMbPerSec() {
+    return (int) (throughput / MB);
+  }
+
+  @Override
+  public synchronized void setThroughputMbPerSec(int throughputMbPerSec) {
+    throughput = throughputMbPerSec * MB;
+    // start with a full bucket of the new throughput
+    availableBytes = throughput;
+    lastRefillTime = System.currentTimeMillis();
+    IoTDBDescriptor.getInstance().getConfig().setBackgroundIOThroughputMbPerSec(throughputMbPerSec);
+    logger.info("The background IO throughput is set to {}MB/s", throughputMbPerSec);
+  }
+
+  @Override
+  public long getMergeBackoffLatencyThresholdMs() {
+    return backoffThreshold;
+  }
+
+  @Override
+  public synchronized void setMergeBackoffLatencyThresholdMs(long thresholdMs) {
+    backoffThreshold = thresholdMs;
+    IoTDBDescriptor.getInstance().getConfig().setMergeBackoffLatencyThresholdMs(thresholdMs);
+    if (thresholdMs <= 0) {
+      averageLatencyBits.set(Double.doubleToLongBits(0));
+      mergeRateRatio = 1.0;
+    }
+  }
+
+  @Override
+  public double getMergeRateRatio() {
+    return mergeRateRatio;
+  }
+
+  @Override
+  public long getFlushBytes() {
+    return flushBytes.get();
+  }
+
+  @Override
+  public long getMergeBytes() {
+    return mergeBytes.get();
+  }
+
+  @Override
+  public void start() {
+    JMXService.registerMBean(this, mbeanName);
+    FSFactoryProducer.setIOThrottle(this);
+    logger.info("IO rate limiter started, background IO throughput: {}MB/s",
+        getThroughputMbPerSec());
+  }
+
+  @Override
+  public void stop() {
+    FSFactoryProducer.setIOThrottle(null);
+    JMXService.deregisterMBean(mbeanName);
+  }
+
+  @Override
+  public ServiceType getID() {
+    return ServiceType.IO_RATE_LIMITER_SERVICE;
+  }
+
+  private static class InstanceHolder {
+
+    private static final IORateLimiter INSTANCE = new IORateLimiter();
+
+    private InstanceHolder() {
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.throttle;
+
+public interface IORateLimiterMBean {
+
+  int getThroughputMbPerSec();
+
+  /**
+   * @param throughputMbPerSec no more than 0 for unlimited
+   */
+  void setThroughputMbPerSec(int throughputMbPerSec);
+
+  long getMergeBackoffLatencyThresholdMs();
+
+  /**
+   * @param thresholdMs no more than 0 to disable the backoff of merges
+   */
+  void setMergeBackoffLatencyThresholdMs(long thresholdMs);
+
+  /**
+   * @return the share of the throughput currently left to the merges, 1.0 if they are not backing
+   * off
+   */
+  double getMergeRateRatio();
+
+  long getFlushBytes();
+
+  long getMergeBytes();
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+
+/**
+ * DeviceSchemaCache caches the device node and the resolved schemas of the measurements last
+ * inserted into each device, so that an insert of the same measurements finds them by one lookup
+ * of a ConcurrentHashMap without the lock of MManager. Each entry is stamped with the resolved
+ * schema version of MManager when it is resolved, and is stale once the version changes, i.e., once
+ * a timeseries or an alias is removed. Creating timeseries keeps the entries, as the measurements
+ * resolved before stay the same. A stale entry is replaced by the next resolution of its device.
+ *
+ * The entries are immutable, so the schema arrays can be shared by the plans and must not be
+ * modified.
+ */
+class DeviceSchemaCache {
+
+  private final int capacity;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  DeviceSchemaCache(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return the entry of the device for the measurements if it is resolved in the given schema
+   * version, or null
+   */
+  Entry get(String deviceId, String[] measurements, long version) {
+    Entry entry = entries.get(deviceId);
+    if (entry == null || entry.version != version
+        || !Arrays.equals(entry.measurements, measurements)) {
+      return null;
+    }
+    return entry;
+  }
+
+  void put(String deviceId, Entry entry) {
+    if (entries.size() >= capacity && !entries.containsKey(deviceId)) {
+      // evict an arbitrary entry, which is most likely stale
+      Iterator<String> iterator = entries.keySet().iterator();
+      if (iterator.hasNext()) {
+        entries.remove(iterator.next());
+      }
+    }
+    entries.put(deviceId, entry);
+  }
+
+  void clear() {
+    entries.clear();
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  static class Entry {
+
+    private final MNode deviceNode;
+    // the measurements in the insertion, which may be aliases
+    private final String[] measurements;
+    private final MeasurementSchema[] schemas;
+    private final long version;
+
+    Entry(MNode deviceNode, String[] measurements, MeasurementSchema[] schemas, long version) {
+      this.deviceNode = deviceNode;
+      this.measurements = measurements;
+      this.schemas = schemas;
+      this.version = version;
+    }
+
+    MNode getDeviceNode() {
+      return deviceNode;
+    }
+
+    MeasurementSchema[] getSchemas() {
+      return schemas;
+    }
+
+    long getVersion() {
+      return version;
+    }
+  }
+}
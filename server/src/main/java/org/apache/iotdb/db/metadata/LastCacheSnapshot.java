@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+
+/**
+ * LastCacheSnapshot writes and reads the last values of the timeseries, so the last queries after
+ * a restart need not scan the data files. The layout is:
+ *
+ * MAGIC | VERSION | group 1 | ... | group n | false | crc32 of the groups
+ *
+ * A group is "true | device | snapshotTime | count | entries" and an entry is "measurement | type
+ * | timestamp | value". The snapshotTime of a group is when its values were known to be the last
+ * ones, a value is only valid if no data file of the device has been modified after it.
+ */
+public class LastCacheSnapshot {
+
+  private static final int MAGIC = 0x4c415354;
+  private static final int VERSION = 1;
+
+  private LastCacheSnapshot() {
+    // util class
+  }
+
+  /**
+   * a last value read from the snapshot, which is not validated against the data files yet
+   */
+  public static class Entry {
+
+    private final TimeValuePair timeValuePair;
+    private final long snapshotTime;
+
+    Entry(TimeValuePair timeValuePair, long snapshotTime) {
+      this.timeValuePair = timeValuePair;
+      this.snapshotTime = snapshotTime;
+    }
+
+    public TimeValuePair getTimeValuePair() {
+      return timeValuePair;
+    }
+
+    public long getSnapshotTime() {
+      return snapshotTime;
+    }
+  }
+
+  interface EntryConsumer {
+
+    void accept(String device, String measurement, Entry entry);
+  }
+
+  /**
+   * write the cached last values of the nodes as of snapshotTime, and the persisted values that
+   * have not been validated for the nodes without a cached one
+   */
+  static void serialize(File file, long snapshotTime, List<MeasurementMNode> nodes,
+      Map<MeasurementMNode, Entry> persisted) throws IOException {
+    CheckedOutputStream checkedStream = new CheckedOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)), new CRC32());
+    try (DataOutputStream outputStream = new DataOutputStream(checkedStream)) {
+      outputStream.writeInt(MAGIC);
+      outputStream.writeInt(VERSION);
+      checkedStream.getChecksum().reset();
+
+      // a group is the successive nodes of the same device and snapshot time
+      MNode device = null;
+      List<MeasurementMNode> groupNodes = new ArrayList<>();
+      List<Entry> groupEntries = new ArrayList<>();
+      for (MeasurementMNode node : nodes) {
+        Entry entry = getEntry(node, snapshotTime, persisted);
+        if (entry == null) {
+          continue;
+        }
+        if (node.getParent() != device
+            || entry.snapshotTime != groupEntries.get(0).snapshotTime) {
+          serializeGroup(device, groupNodes, groupEntries, outputStream);
+          device = node.getParent();
+        }
+        groupNodes.add(node);
+        groupEntries.add(entry);
+      }
+      serializeGroup(device, groupNodes, groupEntries, outputStream);
+      outputStream.writeBoolean(false);
+      outputStream.writeLong(checkedStream.getChecksum().getValue());
+    }
+  }
+
+  private static void serializeGroup(MNode device, List<MeasurementMNode> nodes,
+      List<Entry> entries, DataOutputStream outputStream) throws IOException {
+    if (nodes.isEmpty()) {
+      return;
+    }
+    outputStream.writeBoolean(true);
+    outputStream.writeUTF(device.getFullPath());
+    outputStream.writeLong(entries.get(0).snapshotTime);
+    outputStream.writeInt(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      outputStream.writeUTF(nodes.get(i).getName());
+      serializeTimeValuePair(entries.get(i).timeValuePair, outputStream);
+    }
+    nodes.clear();
+    entries.clear();
+  }
+
+  private static Entry getEntry(MeasurementMNode node, long snapshotTime,
+      Map<MeasurementMNode, Entry> persisted) {
+    TimeValuePair last;
+    // the pair is updated in place under the lock of the node
+    synchronized (node) {
+      last = node.getCachedLast();
+      if (last != null && last.getValue() != null) {
+        return new Entry(new TimeValuePair(last.getTimestamp(), last.getValue()), snapshotTime);
+      }
+    }
+    return last == null ? persisted.get(node) : null;
+  }
+
+  static void deserialize(File file, EntryConsumer consumer) throws IOException {
+    CheckedInputStream checkedStream = new CheckedInputStream(
+        new BufferedInputStream(new FileInputStream(file)), new CRC32());
+    try (DataInputStream inputStream = new DataInputStream(checkedStream)) {
+      if (inputStream.readInt() != MAGIC) {
+        throw new IOException(file + " is not a last cache snapshot");
+      }
+      int version = inputStream.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported version " + version + " of last cache snapshot " + file);
+      }
+      checkedStream.getChecksum().reset();
+
+      while (inputStream.readBoolean()) {
+        String device = inputStream.readUTF();
+        long snapshotTime = inputStream.readLong();
+        int count = inputStream.readInt();
+        for (int i = 0; i < count; i++) {
+          String measurement = inputStream.readUTF();
+          TimeValuePair timeValuePair = deserializeTimeValuePair(inputStream);
+          consumer.accept(device, measurement, new Entry(timeValuePair, snapshotTime));
+        }
+      }
+      long crc = checkedStream.getChecksum().getValue();
+      if (inputStream.readLong() != crc) {
+        throw new IOException("Last cache snapshot " + file + " is corrupted");
+      }
+    }
+  }
+
+  private static void serializeTimeValuePair(TimeValuePair timeValuePair,
+      DataOutputStream outputStream) throws IOException {
+    TsPrimitiveType value = timeValuePair.getValue();
+    outputStream.writeByte(value.getDataType().ordinal());
+    outputStream.writeLong(timeValuePair.getTimestamp());
+    switch (value.getDataType()) {
+      case BOOLEAN:
+        outputStream.writeBoolean(value.getBoolean());
+        break;
+      case INT32:
+        outputStream.writeInt(value.getInt());
+        break;
+      case INT64:
+        outputStream.writeLong(value.getLong());
+        break;
+      case FLOAT:
+        outputStream.writeFloat(value.getFloat());
+        break;
+      case DOUBLE:
+        outputStream.writeDouble(value.getDouble());
+        break;
+      case TEXT:
+        outputStream.writeInt(value.getBinary().getLength());
+        outputStream.write(value.getBinary().getValues());
+        break;
+      default:
+        throw new IOException("Unsupported data type " + value.getDataType());
+    }
+  }
+
+  private static TimeValuePair deserializeTimeValuePair(DataInputStream inputStream)
+      throws IOException {
+    TSDataType dataType = TSDataType.values()[inputStream.readByte()];
+    long timestamp = inputStream.readLong();
+    Object value;
+    switch (dataType) {
+      case BOOLEAN:
+        value = inputStream.readBoolean();
+        break;
+      case INT32:
+        value = inputStream.readInt();
+        break;
+      case INT64:
+        value = inputStream.readLong();
+        break;
+      case FLOAT:
+        value = inputStream.readFloat();
+        break;
+      case DOUBLE:
+        value = inputStream.readDouble();
+        break;
+      case TEXT:
+        byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        value = new Binary(bytes);
+        break;
+      default:
+        throw new IOException("Unsupported data type " + dataType);
+    }
+    return new TimeValuePair(timestamp, TsPrimitiveType.getByType(dataType, value));
+  }
+}
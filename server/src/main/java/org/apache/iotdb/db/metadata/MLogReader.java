@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MLogReader reads the plans from the binary metadata log written by MLogWriter. The reading stops
+ * at the first torn entry, i.e., an entry that is cut short or whose checksum does not match, which
+ * can only be the tail left by a crash, and getValidLength() tells where the valid entries end so
+ * the tail can be truncated. An entry with a valid checksum that cannot be deserialized is not a
+ * torn tail, so an IOException is thrown instead of dropping it and the entries after it.
+ */
+public class MLogReader implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(MLogReader.class);
+
+  private final File logFile;
+  private final long fileLength;
+  private DataInputStream inputStream;
+  private CRC32 crc32 = new CRC32();
+  private PhysicalPlan nextPlan;
+  private long validLength = 0;
+  private boolean corrupted = false;
+
+  public MLogReader(File logFile) throws IOException {
+    this.logFile = logFile;
+    this.fileLength = logFile.length();
+    this.inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+  }
+
+  /**
+   * @throws IOException if the file cannot be read, or an entry with a valid checksum cannot be
+   *                     deserialized
+   */
+  public boolean hasNext() throws IOException {
+    if (nextPlan != null) {
+      return true;
+    }
+    if (corrupted || validLength >= fileLength) {
+      return false;
+    }
+    try {
+      int length = inputStream.readInt();
+      if (length <= 0 || length > fileLength - validLength - 2 * Integer.BYTES) {
+        return markCorrupted();
+      }
+      byte[] entry = new byte[length];
+      inputStream.readFully(entry);
+      long checksum = inputStream.readInt() & 0xffffffffL;
+      crc32.reset();
+      crc32.update(entry, 0, length);
+      if (crc32.getValue() != checksum) {
+        return markCorrupted();
+      }
+      nextPlan = deserialize(entry);
+      validLength += length + 2 * Integer.BYTES;
+      return true;
+    } catch (EOFException e) {
+      return markCorrupted();
+    }
+  }
+
+  private PhysicalPlan deserialize(byte[] entry) throws IOException {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(entry);
+      PhysicalPlan plan = PhysicalPlan.Factory.create(buffer);
+      if (plan instanceof CreateTimeSeriesPlan) {
+        ((CreateTimeSeriesPlan) plan).setTagOffset(buffer.getLong());
+      }
+      return plan;
+    } catch (IOException | RuntimeException e) {
+      throw new IOException(String.format(
+          "The entry at %d of %s has a valid checksum but cannot be deserialized", validLength,
+          logFile), e);
+    }
+  }
+
+  public PhysicalPlan next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    PhysicalPlan plan = nextPlan;
+    nextPlan = null;
+    return plan;
+  }
+
+  /**
+   * @return the length of the valid entries that have been read
+   */
+  public long getValidLength() {
+    return validLength;
+  }
+
+  /**
+   * @return whether the reading stopped at a torn entry
+   */
+  public boolean isCorrupted() {
+    return corrupted;
+  }
+
+  private boolean markCorrupted() {
+    logger.warn("The metadata log {} has a torn entry at {}, the rest {} bytes are ignored",
+        logFile, validLength, fileLength - validLength);
+    corrupted = true;
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    inputStream.close();
+  }
+}
@@ -18,26 +18,57 @@
  */
 package org.apache.iotdb.db.metadata;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
 import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.db.qp.physical.sys.ActivateTemplatePlan;
+import org.apache.iotdb.db.qp.physical.sys.ChangeAliasPlan;
+import org.apache.iotdb.db.qp.physical.sys.ChangeTagOffsetPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTemplatePlan;
 import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.qp.physical.sys.DeleteStorageGroupPlan;
+import org.apache.iotdb.db.qp.physical.sys.DeleteTimeSeriesPlan;
+import org.apache.iotdb.db.qp.physical.sys.SetDeviceTemplatePlan;
+import org.apache.iotdb.db.qp.physical.sys.SetStorageGroupPlan;
+import org.apache.iotdb.db.qp.physical.sys.SetTTLPlan;
 import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.read.common.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * MLogWriter appends the metadata operations to the binary metadata log as serialized
+ * PhysicalPlans. Each entry is "length | plan | crc32 of plan" and is flushed when it is written
+ * or, inside a batch, when the batch ends, so a crash can only leave torn or missing entries at
+ * the tail, which are detected and dropped by MLogReader. The entry of a CreateTimeSeriesPlan is
+ * followed by the offset of its tags in the tag file before the checksum, the tags themselves are
+ * read from the tag file when the log is replayed.
+ */
 public class MLogWriter {
 
   private static final Logger logger = LoggerFactory.getLogger(MLogWriter.class);
   private File logFile;
-  private BufferedWriter writer;
+  private DataOutputStream writer;
+  private ByteArrayOutputStream entryBuffer = new ByteArrayOutputStream();
+  private DataOutputStream entryStream = new DataOutputStream(entryBuffer);
+  private CRC32 crc32 = new CRC32();
   private int lineNumber;
+  // whether the entries are flushed together by endBatch() instead of one by one
+  private boolean batching;
 
   public MLogWriter(String schemaDir, String logFileName) throws IOException {
     File metadataDir = SystemFileFactory.INSTANCE.getFile(schemaDir);
@@ -50,8 +81,7 @@ public class MLogWriter {
     }
 
     logFile = SystemFileFactory.INSTANCE.getFile(schemaDir + File.separator + logFileName);
-    FileWriter fileWriter = new FileWriter(logFile, true);
-    writer = new BufferedWriter(fileWriter);
+    writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
   }
 
   public void close() throws IOException {
@@ -59,65 +89,123 @@ public class MLogWriter {
   }
 
   public void createTimeseries(CreateTimeSeriesPlan plan, long offset) throws IOException {
-    writer.write(String.format("%s,%s,%s,%s,%s", MetadataOperationType.CREATE_TIMESERIES,
-        plan.getPath().getFullPath(), plan.getDataType().serialize(),
-        plan.getEncoding().serialize(), plan.getCompressor().serialize()));
-
-    writer.write(",");
-    if (plan.getProps() != null) {
-      boolean first = true;
-      for (Map.Entry<String, String> entry : plan.getProps().entrySet()) {
-        if (first) {
-          writer.write(String.format("%s=%s", entry.getKey(), entry.getValue()));
-          first = false;
-        } else {
-          writer.write(String.format("&%s=%s", entry.getKey(), entry.getValue()));
-        }
-      }
-    }
-
-    writer.write(",");
-    if (plan.getAlias() != null) {
-      writer.write(plan.getAlias());
-    }
-
-    writer.write(",");
-    if (offset >= 0) {
-      writer.write(String.valueOf(offset));
-    }
+    // the tags and attributes are in the tag file and may be altered there, so only the offset
+    // is logged
+    CreateTimeSeriesPlan logPlan = new CreateTimeSeriesPlan(plan.getPath(), plan.getDataType(),
+        plan.getEncoding(), plan.getCompressor(), plan.getProps(), null, null, plan.getAlias());
+    logPlan.serialize(entryStream);
+    entryStream.writeLong(offset);
     newLine();
   }
 
   public void deleteTimeseries(String path) throws IOException {
-    writer.write(MetadataOperationType.DELETE_TIMESERIES + "," + path);
+    new DeleteTimeSeriesPlan(Collections.singletonList(new Path(path))).serialize(entryStream);
     newLine();
   }
 
   public void setStorageGroup(String storageGroup) throws IOException {
-    writer.write(MetadataOperationType.SET_STORAGE_GROUP + "," + storageGroup);
+    new SetStorageGroupPlan(new Path(storageGroup)).serialize(entryStream);
     newLine();
   }
 
   public void deleteStorageGroup(String storageGroup) throws IOException {
-    writer.write(MetadataOperationType.DELETE_STORAGE_GROUP + "," + storageGroup);
+    new DeleteStorageGroupPlan(Collections.singletonList(new Path(storageGroup)))
+        .serialize(entryStream);
     newLine();
   }
 
   public void setTTL(String storageGroup, long ttl) throws IOException {
-    writer.write(String.format("%s,%s,%s", MetadataOperationType.SET_TTL, storageGroup, ttl));
+    new SetTTLPlan(storageGroup, ttl).serialize(entryStream);
     newLine();
   }
 
   public void changeOffset(String path, long offset) throws IOException {
-    writer.write(String.format("%s,%s,%s", MetadataOperationType.CHANGE_OFFSET, path, offset));
+    new ChangeTagOffsetPlan(new Path(path), offset).serialize(entryStream);
     newLine();
   }
 
   public void changeAlias(String path, String alias) throws IOException {
-    writer.write(String.format("%s,%s,%s", MetadataOperationType.CHANGE_ALIAS, path, alias));
+    new ChangeAliasPlan(new Path(path), alias).serialize(entryStream);
+    newLine();
+  }
+
+  public void createTemplate(CreateTemplatePlan plan) throws IOException {
+    plan.serialize(entryStream);
     newLine();
   }
 
+  public void setDeviceTemplate(String templateName, String prefixPath) throws IOException {
+    new SetDeviceTemplatePlan(templateName, new Path(prefixPath)).serialize(entryStream);
+    newLine();
+  }
+
+  public void activateTemplate(String deviceId) throws IOException {
+    new ActivateTemplatePlan(new Path(deviceId)).serialize(entryStream);
+    newLine();
+  }
+
+  /**
+   * format a plan read from the binary log as a line of the text log, which is what sync
+   * transfers. The tag offset of a CreateTimeSeriesPlan is dropped because it only makes sense in
+   * the local tag file.
+   *
+   * @return the line, or null if the plan is not a metadata operation of the text log, e.g., the
+   * operations of the schema templates
+   */
+  public static String toTxtOperation(PhysicalPlan plan) {
+    switch (plan.getOperatorType()) {
+      case CREATE_TIMESERIES:
+        CreateTimeSeriesPlan createPlan = (CreateTimeSeriesPlan) plan;
+        StringBuilder builder = new StringBuilder();
+        builder.append(MetadataOperationType.CREATE_TIMESERIES).append(',')
+            .append(createPlan.getPath().getFullPath()).append(',')
+            .append(createPlan.getDataType().serialize()).append(',')
+            .append(createPlan.getEncoding().serialize()).append(',')
+            .append(createPlan.getCompressor().serialize()).append(',');
+        if (createPlan.getProps() != null) {
+          boolean first = true;
+          for (Map.Entry<String, String> entry : createPlan.getProps().entrySet()) {
+            builder.append(first ? "" : "&").append(entry.getKey()).append('=')
+                .append(entry.getValue());
+            first = false;
+          }
+        }
+        builder.append(',');
+        if (createPlan.getAlias() != null) {
+          builder.append(createPlan.getAlias());
+        }
+        return builder.append(',').toString();
+      case DELETE_TIMESERIES:
+        return MetadataOperationType.DELETE_TIMESERIES + "," + joinPaths(plan.getPaths());
+      case SET_STORAGE_GROUP:
+        return MetadataOperationType.SET_STORAGE_GROUP + ","
+            + ((SetStorageGroupPlan) plan).getPath().getFullPath();
+      case DELETE_STORAGE_GROUP:
+        return MetadataOperationType.DELETE_STORAGE_GROUP + "," + joinPaths(plan.getPaths());
+      case TTL:
+        SetTTLPlan ttlPlan = (SetTTLPlan) plan;
+        return String.format("%s,%s,%s", MetadataOperationType.SET_TTL,
+            ttlPlan.getStorageGroup(), ttlPlan.getDataTTL());
+      case CHANGE_ALIAS:
+        ChangeAliasPlan aliasPlan = (ChangeAliasPlan) plan;
+        return String.format("%s,%s,%s", MetadataOperationType.CHANGE_ALIAS,
+            aliasPlan.getPath().getFullPath(), aliasPlan.getAlias());
+      default:
+        return null;
+    }
+  }
+
+  private static String joinPaths(List<Path> paths) {
+    StringBuilder builder = new StringBuilder();
+    for (Path path : paths) {
+      if (builder.length() > 0) {
+        builder.append(',');
+      }
+      builder.append(path.getFullPath());
+    }
+    return builder.toString();
+  }
+
   public static void upgradeMLog(String schemaDir, String logFileName) throws IOException {
     File logFile = SystemFileFactory.INSTANCE.getFile(schemaDir + File.separator + logFileName);
     File tmpLogFile = SystemFileFactory.INSTANCE.getFile(logFile.getAbsolutePath() + ".tmp");
@@ -157,17 +245,44 @@ public class MLogWriter {
   public void clear() throws IOException {
     writer.close();
     Files.delete(logFile.toPath());
-    FileWriter fileWriter = new FileWriter(logFile, true);
-    writer = new BufferedWriter(fileWriter);
+    writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
     lineNumber = 0;
   }
 
+  /**
+   * write the entry in entryStream with its length and checksum
+   */
   private void newLine() throws IOException {
-    writer.newLine();
-    writer.flush();
+    entryStream.flush();
+    byte[] entry = entryBuffer.toByteArray();
+    entryBuffer.reset();
+    crc32.reset();
+    crc32.update(entry, 0, entry.length);
+    writer.writeInt(entry.length);
+    writer.write(entry);
+    writer.writeInt((int) crc32.getValue());
+    if (!batching) {
+      writer.flush();
+    }
     ++lineNumber;
   }
 
+  /**
+   * the entries written until endBatch() stay in the buffer and are flushed together, the caller
+   * must hold the write lock of MManager through the batch
+   */
+  public void startBatch() {
+    batching = true;
+  }
+
+  public void endBatch() throws IOException {
+    batching = false;
+    writer.flush();
+  }
+
+  /**
+   * @return the number of entries written since the last snapshot
+   */
   int getLineNumber() {
     return lineNumber;
   }
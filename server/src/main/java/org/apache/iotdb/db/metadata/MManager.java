@@ -24,7 +24,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,14 +36,19 @@ import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
@@ -59,12 +66,24 @@ import org.apache.iotdb.db.exception.metadata.StorageGroupNotSetException;
 import org.apache.iotdb.db.metadata.mnode.MNode;
 import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
 import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
+import org.apache.iotdb.db.metadata.tag.PostingList;
+import org.apache.iotdb.db.metadata.tag.TagInvertedIndex;
+import org.apache.iotdb.db.metadata.template.Template;
 import org.apache.iotdb.db.monitor.MonitorConstants;
 import org.apache.iotdb.db.qp.constant.SQLConstant;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
+import org.apache.iotdb.db.qp.physical.sys.ActivateTemplatePlan;
+import org.apache.iotdb.db.qp.physical.sys.ChangeAliasPlan;
+import org.apache.iotdb.db.qp.physical.sys.ChangeTagOffsetPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTemplatePlan;
 import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.qp.physical.sys.SetDeviceTemplatePlan;
+import org.apache.iotdb.db.qp.physical.sys.SetStorageGroupPlan;
+import org.apache.iotdb.db.qp.physical.sys.SetTTLPlan;
+import org.apache.iotdb.db.qp.physical.sys.ShowDevicesPlan;
 import org.apache.iotdb.db.qp.physical.sys.ShowTimeSeriesPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.dataset.ShowTimeSeriesResult;
@@ -106,15 +125,36 @@ public class MManager {
   private String logFilePath;
   private String mtreeSnapshotPath;
   private String mtreeSnapshotTmpPath;
+  private String txtLogFilePath;
+  private String txtSnapshotPath;
+  private String txtSnapshotTmpPath;
+  private String tagIndexPath;
+  private String lastCacheSnapshotPath;
+  private String lastCacheSnapshotTmpPath;
   private MTree mtree;
   private MLogWriter logWriter;
   private TagLogFile tagLogFile;
   private boolean isRecovering;
   // device -> DeviceMNode
   private RandomDeleteCache<String, MNode> mNodeCache;
-
-  // tag key -> tag value -> LeafMNode
-  private Map<String, Map<String, Set<MeasurementMNode>>> tagIndex = new HashMap<>();
+  // device -> the device node and the schemas of the measurements last inserted, for the inserts
+  private DeviceSchemaCache deviceSchemaCache;
+  // increased whenever a path is added to or removed from the MTree, so that the caches built on
+  // the paths (e.g., the plans of prepared statements) know when they are stale
+  private AtomicLong schemaVersion = new AtomicLong();
+  // increased only when a timeseries or an alias is removed, which makes the entries of
+  // deviceSchemaCache stale, while a new timeseries does not change the resolved ones. It is
+  // increased both before and after the MTree is modified, so that the lock-free readers of
+  // deviceSchemaCache never see a stable version during the modification.
+  private AtomicLong resolvedSchemaVersion = new AtomicLong();
+
+  // tag key -> tag value -> ids of the timeseries
+  private TagInvertedIndex tagIndex;
+
+  // the last values loaded from the last cache snapshot, which are validated against the data files
+  // and moved into the nodes by the first last query of each timeseries
+  private final Map<MeasurementMNode, LastCacheSnapshot.Entry> persistedLastCache =
+      new ConcurrentHashMap<>();
 
   // storage group name -> the series number
   private Map<String, Integer> seriesNumberInStorageGroups = new HashMap<>();
@@ -126,6 +166,7 @@ public class MManager {
   private final int mtreeSnapshotInterval;
   private final long mtreeSnapshotThresholdTime;
   private ScheduledExecutorService timedCreateMTreeSnapshotThread;
+  private ScheduledExecutorService timedLastCacheSnapshotThread;
 
   private static class MManagerHolder {
 
@@ -152,6 +193,14 @@ public class MManager {
     logFilePath = schemaDir + File.separator + MetadataConstant.METADATA_LOG;
     mtreeSnapshotPath = schemaDir + File.separator + MetadataConstant.MTREE_SNAPSHOT;
     mtreeSnapshotTmpPath = schemaDir + File.separator + MetadataConstant.MTREE_SNAPSHOT_TMP;
+    txtLogFilePath = schemaDir + File.separator + MetadataConstant.METADATA_TXT_LOG;
+    txtSnapshotPath = schemaDir + File.separator + MetadataConstant.MTREE_TXT_SNAPSHOT;
+    txtSnapshotTmpPath = schemaDir + File.separator + MetadataConstant.MTREE_TXT_SNAPSHOT_TMP;
+    tagIndexPath = schemaDir + File.separator + MetadataConstant.TAG_INDEX;
+    lastCacheSnapshotPath = schemaDir + File.separator + MetadataConstant.LAST_CACHE_SNAPSHOT;
+    lastCacheSnapshotTmpPath =
+        schemaDir + File.separator + MetadataConstant.LAST_CACHE_SNAPSHOT_TMP;
+    tagIndex = new TagInvertedIndex(config.getTagAttributeTotalSize());
 
     // do not write log when recover
     isRecovering = true;
@@ -172,6 +221,8 @@ public class MManager {
       }
     };
 
+    deviceSchemaCache = new DeviceSchemaCache(cacheSize);
+
     int remoteCacheSize = config.getmRemoteSchemaCacheSize();
 
     timedCreateMTreeSnapshotThread = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r,
@@ -203,6 +254,8 @@ public class MManager {
 
       isRecovering = true;
       int lineNumber = initFromLog(logFile);
+      initTagIndex();
+      loadLastCache();
 
       if (config.isEnableParameterAdapter()) {
         List<String> storageGroups = mtree.getAllStorageGroupNames();
@@ -217,75 +270,309 @@ public class MManager {
       logWriter = new MLogWriter(config.getSchemaDir(), MetadataConstant.METADATA_LOG);
       logWriter.setLineNumber(lineNumber);
       isRecovering = false;
+
+      if (hasTxtMetadata() && snapshotMTree()) {
+        // the text metadata of an old version has been converted to the binary snapshot
+        deleteTxtMetadata();
+      }
     } catch (IOException | MetadataException e) {
       mtree = new MTree();
       logger.error("Cannot read MTree from file, using an empty new one", e);
     }
     initialized = true;
+
+    int lastCacheSnapshotInterval = config.getLastCacheSnapshotInterval();
+    if (lastCacheSnapshotInterval > 0) {
+      timedLastCacheSnapshotThread = Executors.newSingleThreadScheduledExecutor(
+          r -> new Thread(r, "timedLastCacheSnapshotThread"));
+      timedLastCacheSnapshotThread.scheduleAtFixedRate(this::snapshotLastCache,
+          lastCacheSnapshotInterval, lastCacheSnapshotInterval, TimeUnit.SECONDS);
+    }
   }
 
   /**
-   * @return line number of the logFile
+   * load the MTree from the binary snapshot and replay the binary log. If there is no binary
+   * snapshot but the text snapshot or log of an old version, they are loaded instead, and will be
+   * converted to the binary snapshot by init().
+   *
+   * @return the number of entries replayed from the binary log
    */
   @SuppressWarnings("squid:S3776")
   private int initFromLog(File logFile) throws IOException {
-    File tmpFile = SystemFileFactory.INSTANCE.getFile(mtreeSnapshotTmpPath);
-    if (tmpFile.exists()) {
-      logger.warn("Creating MTree snapshot not successful before crashing...");
-      Files.delete(tmpFile.toPath());
+    for (String tmpPath : new String[]{mtreeSnapshotTmpPath, txtSnapshotTmpPath}) {
+      File tmpFile = SystemFileFactory.INSTANCE.getFile(tmpPath);
+      if (tmpFile.exists()) {
+        logger.warn("Creating MTree snapshot not successful before crashing...");
+        Files.delete(tmpFile.toPath());
+      }
     }
 
     File mtreeSnapshot = SystemFileFactory.INSTANCE.getFile(mtreeSnapshotPath);
     long time = System.currentTimeMillis();
-    if (!mtreeSnapshot.exists()) {
-      mtree = new MTree();
-    } else {
+    if (mtreeSnapshot.exists()) {
       mtree = MTree.deserializeFrom(mtreeSnapshot);
       logger.debug("spend {} ms to deserialize mtree from snapshot",
           System.currentTimeMillis() - time);
+      if (hasTxtMetadata()) {
+        // left by a conversion which crashed after the binary snapshot was created
+        deleteTxtMetadata();
+      }
+    } else {
+      initFromTxtLog();
     }
 
     time = System.currentTimeMillis();
     // init the metadata from the operation log
-    if (logFile.exists()) {
-      int idx = 0;
-      try (FileReader fr = new FileReader(logFile);
+    if (!logFile.exists()) {
+      return 0;
+    }
+    int idx = 0;
+    long validLength;
+    boolean corrupted;
+    try (MLogReader reader = new MLogReader(logFile)) {
+      while (reader.hasNext()) {
+        PhysicalPlan plan = reader.next();
+        try {
+          operation(plan);
+          idx++;
+        } catch (Exception e) {
+          logger.error("Can not operate plan {}", plan, e);
+        }
+      }
+      validLength = reader.getValidLength();
+      corrupted = reader.isCorrupted();
+    } catch (IOException e) {
+      // not a torn tail left by a crash, so neither skipping nor truncating the entry is safe, and
+      // starting with part of the metadata would make the later entries inconsistent
+      throw new IllegalStateException(
+          "Cannot replay the metadata log " + logFile + ": " + e.getMessage(), e);
+    }
+    if (corrupted) {
+      // drop the torn tail so that the new entries are appended after the valid ones
+      try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+        channel.truncate(validLength);
+      }
+    }
+    logger.debug("spend {} ms to deserialize mtree from {}", System.currentTimeMillis() - time,
+        MetadataConstant.METADATA_LOG);
+    return idx;
+  }
+
+  /**
+   * load the tag inverted index persisted by the last clear(), or rebuild it from the tag log file
+   * if it is missing or stale. The persisted index is deleted once loaded, because the tags may be
+   * changed in place without being logged, and it is persisted again by the next clear().
+   */
+  private void initTagIndex() throws IOException {
+    long time = System.currentTimeMillis();
+    int recordSize = config.getTagAttributeTotalSize();
+    List<MeasurementMNode> taggedNodes = new ArrayList<>();
+    mtree.collectMeasurementMNodes(node -> {
+      if (node.getOffset() >= 0) {
+        taggedNodes.add(node);
+      }
+    });
+
+    File indexFile = SystemFileFactory.INSTANCE.getFile(tagIndexPath);
+    if (indexFile.exists()) {
+      TagInvertedIndex index = null;
+      try {
+        index = TagInvertedIndex.deserialize(indexFile, recordSize, tagLogFile.size());
+      } catch (IOException e) {
+        logger.warn("Cannot load the tag index from {}, it will be rebuilt", indexFile, e);
+      }
+      Files.delete(indexFile.toPath());
+      if (index != null) {
+        taggedNodes.forEach(index::attach);
+        if (index.isComplete()) {
+          tagIndex = index;
+          logger.debug("spend {} ms to load the tag index of {} timeseries",
+              System.currentTimeMillis() - time, taggedNodes.size());
+          return;
+        }
+        logger.warn("The tag index in {} is stale, it will be rebuilt", indexFile);
+      }
+    }
+
+    tagIndex = new TagInvertedIndex(recordSize);
+    for (MeasurementMNode node : taggedNodes) {
+      Map<String, String> tagMap = tagLogFile.readTag(recordSize, node.getOffset());
+      tagIndex.attach(node);
+      for (Entry<String, String> entry : tagMap.entrySet()) {
+        tagIndex.add(entry.getKey(), entry.getValue(), node);
+      }
+    }
+    logger.debug("spend {} ms to rebuild the tag index of {} timeseries",
+        System.currentTimeMillis() - time, taggedNodes.size());
+  }
+
+  /**
+   * load the last values persisted by snapshotLastCache(). The file is kept, so the values are
+   * still available if the server crashes before the next snapshot.
+   */
+  private void loadLastCache() {
+    File snapshotFile = SystemFileFactory.INSTANCE.getFile(lastCacheSnapshotPath);
+    if (!snapshotFile.exists()) {
+      return;
+    }
+    long time = System.currentTimeMillis();
+    Map<MeasurementMNode, LastCacheSnapshot.Entry> entries = new HashMap<>();
+    try {
+      MNode[] device = new MNode[1];
+      String[] devicePath = new String[1];
+      LastCacheSnapshot.deserialize(snapshotFile, (path, measurement, entry) -> {
+        if (!path.equals(devicePath[0])) {
+          devicePath[0] = path;
+          try {
+            device[0] = mtree.getNodeByPath(path);
+          } catch (MetadataException e) {
+            device[0] = null;
+          }
+        }
+        MNode node = device[0] == null ? null : device[0].getChild(measurement);
+        // the timeseries may be deleted or recreated with another type after the snapshot
+        if (node instanceof MeasurementMNode && ((MeasurementMNode) node).getSchema().getType()
+            == entry.getTimeValuePair().getValue().getDataType()) {
+          entries.put((MeasurementMNode) node, entry);
+        }
+      });
+    } catch (IOException e) {
+      logger.warn("Cannot load the last cache from {}, it will be rebuilt by the queries",
+          snapshotFile, e);
+      return;
+    }
+    persistedLastCache.putAll(entries);
+    logger.info("spend {} ms to load the last cache of {} timeseries",
+        System.currentTimeMillis() - time, entries.size());
+  }
+
+  /**
+   * persist the last values of all timeseries, including the loaded ones that are not queried yet
+   */
+  private void snapshotLastCache() {
+    long time = System.currentTimeMillis();
+    List<MeasurementMNode> nodes = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      mtree.collectMeasurementMNodes(nodes::add);
+    } finally {
+      lock.readLock().unlock();
+    }
+    persistedLastCache.keySet().removeIf(node -> node.getCachedLast() != null);
+
+    File tmpFile = SystemFileFactory.INSTANCE.getFile(lastCacheSnapshotTmpPath);
+    File snapshotFile = SystemFileFactory.INSTANCE.getFile(lastCacheSnapshotPath);
+    try {
+      LastCacheSnapshot.serialize(tmpFile, time, nodes, persistedLastCache);
+      Files.deleteIfExists(snapshotFile.toPath());
+      if (!tmpFile.renameTo(snapshotFile)) {
+        throw new IOException("Cannot rename " + tmpFile + " to " + snapshotFile);
+      }
+      logger.debug("spend {} ms to persist the last cache of {} timeseries",
+          System.currentTimeMillis() - time, nodes.size());
+    } catch (IOException e) {
+      logger.warn("Cannot persist the last cache to {}", snapshotFile, e);
+      try {
+        Files.deleteIfExists(tmpFile.toPath());
+      } catch (IOException ex) {
+        logger.warn("Cannot delete the broken last cache snapshot {}", tmpFile, ex);
+      }
+    }
+  }
+
+  private void saveTagIndex() {
+    File indexFile = SystemFileFactory.INSTANCE.getFile(tagIndexPath);
+    try {
+      tagIndex.serialize(indexFile, tagLogFile.size());
+    } catch (IOException e) {
+      logger.warn("Cannot persist the tag index to {}, it will be rebuilt", indexFile, e);
+      try {
+        Files.deleteIfExists(indexFile.toPath());
+      } catch (IOException ex) {
+        logger.warn("Cannot delete the broken tag index {}", indexFile, ex);
+      }
+    }
+  }
+
+  /**
+   * load the MTree from the text snapshot and log of an old version if they exist
+   */
+  private void initFromTxtLog() throws IOException {
+    File txtSnapshot = SystemFileFactory.INSTANCE.getFile(txtSnapshotPath);
+    if (txtSnapshot.exists()) {
+      mtree = MTree.deserializeFromTxt(txtSnapshot);
+    } else {
+      mtree = new MTree();
+    }
+
+    File txtLogFile = SystemFileFactory.INSTANCE.getFile(txtLogFilePath);
+    if (txtLogFile.exists()) {
+      long time = System.currentTimeMillis();
+      try (FileReader fr = new FileReader(txtLogFile);
           BufferedReader br = new BufferedReader(fr)) {
         String cmd;
         while ((cmd = br.readLine()) != null) {
           try {
             operation(cmd);
-            idx++;
           } catch (Exception e) {
             logger.error("Can not operate cmd {}", cmd, e);
           }
         }
       }
-      logger.debug("spend {} ms to deserialize mtree from mlog.txt",
-          System.currentTimeMillis() - time);
-      return idx;
-    } else if (mtreeSnapshot.exists()) {
-      throw new IOException("mtree snapshot file exists but mlog.txt does not exist.");
-    } else {
-      return 0;
+      logger.debug("spend {} ms to deserialize mtree from {}", System.currentTimeMillis() - time,
+          MetadataConstant.METADATA_TXT_LOG);
     }
   }
 
+  private boolean hasTxtMetadata() {
+    return SystemFileFactory.INSTANCE.getFile(txtSnapshotPath).exists()
+        || SystemFileFactory.INSTANCE.getFile(txtLogFilePath).exists();
+  }
+
+  private void deleteTxtMetadata() throws IOException {
+    Files.deleteIfExists(SystemFileFactory.INSTANCE.getFile(txtSnapshotPath).toPath());
+    Files.deleteIfExists(SystemFileFactory.INSTANCE.getFile(txtLogFilePath).toPath());
+    logger.info("The text metadata log and snapshot have been converted to {}",
+        MetadataConstant.MTREE_SNAPSHOT);
+  }
+
   /**
    * function for clearing MTree
    */
   public void clear() {
+    if (timedLastCacheSnapshotThread != null) {
+      // the running snapshot, if any, is finished before the last snapshot is created below
+      timedLastCacheSnapshotThread.shutdownNow();
+      try {
+        if (!timedLastCacheSnapshotThread.awaitTermination(1, TimeUnit.MINUTES)) {
+          logger.warn("The last cache snapshot thread still doesn't exit after 1 minute");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      timedLastCacheSnapshotThread = null;
+    }
     lock.writeLock().lock();
     try {
+      if (initialized && !isRecovering) {
+        snapshotLastCache();
+      }
+      this.persistedLastCache.clear();
+      invalidateSchemas();
       this.mtree = new MTree();
       this.mNodeCache.clear();
-      this.tagIndex.clear();
+      this.deviceSchemaCache.clear();
+      invalidateSchemas();
       this.seriesNumberInStorageGroups.clear();
       this.maxSeriesNumberAmongStorageGroup = 0;
       if (logWriter != null) {
         logWriter.close();
         logWriter = null;
       }
+      if (initialized && !isRecovering && tagLogFile != null) {
+        saveTagIndex();
+      }
+      this.tagIndex.clear();
       if (tagLogFile != null) {
         tagLogFile.close();
         tagLogFile = null;
@@ -362,6 +649,56 @@ public class MManager {
     }
   }
 
+  /**
+   * apply a plan read from the binary metadata log
+   */
+  public void operation(PhysicalPlan plan) throws IOException, MetadataException {
+    switch (plan.getOperatorType()) {
+      case CREATE_TIMESERIES:
+        CreateTimeSeriesPlan createPlan = (CreateTimeSeriesPlan) plan;
+        // the tags are not read here, the tag index is built after the recovery
+        createTimeseries(createPlan, createPlan.getTagOffset());
+        break;
+      case DELETE_TIMESERIES:
+        for (Path path : plan.getPaths()) {
+          String failedTimeseries = deleteTimeseries(path.getFullPath());
+          if (!failedTimeseries.isEmpty()) {
+            throw new DeleteFailedException(failedTimeseries);
+          }
+        }
+        break;
+      case SET_STORAGE_GROUP:
+        setStorageGroup(((SetStorageGroupPlan) plan).getPath().getFullPath());
+        break;
+      case DELETE_STORAGE_GROUP:
+        deleteStorageGroups(plan.getPaths().stream().map(Path::getFullPath).collect(toList()));
+        break;
+      case TTL:
+        SetTTLPlan ttlPlan = (SetTTLPlan) plan;
+        setTTL(ttlPlan.getStorageGroup(), ttlPlan.getDataTTL());
+        break;
+      case CHANGE_TAG_OFFSET:
+        ChangeTagOffsetPlan offsetPlan = (ChangeTagOffsetPlan) plan;
+        changeOffset(offsetPlan.getPath().getFullPath(), offsetPlan.getOffset());
+        break;
+      case CHANGE_ALIAS:
+        ChangeAliasPlan aliasPlan = (ChangeAliasPlan) plan;
+        changeAlias(aliasPlan.getPath().getFullPath(), aliasPlan.getAlias());
+        break;
+      case CREATE_TEMPLATE:
+        createTemplate((CreateTemplatePlan) plan);
+        break;
+      case SET_DEVICE_TEMPLATE:
+        setDeviceTemplate((SetDeviceTemplatePlan) plan);
+        break;
+      case ACTIVATE_TEMPLATE:
+        activateTemplate(((ActivateTemplatePlan) plan).getDevicePath().getFullPath());
+        break;
+      default:
+        logger.error("Unrecognizable plan {}", plan);
+    }
+  }
+
   public void createTimeseries(CreateTimeSeriesPlan plan) throws MetadataException {
     createTimeseries(plan, -1);
   }
@@ -392,15 +729,7 @@ public class MManager {
       MeasurementMNode leafMNode = mtree
           .createTimeseries(path, plan.getDataType(), plan.getEncoding(), plan.getCompressor(),
               plan.getProps(), plan.getAlias());
-
-      // update tag index
-      if (plan.getTags() != null) {
-        // tag key, tag value
-        for (Entry<String, String> entry : plan.getTags().entrySet()) {
-          tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
-              .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
-        }
-      }
+      schemaVersion.incrementAndGet();
 
       // update statistics
       if (config.isEnableParameterAdapter()) {
@@ -422,6 +751,14 @@ public class MManager {
       }
       leafMNode.setOffset(offset);
 
+      // update tag index, which is rebuilt or loaded after the recovery
+      if (!isRecovering && plan.getTags() != null) {
+        // tag key, tag value
+        for (Entry<String, String> entry : plan.getTags().entrySet()) {
+          tagIndex.add(entry.getKey(), entry.getValue(), leafMNode);
+        }
+      }
+
     } catch (IOException | ConfigAdjusterException e) {
       throw new MetadataException(e.getMessage());
     } finally {
@@ -446,6 +783,233 @@ public class MManager {
             null));
   }
 
+  /**
+   * create the timeseries under one acquisition of the write lock, and their log entries are
+   * flushed together instead of one by one. The timeseries that already exist are skipped.
+   *
+   * @return the exceptions of the timeseries that fail to be created, by their full paths
+   * @throws MetadataException if the log entries cannot be flushed
+   */
+  public Map<String, MetadataException> createTimeseries(List<CreateTimeSeriesPlan> plans)
+      throws MetadataException {
+    return createTimeseries(plans, Collections.emptyList());
+  }
+
+  /**
+   * the same as createTimeseries(plans), and the devices are made to use the templates set to
+   * their prefixes before the timeseries are created
+   *
+   * @return the exceptions of the timeseries and the devices that fail
+   */
+  private Map<String, MetadataException> createTimeseries(List<CreateTimeSeriesPlan> plans,
+      Collection<String> templateDevices) throws MetadataException {
+    Map<String, MetadataException> failures = new HashMap<>();
+    lock.writeLock().lock();
+    try {
+      logWriter.startBatch();
+      try {
+        for (String deviceId : templateDevices) {
+          try {
+            activateTemplate(deviceId);
+          } catch (MetadataException e) {
+            failures.put(deviceId, e);
+          }
+        }
+        for (CreateTimeSeriesPlan plan : plans) {
+          String path = plan.getPath().getFullPath();
+          try {
+            if (!mtree.isPathExist(path)) {
+              createTimeseries(plan, -1);
+            }
+          } catch (MetadataException e) {
+            failures.put(path, e);
+          }
+        }
+      } finally {
+        logWriter.endBatch();
+      }
+    } catch (IOException e) {
+      throw new MetadataException(e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return failures;
+  }
+
+  /**
+   * define a schema template, see Template
+   */
+  public void createTemplate(CreateTemplatePlan plan) throws MetadataException {
+    lock.writeLock().lock();
+    try {
+      mtree.createTemplate(plan);
+      if (!isRecovering) {
+        logWriter.createTemplate(plan);
+      }
+    } catch (IOException e) {
+      throw new MetadataException(e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * set a schema template to a prefix path without timeseries, the devices under the prefix use
+   * the template once they are written
+   */
+  public void setDeviceTemplate(SetDeviceTemplatePlan plan) throws MetadataException {
+    lock.writeLock().lock();
+    try {
+      String prefixPath = plan.getPrefixPath().getFullPath();
+      mtree.setDeviceTemplate(plan.getTemplateName(), prefixPath);
+      if (!isRecovering) {
+        logWriter.setDeviceTemplate(plan.getTemplateName(), prefixPath);
+      }
+    } catch (IOException e) {
+      throw new MetadataException(e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * make the device use the template set to it or its prefix, so the measurements of the template
+   * exist in the device without being created one by one. It is logged, so the device still uses
+   * the template after a restart.
+   */
+  private void activateTemplate(String deviceId) throws MetadataException {
+    lock.writeLock().lock();
+    try {
+      Template template = mtree.getUpperTemplate(deviceId);
+      if (template == null) {
+        throw new MetadataException(String.format("No template is set to %s", deviceId));
+      }
+      String storageGroupName;
+      try {
+        storageGroupName = mtree.getStorageGroupName(deviceId);
+      } catch (StorageGroupNotSetException e) {
+        if (!config.isAutoCreateSchemaEnabled()) {
+          throw e;
+        }
+        storageGroupName =
+            MetaUtils.getStorageGroupNameByLevel(deviceId, config.getDefaultStorageGroupLevel());
+        setStorageGroup(storageGroupName);
+      }
+      MNode deviceNode = mtree
+          .getDeviceNodeWithAutoCreating(deviceId, config.getDefaultStorageGroupLevel());
+      if (deviceNode.getTemplate() != null) {
+        return;
+      }
+
+      IoTDBConfigDynamicAdapter.getInstance().addOrDeleteTimeSeries(template.size());
+      deviceNode.useTemplate(template);
+      schemaVersion.incrementAndGet();
+
+      if (config.isEnableParameterAdapter()) {
+        int size = seriesNumberInStorageGroups.get(storageGroupName) + template.size();
+        seriesNumberInStorageGroups.put(storageGroupName, size);
+        if (size > maxSeriesNumberAmongStorageGroup) {
+          maxSeriesNumberAmongStorageGroup = size;
+        }
+      }
+      if (!isRecovering) {
+        logWriter.activateTemplate(deviceId);
+      }
+    } catch (IOException | ConfigAdjusterException e) {
+      throw new MetadataException(e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * create the missing timeseries of the insertions together before they are executed one by one,
+   * so that the first insertions into many new devices take the write lock and flush the log only
+   * once. The failures are only logged, they are reported again when the insertions are executed.
+   *
+   * The insertions whose schemas are in deviceSchemaCache are skipped without the lock of MManager,
+   * so the insertions into existing timeseries are not slowed down.
+   */
+  public void autoCreateTimeseries(List<? extends InsertPlan> plans) {
+    if (!config.isAutoCreateSchemaEnabled()) {
+      return;
+    }
+    long version = resolvedSchemaVersion.get();
+    List<InsertPlan> uncachedPlans = new ArrayList<>();
+    for (InsertPlan plan : plans) {
+      if (deviceSchemaCache.get(plan.getDeviceId(), plan.getMeasurements(), version) == null) {
+        uncachedPlans.add(plan);
+      }
+    }
+    if (uncachedPlans.isEmpty()) {
+      return;
+    }
+
+    Map<String, CreateTimeSeriesPlan> createPlans = new LinkedHashMap<>();
+    // the devices that will use the templates set to their prefixes
+    Set<String> templateDevices = new LinkedHashSet<>();
+    // the device node (null if it does not exist) and the upper template of each device, so that
+    // the rows of the same device look up the MTree only once
+    Map<String, MNode> deviceNodes = new HashMap<>();
+    Map<String, Template> templates = new HashMap<>();
+    lock.readLock().lock();
+    try {
+      for (InsertPlan plan : uncachedPlans) {
+        String deviceId = plan.getDeviceId();
+        if (!deviceNodes.containsKey(deviceId)) {
+          MNode node = mtree.isPathExist(deviceId) ? mtree.getNodeByPath(deviceId) : null;
+          deviceNodes.put(deviceId, node);
+          templates.put(deviceId, node != null && node.getTemplate() != null ? null
+              : mtree.getUpperTemplate(deviceId));
+        }
+        MNode deviceNode = deviceNodes.get(deviceId);
+        Template template = templates.get(deviceId);
+        String[] measurements = plan.getMeasurements();
+        for (int i = 0; i < measurements.length; i++) {
+          if (measurements[i] == null || deviceNode != null && deviceNode.hasChild(measurements[i])
+              || plan instanceof InsertRowPlan && ((InsertRowPlan) plan).getValues()[i] == null) {
+            continue;
+          }
+          if (template != null) {
+            templateDevices.add(deviceId);
+            if (template.indexOf(measurements[i]) >= 0) {
+              continue;
+            }
+          }
+          Path path = new Path(deviceId, measurements[i]);
+          if (!createPlans.containsKey(path.getFullPath())) {
+            createPlans.put(path.getFullPath(), newAutoCreatePlan(path, getTypeInLoc(plan, i)));
+          }
+        }
+      }
+    } catch (MetadataException e) {
+      logger.warn("Failed to collect the timeseries to be created: {}", e.getMessage());
+      return;
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    if (createPlans.isEmpty() && templateDevices.isEmpty()) {
+      return;
+    }
+    try {
+      Map<String, MetadataException> failures = createTimeseries(
+          new ArrayList<>(createPlans.values()), templateDevices);
+      for (Entry<String, MetadataException> entry : failures.entrySet()) {
+        logger.warn("Failed to auto create timeseries {}: {}", entry.getKey(),
+            entry.getValue().getMessage());
+      }
+    } catch (MetadataException e) {
+      logger.warn("Failed to auto create {} timeseries: {}", createPlans.size(), e.getMessage());
+    }
+  }
+
+  private CreateTimeSeriesPlan newAutoCreatePlan(Path path, TSDataType dataType) {
+    return new CreateTimeSeriesPlan(path, dataType, getDefaultEncoding(dataType),
+        TSFileDescriptor.getInstance().getConfig().getCompressor(), Collections.emptyMap(), null,
+        null, null);
+  }
+
   /**
    * Delete all timeseries under the given path, may cross different storage group
    *
@@ -500,28 +1064,20 @@ public class MManager {
    * remove the node from the tag inverted index
    */
   private void removeFromTagInvertedIndex(MeasurementMNode node) throws IOException {
-    if (node.getOffset() < 0) {
+    if (node.getOffset() < 0 || isRecovering) {
       return;
     }
     Map<String, String> tagMap =
         tagLogFile.readTag(config.getTagAttributeTotalSize(), node.getOffset());
     if (tagMap != null) {
       for (Entry<String, String> entry : tagMap.entrySet()) {
-        if (tagIndex.containsKey(entry.getKey()) && tagIndex.get(entry.getKey())
-            .containsKey(entry.getValue())) {
+        if (tagIndex.remove(entry.getKey(), entry.getValue(), node)) {
           if (logger.isDebugEnabled()) {
             logger.debug(String.format(
                 "Delete: TimeSeries %s is removed from tag inverted index, "
                     + "tag key is %s, tag value is %s, tlog offset is %d",
                 node.getFullPath(), entry.getKey(), entry.getValue(), node.getOffset()));
           }
-          tagIndex.get(entry.getKey()).get(entry.getValue()).remove(node);
-          if (tagIndex.get(entry.getKey()).get(entry.getValue()).isEmpty()) {
-            tagIndex.get(entry.getKey()).remove(entry.getValue());
-            if (tagIndex.get(entry.getKey()).isEmpty()) {
-              tagIndex.remove(entry.getKey());
-            }
-          }
         } else {
           if (logger.isDebugEnabled()) {
             logger.debug(String.format(
@@ -533,6 +1089,7 @@ public class MManager {
         }
       }
     }
+    tagIndex.detach(node);
   }
 
   /**
@@ -543,7 +1100,9 @@ public class MManager {
       throws MetadataException, IOException {
     lock.writeLock().lock();
     try {
+      invalidateSchemas();
       Pair<String, MeasurementMNode> pair = mtree.deleteTimeseriesAndReturnEmptyStorageGroup(path);
+      invalidateSchemas();
       removeFromTagInvertedIndex(pair.right);
       String storageGroupName = pair.left;
 
@@ -579,6 +1138,7 @@ public class MManager {
     lock.writeLock().lock();
     try {
       mtree.setStorageGroup(storageGroup);
+      schemaVersion.incrementAndGet();
       IoTDBConfigDynamicAdapter.getInstance().addOrDeleteStorageGroup(1);
 
       if (config.isEnableParameterAdapter()) {
@@ -612,7 +1172,9 @@ public class MManager {
         mNodeCache.clear();
 
         // try to delete storage group
+        invalidateSchemas();
         List<MeasurementMNode> leafMNodes = mtree.deleteStorageGroup(storageGroup);
+        invalidateSchemas();
         for (MeasurementMNode leafMNode : leafMNodes) {
           removeFromTagInvertedIndex(leafMNode);
         }
@@ -642,6 +1204,23 @@ public class MManager {
     }
   }
 
+  /**
+   * @return the version of the schema, which changes whenever a path is added to or removed from
+   * the MTree
+   */
+  public long getSchemaVersion() {
+    return schemaVersion.get();
+  }
+
+  /**
+   * called before and after a timeseries or an alias is removed, which makes both the caches built
+   * on the paths and the resolved schemas in deviceSchemaCache stale
+   */
+  private void invalidateSchemas() {
+    schemaVersion.incrementAndGet();
+    resolvedSchemaVersion.incrementAndGet();
+  }
+
   /**
    * Check if the given path is storage group or not.
    *
@@ -710,6 +1289,19 @@ public class MManager {
     }
   }
 
+  /**
+   * Get a page of the devices of the plan in the alphabetical order, which resumes after the
+   * cursor of the plan, so the read lock is only held for a page.
+   */
+  public List<String> getDevices(ShowDevicesPlan plan) throws MetadataException {
+    lock.readLock().lock();
+    try {
+      return mtree.getDevices(plan);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
   /**
    * Get all nodes from the given level
    *
@@ -833,72 +1425,60 @@ public class MManager {
       QueryContext context) throws MetadataException {
     lock.readLock().lock();
     try {
-      if (!tagIndex.containsKey(plan.getKey())) {
-        throw new MetadataException("The key " + plan.getKey() + " is not a tag.");
-      }
-      Map<String, Set<MeasurementMNode>> value2Node = tagIndex.get(plan.getKey());
-      if (value2Node.isEmpty()) {
-        throw new MetadataException("The key " + plan.getKey() + " is not a tag.");
-      }
-
-      List<MeasurementMNode> allMatchedNodes = new ArrayList<>();
-      if (plan.isContains()) {
-        for (Entry<String, Set<MeasurementMNode>> entry : value2Node.entrySet()) {
-          String tagValue = entry.getKey();
-          if (tagValue.contains(plan.getValue())) {
-            allMatchedNodes.addAll(entry.getValue());
-          }
-        }
-      } else {
-        for (Entry<String, Set<MeasurementMNode>> entry : value2Node.entrySet()) {
-          String tagValue = entry.getKey();
-          if (plan.getValue().equals(tagValue)) {
-            allMatchedNodes.addAll(entry.getValue());
-          }
-        }
-      }
+      PostingList matchedIds = tagIndex.match(plan.getTagFilter());
 
-      // if ordered by heat, we sort all the timeseries by the descending order of the last insert timestamp
+      // if ordered by heat, we sort all the timeseries by the descending order of the last insert
+      // timestamp, otherwise, we just sort them by the alphabetical order
+      Comparator<TagMatchedSeries> comparator = Comparator.comparing(series -> series.fullPath);
       if (plan.isOrderByHeat()) {
-        allMatchedNodes = allMatchedNodes.stream().sorted(Comparator
-            .comparingLong((MeasurementMNode mNode) -> MTree.getLastTimeStamp(mNode, context))
-            .reversed().thenComparing(MNode::getFullPath)).collect(toList());
-      } else {
-        // otherwise, we just sort them by the alphabetical order
-        allMatchedNodes = allMatchedNodes.stream().sorted(Comparator.comparing(MNode::getFullPath))
-            .collect(toList());
+        comparator = Comparator.comparingLong((TagMatchedSeries series) -> series.lastTimestamp)
+            .reversed().thenComparing(comparator);
       }
-
-      List<ShowTimeSeriesResult> res = new LinkedList<>();
-      String[] prefixNodes = MetaUtils.getNodeNames(plan.getPath().getFullPath());
-      int curOffset = -1;
-      int count = 0;
+      // only the first offset + limit matched timeseries are kept in a max heap, so a page of the
+      // result does not materialize all the matched timeseries
       int limit = plan.getLimit();
       int offset = plan.getOffset();
-      for (MeasurementMNode leaf : allMatchedNodes) {
-        if (match(leaf.getFullPath(), prefixNodes)) {
-          if (limit != 0 || offset != 0) {
-            curOffset++;
-            if (curOffset < offset || count == limit) {
-              continue;
-            }
-          }
-          try {
-            Pair<Map<String, String>, Map<String, String>> pair =
-                tagLogFile.read(config.getTagAttributeTotalSize(), leaf.getOffset());
-            pair.left.putAll(pair.right);
-            MeasurementSchema measurementSchema = leaf.getSchema();
-            res.add(new ShowTimeSeriesResult(leaf.getFullPath(), leaf.getAlias(),
-                getStorageGroupName(leaf.getFullPath()), measurementSchema.getType().toString(),
-                measurementSchema.getEncodingType().toString(),
-                measurementSchema.getCompressor().toString(), pair.left));
-            if (limit != 0) {
-              count++;
-            }
-          } catch (IOException e) {
-            throw new MetadataException(
-                "Something went wrong while deserialize tag info of " + leaf.getFullPath(), e);
-          }
+      long capacity = limit == 0 ? Long.MAX_VALUE : (long) offset + limit;
+      PriorityQueue<TagMatchedSeries> heap = new PriorityQueue<>(comparator.reversed());
+      String[] prefixNodes = MetaUtils.getNodeNames(plan.getPath().getFullPath());
+      Comparator<TagMatchedSeries> finalComparator = comparator;
+      matchedIds.forEach(id -> {
+        MeasurementMNode leaf = tagIndex.getNode(id);
+        if (leaf == null) {
+          return;
+        }
+        String fullPath = leaf.getFullPath();
+        if (!match(fullPath, prefixNodes)) {
+          return;
+        }
+        TagMatchedSeries series = new TagMatchedSeries(leaf, fullPath,
+            plan.isOrderByHeat() ? MTree.getLastTimeStamp(leaf, context) : 0);
+        if (heap.size() < capacity) {
+          heap.add(series);
+        } else if (finalComparator.compare(series, heap.peek()) < 0) {
+          heap.poll();
+          heap.add(series);
+        }
+      });
+
+      List<TagMatchedSeries> matchedSeries = new ArrayList<>(heap);
+      matchedSeries.sort(comparator);
+      List<ShowTimeSeriesResult> res = new LinkedList<>();
+      for (int i = offset; i < matchedSeries.size(); i++) {
+        MeasurementMNode leaf = matchedSeries.get(i).node;
+        String fullPath = matchedSeries.get(i).fullPath;
+        try {
+          Pair<Map<String, String>, Map<String, String>> pair =
+              tagLogFile.read(config.getTagAttributeTotalSize(), leaf.getOffset());
+          pair.left.putAll(pair.right);
+          MeasurementSchema measurementSchema = leaf.getSchema();
+          res.add(new ShowTimeSeriesResult(fullPath, leaf.getAlias(),
+              getStorageGroupName(fullPath), measurementSchema.getType().toString(),
+              measurementSchema.getEncodingType().toString(),
+              measurementSchema.getCompressor().toString(), pair.left));
+        } catch (IOException e) {
+          throw new MetadataException(
+              "Something went wrong while deserialize tag info of " + fullPath, e);
         }
       }
       return res;
@@ -907,6 +1487,19 @@ public class MManager {
     }
   }
 
+  private static class TagMatchedSeries {
+
+    private final MeasurementMNode node;
+    private final String fullPath;
+    private final long lastTimestamp;
+
+    private TagMatchedSeries(MeasurementMNode node, String fullPath, long lastTimestamp) {
+      this.node = node;
+      this.fullPath = fullPath;
+      this.lastTimestamp = lastTimestamp;
+    }
+  }
+
   /**
    * whether the full path has the prefixNodes
    */
@@ -926,7 +1519,7 @@ public class MManager {
   public List<ShowTimeSeriesResult> showTimeseries(ShowTimeSeriesPlan plan, QueryContext context)
       throws MetadataException {
     // show timeseries with index
-    if (plan.getKey() != null && plan.getValue() != null) {
+    if (plan.getTagFilter() != null) {
       return showTimeseriesWithIndex(plan, context);
     } else {
       return showTimeseriesWithoutIndex(plan, context);
@@ -1213,7 +1806,7 @@ public class MManager {
   public void changeOffset(String path, long offset) throws MetadataException {
     lock.writeLock().lock();
     try {
-      ((MeasurementMNode) mtree.getNodeByPath(path)).setOffset(offset);
+      mtree.materialize((MeasurementMNode) mtree.getNodeByPath(path)).setOffset(offset);
     } finally {
       lock.writeLock().unlock();
     }
@@ -1222,12 +1815,15 @@ public class MManager {
   public void changeAlias(String path, String alias) throws MetadataException {
     lock.writeLock().lock();
     try {
-      MeasurementMNode leafMNode = (MeasurementMNode) mtree.getNodeByPath(path);
+      MeasurementMNode leafMNode = mtree
+          .materialize((MeasurementMNode) mtree.getNodeByPath(path));
+      invalidateSchemas();
       if (leafMNode.getAlias() != null) {
         leafMNode.getParent().deleteAliasChild(leafMNode.getAlias());
       }
       leafMNode.getParent().addAlias(alias, leafMNode);
       leafMNode.setAlias(alias);
+      invalidateSchemas();
     } finally {
       lock.writeLock().unlock();
     }
@@ -1250,18 +1846,21 @@ public class MManager {
       if (!(mNode instanceof MeasurementMNode)) {
         throw new PathNotExistException(fullPath);
       }
-      MeasurementMNode leafMNode = (MeasurementMNode) mNode;
+      // a template measurement becomes a node of its own to have tags, attributes or an alias
+      MeasurementMNode leafMNode = mtree.materialize((MeasurementMNode) mNode);
       // upsert alias
       if (alias != null && !alias.equals(leafMNode.getAlias())) {
 
         if (leafMNode.getParent().hasChild(alias)) {
           throw new MetadataException("The alias already exists.");
         }
+        invalidateSchemas();
         if (leafMNode.getAlias() != null) {
           leafMNode.getParent().deleteAliasChild(leafMNode.getAlias());
         }
         leafMNode.getParent().addAlias(alias, leafMNode);
         leafMNode.setAlias(alias);
+        invalidateSchemas();
         // persist to WAL
         logWriter.changeAlias(fullPath, alias);
       }
@@ -1277,8 +1876,7 @@ public class MManager {
         // update inverted Index map
         if (tagsMap != null) {
           for (Entry<String, String> entry : tagsMap.entrySet()) {
-            tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
-                .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+            tagIndex.add(entry.getKey(), entry.getValue(), leafMNode);
           }
         }
         return;
@@ -1297,18 +1895,13 @@ public class MManager {
           // we should remove before key-value from inverted index map
           if (beforeValue != null && !beforeValue.equals(value)) {
 
-            if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(beforeValue)) {
+            if (tagIndex.remove(key, beforeValue, leafMNode)) {
               if (logger.isDebugEnabled()) {
                 logger.debug(String.format(
                     "Upsert: TimeSeries %s is removed from tag inverted index, "
                         + "tag key is %s, tag value is %s, tlog offset is %d",
                     leafMNode.getFullPath(), key, beforeValue, leafMNode.getOffset()));
               }
-
-              tagIndex.get(key).get(beforeValue).remove(leafMNode);
-              if (tagIndex.get(key).get(beforeValue).isEmpty()) {
-                tagIndex.get(key).remove(beforeValue);
-              }
             } else {
               if (logger.isDebugEnabled()) {
                 logger.debug(String.format(
@@ -1323,8 +1916,7 @@ public class MManager {
           // if the key doesn't exist or the value is not equal to the new one
           // we should add a new key-value to inverted index map
           if (beforeValue == null || !beforeValue.equals(value)) {
-            tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-                .computeIfAbsent(value, v -> new HashSet<>()).add(leafMNode);
+            tagIndex.add(key, value, leafMNode);
           }
         }
       }
@@ -1353,7 +1945,7 @@ public class MManager {
       if (!(mNode instanceof MeasurementMNode)) {
         throw new PathNotExistException(fullPath);
       }
-      MeasurementMNode leafMNode = (MeasurementMNode) mNode;
+      MeasurementMNode leafMNode = mtree.materialize((MeasurementMNode) mNode);
       // no tag or attribute, we need to add a new record in log
       if (leafMNode.getOffset() < 0) {
         long offset = tagLogFile.write(Collections.emptyMap(), attributesMap);
@@ -1396,7 +1988,7 @@ public class MManager {
       if (!(mNode instanceof MeasurementMNode)) {
         throw new PathNotExistException(fullPath);
       }
-      MeasurementMNode leafMNode = (MeasurementMNode) mNode;
+      MeasurementMNode leafMNode = mtree.materialize((MeasurementMNode) mNode);
       // no tag or attribute, we need to add a new record in log
       if (leafMNode.getOffset() < 0) {
         long offset = tagLogFile.write(tagsMap, Collections.emptyMap());
@@ -1404,8 +1996,7 @@ public class MManager {
         leafMNode.setOffset(offset);
         // update inverted Index map
         for (Entry<String, String> entry : tagsMap.entrySet()) {
-          tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
-              .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+          tagIndex.add(entry.getKey(), entry.getValue(), leafMNode);
         }
         return;
       }
@@ -1427,8 +2018,7 @@ public class MManager {
       tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
 
       // update tag inverted map
-      tagsMap.forEach((key, value) -> tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-          .computeIfAbsent(value, v -> new HashSet<>()).add(leafMNode));
+      tagsMap.forEach((key, value) -> tagIndex.add(key, value, leafMNode));
 
     } finally {
       lock.writeLock().unlock();
@@ -1475,21 +2065,13 @@ public class MManager {
         String key = entry.getKey();
         String value = entry.getValue();
         // change the tag inverted index map
-        if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(value)) {
+        if (tagIndex.remove(key, value, leafMNode)) {
           if (logger.isDebugEnabled()) {
             logger.debug(String.format(
                 "Drop: TimeSeries %s is removed from tag inverted index, "
                     + "tag key is %s, tag value is %s, tlog offset is %d",
                 leafMNode.getFullPath(), entry.getKey(), entry.getValue(), leafMNode.getOffset()));
           }
-
-          tagIndex.get(key).get(value).remove(leafMNode);
-          if (tagIndex.get(key).get(value).isEmpty()) {
-            tagIndex.get(key).remove(value);
-            if (tagIndex.get(key).isEmpty()) {
-              tagIndex.remove(key);
-            }
-          }
         } else {
           if (logger.isDebugEnabled()) {
             logger.debug(String.format(
@@ -1557,7 +2139,7 @@ public class MManager {
         String beforeValue = entry.getValue();
         String currentValue = newTagValue.get(key);
         // change the tag inverted index map
-        if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(beforeValue)) {
+        if (tagIndex.remove(key, beforeValue, leafMNode)) {
 
           if (logger.isDebugEnabled()) {
             logger.debug(String.format(
@@ -1565,8 +2147,6 @@ public class MManager {
                     + "tag key is %s, tag value is %s, tlog offset is %d",
                 leafMNode.getFullPath(), entry.getKey(), beforeValue, leafMNode.getOffset()));
           }
-
-          tagIndex.get(key).get(beforeValue).remove(leafMNode);
         } else {
           if (logger.isDebugEnabled()) {
             logger.debug(String.format(
@@ -1576,8 +2156,7 @@ public class MManager {
                 tagIndex.containsKey(key)));
           }
         }
-        tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-            .computeIfAbsent(currentValue, k -> new HashSet<>()).add(leafMNode);
+        tagIndex.add(key, currentValue, leafMNode);
       }
     } finally {
       lock.writeLock().unlock();
@@ -1622,7 +2201,7 @@ public class MManager {
         // persist the change to disk
         tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
         // change the tag inverted index map
-        if (tagIndex.containsKey(oldKey) && tagIndex.get(oldKey).containsKey(value)) {
+        if (tagIndex.remove(oldKey, value, leafMNode)) {
 
           if (logger.isDebugEnabled()) {
             logger.debug(String.format(
@@ -1630,9 +2209,6 @@ public class MManager {
                     + "tag key is %s, tag value is %s, tlog offset is %d",
                 leafMNode.getFullPath(), oldKey, value, leafMNode.getOffset()));
           }
-
-          tagIndex.get(oldKey).get(value).remove(leafMNode);
-
         } else {
           if (logger.isDebugEnabled()) {
             logger.debug(String.format(
@@ -1642,8 +2218,7 @@ public class MManager {
                 tagIndex.containsKey(oldKey)));
           }
         }
-        tagIndex.computeIfAbsent(newKey, k -> new HashMap<>())
-            .computeIfAbsent(value, k -> new HashSet<>()).add(leafMNode);
+        tagIndex.add(newKey, value, leafMNode);
       } else if (pair.right.containsKey(oldKey)) {
         // check attribute map
         pair.right.put(newKey, pair.right.remove(oldKey));
@@ -1801,6 +2376,14 @@ public class MManager {
     }
   }
 
+  /**
+   * remove and return the last value of the timeseries loaded from the last cache snapshot. The
+   * caller should validate it against the data files before using it.
+   */
+  public LastCacheSnapshot.Entry pollPersistedLastCache(MeasurementMNode node) {
+    return persistedLastCache.isEmpty() ? null : persistedLastCache.remove(node);
+  }
+
   public TimeValuePair getLastCache(String seriesPath) {
     try {
       MeasurementMNode node = (MeasurementMNode) mtree.getNodeByPath(seriesPath);
@@ -1834,6 +2417,13 @@ public class MManager {
   }
 
   public void createMTreeSnapshot() {
+    snapshotMTree();
+  }
+
+  /**
+   * @return whether the snapshot is created
+   */
+  private boolean snapshotMTree() {
     lock.readLock().lock();
     long time = System.currentTimeMillis();
     logger.info("Start creating MTree snapshot to {}", mtreeSnapshotPath);
@@ -1844,11 +2434,13 @@ public class MManager {
       if (snapshotFile.exists()) {
         Files.delete(snapshotFile.toPath());
       }
-      if (tmpFile.renameTo(snapshotFile)) {
-        logger.info("Finish creating MTree snapshot to {}, spend {} ms.", mtreeSnapshotPath,
-            System.currentTimeMillis() - time);
+      if (!tmpFile.renameTo(snapshotFile)) {
+        throw new IOException("Cannot rename " + tmpFile + " to " + snapshotFile);
       }
+      logger.info("Finish creating MTree snapshot to {}, spend {} ms.", mtreeSnapshotPath,
+          System.currentTimeMillis() - time);
       logWriter.clear();
+      return true;
     } catch (IOException e) {
       logger.warn("Failed to create MTree snapshot to {}", mtreeSnapshotPath, e);
       if (SystemFileFactory.INSTANCE.getFile(mtreeSnapshotTmpPath).exists()) {
@@ -1858,6 +2450,7 @@ public class MManager {
           logger.warn("delete file {} failed: {}", mtreeSnapshotTmpPath, e1.getMessage());
         }
       }
+      return false;
     } finally {
       lock.readLock().unlock();
     }
@@ -1870,34 +2463,43 @@ public class MManager {
    */
   public MeasurementSchema[] getSeriesSchemasAndReadLockDevice(String deviceId,
       String[] measurementList, InsertPlan plan) throws MetadataException {
-    MeasurementSchema[] schemas = new MeasurementSchema[measurementList.length];
+    plan.setDeviceMNode(null);
+    long version = resolvedSchemaVersion.get();
+    MeasurementSchema[] schemas = getCachedSchemasAndReadLockDevice(deviceId, measurementList,
+        plan, version);
+    if (schemas != null) {
+      return schemas;
+    }
+
+    schemas = new MeasurementSchema[measurementList.length];
+    // the measurements may be replaced by the ids of the aliases
+    String[] measurements = measurementList.clone();
+    boolean allResolved = true;
 
     MNode deviceNode;
     // 1. get device node
     deviceNode = getDeviceNodeWithAutoCreateAndReadLock(deviceId);
+    plan.setDeviceMNode(deviceNode);
+
+    // 2. create the missing measurements together
+    Map<String, MetadataException> creationFailures = Collections.emptyMap();
+    if (config.isAutoCreateSchemaEnabled()) {
+      creationFailures = createMissingTimeseries(deviceNode, deviceId, measurementList, plan);
+    }
 
-    // 2. get schema of each measurement
+    // 3. get schema of each measurement
     for (int i = 0; i < measurementList.length; i++) {
       try {
         // if do not has measurement
         if (!deviceNode.hasChild(measurementList[i])) {
-          // could not create it
-          if (!config.isAutoCreateSchemaEnabled()) {
-            throw new MetadataException(String.format(
-                "Current deviceId[%s] does not contain measurement:%s", deviceId,
-                measurementList[i]));
+          MetadataException failure = creationFailures
+              .get(new Path(deviceId, measurementList[i]).getFullPath());
+          if (failure != null) {
+            throw failure;
           }
-
-          // create it
-          Path path = new Path(deviceId, measurementList[i]);
-          TSDataType dataType = getTypeInLoc(plan, i);
-
-          createTimeseries(
-              path.getFullPath(),
-              dataType,
-              getDefaultEncoding(dataType),
-              TSFileDescriptor.getInstance().getConfig().getCompressor(),
-              Collections.emptyMap());
+          throw new MetadataException(String.format(
+              "Current deviceId[%s] does not contain measurement:%s", deviceId,
+              measurementList[i]));
         }
 
         MeasurementMNode measurementNode = (MeasurementMNode) getChild(deviceNode,
@@ -1926,6 +2528,7 @@ public class MManager {
           } else {
             // mark failed measurement
             plan.markFailedMeasurementInsertion(i);
+            allResolved = false;
             continue;
           }
         }
@@ -1940,17 +2543,117 @@ public class MManager {
         if (config.isEnablePartialInsert()) {
           // mark failed measurement
           plan.markFailedMeasurementInsertion(i);
+          allResolved = false;
         } else {
           throw e;
         }
       }
     }
 
-    plan.setDeviceMNode(deviceNode);
+    if (allResolved) {
+      deviceSchemaCache
+          .put(deviceId, new DeviceSchemaCache.Entry(deviceNode, measurements, schemas, version));
+    }
+    return schemas;
+  }
+
+  /**
+   * create the measurements of the plan missing in the device in one batch
+   *
+   * @return the exceptions of the timeseries that fail to be created, by their full paths
+   */
+  private Map<String, MetadataException> createMissingTimeseries(MNode deviceNode,
+      String deviceId, String[] measurementList, InsertPlan plan) throws MetadataException {
+    List<CreateTimeSeriesPlan> createPlans = new ArrayList<>();
+    Map<String, MetadataException> failures = new HashMap<>();
+    Template template = null;
+    for (int i = 0; i < measurementList.length; i++) {
+      if (deviceNode.hasChild(measurementList[i])) {
+        continue;
+      }
+      if (template == null && deviceNode.getTemplate() == null) {
+        template = getUpperTemplate(deviceId);
+      }
+      if (template != null && template.indexOf(measurementList[i]) >= 0) {
+        // created by making the device use the template
+        continue;
+      }
+      Path path = new Path(deviceId, measurementList[i]);
+      try {
+        createPlans.add(newAutoCreatePlan(path, getTypeInLoc(plan, i)));
+      } catch (MetadataException e) {
+        failures.put(path.getFullPath(), e);
+      }
+    }
+    if (!createPlans.isEmpty() || template != null) {
+      failures.putAll(createTimeseries(createPlans, template == null ? Collections.emptyList()
+          : Collections.singletonList(deviceId)));
+    }
+    return failures;
+  }
+
+  private Template getUpperTemplate(String deviceId) {
+    lock.readLock().lock();
+    try {
+      return mtree.getUpperTemplate(deviceId);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
 
+  /**
+   * get the schemas from deviceSchemaCache without the lock of MManager, which allocates nothing
+   *
+   * @return the schemas, or null if they are not cached in the given schema version or their data
+   * types do not match the plan, and then the device is not locked
+   */
+  private MeasurementSchema[] getCachedSchemasAndReadLockDevice(String deviceId,
+      String[] measurementList, InsertPlan plan, long version) {
+    DeviceSchemaCache.Entry entry = deviceSchemaCache.get(deviceId, measurementList, version);
+    if (entry == null) {
+      return null;
+    }
+    MNode deviceNode = entry.getDeviceNode();
+    deviceNode.readLock();
+    MeasurementSchema[] schemas = entry.getSchemas();
+    // check the version again in case a timeseries is deleted before the device is locked
+    if (resolvedSchemaVersion.get() != version || !isDataTypeMatched(plan, schemas)) {
+      deviceNode.readUnlock();
+      return null;
+    }
+    for (int i = 0; i < measurementList.length; i++) {
+      measurementList[i] = schemas[i].getMeasurementId();
+    }
+    plan.setDeviceMNode(deviceNode);
     return schemas;
   }
 
+  private boolean isDataTypeMatched(InsertPlan plan, MeasurementSchema[] schemas) {
+    if (plan instanceof InsertRowPlan) {
+      InsertRowPlan rowPlan = (InsertRowPlan) plan;
+      if (rowPlan.isNeedInferType()) {
+        // the values are transferred to the types of the schemas later
+        return true;
+      }
+      Object[] values = rowPlan.getValues();
+      for (int i = 0; i < schemas.length; i++) {
+        if (TypeInferenceUtils.getPredictedDataType(values[i], false) != schemas[i].getType()) {
+          return false;
+        }
+      }
+      return true;
+    } else if (plan instanceof InsertTabletPlan) {
+      TSDataType[] dataTypes = plan.getDataTypes();
+      for (int i = 0; i < schemas.length; i++) {
+        if (dataTypes[i] != schemas[i].getType()) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
   /**
    * Get default encoding by dataType
    */
@@ -1995,6 +2698,17 @@ public class MManager {
     return dataType;
   }
 
+  /**
+   * unlock the device node locked by getSeriesSchemasAndReadLockDevice() for the plan, which does
+   * not need to find the node again
+   */
+  public void unlockDeviceReadLock(InsertPlan plan) {
+    MNode deviceNode = plan.getDeviceMNode();
+    if (deviceNode != null) {
+      deviceNode.readUnlock();
+    }
+  }
+
   /**
    * when insert, we lock device node for not create deleted time series after insert, we should
    * call this function to unlock the device node
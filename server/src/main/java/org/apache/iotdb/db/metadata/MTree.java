@@ -27,10 +27,8 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayDeque;
@@ -40,14 +38,16 @@ import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.apache.iotdb.db.conf.IoTDBConstant;
@@ -64,6 +64,10 @@ import org.apache.iotdb.db.metadata.MManager.StorageGroupFilter;
 import org.apache.iotdb.db.metadata.mnode.MNode;
 import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
 import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
+import org.apache.iotdb.db.metadata.template.Template;
+import org.apache.iotdb.db.qp.physical.sys.CreateTemplatePlan;
+import org.apache.iotdb.db.qp.physical.sys.ShowDevicesPlan;
+import org.apache.iotdb.db.qp.physical.sys.ShowPlan.ShowContentType;
 import org.apache.iotdb.db.qp.physical.sys.ShowTimeSeriesPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.tsfile.common.constant.TsFileConstant;
@@ -86,10 +90,10 @@ public class MTree implements Serializable {
   private static final Logger logger = LoggerFactory.getLogger(MTree.class);
 
   private MNode root;
-  private static transient ThreadLocal<Integer> limit = new ThreadLocal<>();
-  private static transient ThreadLocal<Integer> offset = new ThreadLocal<>();
-  private static transient ThreadLocal<Integer> count = new ThreadLocal<>();
-  private static transient ThreadLocal<Integer> curOffset = new ThreadLocal<>();
+  // template name -> template
+  private Map<String, Template> templates = new HashMap<>();
+  // prefix path -> the template set to the prefix, which is used by the devices under the prefix
+  private Map<String, Template> templatePrefixes = new HashMap<>();
 
   MTree() {
     this.root = new MNode(null, IoTDBConstant.PATH_ROOT);
@@ -99,6 +103,12 @@ public class MTree implements Serializable {
     this.root = root;
   }
 
+  MTree(MNode root, Map<String, Template> templates, Map<String, Template> templatePrefixes) {
+    this.root = root;
+    this.templates = templates;
+    this.templatePrefixes = templatePrefixes;
+  }
+
   /**
    * Create a timeseries with a full path from root to leaf node Before creating a timeseries, the
    * storage group should be set first, throw exception otherwise
@@ -155,6 +165,105 @@ public class MTree implements Serializable {
     return leaf;
   }
 
+  /**
+   * Define a template, whose measurements are created in the devices that use it.
+   */
+  void createTemplate(CreateTemplatePlan plan) throws MetadataException {
+    if (templates.containsKey(plan.getName())) {
+      throw new MetadataException(
+          String.format("Template %s already exists", plan.getName()));
+    }
+    Set<String> measurements = new HashSet<>();
+    for (String measurement : plan.getMeasurements()) {
+      if (!measurements.add(measurement)) {
+        throw new MetadataException(String.format("Template %s has duplicated measurement %s",
+            plan.getName(), measurement));
+      }
+    }
+    templates.put(plan.getName(), new Template(plan));
+  }
+
+  /**
+   * Set a template to a prefix path, which has no timeseries. The devices under the prefix use the
+   * template once they are written, see MManager.activateTemplate(). The templates set to the
+   * paths can not be nested.
+   */
+  void setDeviceTemplate(String templateName, String prefixPath) throws MetadataException {
+    Template template = templates.get(templateName);
+    if (template == null) {
+      throw new MetadataException(String.format("Template %s does not exist", templateName));
+    }
+    String[] nodeNames = MetaUtils.getNodeNames(prefixPath);
+    if (nodeNames.length <= 1 || !nodeNames[0].equals(root.getName())) {
+      throw new IllegalPathException(prefixPath);
+    }
+    for (Entry<String, Template> entry : templatePrefixes.entrySet()) {
+      String prefix = entry.getKey();
+      if (isPrefixOrEqual(prefix, prefixPath) || isPrefixOrEqual(prefixPath, prefix)) {
+        throw new MetadataException(String.format("Template %s is already set to %s",
+            entry.getValue().getName(), prefix));
+      }
+    }
+    if (isPathExist(prefixPath) && getNodeByPath(prefixPath).getLeafCount() > 0) {
+      throw new MetadataException(String.format(
+          "Template can not be set to %s, which already has timeseries", prefixPath));
+    }
+    templatePrefixes.put(prefixPath, template);
+  }
+
+  private static boolean isPrefixOrEqual(String prefix, String path) {
+    return path.startsWith(prefix) && (path.length() == prefix.length()
+        || path.charAt(prefix.length()) == IoTDBConstant.PATH_SEPARATOR);
+  }
+
+  /**
+   * @return the template set to the device or a prefix of it, or null if there is none
+   */
+  Template getUpperTemplate(String deviceId) {
+    if (templatePrefixes.isEmpty()) {
+      return null;
+    }
+    for (Entry<String, Template> entry : templatePrefixes.entrySet()) {
+      if (isPrefixOrEqual(entry.getKey(), deviceId)) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  Template getTemplate(String templateName) {
+    return templates.get(templateName);
+  }
+
+  Map<String, Template> getTemplates() {
+    return templates;
+  }
+
+  Map<String, Template> getTemplatePrefixes() {
+    return templatePrefixes;
+  }
+
+  /**
+   * Make a measurement of a template a node of its own in its device, which shadows the template
+   * measurement, so that it can diverge from the template, e.g., be given tags or an alias.
+   *
+   * @return the node of its own, or the given node if it is not of a template
+   */
+  MeasurementMNode materialize(MeasurementMNode node) {
+    if (!node.isFromTemplate()) {
+      return node;
+    }
+    MNode device = node.getParent();
+    MeasurementMNode materialized = new MeasurementMNode(device, node.getName(),
+        node.getSchema(), null);
+    TimeValuePair last = node.getCachedLast();
+    if (last != null) {
+      materialized.updateCachedLast(last, true, Long.MIN_VALUE);
+    }
+    device.addChild(node.getName(), materialized);
+    return materialized;
+  }
+
   /**
    * Add an interval path to MTree. This is only used for automatically creating schema
    *
@@ -596,10 +705,15 @@ public class MTree implements Serializable {
   }
 
   /**
-   * Traverse the MTree to get the count of timeseries.
+   * Traverse the MTree to get the count of timeseries. The subtree below the given path is not
+   * traversed, its timeseries are counted by the leaf counts of the nodes.
    */
   private int getCount(MNode node, String[] nodes, int idx) throws MetadataException {
-    String nodeReg = MetaUtils.getNodeRegByIdx(idx, nodes);
+    if (idx >= nodes.length) {
+      // all the descendants match
+      return node.getLeafCount() - (node instanceof MeasurementMNode ? 1 : 0);
+    }
+    String nodeReg = nodes[idx];
     if (!(PATH_WILDCARD).equals(nodeReg)) {
       if (node.hasChild(nodeReg)) {
         if (node.getChild(nodeReg) instanceof MeasurementMNode) {
@@ -651,7 +765,7 @@ public class MTree implements Serializable {
     }
     List<String[]> allMatchedNodes = new ArrayList<>();
 
-    findPath(root, nodes, 1, allMatchedNodes, false, true, queryContext);
+    findPath(root, nodes, 1, allMatchedNodes, true, queryContext);
 
     Stream<String[]> sortedStream = allMatchedNodes.stream().sorted(
         Comparator.comparingLong((String[] s) -> Long.parseLong(s[7])).reversed()
@@ -665,35 +779,153 @@ public class MTree implements Serializable {
     }
   }
 
+  /**
+   * visit all the measurement nodes in the tree
+   */
+  void collectMeasurementMNodes(Consumer<MeasurementMNode> consumer) {
+    Deque<MNode> nodeStack = new ArrayDeque<>();
+    nodeStack.push(root);
+    while (!nodeStack.isEmpty()) {
+      MNode node = nodeStack.pop();
+      if (node instanceof MeasurementMNode) {
+        consumer.accept((MeasurementMNode) node);
+      } else {
+        for (MNode child : node.getChildren().values()) {
+          nodeStack.push(child);
+        }
+      }
+    }
+  }
 
   /**
-   * Get all time series schema under the given path
+   * Get all time series schema under the given path, in the order of the tree, i.e., a node is
+   * visited before its children, which are visited in the order they are created.
+   *
+   * <p>If the plan has a cursor, the traversal resumes after the timeseries of the cursor, which is
+   * the last one of the previous page, otherwise the first offset matched timeseries are skipped,
+   * and a subtree whose timeseries all match is skipped by its leaf count. The cursor of the plan
+   * is then set to the last timeseries of the result.
    *
    * <p>result: [name, alias, storage group, dataType, encoding, compression, offset]
    */
   List<String[]> getAllMeasurementSchema(ShowTimeSeriesPlan plan) throws MetadataException {
-    List<String[]> res;
     String[] nodes = MetaUtils.getNodeNames(plan.getPath().getFullPath());
     if (nodes.length == 0 || !nodes[0].equals(root.getName())) {
       throw new IllegalPathException(plan.getPath().getFullPath());
     }
-    limit.set(plan.getLimit());
-    offset.set(plan.getOffset());
-    curOffset.set(-1);
-    count.set(0);
-    if (offset.get() != 0 || limit.get() != 0) {
-      res = new LinkedList<>();
-      findPath(root, nodes, 1, res, true, false, null);
+    String[] cursor = plan.getCursor();
+    if (cursor != null && getNodeByNames(cursor) == null) {
+      // the timeseries is deleted after the previous page, so the position is found by the offset
+      cursor = null;
+    }
+    TimeseriesCollector collector = new TimeseriesCollector(nodes, cursor,
+        cursor == null ? plan.getOffset() : 0, plan.getLimit());
+    collector.collect(root, 1, cursor != null);
+    if (collector.last != null) {
+      plan.setCursor(getNodeNames(collector.last));
+    }
+    return collector.result;
+  }
+
+  /**
+   * collects a page of the timeseries matching a path for getAllMeasurementSchema()
+   */
+  private class TimeseriesCollector {
+
+    private final String[] nodes;
+    private final String[] cursor;
+    private int offset;
+    private final int limit;
+    private final List<String[]> result = new ArrayList<>();
+    private MNode last;
+
+    private TimeseriesCollector(String[] nodes, String[] cursor, int offset, int limit) {
+      this.nodes = nodes;
+      this.cursor = cursor;
+      this.offset = offset;
+      this.limit = limit;
+    }
+
+    /**
+     * @param onCursor whether the node is on the path of the cursor, then the node and the
+     *                 siblings of its descendants on the path before them have been visited
+     * @return whether the limit is reached
+     */
+    private boolean collect(MNode node, int idx, boolean onCursor) throws MetadataException {
+      if (!onCursor && node instanceof MeasurementMNode && nodes.length <= idx) {
+        if (offset > 0) {
+          offset--;
+        } else {
+          result.add(toTimeseriesRow((MeasurementMNode) node, false, null));
+          last = node;
+          if (result.size() == limit) {
+            return true;
+          }
+        }
+      }
+      // the name of the child on the path of the cursor, null if the node is the cursor itself
+      String cursorName = onCursor && idx < cursor.length ? cursor[idx] : null;
+      String nodeReg = MetaUtils.getNodeRegByIdx(idx, nodes);
+      if (!nodeReg.contains(PATH_WILDCARD)) {
+        MNode child = node.getChild(nodeReg);
+        return child != null && collect(child, idx + 1,
+            cursorName != null && cursorName.equals(child.getName()));
+      }
+
+      Pattern pattern = PATH_WILDCARD.equals(nodeReg) ? null
+          : Pattern.compile(nodeReg.replace("*", ".*"));
+      boolean beforeCursor = cursorName != null;
+      for (MNode child : node.getChildren().values()) {
+        boolean childOnCursor = false;
+        if (beforeCursor) {
+          if (!cursorName.equals(child.getName())) {
+            continue;
+          }
+          beforeCursor = false;
+          childOnCursor = true;
+        }
+        if (pattern != null && !pattern.matcher(child.getName()).matches()) {
+          continue;
+        }
+        if (!childOnCursor && nodes.length <= idx + 1 && child.getLeafCount() <= offset) {
+          // all the timeseries in the subtree match and are skipped
+          offset -= child.getLeafCount();
+          continue;
+        }
+        if (collect(child, idx + 1, childOnCursor)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * the row of the timeseries in the result of SHOW TIMESERIES
+   *
+   * @param needLast if false, lastTimeStamp in the row will be null
+   * @return [name, alias, storage group, dataType, encoding, compression, offset, lastTimeStamp]
+   */
+  private String[] toTimeseriesRow(MeasurementMNode node, boolean needLast,
+      QueryContext queryContext) throws MetadataException {
+    String nodeName;
+    if (node.getName().contains(TsFileConstant.PATH_SEPARATOR)) {
+      nodeName = "\"" + node + "\"";
     } else {
-      res = new LinkedList<>();
-      findPath(root, nodes, 1, res, false, false, null);
-    }
-    // avoid memory leaks
-    limit.remove();
-    offset.remove();
-    curOffset.remove();
-    count.remove();
-    return res;
+      nodeName = node.getName();
+    }
+    String nodePath = node.getParent().getFullPath() + TsFileConstant.PATH_SEPARATOR + nodeName;
+    String[] tsRow = new String[8];
+    tsRow[0] = nodePath;
+    tsRow[1] = node.getAlias();
+    MeasurementSchema measurementSchema = node.getSchema();
+    tsRow[2] = getStorageGroupName(nodePath);
+    tsRow[3] = measurementSchema.getType().toString();
+    tsRow[4] = measurementSchema.getEncodingType().toString();
+    tsRow[5] = measurementSchema.getCompressor().toString();
+    tsRow[6] = String.valueOf(node.getOffset());
+    tsRow[7] = needLast ? String.valueOf(getLastTimeStamp(node, queryContext)) : null;
+    return tsRow;
   }
 
   /**
@@ -704,42 +936,14 @@ public class MTree implements Serializable {
    *                             dataType, encoding, compression, offset, lastTimeStamp]
    */
   private void findPath(MNode node, String[] nodes, int idx, List<String[]> timeseriesSchemaList,
-      boolean hasLimit, boolean needLast, QueryContext queryContext) throws MetadataException {
+      boolean needLast, QueryContext queryContext) throws MetadataException {
     if (node instanceof MeasurementMNode && nodes.length <= idx) {
-      if (hasLimit) {
-        curOffset.set(curOffset.get() + 1);
-        if (curOffset.get() < offset.get() || count.get().intValue() == limit.get().intValue()) {
-          return;
-        }
-      }
-      String nodeName;
-      if (node.getName().contains(TsFileConstant.PATH_SEPARATOR)) {
-        nodeName = "\"" + node + "\"";
-      } else {
-        nodeName = node.getName();
-      }
-      String nodePath = node.getParent().getFullPath() + TsFileConstant.PATH_SEPARATOR + nodeName;
-      String[] tsRow = new String[8];
-      tsRow[0] = nodePath;
-      tsRow[1] = ((MeasurementMNode) node).getAlias();
-      MeasurementSchema measurementSchema = ((MeasurementMNode) node).getSchema();
-      tsRow[2] = getStorageGroupName(nodePath);
-      tsRow[3] = measurementSchema.getType().toString();
-      tsRow[4] = measurementSchema.getEncodingType().toString();
-      tsRow[5] = measurementSchema.getCompressor().toString();
-      tsRow[6] = String.valueOf(((MeasurementMNode) node).getOffset());
-      tsRow[7] =
-          needLast ? String.valueOf(getLastTimeStamp((MeasurementMNode) node, queryContext)) : null;
-      timeseriesSchemaList.add(tsRow);
-
-      if (hasLimit) {
-        count.set(count.get() + 1);
-      }
+      timeseriesSchemaList.add(toTimeseriesRow((MeasurementMNode) node, needLast, queryContext));
     }
     String nodeReg = MetaUtils.getNodeRegByIdx(idx, nodes);
     if (!nodeReg.contains(PATH_WILDCARD)) {
       if (node.hasChild(nodeReg)) {
-        findPath(node.getChild(nodeReg), nodes, idx + 1, timeseriesSchemaList, hasLimit, needLast,
+        findPath(node.getChild(nodeReg), nodes, idx + 1, timeseriesSchemaList, needLast,
             queryContext);
       }
     } else {
@@ -747,16 +951,36 @@ public class MTree implements Serializable {
         if (!Pattern.matches(nodeReg.replace("*", ".*"), child.getName())) {
           continue;
         }
-        findPath(child, nodes, idx + 1, timeseriesSchemaList, hasLimit, needLast, queryContext);
-        if (hasLimit) {
-          if (count.get().intValue() == limit.get().intValue()) {
-            return;
-          }
-        }
+        findPath(child, nodes, idx + 1, timeseriesSchemaList, needLast, queryContext);
       }
     }
   }
 
+  /**
+   * @return the node of the names from root, or null if it does not exist
+   */
+  private MNode getNodeByNames(String[] nodeNames) {
+    if (nodeNames.length == 0 || !root.getName().equals(nodeNames[0])) {
+      return null;
+    }
+    MNode node = root;
+    for (int i = 1; i < nodeNames.length && node != null; i++) {
+      node = node.getChildren().get(nodeNames[i]);
+    }
+    return node;
+  }
+
+  /**
+   * @return the names of the nodes from root to the node
+   */
+  private static String[] getNodeNames(MNode node) {
+    Deque<String> names = new ArrayDeque<>();
+    for (MNode cur = node; cur != null; cur = cur.getParent()) {
+      names.push(cur.getName());
+    }
+    return names.toArray(new String[0]);
+  }
+
   static long getLastTimeStamp(MeasurementMNode node, QueryContext queryContext) {
     TimeValuePair last = node.getCachedLast();
     if (last != null) {
@@ -843,43 +1067,128 @@ public class MTree implements Serializable {
    * @return a list contains all distinct devices names
    */
   Set<String> getDevices(String prefixPath) throws MetadataException {
+    return new LinkedHashSet<>(getDevices(new ShowDevicesPlan(ShowContentType.DEVICES,
+        new Path(prefixPath))));
+  }
+
+  /**
+   * Get a page of the devices under the path of the plan in the alphabetical order of their nodes.
+   * The traversal resumes after the cursor of the plan, which is the last device of the previous
+   * page, and the cursor is then set to the last device of the result.
+   */
+  List<String> getDevices(ShowDevicesPlan plan) throws MetadataException {
+    String prefixPath = plan.getPath().getFullPath();
     String[] nodes = MetaUtils.getNodeNames(prefixPath);
     if (nodes.length == 0 || !nodes[0].equals(root.getName())) {
       throw new IllegalPathException(prefixPath);
     }
-    Set<String> devices = new TreeSet<>();
-    findDevices(root, nodes, 1, devices);
+    DeviceCollector collector = new DeviceCollector(nodes, plan.getCursor(), plan.getLimit());
+    collector.collect(root, 1, plan.getCursor() != null);
+    if (!collector.result.isEmpty()) {
+      plan.setCursor(getNodeNames(collector.result.get(collector.result.size() - 1)));
+    }
+    List<String> devices = new ArrayList<>(collector.result.size());
+    for (MNode device : collector.result) {
+      devices.add(device.getFullPath());
+    }
     return devices;
   }
 
   /**
-   * Traverse the MTree to match all devices with prefix path.
-   *
-   * @param node  the current traversing node
-   * @param nodes split the prefix path with '.'
-   * @param idx   the current index of array nodes
-   * @param res   store all matched device names
+   * collects a page of the devices matching a path for getDevices()
    */
-  private void findDevices(MNode node, String[] nodes, int idx, Set<String> res) {
-    String nodeReg = MetaUtils.getNodeRegByIdx(idx, nodes);
-    if (!(PATH_WILDCARD).equals(nodeReg)) {
-      if (node.hasChild(nodeReg)) {
-        if (node.getChild(nodeReg) instanceof MeasurementMNode) {
-          res.add(node.getFullPath());
-        } else {
-          findDevices(node.getChild(nodeReg), nodes, idx + 1, res);
+  private static class DeviceCollector {
+
+    private final String[] nodes;
+    private final String[] cursor;
+    private final int limit;
+    private final List<MNode> result = new ArrayList<>();
+
+    private DeviceCollector(String[] nodes, String[] cursor, int limit) {
+      this.nodes = nodes;
+      this.cursor = cursor;
+      this.limit = limit;
+    }
+
+    /**
+     * @param onCursor whether the node is on the path of the cursor, then the node and the
+     *                 devices before the cursor in its subtree have been collected
+     * @return whether the limit is reached
+     */
+    private boolean collect(MNode node, int idx, boolean onCursor) {
+      String nodeReg = MetaUtils.getNodeRegByIdx(idx, nodes);
+      // the name of the child on the path of the cursor, null if the node is the cursor itself
+      String cursorName = onCursor && idx < cursor.length ? cursor[idx] : null;
+      if (!(PATH_WILDCARD).equals(nodeReg)) {
+        MNode child = node.getChild(nodeReg);
+        if (child instanceof MeasurementMNode) {
+          return !onCursor && add(node);
         }
+        return child != null && collect(child, idx + 1,
+            cursorName != null && cursorName.equals(child.getName()));
       }
-    } else {
-      boolean deviceAdded = false;
-      for (MNode child : node.getChildren().values()) {
-        if (child instanceof MeasurementMNode && !deviceAdded) {
-          res.add(node.getFullPath());
-          deviceAdded = true;
+
+      if (!onCursor) {
+        for (MNode child : node.getChildren().values()) {
+          if (child instanceof MeasurementMNode) {
+            if (add(node)) {
+              return true;
+            }
+            break;
+          }
+        }
+      }
+      String lastName = null;
+      if (cursorName != null) {
+        MNode child = node.getChildren().get(cursorName);
+        if (child != null && collect(child, idx + 1, true)) {
+          return true;
+        }
+        lastName = cursorName;
+      }
+      // the children are sorted a batch at a time, so a page does not sort all of them
+      while (true) {
+        List<MNode> children = getSmallestChildrenAfter(node, lastName,
+            limit == 0 ? Integer.MAX_VALUE : limit - result.size());
+        if (children.isEmpty()) {
+          return false;
+        }
+        for (MNode child : children) {
+          if (!child.getChildren().isEmpty() && collect(child, idx + 1, false)) {
+            return true;
+          }
         }
-        findDevices(child, nodes, idx + 1, res);
+        lastName = children.get(children.size() - 1).getName();
       }
     }
+
+    private boolean add(MNode device) {
+      result.add(device);
+      return result.size() == limit;
+    }
+  }
+
+  /**
+   * @return at most num children of the node whose names are the smallest ones after lastName,
+   * in the alphabetical order
+   */
+  private static List<MNode> getSmallestChildrenAfter(MNode node, String lastName, int num) {
+    Comparator<MNode> comparator = Comparator.comparing(MNode::getName);
+    PriorityQueue<MNode> heap = new PriorityQueue<>(comparator.reversed());
+    for (MNode child : node.getChildren().values()) {
+      if (lastName != null && child.getName().compareTo(lastName) <= 0) {
+        continue;
+      }
+      if (heap.size() < num) {
+        heap.add(child);
+      } else if (comparator.compare(child, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(child);
+      }
+    }
+    List<MNode> children = new ArrayList<>(heap);
+    children.sort(comparator);
+    return children;
   }
 
   /**
@@ -935,14 +1244,22 @@ public class MTree implements Serializable {
     }
   }
 
+  /**
+   * write the binary snapshot of the MTree, see MTreeSnapshot for the format
+   */
   public void serializeTo(String snapshotPath) throws IOException {
-    try (BufferedWriter bw = new BufferedWriter(
-        new FileWriter(SystemFileFactory.INSTANCE.getFile(snapshotPath)))) {
-      root.serializeTo(bw);
-    }
+    MTreeSnapshot.serialize(root, templates, templatePrefixes,
+        SystemFileFactory.INSTANCE.getFile(snapshotPath));
   }
 
-  public static MTree deserializeFrom(File mtreeSnapshot) {
+  public static MTree deserializeFrom(File mtreeSnapshot) throws IOException {
+    return MTreeSnapshot.deserialize(mtreeSnapshot);
+  }
+
+  /**
+   * read the text snapshot of the old versions, which is only used to convert it to the binary one
+   */
+  public static MTree deserializeFromTxt(File mtreeSnapshot) {
     try (BufferedReader br = new BufferedReader(new FileReader(mtreeSnapshot))) {
       String s;
       Deque<MNode> nodeStack = new ArrayDeque<>();
@@ -963,11 +1280,10 @@ public class MTree implements Serializable {
         if (childrenSize == 0) {
           nodeStack.push(node);
         } else {
-          Map<String, MNode> childrenMap = new LinkedHashMap<>();
           for (int i = 0; i < childrenSize; i++) {
             MNode child = nodeStack.removeFirst();
             child.setParent(node);
-            childrenMap.put(child.getName(), child);
+            node.addChild(child.getName(), child);
             if (child instanceof MeasurementMNode) {
               String alias = ((MeasurementMNode) child).getAlias();
               if (alias != null) {
@@ -975,7 +1291,6 @@ public class MTree implements Serializable {
               }
             }
           }
-          node.setChildren(childrenMap);
           nodeStack.push(node);
         }
       }
@@ -983,11 +1298,6 @@ public class MTree implements Serializable {
     } catch (IOException e) {
       logger.warn("Failed to deserialize from {}. Use a new MTree.", mtreeSnapshot.getPath());
       return new MTree();
-    } finally {
-      limit = new ThreadLocal<>();
-      offset = new ThreadLocal<>();
-      count = new ThreadLocal<>();
-      curOffset = new ThreadLocal<>();
     }
   }
 
@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import org.apache.iotdb.db.concurrent.IoTDBThreadPoolFactory;
+import org.apache.iotdb.db.exception.metadata.DeleteFailedException;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
+import org.apache.iotdb.db.metadata.template.Template;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+
+/**
+ * MTreeSnapshot writes and reads the binary snapshot of an MTree, whose layout is:
+ *
+ * MAGIC | VERSION | names | schemas | templates | upper tree | storage group 1 | ... | storage
+ * group n
+ *
+ * Each part after the version is a section of "length | content | crc32 of content". The names
+ * section is a dictionary of all node names and aliases, which are referred to by their ids in
+ * the other sections, so a name repeated in millions of devices is stored once. Likewise the
+ * schemas section is a table of the distinct MeasurementSchemas. The templates section holds the
+ * templates by the ids of their schemas and the prefix paths they are set to. The upper tree holds
+ * the nodes
+ * from the root to the storage groups in pre-order, and each storage group section holds the
+ * subtree of one storage group, so the subtrees can be parsed in parallel.
+ *
+ * A node is "type | nameId | childCount | children", a storage group node has its TTL after the
+ * nameId and a measurement node has "aliasId | schemaId | offset" after the nameId. The children of
+ * a storage group are not in the upper tree but in its own section, which starts with the template
+ * usage of the storage group node. A node that uses a template has "templateId | deletedCount |
+ * nameIds of the deleted template measurements" after the nameId, and only its children that are
+ * not template measurements follow. The snapshots of version 2 have no templates.
+ */
+class MTreeSnapshot {
+
+  private static final int MAGIC = 0x4d545245;
+  private static final int VERSION = 3;
+  private static final int NO_TEMPLATE_VERSION = 2;
+  private static final int NULL_ID = -1;
+
+  private MTreeSnapshot() {
+    // util class
+  }
+
+  static void serialize(MNode root, Map<String, Template> templates,
+      Map<String, Template> templatePrefixes, File file) throws IOException {
+    Map<String, Integer> names = new HashMap<>();
+    List<String> nameList = new ArrayList<>();
+    Map<MeasurementSchema, Integer> schemas = new IdentityHashMap<>();
+    List<MeasurementSchema> schemaList = new ArrayList<>();
+    Map<Template, Integer> templateIds = new IdentityHashMap<>();
+    for (Template template : templates.values()) {
+      templateIds.put(template, templateIds.size());
+      for (MeasurementSchema schema : template.getSchemas()) {
+        addSchema(schema, names, nameList, schemas, schemaList);
+      }
+    }
+    collect(root, names, nameList, schemas, schemaList);
+
+    try (DataOutputStream outputStream = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      outputStream.writeInt(MAGIC);
+      outputStream.writeInt(VERSION);
+
+      Section section = new Section();
+      section.stream.writeInt(nameList.size());
+      for (String name : nameList) {
+        ReadWriteIOUtils.write(name, section.stream);
+      }
+      section.writeTo(outputStream);
+
+      section = new Section();
+      section.stream.writeInt(schemaList.size());
+      for (MeasurementSchema schema : schemaList) {
+        section.stream.writeInt(names.get(schema.getMeasurementId()));
+        section.stream.writeByte(schema.getType().ordinal());
+        section.stream.writeByte(schema.getEncodingType().ordinal());
+        section.stream.writeByte(schema.getCompressor().ordinal());
+        ReadWriteIOUtils.write(schema.getProps() == null ? Collections.emptyMap()
+            : schema.getProps(), section.stream);
+      }
+      section.writeTo(outputStream);
+
+      section = new Section();
+      section.stream.writeInt(templates.size());
+      for (Template template : templates.values()) {
+        ReadWriteIOUtils.write(template.getName(), section.stream);
+        section.stream.writeInt(template.size());
+        for (int i = 0; i < template.size(); i++) {
+          section.stream.writeInt(schemas.get(template.getSchema(i)));
+        }
+      }
+      section.stream.writeInt(templatePrefixes.size());
+      for (Entry<String, Template> entry : templatePrefixes.entrySet()) {
+        ReadWriteIOUtils.write(entry.getKey(), section.stream);
+        section.stream.writeInt(templateIds.get(entry.getValue()));
+      }
+      section.writeTo(outputStream);
+
+      List<StorageGroupMNode> storageGroups = new ArrayList<>();
+      section = new Section();
+      serializeUpperNode(root, names, section.stream, storageGroups);
+      section.stream.writeInt(storageGroups.size());
+      section.writeTo(outputStream);
+
+      for (StorageGroupMNode storageGroup : storageGroups) {
+        section = new Section();
+        serializeTemplateUsage(storageGroup, names, templateIds, section.stream);
+        serializeChildren(storageGroup, names, schemas, templateIds, section.stream);
+        section.writeTo(outputStream);
+      }
+    }
+  }
+
+  static MTree deserialize(File file) throws IOException {
+    try (DataInputStream inputStream = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)))) {
+      if (inputStream.readInt() != MAGIC) {
+        throw new IOException(file + " is not an MTree snapshot");
+      }
+      int version = inputStream.readInt();
+      if (version != VERSION && version != NO_TEMPLATE_VERSION) {
+        throw new IOException("Unsupported version " + version + " of MTree snapshot " + file);
+      }
+
+      ByteBuffer buffer = readSection(inputStream, file);
+      String[] names = new String[buffer.getInt()];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = ReadWriteIOUtils.readString(buffer).intern();
+      }
+
+      buffer = readSection(inputStream, file);
+      MeasurementSchema[] schemas = new MeasurementSchema[buffer.getInt()];
+      for (int i = 0; i < schemas.length; i++) {
+        String measurementId = names[buffer.getInt()];
+        TSDataType type = TSDataType.values()[buffer.get()];
+        TSEncoding encoding = TSEncoding.values()[buffer.get()];
+        CompressionType compressor = CompressionType.values()[buffer.get()];
+        Map<String, String> props = ReadWriteIOUtils.readMap(buffer);
+        schemas[i] = new MeasurementSchema(measurementId, type, encoding, compressor,
+            props == null || props.isEmpty() ? Collections.emptyMap() : props);
+      }
+
+      Template[] templates = new Template[0];
+      Map<String, Template> templateMap = new HashMap<>();
+      Map<String, Template> templatePrefixes = new HashMap<>();
+      if (version != NO_TEMPLATE_VERSION) {
+        buffer = readSection(inputStream, file);
+        templates = new Template[buffer.getInt()];
+        for (int i = 0; i < templates.length; i++) {
+          String name = ReadWriteIOUtils.readString(buffer);
+          List<MeasurementSchema> templateSchemas = new ArrayList<>();
+          int size = buffer.getInt();
+          for (int j = 0; j < size; j++) {
+            templateSchemas.add(schemas[buffer.getInt()]);
+          }
+          templates[i] = new Template(name, templateSchemas);
+          templateMap.put(name, templates[i]);
+        }
+        int prefixCount = buffer.getInt();
+        for (int i = 0; i < prefixCount; i++) {
+          String prefix = ReadWriteIOUtils.readString(buffer);
+          templatePrefixes.put(prefix, templates[buffer.getInt()]);
+        }
+      }
+
+      buffer = readSection(inputStream, file);
+      List<StorageGroupMNode> storageGroups = new ArrayList<>();
+      MNode root = deserializeUpperNode(buffer, names, storageGroups);
+      if (buffer.getInt() != storageGroups.size()) {
+        throw new IOException("Storage groups of MTree snapshot " + file + " are inconsistent");
+      }
+
+      List<ByteBuffer> sections = new ArrayList<>(storageGroups.size());
+      for (int i = 0; i < storageGroups.size(); i++) {
+        sections.add(readSection(inputStream, file));
+      }
+      deserializeStorageGroups(storageGroups, sections, names, schemas,
+          version == NO_TEMPLATE_VERSION ? null : templates);
+      return new MTree(root, templateMap, templatePrefixes);
+    }
+  }
+
+  /**
+   * parse the subtrees of the storage groups in parallel, each of which only modifies its own
+   * storage group node. The storage group nodes are detached from their parents during the
+   * parsing, so that the timeseries counts of the shared ancestors are only updated afterwards.
+   */
+  private static void deserializeStorageGroups(List<StorageGroupMNode> storageGroups,
+      List<ByteBuffer> sections, String[] names, MeasurementSchema[] schemas,
+      Template[] templates) throws IOException {
+    List<MNode> parents = new ArrayList<>(storageGroups.size());
+    for (StorageGroupMNode storageGroup : storageGroups) {
+      parents.add(storageGroup.getParent());
+      storageGroup.setParent(null);
+    }
+    parseStorageGroups(storageGroups, sections, names, schemas, templates);
+    for (int i = 0; i < storageGroups.size(); i++) {
+      storageGroups.get(i).attachToParent(parents.get(i));
+    }
+  }
+
+  private static void parseStorageGroups(List<StorageGroupMNode> storageGroups,
+      List<ByteBuffer> sections, String[] names, MeasurementSchema[] schemas,
+      Template[] templates) throws IOException {
+    if (storageGroups.size() <= 1) {
+      for (int i = 0; i < storageGroups.size(); i++) {
+        deserializeStorageGroup(storageGroups.get(i), sections.get(i), names, schemas, templates);
+      }
+      return;
+    }
+    int threadNum = Math.min(storageGroups.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService pool = IoTDBThreadPoolFactory
+        .newFixedThreadPool(threadNum, "MTree-Snapshot-Recovery");
+    try {
+      List<Future<Void>> futures = new ArrayList<>(storageGroups.size());
+      for (int i = 0; i < storageGroups.size(); i++) {
+        StorageGroupMNode storageGroup = storageGroups.get(i);
+        ByteBuffer section = sections.get(i);
+        futures.add(pool.submit(() -> {
+          deserializeStorageGroup(storageGroup, section, names, schemas, templates);
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted when reading MTree snapshot", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Cannot read MTree snapshot", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * the template measurements are not visited, their names and schemas are collected from the
+   * templates
+   */
+  private static void collect(MNode node, Map<String, Integer> names, List<String> nameList,
+      Map<MeasurementSchema, Integer> schemas, List<MeasurementSchema> schemaList) {
+    addName(node.getName(), names, nameList);
+    if (node instanceof MeasurementMNode) {
+      MeasurementMNode measurement = (MeasurementMNode) node;
+      addName(measurement.getAlias(), names, nameList);
+      addSchema(measurement.getSchema(), names, nameList, schemas, schemaList);
+    }
+    for (MNode child : node.getNonTemplateChildren().values()) {
+      collect(child, names, nameList, schemas, schemaList);
+    }
+  }
+
+  private static void addSchema(MeasurementSchema schema, Map<String, Integer> names,
+      List<String> nameList, Map<MeasurementSchema, Integer> schemas,
+      List<MeasurementSchema> schemaList) {
+    if (!schemas.containsKey(schema)) {
+      schemas.put(schema, schemaList.size());
+      schemaList.add(schema);
+      addName(schema.getMeasurementId(), names, nameList);
+    }
+  }
+
+  private static void addName(String name, Map<String, Integer> names, List<String> nameList) {
+    if (name != null && !names.containsKey(name)) {
+      names.put(name, nameList.size());
+      nameList.add(name);
+    }
+  }
+
+  private static void serializeUpperNode(MNode node, Map<String, Integer> names,
+      DataOutputStream stream, List<StorageGroupMNode> storageGroups) throws IOException {
+    if (node instanceof StorageGroupMNode) {
+      stream.writeByte(MetadataConstant.STORAGE_GROUP_MNODE_TYPE);
+      stream.writeInt(names.get(node.getName()));
+      stream.writeLong(((StorageGroupMNode) node).getDataTTL());
+      storageGroups.add((StorageGroupMNode) node);
+      return;
+    }
+    stream.writeByte(MetadataConstant.MNODE_TYPE);
+    stream.writeInt(names.get(node.getName()));
+    Map<String, MNode> children = node.getChildren();
+    stream.writeInt(children.size());
+    for (MNode child : children.values()) {
+      serializeUpperNode(child, names, stream, storageGroups);
+    }
+  }
+
+  private static MNode deserializeUpperNode(ByteBuffer buffer, String[] names,
+      List<StorageGroupMNode> storageGroups) {
+    byte type = buffer.get();
+    String name = names[buffer.getInt()];
+    if (type == MetadataConstant.STORAGE_GROUP_MNODE_TYPE) {
+      StorageGroupMNode storageGroup = new StorageGroupMNode(null, name, buffer.getLong());
+      storageGroups.add(storageGroup);
+      return storageGroup;
+    }
+    MNode node = new MNode(null, name);
+    int childCount = buffer.getInt();
+    for (int i = 0; i < childCount; i++) {
+      MNode child = deserializeUpperNode(buffer, names, storageGroups);
+      child.setParent(node);
+      node.addChild(child.getName(), child);
+    }
+    return node;
+  }
+
+  private static void serializeChildren(MNode node, Map<String, Integer> names,
+      Map<MeasurementSchema, Integer> schemas, Map<Template, Integer> templateIds,
+      DataOutputStream stream) throws IOException {
+    Map<String, MNode> children = node.getNonTemplateChildren();
+    stream.writeInt(children.size());
+    for (MNode child : children.values()) {
+      if (child instanceof MeasurementMNode) {
+        MeasurementMNode measurement = (MeasurementMNode) child;
+        stream.writeByte(MetadataConstant.MEASUREMENT_MNODE_TYPE);
+        stream.writeInt(names.get(measurement.getName()));
+        String alias = measurement.getAlias();
+        stream.writeInt(alias == null ? NULL_ID : names.get(alias));
+        stream.writeInt(schemas.get(measurement.getSchema()));
+        stream.writeLong(measurement.getOffset());
+      } else if (child.getTemplate() != null) {
+        stream.writeByte(MetadataConstant.TEMPLATE_MNODE_TYPE);
+        stream.writeInt(names.get(child.getName()));
+        serializeTemplateUsage(child, names, templateIds, stream);
+      } else {
+        stream.writeByte(MetadataConstant.MNODE_TYPE);
+        stream.writeInt(names.get(child.getName()));
+      }
+      serializeChildren(child, names, schemas, templateIds, stream);
+    }
+  }
+
+  private static void serializeTemplateUsage(MNode node, Map<String, Integer> names,
+      Map<Template, Integer> templateIds, DataOutputStream stream) throws IOException {
+    Template template = node.getTemplate();
+    if (template == null) {
+      stream.writeInt(NULL_ID);
+      return;
+    }
+    stream.writeInt(templateIds.get(template));
+    List<String> deleted = node.getDeletedTemplateMeasurements();
+    stream.writeInt(deleted.size());
+    for (String measurement : deleted) {
+      stream.writeInt(names.get(measurement));
+    }
+  }
+
+  /**
+   * the template measurements are deleted before the children are added, as a child may shadow a
+   * deleted template measurement
+   */
+  private static void deserializeTemplateUsage(MNode node, ByteBuffer buffer, String[] names,
+      Template[] templates) throws DeleteFailedException {
+    int templateId = buffer.getInt();
+    if (templateId == NULL_ID) {
+      return;
+    }
+    node.useTemplate(templates[templateId]);
+    int deletedCount = buffer.getInt();
+    for (int i = 0; i < deletedCount; i++) {
+      node.deleteChild(names[buffer.getInt()]);
+    }
+  }
+
+  /**
+   * @param templates null for a snapshot without templates
+   */
+  private static void deserializeStorageGroup(StorageGroupMNode storageGroup, ByteBuffer buffer,
+      String[] names, MeasurementSchema[] schemas, Template[] templates) throws IOException {
+    try {
+      if (templates != null) {
+        deserializeTemplateUsage(storageGroup, buffer, names, templates);
+      }
+      deserializeChildren(storageGroup, buffer, names, schemas, templates);
+    } catch (DeleteFailedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static void deserializeChildren(MNode node, ByteBuffer buffer, String[] names,
+      MeasurementSchema[] schemas, Template[] templates) throws DeleteFailedException {
+    int childCount = buffer.getInt();
+    for (int i = 0; i < childCount; i++) {
+      byte type = buffer.get();
+      String name = names[buffer.getInt()];
+      MNode child;
+      if (type == MetadataConstant.MEASUREMENT_MNODE_TYPE) {
+        int aliasId = buffer.getInt();
+        String alias = aliasId == NULL_ID ? null : names[aliasId];
+        MeasurementMNode measurement = new MeasurementMNode(node, name,
+            schemas[buffer.getInt()], alias);
+        measurement.setOffset(buffer.getLong());
+        if (alias != null) {
+          node.addAlias(alias, measurement);
+        }
+        child = measurement;
+      } else {
+        child = new MNode(node, name);
+      }
+      node.addChild(name, child);
+      if (type == MetadataConstant.TEMPLATE_MNODE_TYPE) {
+        deserializeTemplateUsage(child, buffer, names, templates);
+      }
+      deserializeChildren(child, buffer, names, schemas, templates);
+    }
+  }
+
+  private static ByteBuffer readSection(DataInputStream inputStream, File file)
+      throws IOException {
+    int length = inputStream.readInt();
+    if (length < 0) {
+      throw new IOException("Illegal section length " + length + " in MTree snapshot " + file);
+    }
+    byte[] content = new byte[length];
+    inputStream.readFully(content);
+    long checksum = inputStream.readInt() & 0xffffffffL;
+    CRC32 crc32 = new CRC32();
+    crc32.update(content, 0, length);
+    if (crc32.getValue() != checksum) {
+      throw new IOException("Checksum mismatch in MTree snapshot " + file);
+    }
+    return ByteBuffer.wrap(content);
+  }
+
+  private static class Section {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream stream = new DataOutputStream(bytes);
+
+    private void writeTo(DataOutputStream outputStream) throws IOException {
+      stream.flush();
+      CRC32 crc32 = new CRC32();
+      byte[] content = bytes.toByteArray();
+      crc32.update(content, 0, content.length);
+      outputStream.writeInt(content.length);
+      outputStream.write(content);
+      outputStream.writeInt((int) crc32.getValue());
+    }
+  }
+}
@@ -26,18 +26,35 @@ public class MetadataConstant {
     // allowed to do nothing
   }
 
-  private static final String MTREE_VERSION = "1";
+  private static final String MTREE_VERSION = "2";
+  private static final String MTREE_TXT_VERSION = "1";
 
   public static final String ROOT = "root";
-  public static final String METADATA_LOG = "mlog.txt";
+  public static final String METADATA_LOG = "mlog.bin";
   public static final String TAG_LOG = "tlog.txt";
+  // the tag inverted index persisted when the MManager is cleared
+  public static final String TAG_INDEX = "tlog.idx";
+  // the last values of the timeseries, see LastCacheSnapshot
+  public static final String LAST_CACHE_SNAPSHOT = "last.cache";
+  public static final String LAST_CACHE_SNAPSHOT_TMP = "last.cache.tmp";
   public static final String MTREE_SNAPSHOT =
       "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_VERSION + ".snapshot";
   public static final String MTREE_SNAPSHOT_TMP =
       "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_VERSION + ".snapshot.tmp";
 
+  /**
+   * the text metadata log and snapshot of the old versions, which are converted to the binary ones
+   * when the MManager is initialized. The text log is still the format transferred by sync.
+   */
+  public static final String METADATA_TXT_LOG = "mlog.txt";
+  public static final String MTREE_TXT_SNAPSHOT =
+      "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_TXT_VERSION + ".snapshot";
+  public static final String MTREE_TXT_SNAPSHOT_TMP =
+      "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_TXT_VERSION + ".snapshot.tmp";
 
   public static final short MNODE_TYPE = 0;
   public static final short STORAGE_GROUP_MNODE_TYPE = 1;
   public static final short MEASUREMENT_MNODE_TYPE = 2;
+  // an MNode that uses a template, only in the binary MTree snapshot
+  public static final short TEMPLATE_MNODE_TYPE = 3;
 }
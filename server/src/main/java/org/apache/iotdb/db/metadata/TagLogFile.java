@@ -150,6 +150,10 @@ public class TagLogFile implements AutoCloseable {
     return length;
   }
 
+  public long size() throws IOException {
+    return fileChannel.size();
+  }
+
   @Override
   public void close() throws IOException {
     fileChannel.force(true);
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * ChildrenMap is a compact map from names to the children of an MNode, which keeps the insertion
+ * order like a LinkedHashMap but without an entry object per child. The keys and the children are
+ * stored in two arrays in insertion order, and an open-addressing table of int stores the positions
+ * of the keys in the arrays. A small map has no table and is scanned linearly. A removed child
+ * leaves a hole in the arrays, which are compacted when the holes are more than the children.
+ *
+ * It is not thread-safe, like the map it replaces. The MTree is guarded by the lock of MManager.
+ */
+class ChildrenMap extends AbstractMap<String, MNode> {
+
+  // a map with no more children than this is scanned without the table
+  private static final int MAX_SCAN_SIZE = 8;
+
+  private static final int EMPTY = 0;
+  private static final int REMOVED = -1;
+
+  private String[] keys;
+  private MNode[] values;
+  // the number of used slots in the arrays, including the holes
+  private int used = 0;
+  private int size = 0;
+  // positions + 1 of the keys in the arrays, EMPTY or REMOVED, null for a small map
+  private int[] table;
+  // the number of REMOVED slots in the table
+  private int removedSlots = 0;
+  private int modCount = 0;
+
+  ChildrenMap() {
+    this(2);
+  }
+
+  ChildrenMap(int capacity) {
+    keys = new String[Math.max(capacity, 1)];
+    values = new MNode[keys.length];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String && indexOf((String) key) >= 0;
+  }
+
+  @Override
+  public MNode get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    int index = indexOf((String) key);
+    return index < 0 ? null : values[index];
+  }
+
+  @Override
+  public MNode put(String key, MNode value) {
+    int index = indexOf(key);
+    if (index >= 0) {
+      MNode old = values[index];
+      values[index] = value;
+      return old;
+    }
+    if (used == keys.length) {
+      grow();
+    }
+    keys[used] = key;
+    values[used] = value;
+    used++;
+    size++;
+    modCount++;
+    if (table != null) {
+      if ((used + removedSlots) * 2 > table.length) {
+        rehash();
+      } else {
+        insertIntoTable(key, used - 1);
+      }
+    } else if (size > MAX_SCAN_SIZE) {
+      rehash();
+    }
+    return null;
+  }
+
+  @Override
+  public MNode remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    int index = indexOf((String) key);
+    if (index < 0) {
+      return null;
+    }
+    MNode old = values[index];
+    removeAt(index, true);
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(keys, 0, used, null);
+    Arrays.fill(values, 0, used, null);
+    used = 0;
+    size = 0;
+    table = null;
+    removedSlots = 0;
+    modCount++;
+  }
+
+  @Override
+  public Set<Entry<String, MNode>> entrySet() {
+    return new EntrySet();
+  }
+
+  private void removeAt(int index, boolean canCompact) {
+    if (table != null) {
+      int slot = findSlot(keys[index]);
+      table[slot] = REMOVED;
+      removedSlots++;
+    }
+    keys[index] = null;
+    values[index] = null;
+    size--;
+    modCount++;
+    if (index == used - 1) {
+      used--;
+    }
+    if (size == 0) {
+      used = 0;
+      table = null;
+      removedSlots = 0;
+    } else if (canCompact && used - size > size) {
+      compact();
+    }
+  }
+
+  private int indexOf(String key) {
+    if (table == null) {
+      for (int i = 0; i < used; i++) {
+        if (key.equals(keys[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int slot = findSlot(key);
+    return slot < 0 ? -1 : table[slot] - 1;
+  }
+
+  /**
+   * @return the slot of the key in the table, or -1 if the key does not exist
+   */
+  private int findSlot(String key) {
+    int mask = table.length - 1;
+    int slot = hash(key) & mask;
+    int position;
+    while ((position = table[slot]) != EMPTY) {
+      if (position != REMOVED && key.equals(keys[position - 1])) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void insertIntoTable(String key, int index) {
+    int mask = table.length - 1;
+    int slot = hash(key) & mask;
+    while (table[slot] > 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = index + 1;
+  }
+
+  private void grow() {
+    int capacity = keys.length + (keys.length >> 1) + 1;
+    keys = Arrays.copyOf(keys, capacity);
+    values = Arrays.copyOf(values, capacity);
+  }
+
+  /**
+   * remove the holes in the arrays, which keeps the insertion order
+   */
+  private void compact() {
+    int j = 0;
+    for (int i = 0; i < used; i++) {
+      if (keys[i] != null) {
+        keys[j] = keys[i];
+        values[j] = values[i];
+        j++;
+      }
+    }
+    Arrays.fill(keys, j, used, null);
+    Arrays.fill(values, j, used, null);
+    used = j;
+    if (keys.length > used * 2 + 2) {
+      keys = Arrays.copyOf(keys, used + (used >> 1) + 1);
+      values = Arrays.copyOf(values, keys.length);
+    }
+    rehash();
+  }
+
+  private void rehash() {
+    if (size <= MAX_SCAN_SIZE) {
+      table = null;
+      return;
+    }
+    // keep the load factor of the table no more than 0.5
+    int capacity = Integer.highestOneBit(used * 2) << 1;
+    table = new int[capacity];
+    removedSlots = 0;
+    for (int i = 0; i < used; i++) {
+      if (keys[i] != null) {
+        insertIntoTable(keys[i], i);
+      }
+    }
+  }
+
+  private static int hash(String key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private class EntrySet extends AbstractSet<Entry<String, MNode>> {
+
+    @Override
+    public Iterator<Entry<String, MNode>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  private class EntryIterator implements Iterator<Entry<String, MNode>> {
+
+    private int next = 0;
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      while (next < used && keys[next] == null) {
+        next++;
+      }
+      return next < used;
+    }
+
+    @Override
+    public Entry<String, MNode> next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return new ChildEntry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      // the arrays are not compacted during the iteration, so the positions are kept
+      removeAt(last, false);
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  private class ChildEntry implements Entry<String, MNode> {
+
+    private final int index;
+
+    private ChildEntry(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public String getKey() {
+      return keys[index];
+    }
+
+    @Override
+    public MNode getValue() {
+      return values[index];
+    }
+
+    @Override
+    public MNode setValue(MNode value) {
+      MNode old = values[index];
+      values[index] = value;
+      return old;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Entry<?, ?> that = (Entry<?, ?>) o;
+      return getKey().equals(that.getKey()) && (getValue() == null ? that.getValue() == null
+          : getValue().equals(that.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ (getValue() == null ? 0 : getValue().hashCode());
+    }
+  }
+}
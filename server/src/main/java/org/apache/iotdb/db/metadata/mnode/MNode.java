@@ -20,10 +20,10 @@ package org.apache.iotdb.db.metadata.mnode;
 
 import static org.apache.iotdb.db.conf.IoTDBConstant.PATH_SEPARATOR;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.locks.Lock;
@@ -31,11 +31,16 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.exception.metadata.DeleteFailedException;
-import org.apache.iotdb.db.metadata.MetadataConstant;
+import org.apache.iotdb.db.metadata.template.Template;
 
 /**
  * This class is the implementation of Metadata Node. One MNode instance represents one node in the
  * Metadata Tree
+ *
+ * To hold tens of millions of series, an MNode is kept small: the names are interned, so the
+ * nodes of the same name in different devices share one String, the children are stored in a
+ * compact ChildrenMap, and only the internal nodes have locks. A measurement is protected by the
+ * lock of its device, which is read locked by the writes of the device.
  */
 public class MNode implements Serializable {
 
@@ -56,14 +61,39 @@ public class MNode implements Serializable {
   transient Map<String, MNode> children;
   transient Map<String, MNode> aliasChildren;
 
-  protected transient ReadWriteLock lock = new ReentrantReadWriteLock();
+  /**
+   * null for a MeasurementMNode
+   */
+  protected transient ReadWriteLock lock;
+
+  /**
+   * the number of the timeseries in the subtree of this node, including itself, which is
+   * maintained when a child is added or deleted so that counting does not traverse the subtree
+   */
+  int leafCount;
 
   /**
    * Constructor of MNode.
    */
   public MNode(MNode parent, String name) {
+    this(parent, name, true);
+  }
+
+  MNode(MNode parent, String name, boolean hasLock) {
+    this(parent, intern(name), hasLock ? new ReentrantReadWriteLock() : null);
+  }
+
+  /**
+   * @param name an interned name
+   */
+  MNode(MNode parent, String name, ReadWriteLock lock) {
     this.parent = parent;
     this.name = name;
+    this.lock = lock;
+  }
+
+  static String intern(String name) {
+    return name == null ? null : name.intern();
   }
 
   /**
@@ -79,9 +109,10 @@ public class MNode implements Serializable {
    */
   public void addChild(String name, MNode child) {
     if (children == null) {
-      children = new LinkedHashMap<>();
+      children = new ChildrenMap();
     }
-    children.put(name, child);
+    MNode replaced = children.put(intern(name), child);
+    addLeafCount(child.leafCount - (replaced == null ? 0 : replaced.leafCount));
   }
 
   /**
@@ -89,10 +120,15 @@ public class MNode implements Serializable {
    */
   public void deleteChild(String name) throws DeleteFailedException {
     if (children != null && children.containsKey(name)) {
+      if (children.get(name).lock == null) {
+        // a measurement is not locked by itself
+        addLeafCount(-children.remove(name).leafCount);
+        return;
+      }
       // acquire the write lock of its child node.
       Lock writeLock = (children.get(name)).lock.writeLock();
       if (writeLock.tryLock()) {
-        children.remove(name);
+        addLeafCount(-children.remove(name).leafCount);
         writeLock.unlock();
       } else {
         throw new DeleteFailedException(getFullPath() + PATH_SEPARATOR + name);
@@ -130,17 +166,19 @@ public class MNode implements Serializable {
   }
 
   /**
-   * get the count of all leaves whose ancestor is current node
+   * get the count of all leaves whose ancestor is current node, including itself
    */
   public int getLeafCount() {
-    if (children == null) {
-      return 0;
+    return leafCount;
+  }
+
+  private void addLeafCount(int delta) {
+    if (delta == 0) {
+      return;
     }
-    int leafCount = 0;
-    for (MNode child : children.values()) {
-      leafCount += child.getLeafCount();
+    for (MNode node = this; node != null; node = node.parent) {
+      node.leafCount += delta;
     }
-    return leafCount;
   }
 
   /**
@@ -148,9 +186,9 @@ public class MNode implements Serializable {
    */
   public void addAlias(String alias, MNode child) {
     if (aliasChildren == null) {
-      aliasChildren = new LinkedHashMap<>();
+      aliasChildren = new ChildrenMap();
     }
-    aliasChildren.put(alias, child);
+    aliasChildren.put(intern(alias), child);
   }
 
   /**
@@ -187,6 +225,15 @@ public class MNode implements Serializable {
     this.parent = parent;
   }
 
+  /**
+   * set the parent of the node, which is built without a parent but is already a child of the
+   * parent, and add the timeseries of the node to the counts of its ancestors
+   */
+  public void attachToParent(MNode parent) {
+    this.parent = parent;
+    parent.addLeafCount(leafCount);
+  }
+
   public Map<String, MNode> getChildren() {
     if (children == null) {
       return new LinkedHashMap<>();
@@ -199,36 +246,84 @@ public class MNode implements Serializable {
   }
 
   public void setName(String name) {
-    this.name = name;
+    this.name = intern(name);
   }
 
   public void setChildren(Map<String, MNode> children) {
-    this.children = children;
+    int delta = 0;
+    if (this.children != null) {
+      for (MNode child : this.children.values()) {
+        delta -= child.leafCount;
+      }
+    }
+    if (children == null || children instanceof ChildrenMap) {
+      this.children = children;
+    } else if (children instanceof TemplateChildrenMap) {
+      ((TemplateChildrenMap) children).setDevice(this);
+      this.children = children;
+    } else {
+      this.children = new ChildrenMap(children.size());
+      for (Entry<String, MNode> entry : children.entrySet()) {
+        this.children.put(intern(entry.getKey()), entry.getValue());
+      }
+    }
+    if (this.children != null) {
+      for (MNode child : this.children.values()) {
+        delta += child.leafCount;
+      }
+    }
+    addLeafCount(delta);
   }
 
-  public void serializeTo(BufferedWriter bw) throws IOException {
-    serializeChildren(bw);
+  /**
+   * make the node a device that uses the template, whose measurements become the children of the
+   * node without being created
+   */
+  public void useTemplate(Template template) {
+    if (children instanceof TemplateChildrenMap) {
+      throw new IllegalStateException(getFullPath() + " already uses a template");
+    }
+    TemplateChildrenMap templateChildren = new TemplateChildrenMap(this, template,
+        (ChildrenMap) children);
+    children = templateChildren;
+    addLeafCount(templateChildren.getTemplateMeasurementCount());
+  }
 
-    StringBuilder s = new StringBuilder(String.valueOf(MetadataConstant.MNODE_TYPE));
-    s.append(",").append(name).append(",");
-    s.append(children == null ? "0" : children.size());
-    bw.write(s.toString());
-    bw.newLine();
+  /**
+   * @return the template used by the node, or null if it uses none
+   */
+  public Template getTemplate() {
+    return children instanceof TemplateChildrenMap
+        ? ((TemplateChildrenMap) children).getTemplate() : null;
   }
 
-  void serializeChildren(BufferedWriter bw) throws IOException {
-    if (children == null) {
-      return;
+  /**
+   * @return the children that are nodes of their own, i.e., all the children except the
+   * measurements of the template used by the node
+   */
+  public Map<String, MNode> getNonTemplateChildren() {
+    if (children instanceof TemplateChildrenMap) {
+      return ((TemplateChildrenMap) children).getNodeChildren();
     }
-    for (Entry<String, MNode> entry : children.entrySet()) {
-      entry.getValue().serializeTo(bw);
+    return getChildren();
+  }
+
+  /**
+   * @return the measurements of the template used by the node that are deleted from the node
+   */
+  public List<String> getDeletedTemplateMeasurements() {
+    if (children instanceof TemplateChildrenMap) {
+      return ((TemplateChildrenMap) children).getDeletedMeasurements();
     }
+    return Collections.emptyList();
   }
 
   public void readLock() {
     MNode node = this;
     while (node != null) {
-      node.lock.readLock().lock();
+      if (node.lock != null) {
+        node.lock.readLock().lock();
+      }
       node = node.parent;
     }
   }
@@ -236,7 +331,9 @@ public class MNode implements Serializable {
   public void readUnlock() {
     MNode node = this;
     while (node != null) {
-      node.lock.readLock().unlock();
+      if (node.lock != null) {
+        node.lock.readLock().unlock();
+      }
       node = node.parent;
     }
   }
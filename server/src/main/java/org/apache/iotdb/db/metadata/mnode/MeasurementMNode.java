@@ -18,11 +18,11 @@
  */
 package org.apache.iotdb.db.metadata.mnode;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import org.apache.iotdb.db.metadata.MetadataConstant;
+import java.util.concurrent.locks.ReadWriteLock;
+import org.apache.iotdb.db.metadata.template.Template;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
@@ -51,16 +51,36 @@ public class MeasurementMNode extends MNode {
    */
   public MeasurementMNode(MNode parent, String measurementName, String alias, TSDataType dataType,
       TSEncoding encoding, CompressionType type, Map<String, String> props) {
-    super(parent, measurementName);
-    this.schema = new MeasurementSchema(measurementName, dataType, encoding, type, props);
-    this.alias = alias;
+    super(parent, measurementName, false);
+    this.leafCount = 1;
+    this.schema = SharedSchemaTable
+        .share(new MeasurementSchema(name, dataType, encoding, type, props));
+    this.alias = intern(alias);
   }
 
   public MeasurementMNode(MNode parent, String measurementName, MeasurementSchema schema,
       String alias) {
-    super(parent, measurementName);
-    this.schema = schema;
-    this.alias = alias;
+    super(parent, measurementName, false);
+    this.leafCount = 1;
+    this.schema = schema == null ? null : SharedSchemaTable.share(schema);
+    this.alias = intern(alias);
+  }
+
+  /**
+   * a measurement of the template used by the device, whose name and schema are the template's
+   */
+  MeasurementMNode(MNode device, Template template, int index) {
+    super(device, template.getMeasurement(index), (ReadWriteLock) null);
+    this.leafCount = 1;
+    this.schema = template.getSchema(index);
+  }
+
+  /**
+   * @return whether the measurement is of the template used by its device, which is not a node of
+   * the MTree
+   */
+  public boolean isFromTemplate() {
+    return false;
   }
 
   public MeasurementSchema getSchema() {
@@ -113,32 +133,11 @@ public class MeasurementMNode extends MNode {
   }
 
   public void setAlias(String alias) {
-    this.alias = alias;
+    this.alias = intern(alias);
   }
 
   public void setSchema(MeasurementSchema schema) {
-    this.schema = schema;
-  }
-
-  @Override
-  public void serializeTo(BufferedWriter bw) throws IOException {
-    serializeChildren(bw);
-
-    StringBuilder s = new StringBuilder(String.valueOf(MetadataConstant.MEASUREMENT_MNODE_TYPE));
-    s.append(",").append(name).append(",");
-    if (alias != null) {
-      s.append(alias);
-    }
-    s.append(",").append(schema.getType().ordinal()).append(",");
-    s.append(schema.getEncodingType().ordinal()).append(",");
-    s.append(schema.getCompressor().ordinal()).append(",");
-    for (Map.Entry<String, String> entry : schema.getProps().entrySet()) {
-      s.append(entry.getKey()).append(":").append(entry.getValue()).append(";");
-    }
-    s.append(",").append(offset).append(",");
-    s.append(children == null ? "0" : children.size());
-    bw.write(s.toString());
-    bw.newLine();
+    this.schema = schema == null ? null : SharedSchemaTable.share(schema);
   }
 
   /**
@@ -151,8 +150,9 @@ public class MeasurementMNode extends MNode {
   public static MeasurementMNode deserializeFrom(String[] nodeInfo) {
     String name = nodeInfo[1];
     String alias = nodeInfo[2].equals("") ? null : nodeInfo[2];
-    Map<String, String> props = new HashMap<>();
+    Map<String, String> props = Collections.emptyMap();
     if (!nodeInfo[6].equals("")) {
+      props = new HashMap<>();
       for (String propInfo : nodeInfo[6].split(";")) {
         props.put(propInfo.split(":")[0], propInfo.split(":")[1]);
       }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+
+/**
+ * SharedSchemaTable deduplicates the schemas of the measurements. The series of different devices
+ * usually have the same measurement names with the same data types, encodings, compressors and
+ * props, so their MeasurementMNodes can share one MeasurementSchema, which is never modified after
+ * it is created. A schema is removed from the table once no MeasurementMNode refers to it.
+ */
+class SharedSchemaTable {
+
+  // the keys are weak, and the values refer to the keys themselves
+  private static final Map<MeasurementSchema, WeakReference<MeasurementSchema>> schemas =
+      new WeakHashMap<>();
+
+  private SharedSchemaTable() {
+    // util class
+  }
+
+  /**
+   * @return the shared schema that equals the given one, or the given one if there is no such
+   * schema, which is shared from now on
+   */
+  static synchronized MeasurementSchema share(MeasurementSchema schema) {
+    WeakReference<MeasurementSchema> reference = schemas.get(schema);
+    MeasurementSchema shared = reference == null ? null : reference.get();
+    if (shared == null) {
+      schemas.put(schema, new WeakReference<>(schema));
+      return schema;
+    }
+    // the props are not compared by MeasurementSchema.equals()
+    return shared.getProps().equals(schema.getProps()) ? shared : schema;
+  }
+
+  static synchronized int size() {
+    return schemas.size();
+  }
+}
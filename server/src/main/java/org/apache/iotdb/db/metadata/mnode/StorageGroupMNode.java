@@ -18,9 +18,6 @@
  */
 package org.apache.iotdb.db.metadata.mnode;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
-import org.apache.iotdb.db.metadata.MetadataConstant;
 
 public class StorageGroupMNode extends MNode {
 
@@ -45,18 +42,6 @@ public class StorageGroupMNode extends MNode {
     this.dataTTL = dataTTL;
   }
 
-  @Override
-  public void serializeTo(BufferedWriter bw) throws IOException {
-    serializeChildren(bw);
-
-    StringBuilder s = new StringBuilder(String.valueOf(MetadataConstant.STORAGE_GROUP_MNODE_TYPE));
-    s.append(",").append(name).append(",");
-    s.append(dataTTL).append(",");
-    s.append(children == null ? "0" : children.size());
-    bw.write(s.toString());
-    bw.newLine();
-  }
-
   public static StorageGroupMNode deserializeFrom(String[] nodeInfo) {
     return new StorageGroupMNode(null, nodeInfo[1], Long.valueOf(nodeInfo[2]));
   }
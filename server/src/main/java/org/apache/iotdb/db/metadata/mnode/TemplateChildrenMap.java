@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.iotdb.db.metadata.template.Template;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+
+/**
+ * TemplateChildrenMap is the children of a device that uses a template. Besides the children that
+ * are nodes of their own, the measurements of the template are the children of the device, but
+ * they are not stored: a TemplateMeasurementMNode is created for one when it is first got, which
+ * only refers to the template and this map, and is cached by its index in the template. So the
+ * MTree is traversed as if the measurements were created in every device, while a device costs no
+ * more than this map until its measurements are got.
+ *
+ * A child of its own shadows the template measurement of the same name, which is how a
+ * measurement diverges from the template. A template measurement deleted from the device is
+ * remembered in a bit set. The cached last values of the template measurements are kept in an
+ * array of this map, as the TemplateMeasurementMNodes are not kept.
+ *
+ * Like ChildrenMap, it is not thread-safe except for the last values and the cached nodes, which
+ * are got by concurrent readers. The MTree is guarded by the lock of MManager.
+ */
+class TemplateChildrenMap extends AbstractMap<String, MNode> {
+
+  private MNode device;
+  private final Template template;
+  // the children that are nodes of their own
+  private final ChildrenMap children;
+  // the template measurements deleted from the device, null if none is deleted
+  private BitSet deleted;
+  private int deletedCount = 0;
+  // the number of the template measurements shadowed by the children of the same names
+  private int shadowed = 0;
+  // the cached last values of the template measurements, null until one is cached
+  private TimeValuePair[] lastValues;
+  // the TemplateMeasurementMNodes by their indexes in the template, null until one is got
+  private volatile AtomicReferenceArray<TemplateMeasurementMNode> nodes;
+
+  TemplateChildrenMap(MNode device, Template template, ChildrenMap children) {
+    this.device = device;
+    this.template = template;
+    this.children = children == null ? new ChildrenMap() : children;
+    for (String name : this.children.keySet()) {
+      if (template.indexOf(name) >= 0) {
+        shadowed++;
+      }
+    }
+  }
+
+  MNode getDevice() {
+    return device;
+  }
+
+  void setDevice(MNode device) {
+    this.device = device;
+    // the cached nodes refer to the old device
+    nodes = null;
+  }
+
+  Template getTemplate() {
+    return template;
+  }
+
+  /**
+   * @return the children that are nodes of their own
+   */
+  ChildrenMap getNodeChildren() {
+    return children;
+  }
+
+  /**
+   * @return the number of the template measurements that are neither deleted nor shadowed
+   */
+  int getTemplateMeasurementCount() {
+    return template.size() - deletedCount - shadowed;
+  }
+
+  List<String> getDeletedMeasurements() {
+    if (deleted == null) {
+      return Collections.emptyList();
+    }
+    List<String> names = new ArrayList<>(deletedCount);
+    for (int i = deleted.nextSetBit(0); i >= 0; i = deleted.nextSetBit(i + 1)) {
+      names.add(template.getMeasurement(i));
+    }
+    return names;
+  }
+
+  /**
+   * @return the position of the measurement in the template, or -1 if it is not in the template or
+   * is deleted from the device
+   */
+  private int templateIndex(String name) {
+    int index = template.indexOf(name);
+    return index < 0 || isDeleted(index) ? -1 : index;
+  }
+
+  private boolean isDeleted(int index) {
+    return deleted != null && deleted.get(index);
+  }
+
+  private void markDeleted(int index) {
+    if (deleted == null) {
+      deleted = new BitSet(template.size());
+    }
+    if (!deleted.get(index)) {
+      deleted.set(index);
+      deletedCount++;
+    }
+    resetCachedLast(index);
+  }
+
+  private TemplateMeasurementMNode getTemplateNode(int index) {
+    AtomicReferenceArray<TemplateMeasurementMNode> cachedNodes = nodes;
+    if (cachedNodes == null) {
+      synchronized (this) {
+        if (nodes == null) {
+          nodes = new AtomicReferenceArray<>(template.size());
+        }
+        cachedNodes = nodes;
+      }
+    }
+    TemplateMeasurementMNode node = cachedNodes.get(index);
+    if (node == null) {
+      node = new TemplateMeasurementMNode(this, index);
+      if (!cachedNodes.compareAndSet(index, null, node)) {
+        node = cachedNodes.get(index);
+      }
+    }
+    return node;
+  }
+
+  @Override
+  public int size() {
+    return children.size() + getTemplateMeasurementCount();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String
+        && (children.containsKey(key) || templateIndex((String) key) >= 0);
+  }
+
+  @Override
+  public MNode get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    MNode child = children.get(key);
+    if (child != null) {
+      return child;
+    }
+    int index = templateIndex((String) key);
+    return index < 0 ? null : getTemplateNode(index);
+  }
+
+  /**
+   * a child put with the name of a template measurement shadows it, and the template measurement
+   * is returned as the replaced child
+   */
+  @Override
+  public MNode put(String key, MNode value) {
+    int index = templateIndex(key);
+    MNode old = children.put(key, value);
+    if (old == null && index >= 0) {
+      shadowed++;
+      return getTemplateNode(index);
+    }
+    return old;
+  }
+
+  /**
+   * removing a template measurement, or the child that shadows it, deletes the measurement from
+   * the device
+   */
+  @Override
+  public MNode remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    int index = templateIndex((String) key);
+    MNode old = children.remove(key);
+    if (index >= 0) {
+      if (old != null) {
+        shadowed--;
+      } else {
+        old = getTemplateNode(index);
+      }
+      markDeleted(index);
+    }
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    children.clear();
+    for (int i = 0; i < template.size(); i++) {
+      markDeleted(i);
+    }
+    shadowed = 0;
+  }
+
+  @Override
+  public Set<Entry<String, MNode>> entrySet() {
+    return new EntrySet();
+  }
+
+  synchronized TimeValuePair getCachedLast(int index) {
+    return lastValues == null ? null : lastValues[index];
+  }
+
+  /**
+   * the same as MeasurementMNode.updateCachedLast(), except that a new pair replaces the cached
+   * one instead of updating it in place, so a pair got from the cache is never modified
+   */
+  synchronized void updateCachedLast(int index, TimeValuePair timeValuePair,
+      boolean highPriorityUpdate, Long latestFlushedTime) {
+    if (timeValuePair == null || timeValuePair.getValue() == null) {
+      return;
+    }
+    TimeValuePair cached = getCachedLast(index);
+    if (cached == null) {
+      if (highPriorityUpdate && latestFlushedTime > timeValuePair.getTimestamp()) {
+        return;
+      }
+    } else if (timeValuePair.getTimestamp() < cached.getTimestamp()
+        || (timeValuePair.getTimestamp() == cached.getTimestamp() && !highPriorityUpdate)) {
+      return;
+    }
+    if (lastValues == null) {
+      lastValues = new TimeValuePair[template.size()];
+    }
+    lastValues[index] = new TimeValuePair(timeValuePair.getTimestamp(), timeValuePair.getValue());
+  }
+
+  synchronized void resetCachedLast(int index) {
+    if (lastValues != null) {
+      lastValues[index] = null;
+    }
+  }
+
+  private class EntrySet extends AbstractSet<Entry<String, MNode>> {
+
+    @Override
+    public Iterator<Entry<String, MNode>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return TemplateChildrenMap.this.size();
+    }
+  }
+
+  /**
+   * iterates the children of their own, and then the template measurements that are neither
+   * deleted nor shadowed
+   */
+  private class EntryIterator implements Iterator<Entry<String, MNode>> {
+
+    private final Iterator<Entry<String, MNode>> childIterator = children.entrySet().iterator();
+    private Entry<String, MNode> lastChild;
+    // the next template measurement to check
+    private int next = 0;
+    private int last = -1;
+
+    @Override
+    public boolean hasNext() {
+      if (childIterator.hasNext()) {
+        return true;
+      }
+      while (next < template.size()
+          && (isDeleted(next) || children.containsKey(template.getMeasurement(next)))) {
+        next++;
+      }
+      return next < template.size();
+    }
+
+    @Override
+    public Entry<String, MNode> next() {
+      if (childIterator.hasNext()) {
+        lastChild = childIterator.next();
+        last = -1;
+        return lastChild;
+      }
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastChild = null;
+      last = next++;
+      return new SimpleImmutableEntry<>(template.getMeasurement(last),
+          getTemplateNode(last));
+    }
+
+    @Override
+    public void remove() {
+      if (lastChild != null) {
+        int index = templateIndex(lastChild.getKey());
+        childIterator.remove();
+        if (index >= 0) {
+          shadowed--;
+          markDeleted(index);
+        }
+        lastChild = null;
+      } else if (last >= 0) {
+        markDeleted(last);
+        last = -1;
+      } else {
+        throw new IllegalStateException();
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+
+/**
+ * A measurement of the template used by a device, which is created when it is first got from the
+ * children of the device and is cached by them instead of being stored in the MTree. Its cached last value is kept by the
+ * children of the device, and two TemplateMeasurementMNodes of the same measurement of a device
+ * are equal. It can not be modified, see MTree.materialize() for how a measurement diverges from
+ * the template.
+ */
+class TemplateMeasurementMNode extends MeasurementMNode {
+
+  private static final long serialVersionUID = 3906513346183447237L;
+
+  private final transient TemplateChildrenMap templateChildren;
+  private final int index;
+
+  TemplateMeasurementMNode(TemplateChildrenMap templateChildren, int index) {
+    super(templateChildren.getDevice(), templateChildren.getTemplate(), index);
+    this.templateChildren = templateChildren;
+    this.index = index;
+  }
+
+  @Override
+  public boolean isFromTemplate() {
+    return true;
+  }
+
+  @Override
+  public TimeValuePair getCachedLast() {
+    return templateChildren.getCachedLast(index);
+  }
+
+  @Override
+  public void updateCachedLast(TimeValuePair timeValuePair, boolean highPriorityUpdate,
+      Long latestFlushedTime) {
+    templateChildren.updateCachedLast(index, timeValuePair, highPriorityUpdate, latestFlushedTime);
+  }
+
+  @Override
+  public void resetCache() {
+    templateChildren.resetCachedLast(index);
+  }
+
+  @Override
+  public void setOffset(long offset) {
+    throw new UnsupportedOperationException(getFullPath() + " is a measurement of a template");
+  }
+
+  @Override
+  public void setAlias(String alias) {
+    throw new UnsupportedOperationException(getFullPath() + " is a measurement of a template");
+  }
+
+  @Override
+  public void setSchema(MeasurementSchema schema) {
+    throw new UnsupportedOperationException(getFullPath() + " is a measurement of a template");
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof TemplateMeasurementMNode)) {
+      return false;
+    }
+    TemplateMeasurementMNode that = (TemplateMeasurementMNode) o;
+    return templateChildren == that.templateChildren && index == that.index;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(templateChildren) * 31 + index;
+  }
+}
@@ -0,0 +1,514 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * PostingList is a compressed set of non-negative int ids in the layout of a roaring bitmap. The
+ * ids are partitioned by their high 16 bits, and the low 16 bits of each partition are stored in a
+ * sorted char array while there are at most 4096 of them, or in a bitmap of 8KB otherwise. So a
+ * sparse partition costs 2 bytes per id and a dense one at most 1 bit per possible id.
+ *
+ * A PostingList is not thread-safe. The lists returned by and() and or() never share their
+ * partitions with the operands.
+ */
+public class PostingList {
+
+  private static final int ARRAY_MAX_SIZE = 4096;
+  private static final int BITMAP_WORDS = 1024;
+  private static final byte ARRAY_CONTAINER = 0;
+  private static final byte BITMAP_CONTAINER = 1;
+
+  // the high 16 bits of the partitions in ascending order
+  private char[] keys;
+  private Container[] containers;
+  private int size;
+
+  public PostingList() {
+    this(4);
+  }
+
+  private PostingList(int capacity) {
+    keys = new char[capacity];
+    containers = new Container[capacity];
+  }
+
+  public void add(int id) {
+    char key = highBits(id);
+    int index = indexOfKey(key);
+    if (index >= 0) {
+      containers[index] = containers[index].add(lowBits(id));
+    } else {
+      Container container = new ArrayContainer().add(lowBits(id));
+      insertContainer(-index - 1, key, container);
+    }
+  }
+
+  /**
+   * @return whether the id was in the list
+   */
+  public boolean remove(int id) {
+    int index = indexOfKey(highBits(id));
+    if (index < 0 || !containers[index].contains(lowBits(id))) {
+      return false;
+    }
+    Container container = containers[index].remove(lowBits(id));
+    if (container.getCardinality() == 0) {
+      System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+      System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+      size--;
+      containers[size] = null;
+    } else {
+      containers[index] = container;
+    }
+    return true;
+  }
+
+  public boolean contains(int id) {
+    int index = indexOfKey(highBits(id));
+    return index >= 0 && containers[index].contains(lowBits(id));
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getCardinality() {
+    long cardinality = 0;
+    for (int i = 0; i < size; i++) {
+      cardinality += containers[i].getCardinality();
+    }
+    return cardinality;
+  }
+
+  /**
+   * visit the ids in ascending order
+   */
+  public void forEach(IntConsumer consumer) {
+    for (int i = 0; i < size; i++) {
+      containers[i].forEach(keys[i] << 16, consumer);
+    }
+  }
+
+  public PostingList and(PostingList other) {
+    PostingList result = new PostingList(Math.max(Math.min(size, other.size), 1));
+    int i = 0;
+    int j = 0;
+    while (i < size && j < other.size) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        Container container = containers[i].and(other.containers[j]);
+        if (container.getCardinality() > 0) {
+          result.appendContainer(keys[i], container);
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  public PostingList or(PostingList other) {
+    PostingList result = new PostingList(Math.max(size + other.size, 1));
+    int i = 0;
+    int j = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+        result.appendContainer(keys[i], containers[i].copy());
+        i++;
+      } else if (i == size || keys[i] > other.keys[j]) {
+        result.appendContainer(other.keys[j], other.containers[j].copy());
+        j++;
+      } else {
+        result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  public void serialize(DataOutputStream outputStream) throws IOException {
+    outputStream.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      outputStream.writeChar(keys[i]);
+      containers[i].serialize(outputStream);
+    }
+  }
+
+  public static PostingList deserialize(DataInputStream inputStream) throws IOException {
+    int size = inputStream.readInt();
+    PostingList postingList = new PostingList(Math.max(size, 1));
+    for (int i = 0; i < size; i++) {
+      char key = inputStream.readChar();
+      byte type = inputStream.readByte();
+      Container container;
+      if (type == ARRAY_CONTAINER) {
+        container = ArrayContainer.deserialize(inputStream);
+      } else if (type == BITMAP_CONTAINER) {
+        container = BitmapContainer.deserialize(inputStream);
+      } else {
+        throw new IOException("Unknown container type " + type);
+      }
+      postingList.appendContainer(key, container);
+    }
+    return postingList;
+  }
+
+  private int indexOfKey(char key) {
+    return Arrays.binarySearch(keys, 0, size, key);
+  }
+
+  private void insertContainer(int index, char key, Container container) {
+    ensureCapacity();
+    System.arraycopy(keys, index, keys, index + 1, size - index);
+    System.arraycopy(containers, index, containers, index + 1, size - index);
+    keys[index] = key;
+    containers[index] = container;
+    size++;
+  }
+
+  private void appendContainer(char key, Container container) {
+    ensureCapacity();
+    keys[size] = key;
+    containers[size] = container;
+    size++;
+  }
+
+  private void ensureCapacity() {
+    if (size == keys.length) {
+      int capacity = Math.max(keys.length * 2, 4);
+      keys = Arrays.copyOf(keys, capacity);
+      containers = Arrays.copyOf(containers, capacity);
+    }
+  }
+
+  private static char highBits(int id) {
+    return (char) (id >>> 16);
+  }
+
+  private static char lowBits(int id) {
+    return (char) id;
+  }
+
+  private abstract static class Container {
+
+    /**
+     * @return this container or the container it is converted to
+     */
+    abstract Container add(char value);
+
+    /**
+     * @return this container or the container it is converted to
+     */
+    abstract Container remove(char value);
+
+    abstract boolean contains(char value);
+
+    abstract int getCardinality();
+
+    abstract void forEach(int high, IntConsumer consumer);
+
+    abstract Container and(Container other);
+
+    abstract Container or(Container other);
+
+    abstract Container copy();
+
+    abstract void serialize(DataOutputStream outputStream) throws IOException;
+  }
+
+  private static class ArrayContainer extends Container {
+
+    private char[] values;
+    private int cardinality;
+
+    ArrayContainer() {
+      this(new char[4], 0);
+    }
+
+    ArrayContainer(char[] values, int cardinality) {
+      this.values = values;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char value) {
+      int index = Arrays.binarySearch(values, 0, cardinality, value);
+      if (index >= 0) {
+        return this;
+      }
+      if (cardinality == ARRAY_MAX_SIZE) {
+        return toBitmap().add(value);
+      }
+      index = -index - 1;
+      if (cardinality == values.length) {
+        values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_MAX_SIZE));
+      }
+      System.arraycopy(values, index, values, index + 1, cardinality - index);
+      values[index] = value;
+      cardinality++;
+      return this;
+    }
+
+    @Override
+    Container remove(char value) {
+      int index = Arrays.binarySearch(values, 0, cardinality, value);
+      if (index >= 0) {
+        System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+        cardinality--;
+      }
+      return this;
+    }
+
+    @Override
+    boolean contains(char value) {
+      return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    @Override
+    int getCardinality() {
+      return cardinality;
+    }
+
+    @Override
+    void forEach(int high, IntConsumer consumer) {
+      for (int i = 0; i < cardinality; i++) {
+        consumer.accept(high | values[i]);
+      }
+    }
+
+    @Override
+    Container and(Container other) {
+      char[] result = new char[Math.min(cardinality, other.getCardinality())];
+      int count = 0;
+      if (other instanceof ArrayContainer) {
+        ArrayContainer array = (ArrayContainer) other;
+        int i = 0;
+        int j = 0;
+        while (i < cardinality && j < array.cardinality) {
+          if (values[i] < array.values[j]) {
+            i++;
+          } else if (values[i] > array.values[j]) {
+            j++;
+          } else {
+            result[count++] = values[i];
+            i++;
+            j++;
+          }
+        }
+      } else {
+        for (int i = 0; i < cardinality; i++) {
+          if (other.contains(values[i])) {
+            result[count++] = values[i];
+          }
+        }
+      }
+      return new ArrayContainer(result, count);
+    }
+
+    @Override
+    Container or(Container other) {
+      if (other instanceof BitmapContainer) {
+        return other.or(this);
+      }
+      ArrayContainer array = (ArrayContainer) other;
+      char[] result = new char[cardinality + array.cardinality];
+      int count = 0;
+      int i = 0;
+      int j = 0;
+      while (i < cardinality || j < array.cardinality) {
+        if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+          result[count++] = values[i++];
+        } else if (i == cardinality || values[i] > array.values[j]) {
+          result[count++] = array.values[j++];
+        } else {
+          result[count++] = values[i];
+          i++;
+          j++;
+        }
+      }
+      ArrayContainer container = new ArrayContainer(result, count);
+      return count > ARRAY_MAX_SIZE ? container.toBitmap() : container;
+    }
+
+    @Override
+    Container copy() {
+      return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+    }
+
+    private BitmapContainer toBitmap() {
+      BitmapContainer bitmap = new BitmapContainer();
+      for (int i = 0; i < cardinality; i++) {
+        bitmap.add(values[i]);
+      }
+      return bitmap;
+    }
+
+    @Override
+    void serialize(DataOutputStream outputStream) throws IOException {
+      outputStream.writeByte(ARRAY_CONTAINER);
+      outputStream.writeShort(cardinality - 1);
+      for (int i = 0; i < cardinality; i++) {
+        outputStream.writeChar(values[i]);
+      }
+    }
+
+    static ArrayContainer deserialize(DataInputStream inputStream) throws IOException {
+      int cardinality = inputStream.readUnsignedShort() + 1;
+      char[] values = new char[cardinality];
+      for (int i = 0; i < cardinality; i++) {
+        values[i] = inputStream.readChar();
+      }
+      return new ArrayContainer(values, cardinality);
+    }
+  }
+
+  private static class BitmapContainer extends Container {
+
+    private final long[] words;
+    private int cardinality;
+
+    BitmapContainer() {
+      this(new long[BITMAP_WORDS], 0);
+    }
+
+    BitmapContainer(long[] words, int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char value) {
+      long before = words[value >>> 6];
+      long after = before | (1L << value);
+      words[value >>> 6] = after;
+      if (before != after) {
+        cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(char value) {
+      long before = words[value >>> 6];
+      long after = before & ~(1L << value);
+      words[value >>> 6] = after;
+      if (before != after) {
+        cardinality--;
+      }
+      return cardinality <= ARRAY_MAX_SIZE ? toArray() : this;
+    }
+
+    @Override
+    boolean contains(char value) {
+      return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int getCardinality() {
+      return cardinality;
+    }
+
+    @Override
+    void forEach(int high, IntConsumer consumer) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        long word = words[i];
+        while (word != 0) {
+          consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+    }
+
+    @Override
+    Container and(Container other) {
+      if (other instanceof ArrayContainer) {
+        return other.and(this);
+      }
+      long[] otherWords = ((BitmapContainer) other).words;
+      long[] result = new long[BITMAP_WORDS];
+      int count = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        result[i] = words[i] & otherWords[i];
+        count += Long.bitCount(result[i]);
+      }
+      BitmapContainer container = new BitmapContainer(result, count);
+      return count <= ARRAY_MAX_SIZE ? container.toArray() : container;
+    }
+
+    @Override
+    Container or(Container other) {
+      BitmapContainer result = (BitmapContainer) copy();
+      if (other instanceof ArrayContainer) {
+        ArrayContainer array = (ArrayContainer) other;
+        for (int i = 0; i < array.cardinality; i++) {
+          result.add(array.values[i]);
+        }
+        return result;
+      }
+      long[] otherWords = ((BitmapContainer) other).words;
+      int count = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        result.words[i] |= otherWords[i];
+        count += Long.bitCount(result.words[i]);
+      }
+      result.cardinality = count;
+      return result;
+    }
+
+    @Override
+    Container copy() {
+      return new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+    }
+
+    private ArrayContainer toArray() {
+      char[] values = new char[Math.max(cardinality, 1)];
+      int[] count = new int[1];
+      forEach(0, value -> values[count[0]++] = (char) value);
+      return new ArrayContainer(values, cardinality);
+    }
+
+    @Override
+    void serialize(DataOutputStream outputStream) throws IOException {
+      outputStream.writeByte(BITMAP_CONTAINER);
+      for (long word : words) {
+        outputStream.writeLong(word);
+      }
+    }
+
+    static BitmapContainer deserialize(DataInputStream inputStream) throws IOException {
+      long[] words = new long[BITMAP_WORDS];
+      int cardinality = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        words[i] = inputStream.readLong();
+        cardinality += Long.bitCount(words[i]);
+      }
+      return new BitmapContainer(words, cardinality);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * TagFilter is the condition on the tags in "SHOW TIMESERIES WHERE", which is either a predicate
+ * on one tag (key = value or key CONTAINS value) or the AND/OR of other filters.
+ */
+public class TagFilter {
+
+  public enum FilterType {
+    EQUAL, CONTAINS, AND, OR
+  }
+
+  private final FilterType type;
+  private final String key;
+  private final String value;
+  private final List<TagFilter> children;
+
+  private TagFilter(FilterType type, String key, String value, List<TagFilter> children) {
+    this.type = type;
+    this.key = key;
+    this.value = value;
+    this.children = children;
+  }
+
+  public static TagFilter equal(String key, String value) {
+    return new TagFilter(FilterType.EQUAL, key, value, Collections.emptyList());
+  }
+
+  public static TagFilter contains(String key, String value) {
+    return new TagFilter(FilterType.CONTAINS, key, value, Collections.emptyList());
+  }
+
+  public static TagFilter and(List<TagFilter> children) {
+    return children.size() == 1 ? children.get(0)
+        : new TagFilter(FilterType.AND, null, null, children);
+  }
+
+  public static TagFilter or(List<TagFilter> children) {
+    return children.size() == 1 ? children.get(0)
+        : new TagFilter(FilterType.OR, null, null, children);
+  }
+
+  public FilterType getType() {
+    return type;
+  }
+
+  public boolean isPredicate() {
+    return type == FilterType.EQUAL || type == FilterType.CONTAINS;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public List<TagFilter> getChildren() {
+    return children;
+  }
+
+  public void serialize(DataOutputStream outputStream) throws IOException {
+    outputStream.writeByte(type.ordinal());
+    if (isPredicate()) {
+      ReadWriteIOUtils.write(key, outputStream);
+      ReadWriteIOUtils.write(value, outputStream);
+    } else {
+      outputStream.writeInt(children.size());
+      for (TagFilter child : children) {
+        child.serialize(outputStream);
+      }
+    }
+  }
+
+  public static TagFilter deserialize(ByteBuffer buffer) {
+    FilterType type = FilterType.values()[buffer.get()];
+    if (type == FilterType.EQUAL || type == FilterType.CONTAINS) {
+      String key = ReadWriteIOUtils.readString(buffer);
+      String value = ReadWriteIOUtils.readString(buffer);
+      return new TagFilter(type, key, value, Collections.emptyList());
+    }
+    int size = buffer.getInt();
+    List<TagFilter> children = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      children.add(deserialize(buffer));
+    }
+    return new TagFilter(type, null, null, children);
+  }
+
+  @Override
+  public String toString() {
+    switch (type) {
+      case EQUAL:
+        return key + "=" + value;
+      case CONTAINS:
+        return key + " contains " + value;
+      default:
+        return children.stream().map(child -> "(" + child + ")")
+            .collect(Collectors.joining(" " + type.name().toLowerCase() + " "));
+    }
+  }
+}
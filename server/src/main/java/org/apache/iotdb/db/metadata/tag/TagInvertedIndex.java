@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+
+/**
+ * TagInvertedIndex maps each tag key and value to the posting list of the timeseries having the
+ * tag. A timeseries is identified by the index of its record in the tag log file, i.e., its offset
+ * divided by the record size, so the ids are dense and stable as long as the timeseries exists.
+ *
+ * The index is not thread-safe, it is protected by the lock of MManager.
+ */
+public class TagInvertedIndex {
+
+  private static final int MAGIC = 0x54494458;
+  private static final int VERSION = 1;
+
+  private final int recordSize;
+  // tag key -> tag value -> ids of the timeseries
+  private final Map<String, Map<String, PostingList>> index = new HashMap<>();
+  // id -> timeseries
+  private MeasurementMNode[] nodes = new MeasurementMNode[16];
+
+  public TagInvertedIndex(int recordSize) {
+    this.recordSize = recordSize;
+  }
+
+  public void add(String key, String value, MeasurementMNode node) {
+    int id = attach(node);
+    index.computeIfAbsent(key, k -> new HashMap<>())
+        .computeIfAbsent(value, v -> new PostingList()).add(id);
+  }
+
+  /**
+   * @return whether the timeseries was indexed by the tag
+   */
+  public boolean remove(String key, String value, MeasurementMNode node) {
+    Map<String, PostingList> valueToIds = index.get(key);
+    if (valueToIds == null) {
+      return false;
+    }
+    PostingList ids = valueToIds.get(value);
+    if (ids == null || !ids.remove(getId(node))) {
+      return false;
+    }
+    if (ids.isEmpty()) {
+      valueToIds.remove(value);
+      if (valueToIds.isEmpty()) {
+        index.remove(key);
+      }
+    }
+    return true;
+  }
+
+  public boolean containsKey(String key) {
+    return index.containsKey(key);
+  }
+
+  /**
+   * register the timeseries as the owner of its id, the timeseries must have a record in the tag
+   * log file
+   *
+   * @return the id of the timeseries
+   */
+  public int attach(MeasurementMNode node) {
+    int id = getId(node);
+    if (id >= nodes.length) {
+      nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, id + 1));
+    }
+    nodes[id] = node;
+    return id;
+  }
+
+  /**
+   * unregister the deleted timeseries, which should have been removed from the posting lists
+   */
+  public void detach(MeasurementMNode node) {
+    int id = getId(node);
+    if (id < nodes.length && nodes[id] == node) {
+      nodes[id] = null;
+    }
+  }
+
+  /**
+   * @return the timeseries of the id, or null if it is deleted
+   */
+  public MeasurementMNode getNode(int id) {
+    return id < nodes.length ? nodes[id] : null;
+  }
+
+  /**
+   * @return the ids of the timeseries matching the filter, which must not be modified
+   * @throws MetadataException if a key in the filter is not a tag
+   */
+  public PostingList match(TagFilter filter) throws MetadataException {
+    switch (filter.getType()) {
+      case EQUAL:
+        PostingList ids = getValueToIds(filter.getKey()).get(filter.getValue());
+        return ids != null ? ids : new PostingList();
+      case CONTAINS:
+        PostingList result = new PostingList();
+        for (Entry<String, PostingList> entry : getValueToIds(filter.getKey()).entrySet()) {
+          if (entry.getKey().contains(filter.getValue())) {
+            result = result.or(entry.getValue());
+          }
+        }
+        return result;
+      case AND:
+        result = match(filter.getChildren().get(0));
+        for (int i = 1; i < filter.getChildren().size() && !result.isEmpty(); i++) {
+          result = result.and(match(filter.getChildren().get(i)));
+        }
+        return result;
+      case OR:
+        result = new PostingList();
+        for (TagFilter child : filter.getChildren()) {
+          result = result.or(match(child));
+        }
+        return result;
+      default:
+        throw new MetadataException("Unsupported tag filter " + filter);
+    }
+  }
+
+  private Map<String, PostingList> getValueToIds(String key) throws MetadataException {
+    Map<String, PostingList> valueToIds = index.get(key);
+    if (valueToIds == null || valueToIds.isEmpty()) {
+      throw new MetadataException("The key " + key + " is not a tag.");
+    }
+    return valueToIds;
+  }
+
+  /**
+   * @return whether every id in the posting lists belongs to an attached timeseries
+   */
+  public boolean isComplete() {
+    boolean[] complete = {true};
+    for (Map<String, PostingList> valueToIds : index.values()) {
+      for (PostingList ids : valueToIds.values()) {
+        ids.forEach(id -> {
+          if (getNode(id) == null) {
+            complete[0] = false;
+          }
+        });
+        if (!complete[0]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  public void clear() {
+    index.clear();
+    nodes = new MeasurementMNode[16];
+  }
+
+  private int getId(MeasurementMNode node) {
+    return (int) (node.getOffset() / recordSize);
+  }
+
+  /**
+   * persist the posting lists, the timeseries are attached again when the index is loaded
+   *
+   * @param tagLogLength the length of the tag log file that the index is consistent with
+   */
+  public void serialize(File file, long tagLogLength) throws IOException {
+    try (DataOutputStream outputStream = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      outputStream.writeInt(MAGIC);
+      outputStream.writeInt(VERSION);
+      outputStream.writeInt(recordSize);
+      outputStream.writeLong(tagLogLength);
+      outputStream.writeInt(index.size());
+      for (Entry<String, Map<String, PostingList>> keyEntry : index.entrySet()) {
+        outputStream.writeUTF(keyEntry.getKey());
+        outputStream.writeInt(keyEntry.getValue().size());
+        for (Entry<String, PostingList> valueEntry : keyEntry.getValue().entrySet()) {
+          outputStream.writeUTF(valueEntry.getKey());
+          valueEntry.getValue().serialize(outputStream);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the index persisted in the file, or null if it is not consistent with the tag log file
+   * of the given record size and length
+   */
+  public static TagInvertedIndex deserialize(File file, int recordSize, long tagLogLength)
+      throws IOException {
+    try (DataInputStream inputStream = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)))) {
+      if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION
+          || inputStream.readInt() != recordSize || inputStream.readLong() != tagLogLength) {
+        return null;
+      }
+      TagInvertedIndex tagIndex = new TagInvertedIndex(recordSize);
+      int keyNum = inputStream.readInt();
+      for (int i = 0; i < keyNum; i++) {
+        String key = inputStream.readUTF();
+        int valueNum = inputStream.readInt();
+        Map<String, PostingList> valueToIds = new HashMap<>(valueNum * 2);
+        for (int j = 0; j < valueNum; j++) {
+          String value = inputStream.readUTF();
+          valueToIds.put(value, PostingList.deserialize(inputStream));
+        }
+        tagIndex.index.put(key, valueToIds);
+      }
+      return tagIndex;
+    }
+  }
+}
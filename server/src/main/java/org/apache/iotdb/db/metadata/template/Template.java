@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.template;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.iotdb.db.qp.physical.sys.CreateTemplatePlan;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+
+/**
+ * Template is a set of measurements defined once and used by all the devices under the prefix
+ * path it is set to. The measurements of a template are not stored as nodes in the devices, each
+ * device that uses the template resolves them from the template, so the devices of a homogeneous
+ * fleet share one MeasurementSchema per measurement. A measurement of a device only becomes a
+ * node of its own when it diverges from the template, e.g., when it is given tags or an alias.
+ */
+public class Template {
+
+  private final String name;
+  // the measurement names are interned like the names of the nodes
+  private final String[] measurements;
+  private final MeasurementSchema[] schemas;
+  private final Map<String, Integer> indexes;
+
+  public Template(String name, List<MeasurementSchema> schemas) {
+    this.name = name;
+    this.measurements = new String[schemas.size()];
+    this.schemas = schemas.toArray(new MeasurementSchema[0]);
+    this.indexes = new HashMap<>(schemas.size() * 2);
+    for (int i = 0; i < this.schemas.length; i++) {
+      measurements[i] = this.schemas[i].getMeasurementId().intern();
+      indexes.put(measurements[i], i);
+    }
+  }
+
+  public Template(CreateTemplatePlan plan) {
+    this(plan.getName(), toSchemas(plan));
+  }
+
+  private static List<MeasurementSchema> toSchemas(CreateTemplatePlan plan) {
+    MeasurementSchema[] schemas = new MeasurementSchema[plan.getMeasurements().size()];
+    for (int i = 0; i < schemas.length; i++) {
+      schemas[i] = new MeasurementSchema(plan.getMeasurements().get(i),
+          plan.getDataTypes().get(i), plan.getEncodings().get(i), plan.getCompressors().get(i),
+          Collections.emptyMap());
+    }
+    return Arrays.asList(schemas);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the number of the measurements
+   */
+  public int size() {
+    return measurements.length;
+  }
+
+  /**
+   * @return the position of the measurement in the template, or -1 if it is not in the template
+   */
+  public int indexOf(String measurement) {
+    Integer index = indexes.get(measurement);
+    return index == null ? -1 : index;
+  }
+
+  public String getMeasurement(int index) {
+    return measurements[index];
+  }
+
+  public MeasurementSchema getSchema(int index) {
+    return schemas[index];
+  }
+
+  public List<MeasurementSchema> getSchemas() {
+    return Collections.unmodifiableList(Arrays.asList(schemas));
+  }
+
+  @Override
+  public String toString() {
+    return name + Arrays.toString(measurements);
+  }
+}
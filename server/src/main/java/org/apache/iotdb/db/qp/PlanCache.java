@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.qp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.qp.logical.crud.QueryOperator;
+
+/**
+ * PlanCache keeps the logical plans of prepared statements in LRU order, keyed on the time zone and
+ * the normalized text of the statement. A cached plan has been through the SQL parser and the path
+ * concatenation, so executing the same statement again only binds the values of its parameters.
+ * As the paths of a plan may be expanded from wildcards, a plan built before the latest schema
+ * change in MManager is dropped when it is met.
+ */
+public class PlanCache {
+
+  private final int capacity;
+  private final Map<String, CachedPlan> plans;
+
+  private long hitCount = 0;
+  private long missCount = 0;
+
+  PlanCache(int capacity) {
+    this.capacity = capacity;
+    this.plans = new LinkedHashMap<String, CachedPlan>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedPlan> eldest) {
+        return size() > PlanCache.this.capacity;
+      }
+    };
+  }
+
+  public static PlanCache getInstance() {
+    return PlanCacheHolder.INSTANCE;
+  }
+
+  /**
+   * @param schemaVersion the current schema version of MManager
+   * @return the cached plan, or null if there is none or it was built on an older schema
+   */
+  synchronized CachedPlan get(String key, long schemaVersion) {
+    CachedPlan plan = plans.get(key);
+    if (plan != null && plan.schemaVersion != schemaVersion) {
+      plans.remove(key);
+      plan = null;
+    }
+    if (plan == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+    return plan;
+  }
+
+  synchronized void put(String key, CachedPlan plan) {
+    if (capacity > 0) {
+      plans.put(key, plan);
+    }
+  }
+
+  public synchronized void clear() {
+    plans.clear();
+    hitCount = 0;
+    missCount = 0;
+  }
+
+  public synchronized int size() {
+    return plans.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * collapse the whitespaces out of the quoted strings, so statements that differ only in their
+   * layout share a cached plan.
+   */
+  static String normalize(String sql) {
+    StringBuilder builder = new StringBuilder(sql.length());
+    char quote = 0;
+    boolean lastIsSpace = false;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        builder.append(c);
+        if (c == '\\' && i + 1 < sql.length()) {
+          builder.append(sql.charAt(++i));
+        } else if (c == quote) {
+          quote = 0;
+        }
+        continue;
+      }
+      if (Character.isWhitespace(c)) {
+        lastIsSpace = builder.length() > 0;
+        continue;
+      }
+      if (lastIsSpace) {
+        builder.append(' ');
+        lastIsSpace = false;
+      }
+      if (c == '\'' || c == '"') {
+        quote = c;
+      }
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+
+  static class CachedPlan {
+
+    // null if the statement can not be reused as a template, e.g., it is not a query
+    private final QueryOperator operator;
+    private final long schemaVersion;
+
+    CachedPlan(QueryOperator operator, long schemaVersion) {
+      this.operator = operator;
+      this.schemaVersion = schemaVersion;
+    }
+
+    QueryOperator getOperator() {
+      return operator;
+    }
+  }
+
+  private static class PlanCacheHolder {
+
+    private static final PlanCache INSTANCE = new PlanCache(
+        IoTDBDescriptor.getInstance().getConfig().getPlanCacheSize());
+
+    private PlanCacheHolder() {
+    }
+  }
+}
@@ -18,13 +18,19 @@
  */
 package org.apache.iotdb.db.qp;
 
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.exception.query.LogicalOperatorException;
 import org.apache.iotdb.db.exception.query.LogicalOptimizeException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.exception.runtime.SQLParserException;
+import org.apache.iotdb.db.qp.PlanCache.CachedPlan;
+import org.apache.iotdb.db.qp.constant.SQLConstant;
 import org.apache.iotdb.db.qp.logical.Operator;
+import org.apache.iotdb.db.qp.logical.Operator.OperatorType;
 import org.apache.iotdb.db.qp.logical.crud.FilterOperator;
+import org.apache.iotdb.db.qp.logical.crud.QueryOperator;
 import org.apache.iotdb.db.qp.logical.crud.SFWOperator;
 import org.apache.iotdb.db.qp.physical.PhysicalPlan;
 import org.apache.iotdb.db.qp.strategy.ParseDriver;
@@ -33,10 +39,13 @@ import org.apache.iotdb.db.qp.strategy.optimizer.ConcatPathOptimizer;
 import org.apache.iotdb.db.qp.strategy.optimizer.DnfFilterOptimizer;
 import org.apache.iotdb.db.qp.strategy.optimizer.MergeSingleFilterOptimizer;
 import org.apache.iotdb.db.qp.strategy.optimizer.RemoveNotOptimizer;
+import org.apache.iotdb.db.service.IoTDB;
 import org.apache.iotdb.db.utils.TestOnly;
+import org.apache.iotdb.rpc.RpcUtils;
 import org.apache.iotdb.tsfile.read.common.Path;
 
 import java.time.ZoneId;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -45,9 +54,11 @@ import java.util.Set;
 public class Planner {
 
   protected ParseDriver parseDriver;
+  protected PlanCache planCache;
 
   public Planner() {
     this.parseDriver = new ParseDriver();
+    this.planCache = PlanCache.getInstance();
   }
 
   @TestOnly
@@ -65,6 +76,98 @@ public class Planner {
     return physicalGenerator.transformToPhysicalPlan(operator);
   }
 
+  /**
+   * parse a prepared statement and check it, the logical plan of the statement is cached so the
+   * following executions can skip the parser.
+   *
+   * @return the number of parameters ('?') in the statement
+   * @throws QueryProcessException if the statement can not be parsed whatever the values of its
+   *                               parameters are
+   */
+  public int prepareStatement(String sqlStr, ZoneId zoneId) throws QueryProcessException {
+    try {
+      getPlanTemplate(sqlStr, zoneId);
+    } catch (ParseCancellationException | SQLParserException e) {
+      throw new QueryProcessException(e.getMessage());
+    }
+    return RpcUtils.splitSqlByParameters(sqlStr).size() - 1;
+  }
+
+  /**
+   * generate the physical plan of a prepared statement with the values of its parameters ('?').
+   * A query with all its parameters in the where clause is bound from the logical plan cached in
+   * the PlanCache, other statements have the values substituted into the text and are parsed as
+   * usual.
+   *
+   * @param parameters values of the parameters in the order they occur in the statement, written
+   *                   as they are in SQL, e.g., 1, 'str', 2020-01-01T00:00:00
+   */
+  public PhysicalPlan parseSQLToPhysicalPlan(String sqlStr, ZoneId zoneId,
+      List<String> parameters) throws QueryProcessException {
+    List<String> parts = RpcUtils.splitSqlByParameters(sqlStr);
+    if (parameters.size() != parts.size() - 1) {
+      throw new QueryProcessException(String.format("The statement has %d parameters but %d are "
+          + "given", parts.size() - 1, parameters.size()));
+    }
+    QueryOperator template = getPlanTemplate(sqlStr, zoneId);
+    if (template == null) {
+      StringBuilder builder = new StringBuilder(parts.get(0));
+      for (int i = 1; i < parts.size(); i++) {
+        builder.append(parameters.get(i - 1)).append(parts.get(i));
+      }
+      return parseSQLToPhysicalPlan(builder.toString(), zoneId);
+    }
+
+    // the template is shared by all executions of the statement, so the parameters are bound to a
+    // copy of it
+    QueryOperator operator = template.copy();
+    if (template.getFilterOperator() != null) {
+      operator.setFilterOperator(optimizeFilter(
+          parseDriver.bindParameters(template.getFilterOperator(), parameters, zoneId)));
+    }
+    PhysicalGenerator physicalGenerator = new PhysicalGenerator();
+    return physicalGenerator.transformToPhysicalPlan(operator);
+  }
+
+  /**
+   * @return the cached logical plan of the statement, or null if the statement can not be reused
+   * as a template
+   * @throws ParseCancellationException if the statement has a syntax error which is not caused by
+   *                                    its parameters
+   */
+  private QueryOperator getPlanTemplate(String sqlStr, ZoneId zoneId)
+      throws QueryProcessException {
+    String key = zoneId + " " + PlanCache.normalize(sqlStr);
+    long schemaVersion = IoTDB.metaManager.getSchemaVersion();
+    CachedPlan cachedPlan = planCache.get(key, schemaVersion);
+    if (cachedPlan == null) {
+      cachedPlan = new CachedPlan(parseToPlanTemplate(sqlStr, zoneId), schemaVersion);
+      planCache.put(key, cachedPlan);
+    }
+    return cachedPlan.getOperator();
+  }
+
+  private QueryOperator parseToPlanTemplate(String sqlStr, ZoneId zoneId)
+      throws QueryProcessException {
+    // now() is evaluated while parsing, so the result can not be reused
+    if (sqlStr.toLowerCase().contains(SQLConstant.NOW_FUNC)) {
+      return null;
+    }
+    Operator operator;
+    try {
+      operator = parseDriver.parse(sqlStr, zoneId);
+    } catch (ParseCancellationException e) {
+      if (parseDriver.failsAtParameter(sqlStr)) {
+        // a parameter is not in the where clause, let the substituted statement be parsed
+        return null;
+      }
+      throw e;
+    }
+    if (operator.getType() != OperatorType.QUERY) {
+      return null;
+    }
+    return (QueryOperator) getConcatPathOptimizer().transform(operator);
+  }
 
   /**
    * given an unoptimized logical operator tree and return a optimized result.
@@ -103,6 +206,8 @@ public class Planner {
       case SHOW_MERGE_STATUS:
       case DELETE_PARTITION:
       case CREATE_SCHEMA_SNAPSHOT:
+      case CREATE_TEMPLATE:
+      case SET_DEVICE_TEMPLATE:
         return operator;
       case QUERY:
       case UPDATE:
@@ -129,6 +234,11 @@ public class Planner {
     if (filter == null) {
       return root;
     }
+    root.setFilterOperator(optimizeFilter(filter));
+    return root;
+  }
+
+  private FilterOperator optimizeFilter(FilterOperator filter) throws LogicalOperatorException {
     Set<Path> pathSet = filter.getPathSet();
     RemoveNotOptimizer removeNot = new RemoveNotOptimizer();
     filter = removeNot.optimize(filter);
@@ -136,9 +246,8 @@ public class Planner {
     filter = dnf.optimize(filter);
     MergeSingleFilterOptimizer merge = new MergeSingleFilterOptimizer();
     filter = merge.optimize(filter);
-    root.setFilterOperator(filter);
     filter.setPathSet(pathSet);
-    return root;
+    return filter;
   }
 
   protected ConcatPathOptimizer getConcatPathOptimizer() {
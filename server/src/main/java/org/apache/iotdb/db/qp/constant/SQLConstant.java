@@ -156,6 +156,9 @@ public class SQLConstant {
   public static final int TOK_CREATE_SCHEMA_SNAPSHOT = 89;
   public static final int TOK_TRACING = 91;
 
+  public static final int TOK_CREATE_SCHEMA_TEMPLATE = 92;
+  public static final int TOK_SET_SCHEMA_TEMPLATE = 93;
+
   public static final Map<Integer, String> tokenSymbol = new HashMap<>();
   public static final Map<Integer, String> tokenNames = new HashMap<>();
   public static final Map<Integer, Integer> reverseWords = new HashMap<>();
@@ -228,6 +231,8 @@ public class SQLConstant {
     tokenNames.put(TOK_DELETE_PARTITION, "TOK_DELETE_PARTITION");
 
     tokenNames.put(TOK_TRACING, "TOK_TRACING");
+    tokenNames.put(TOK_CREATE_SCHEMA_TEMPLATE, "TOK_CREATE_SCHEMA_TEMPLATE");
+    tokenNames.put(TOK_SET_SCHEMA_TEMPLATE, "TOK_SET_SCHEMA_TEMPLATE");
   }
 
   static {
@@ -42,6 +42,8 @@ public class BasicFunctionOperator extends FunctionOperator {
   protected String value;
   private Logger logger = LoggerFactory.getLogger(BasicFunctionOperator.class);
   private BasicOperatorType funcToken;
+  // the index of the parameter ('?') of a prepared statement which is the value, or -1
+  private int parameterIndex = -1;
 
   /**
    * BasicFunctionOperator Constructor.
@@ -66,6 +68,27 @@ public class BasicFunctionOperator extends FunctionOperator {
     return value;
   }
 
+  public int getParameterIndex() {
+    return parameterIndex;
+  }
+
+  public void setParameterIndex(int parameterIndex) {
+    this.parameterIndex = parameterIndex;
+  }
+
+  public boolean isParameter() {
+    return parameterIndex >= 0;
+  }
+
+  /**
+   * set the value of the parameter of a prepared statement, the operator is no longer a parameter
+   * afterwards.
+   */
+  public void bindParameter(String value) {
+    this.value = value;
+    this.parameterIndex = -1;
+  }
+
   @Override
   public void reverseFunc() {
     int intType = SQLConstant.reverseWords.get(tokenIntType);
@@ -77,6 +100,11 @@ public class BasicFunctionOperator extends FunctionOperator {
   protected Pair<IUnaryExpression, String> transformToSingleQueryFilter(
       Map<Path, TSDataType> pathTSDataTypeHashMap)
       throws LogicalOperatorException, MetadataException {
+    if (isParameter()) {
+      throw new LogicalOperatorException(
+          "Parameter #" + (parameterIndex + 1) + " of " + singlePath.getFullPath()
+              + " is not bound, please use a prepared statement");
+    }
     TSDataType type = pathTSDataTypeHashMap.get(singlePath);
     if (type == null) {
       throw new MetadataException(
@@ -136,6 +164,7 @@ public class BasicFunctionOperator extends FunctionOperator {
     ret.isLeaf = isLeaf;
     ret.isSingle = isSingle;
     ret.pathSet = pathSet;
+    ret.parameterIndex = parameterIndex;
     return ret;
   }
 
@@ -58,6 +58,37 @@ public class QueryOperator extends SFWOperator {
     operatorType = Operator.OperatorType.QUERY;
   }
 
+  /**
+   * @return a copy sharing the select, from and filter clauses with this operator, so a clause can
+   * be replaced in the copy without affecting this operator
+   */
+  public QueryOperator copy() {
+    QueryOperator ret = new QueryOperator(tokenIntType);
+    ret.operatorType = operatorType;
+    if (getSelectOperator() != null) {
+      ret.setSelectOperator(getSelectOperator());
+    }
+    ret.setFromOperator(getFromOperator());
+    ret.setFilterOperator(getFilterOperator());
+    ret.startTime = startTime;
+    ret.endTime = endTime;
+    ret.unit = unit;
+    ret.slidingStep = slidingStep;
+    ret.isGroupByTime = isGroupByTime;
+    ret.leftCRightO = leftCRightO;
+    ret.fillTypes = fillTypes;
+    ret.isFill = isFill;
+    ret.isGroupByLevel = isGroupByLevel;
+    ret.level = level;
+    ret.rowLimit = rowLimit;
+    ret.rowOffset = rowOffset;
+    ret.seriesLimit = seriesLimit;
+    ret.seriesOffset = seriesOffset;
+    ret.isAlignByDevice = isAlignByDevice;
+    ret.isAlignByTime = isAlignByTime;
+    return ret;
+  }
+
   public boolean isFill() {
     return isFill;
   }
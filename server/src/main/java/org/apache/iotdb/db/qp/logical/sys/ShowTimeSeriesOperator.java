@@ -19,6 +19,7 @@
  */
 package org.apache.iotdb.db.qp.logical.sys;
 
+import org.apache.iotdb.db.metadata.tag.TagFilter;
 import org.apache.iotdb.tsfile.read.common.Path;
 
 public class ShowTimeSeriesOperator extends ShowOperator {
@@ -27,6 +28,7 @@ public class ShowTimeSeriesOperator extends ShowOperator {
   private boolean isContains;
   private String key;
   private String value;
+  private TagFilter tagFilter;
   private int limit = 0;
   private int offset = 0;
   // if is true, the result will be sorted according to the inserting frequency of the timeseries
@@ -66,6 +68,14 @@ public class ShowTimeSeriesOperator extends ShowOperator {
     this.value = value;
   }
 
+  public TagFilter getTagFilter() {
+    return tagFilter;
+  }
+
+  public void setTagFilter(TagFilter tagFilter) {
+    this.tagFilter = tagFilter;
+  }
+
   public int getLimit() {
     return limit;
   }
@@ -73,6 +73,10 @@ abstract public class InsertPlan extends PhysicalPlan {
     return schemas;
   }
 
+  /**
+   * @param schemas may be shared with the schema cache of MManager and other plans, so it must not
+   *                be modified, a failed measurement is marked by markFailedMeasurementInsertion()
+   */
   public void setSchemas(MeasurementSchema[] schemas) {
     this.schemas = schemas;
   }
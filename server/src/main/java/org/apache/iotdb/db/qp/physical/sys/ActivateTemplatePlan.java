@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.qp.physical.sys;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.qp.logical.Operator.OperatorType;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.tsfile.read.common.Path;
+
+/**
+ * ActivateTemplatePlan records that a device starts to use the template set to its prefix, which
+ * happens when the device is written for the first time. It is only used by the metadata log.
+ */
+public class ActivateTemplatePlan extends PhysicalPlan {
+
+  private Path devicePath;
+
+  public ActivateTemplatePlan() {
+    super(false, OperatorType.ACTIVATE_TEMPLATE);
+  }
+
+  public ActivateTemplatePlan(Path devicePath) {
+    super(false, OperatorType.ACTIVATE_TEMPLATE);
+    this.devicePath = devicePath;
+  }
+
+  public Path getDevicePath() {
+    return devicePath;
+  }
+
+  @Override
+  public List<Path> getPaths() {
+    return Collections.singletonList(devicePath);
+  }
+
+  @Override
+  public void serialize(DataOutputStream stream) throws IOException {
+    stream.writeByte((byte) PhysicalPlanType.ACTIVATE_TEMPLATE.ordinal());
+    putString(stream, devicePath.getFullPath());
+  }
+
+  @Override
+  public void serialize(ByteBuffer buffer) {
+    buffer.put((byte) PhysicalPlanType.ACTIVATE_TEMPLATE.ordinal());
+    putString(buffer, devicePath.getFullPath());
+  }
+
+  @Override
+  public void deserialize(ByteBuffer buffer) {
+    devicePath = new Path(readString(buffer));
+  }
+
+  @Override
+  public String toString() {
+    return "ActivateTemplate{" + devicePath + '}';
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.qp.physical.sys;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.qp.logical.Operator.OperatorType;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.tsfile.read.common.Path;
+
+/**
+ * ChangeTagOffsetPlan records the offset of the tags and attributes of a timeseries in the tag
+ * file. It is only used by the metadata log.
+ */
+public class ChangeTagOffsetPlan extends PhysicalPlan {
+
+  private Path path;
+  private long offset;
+
+  public ChangeTagOffsetPlan() {
+    super(false, OperatorType.CHANGE_TAG_OFFSET);
+  }
+
+  public ChangeTagOffsetPlan(Path path, long offset) {
+    super(false, OperatorType.CHANGE_TAG_OFFSET);
+    this.path = path;
+    this.offset = offset;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  @Override
+  public List<Path> getPaths() {
+    return Collections.singletonList(path);
+  }
+
+  @Override
+  public void serialize(DataOutputStream stream) throws IOException {
+    stream.writeByte((byte) PhysicalPlanType.CHANGE_TAG_OFFSET.ordinal());
+    putString(stream, path.getFullPath());
+    stream.writeLong(offset);
+  }
+
+  @Override
+  public void serialize(ByteBuffer buffer) {
+    buffer.put((byte) PhysicalPlanType.CHANGE_TAG_OFFSET.ordinal());
+    putString(buffer, path.getFullPath());
+    buffer.putLong(offset);
+  }
+
+  @Override
+  public void deserialize(ByteBuffer buffer) {
+    path = new Path(readString(buffer));
+    offset = buffer.getLong();
+  }
+
+  @Override
+  public String toString() {
+    return "ChangeTagOffset{" + path + ", " + offset + '}';
+  }
+}
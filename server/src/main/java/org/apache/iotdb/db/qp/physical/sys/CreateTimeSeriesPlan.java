@@ -43,6 +43,10 @@ public class CreateTimeSeriesPlan extends PhysicalPlan {
   private Map<String, String> props;
   private Map<String, String> tags;
   private Map<String, String> attributes;
+  /**
+   * the offset of the tags and attributes in the tag file, only used by the metadata log
+   */
+  private long tagOffset = -1;
 
   public CreateTimeSeriesPlan() {
     super(false, Operator.OperatorType.CREATE_TIMESERIES);
@@ -120,6 +124,14 @@ public class CreateTimeSeriesPlan extends PhysicalPlan {
     this.tags = tags;
   }
 
+  public long getTagOffset() {
+    return tagOffset;
+  }
+
+  public void setTagOffset(long tagOffset) {
+    this.tagOffset = tagOffset;
+  }
+
   public Map<String, String> getProps() {
     return props;
   }
@@ -22,6 +22,10 @@ import org.apache.iotdb.tsfile.read.common.Path;
 
 public class ShowDevicesPlan extends ShowPlan{
   private Path path;
+  // the devices are fetched a page of limit devices at a time, 0 for all of them in one page
+  private int limit = 0;
+  // the nodes of the last device of the previous page, from which the next page is resumed
+  private String[] cursor;
 
   public ShowDevicesPlan(ShowContentType showContentType, Path path) {
     super(showContentType);
@@ -31,5 +35,21 @@ public class ShowDevicesPlan extends ShowPlan{
   public Path getPath() {
     return this.path;
   }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+  public String[] getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String[] cursor) {
+    this.cursor = cursor;
+  }
 }
 
@@ -21,6 +21,7 @@ package org.apache.iotdb.db.qp.physical.sys;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import org.apache.iotdb.db.metadata.tag.TagFilter;
 import org.apache.iotdb.tsfile.read.common.Path;
 
 public class ShowTimeSeriesPlan extends ShowPlan {
@@ -31,12 +32,17 @@ public class ShowTimeSeriesPlan extends ShowPlan {
   private boolean isContains;
   private String key;
   private String value;
+  // the filter on the tags, which is the predicate of key and value if it is not a compound one
+  private TagFilter tagFilter;
   private int limit = 0;
   private int offset = 0;
   // if is true, the result will be sorted according to the inserting frequency of the timeseries
   private boolean orderByHeat;
 
   private boolean hasLimit;
+  // the nodes of the last timeseries of the previous page, from which the next page is resumed
+  // instead of skipping the offset, it is set when a page is fetched and not serialized
+  private String[] cursor;
 
   public ShowTimeSeriesPlan(Path path) {
     super(ShowContentType.TIMESERIES);
@@ -53,6 +59,9 @@ public class ShowTimeSeriesPlan extends ShowPlan {
     this.limit = limit;
     this.offset = offset;
     this.orderByHeat = orderByHeat;
+    if (key != null && value != null) {
+      this.tagFilter = isContains ? TagFilter.contains(key, value) : TagFilter.equal(key, value);
+    }
   }
 
   public ShowTimeSeriesPlan() {
@@ -75,6 +84,14 @@ public class ShowTimeSeriesPlan extends ShowPlan {
     return value;
   }
 
+  public TagFilter getTagFilter() {
+    return tagFilter;
+  }
+
+  public void setTagFilter(TagFilter tagFilter) {
+    this.tagFilter = tagFilter;
+  }
+
   public int getLimit() {
     return limit;
   }
@@ -107,6 +124,14 @@ public class ShowTimeSeriesPlan extends ShowPlan {
     this.hasLimit = hasLimit;
   }
 
+  public String[] getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String[] cursor) {
+    this.cursor = cursor;
+  }
+
   @Override
   public void serialize(DataOutputStream outputStream) throws IOException {
     outputStream.write(PhysicalPlanType.SHOW_TIMESERIES.ordinal());
@@ -119,6 +144,10 @@ public class ShowTimeSeriesPlan extends ShowPlan {
     outputStream.writeInt(limit);
     outputStream.writeInt(offset);
     outputStream.writeBoolean(orderByHeat);
+    outputStream.writeBoolean(tagFilter != null);
+    if (tagFilter != null) {
+      tagFilter.serialize(outputStream);
+    }
   }
 
   @Override
@@ -129,7 +158,10 @@ public class ShowTimeSeriesPlan extends ShowPlan {
     value = readString(buffer);
 
     limit = buffer.getInt();
-    limit = buffer.getInt();
+    offset = buffer.getInt();
     orderByHeat = buffer.get() == 1;
+    if (buffer.get() == 1) {
+      tagFilter = TagFilter.deserialize(buffer);
+    }
   }
 }
\ No newline at end of file
@@ -30,6 +30,7 @@ import java.util.Set;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.exception.runtime.SQLParserException;
+import org.apache.iotdb.db.metadata.tag.TagFilter;
 import org.apache.iotdb.db.qp.constant.DatetimeUtils;
 import org.apache.iotdb.db.qp.constant.SQLConstant;
 import org.apache.iotdb.db.qp.logical.RootOperator;
@@ -49,6 +50,7 @@ import org.apache.iotdb.db.qp.logical.sys.AuthorOperator.AuthorType;
 import org.apache.iotdb.db.qp.logical.sys.ClearCacheOperator;
 import org.apache.iotdb.db.qp.logical.sys.CountOperator;
 import org.apache.iotdb.db.qp.logical.sys.CreateSnapshotOperator;
+import org.apache.iotdb.db.qp.logical.sys.CreateTemplateOperator;
 import org.apache.iotdb.db.qp.logical.sys.CreateTimeSeriesOperator;
 import org.apache.iotdb.db.qp.logical.sys.DataAuthOperator;
 import org.apache.iotdb.db.qp.logical.sys.DeletePartitionOperator;
@@ -62,6 +64,7 @@ import org.apache.iotdb.db.qp.logical.sys.LoadFilesOperator;
 import org.apache.iotdb.db.qp.logical.sys.MergeOperator;
 import org.apache.iotdb.db.qp.logical.sys.MoveFileOperator;
 import org.apache.iotdb.db.qp.logical.sys.RemoveFileOperator;
+import org.apache.iotdb.db.qp.logical.sys.SetDeviceTemplateOperator;
 import org.apache.iotdb.db.qp.logical.sys.SetStorageGroupOperator;
 import org.apache.iotdb.db.qp.logical.sys.SetTTLOperator;
 import org.apache.iotdb.db.qp.logical.sys.ShowChildPathsOperator;
@@ -81,6 +84,7 @@ import org.apache.iotdb.db.qp.strategy.SqlBaseParser.ConstantContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.CountNodesContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.CountTimeseriesContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.CreateRoleContext;
+import org.apache.iotdb.db.qp.strategy.SqlBaseParser.CreateSchemaTemplateContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.CreateSnapshotContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.CreateTimeseriesContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.CreateUserContext;
@@ -141,6 +145,7 @@ import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SelectConstElementContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SelectElementContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SelectStatementContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SetColContext;
+import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SetSchemaTemplateContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SetStorageGroupContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SetTTLStatementContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.ShowAllTTLStatementContext;
@@ -155,7 +160,11 @@ import org.apache.iotdb.db.qp.strategy.SqlBaseParser.ShowWhereClauseContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SlimitClauseContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SoffsetClauseContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.SuffixPathContext;
+import org.apache.iotdb.db.qp.strategy.SqlBaseParser.TagAndExpressionContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.TagClauseContext;
+import org.apache.iotdb.db.qp.strategy.SqlBaseParser.TagOrExpressionContext;
+import org.apache.iotdb.db.qp.strategy.SqlBaseParser.TagPredicateContext;
+import org.apache.iotdb.db.qp.strategy.SqlBaseParser.TemplateMeasurementClauseContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.TimeIntervalContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.TracingOffContext;
 import org.apache.iotdb.db.qp.strategy.SqlBaseParser.TracingOnContext;
@@ -190,6 +199,8 @@ public class LogicalGenerator extends SqlBaseBaseListener {
   private UpdateOperator updateOp;
   private QueryOperator queryOp;
   private DeleteDataOperator deleteDataOp;
+  // the number of parameters ('?') met in the where clause
+  private int parameterCount = 0;
 
   LogicalGenerator(ZoneId zoneId) {
     this.zoneId = zoneId;
@@ -1342,6 +1353,9 @@ public class LogicalGenerator extends SqlBaseBaseListener {
     super.enterWhereClause(ctx);
     FilterOperator whereOp = new FilterOperator(SQLConstant.TOK_WHERE);
     whereOp.addChildOperator(parseOrExpression(ctx.orExpression()));
+    if (parameterCount > 0 && operatorType != SQLConstant.TOK_QUERY) {
+      throw new SQLParserException("Parameters are only supported in the where clause of queries.");
+    }
     switch (operatorType) {
       case SQLConstant.TOK_DELETE:
         deleteDataOp.setFilterOperator(whereOp.getChildren().get(0));
@@ -1365,23 +1379,48 @@ public class LogicalGenerator extends SqlBaseBaseListener {
     super.enterShowWhereClause(ctx);
 
     ShowTimeSeriesOperator operator = (ShowTimeSeriesOperator) initializedOperator;
-    PropertyValueContext propertyValueContext;
+    TagFilter tagFilter = parseTagOrExpression(ctx.tagOrExpression());
+    operator.setTagFilter(tagFilter);
+    if (tagFilter.isPredicate()) {
+      operator.setContains(tagFilter.getType() == TagFilter.FilterType.CONTAINS);
+      operator.setKey(tagFilter.getKey());
+      operator.setValue(tagFilter.getValue());
+    }
+  }
+
+  private TagFilter parseTagOrExpression(TagOrExpressionContext ctx) {
+    List<TagFilter> children = new ArrayList<>();
+    for (TagAndExpressionContext andExpression : ctx.tagAndExpression()) {
+      children.add(parseTagAndExpression(andExpression));
+    }
+    return TagFilter.or(children);
+  }
+
+  private TagFilter parseTagAndExpression(TagAndExpressionContext ctx) {
+    List<TagFilter> children = new ArrayList<>();
+    for (TagPredicateContext predicate : ctx.tagPredicate()) {
+      children.add(parseTagPredicate(predicate));
+    }
+    return TagFilter.and(children);
+  }
+
+  private TagFilter parseTagPredicate(TagPredicateContext ctx) {
+    if (ctx.tagOrExpression() != null) {
+      return parseTagOrExpression(ctx.tagOrExpression());
+    }
     if (ctx.containsExpression() != null) {
-      operator.setContains(true);
-      propertyValueContext = ctx.containsExpression().propertyValue();
-      operator.setKey(ctx.containsExpression().ID().getText());
-    } else {
-      operator.setContains(false);
-      propertyValueContext = ctx.property().propertyValue();
-      operator.setKey(ctx.property().ID().getText());
+      return TagFilter.contains(ctx.containsExpression().ID().getText(),
+          parsePropertyValue(ctx.containsExpression().propertyValue()));
     }
-    String value;
+    return TagFilter.equal(ctx.property().ID().getText(),
+        parsePropertyValue(ctx.property().propertyValue()));
+  }
+
+  private String parsePropertyValue(PropertyValueContext propertyValueContext) {
     if (propertyValueContext.STRING_LITERAL() != null) {
-      value = removeStringQuote(propertyValueContext.getText());
-    } else {
-      value = propertyValueContext.getText();
+      return removeStringQuote(propertyValueContext.getText());
     }
-    operator.setValue(value);
+    return propertyValueContext.getText();
   }
 
   private FilterOperator parseOrExpression(OrExpressionContext ctx) {
@@ -1476,7 +1515,11 @@ public class LogicalGenerator extends SqlBaseBaseListener {
 
   private FilterOperator parseBasicFunctionOperator(PredicateContext ctx, Path path) {
     BasicFunctionOperator basic;
-    if (ctx.constant().dateExpression() != null) {
+    if (ctx.QUESTION_MARK() != null) {
+      basic = new BasicFunctionOperator(ctx.comparisonOperator().type.getType(), path,
+          ctx.QUESTION_MARK().getText());
+      basic.setParameterIndex(parameterCount++);
+    } else if (ctx.constant().dateExpression() != null) {
       if (!path.equals(SQLConstant.RESERVED_TIME)) {
         throw new SQLParserException(path.toString(), "Date can only be used to time");
       }
@@ -1489,6 +1532,46 @@ public class LogicalGenerator extends SqlBaseBaseListener {
     return basic;
   }
 
+  /**
+   * replace the parameters in a filter of a prepared statement with the given values, the time
+   * values are parsed the same way as the constants of a statement.
+   *
+   * @param parameters the values of the parameters, in the order they occur in the statement
+   */
+  void bindParameters(FilterOperator operator, List<String> parameters) {
+    if (!operator.isLeaf()) {
+      for (FilterOperator child : operator.getChildren()) {
+        bindParameters(child, parameters);
+      }
+      return;
+    }
+    if (!(operator instanceof BasicFunctionOperator)
+        || !((BasicFunctionOperator) operator).isParameter()) {
+      return;
+    }
+    BasicFunctionOperator basic = (BasicFunctionOperator) operator;
+    int index = basic.getParameterIndex();
+    if (index >= parameters.size() || parameters.get(index) == null) {
+      throw new SQLParserException("Parameter #" + (index + 1) + " is unset");
+    }
+    String value = parameters.get(index);
+    if (SQLConstant.isReservedPath(basic.getSinglePath())) {
+      value = Long.toString(parseTimeParameter(value));
+    }
+    basic.bindParameter(value);
+  }
+
+  private long parseTimeParameter(String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      if (value.startsWith("'") || value.startsWith("\"")) {
+        value = removeStringQuote(value);
+      }
+      return parseTimeFormat(value);
+    }
+  }
+
   private Path parseSuffixPath(SuffixPathContext ctx) {
     List<NodeNameContext> nodeNames = ctx.nodeName();
     List<String> path = new ArrayList<>();
@@ -1630,4 +1713,35 @@ public class LogicalGenerator extends SqlBaseBaseListener {
     super.enterCreateSnapshot(ctx);
     initializedOperator = new CreateSnapshotOperator(SQLConstant.TOK_CREATE_SCHEMA_SNAPSHOT);
   }
+
+  @Override
+  public void enterCreateSchemaTemplate(CreateSchemaTemplateContext ctx) {
+    super.enterCreateSchemaTemplate(ctx);
+    CreateTemplateOperator createTemplateOperator =
+        new CreateTemplateOperator(SQLConstant.TOK_CREATE_SCHEMA_TEMPLATE);
+    createTemplateOperator.setName(ctx.templateName.getText());
+    for (TemplateMeasurementClauseContext clause : ctx.templateMeasurementClause()) {
+      String dataType = clause.dataType().getChild(0).getText().toUpperCase();
+      String encoding = clause.encoding().getChild(0).getText().toUpperCase();
+      CompressionType compressor;
+      if (clause.compressor() != null) {
+        compressor = CompressionType.valueOf(clause.compressor().getText().toUpperCase());
+      } else {
+        compressor = TSFileDescriptor.getInstance().getConfig().getCompressor();
+      }
+      createTemplateOperator.addMeasurement(clause.nodeNameWithoutStar().getText(),
+          TSDataType.valueOf(dataType), TSEncoding.valueOf(encoding), compressor);
+    }
+    initializedOperator = createTemplateOperator;
+  }
+
+  @Override
+  public void enterSetSchemaTemplate(SetSchemaTemplateContext ctx) {
+    super.enterSetSchemaTemplate(ctx);
+    SetDeviceTemplateOperator setDeviceTemplateOperator =
+        new SetDeviceTemplateOperator(SQLConstant.TOK_SET_SCHEMA_TEMPLATE);
+    setDeviceTemplateOperator.setTemplateName(ctx.templateName.getText());
+    setDeviceTemplateOperator.setPrefixPath(parseFullPath(ctx.fullPath()));
+    initializedOperator = setDeviceTemplateOperator;
+  }
 }
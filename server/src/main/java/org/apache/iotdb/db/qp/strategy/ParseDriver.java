@@ -19,14 +19,20 @@
 package org.apache.iotdb.db.qp.strategy;
 
 import java.time.ZoneId;
+import java.util.List;
+import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apache.iotdb.db.qp.logical.Operator;
+import org.apache.iotdb.db.qp.logical.crud.FilterOperator;
 
 /**
  * ParseDriver.
@@ -66,4 +72,44 @@ public class ParseDriver {
     walker.walk(logicalGenerator, tree);
     return logicalGenerator.getLogicalPlan();
   }
+
+  /**
+   * @return true if the statement has a syntax error at a parameter ('?'), i.e., the statement has
+   * a parameter out of the where clause and can only be parsed after the values are substituted
+   */
+  public boolean failsAtParameter(String sql) {
+    SqlBaseParser parser = new SqlBaseParser(
+        new CommonTokenStream(new SqlBaseLexer(CharStreams.fromString(sql))));
+    parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+    parser.removeErrorListeners();
+    Token[] offendingToken = new Token[1];
+    parser.addErrorListener(new BaseErrorListener() {
+      @Override
+      public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+          int charPositionInLine, String msg, RecognitionException e) {
+        offendingToken[0] = (Token) offendingSymbol;
+        throw new ParseCancellationException(msg);
+      }
+    });
+    try {
+      parser.singleStatement();
+    } catch (ParseCancellationException e) {
+      return offendingToken[0] != null
+          && offendingToken[0].getType() == SqlBaseParser.QUESTION_MARK;
+    }
+    return false;
+  }
+
+  /**
+   * copy the filter of a prepared statement and bind the values of the parameters to the copy, so
+   * the filter can be bound again.
+   */
+  public FilterOperator bindParameters(FilterOperator filter, List<String> parameters,
+      ZoneId zoneId) {
+    FilterOperator boundFilter = filter.copy();
+    LogicalGenerator logicalGenerator = new LogicalGenerator(zoneId);
+    logicalGenerator.bindParameters(boundFilter, parameters);
+    boundFilter.setPathSet(filter.getPathSet());
+    return boundFilter;
+  }
 }
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.control;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.service.rpc.thrift.TSQueryDataSet;
+import org.apache.iotdb.service.rpc.thrift.TSQueryNonAlignDataSet;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * FetchSizeController decides how many rows each batch of a query returns to the client. Instead
+ * of the fixed fetch size of the client, the batch is sized by a byte budget which is negotiated
+ * per query:
+ * 1. the budget starts from fetch_target_size_in_byte and the size of a row is estimated from the
+ * data types, and later from the bytes of the batches already returned.
+ * 2. when the time the client spends between two fetches (the round trip) is larger than the time
+ * the server spends filling a batch, the budget is doubled up to fetch_max_size_in_byte, so narrow
+ * queries need fewer round trips; otherwise it shrinks back towards the target.
+ * 3. the bytes of the last batch of every query are accounted against max_result_memory_in_byte
+ * until the next fetch or the end of the query, and a new batch may only use what is left.
+ * The fetch size of the client is always the upper bound of the rows of a batch.
+ * </p>
+ */
+public class FetchSizeController {
+
+  private static final Logger logger = LoggerFactory.getLogger(FetchSizeController.class);
+
+  // the estimated size of a TEXT value before any batch of the query is returned
+  private static final int ESTIMATED_TEXT_SIZE = 32;
+
+  private IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+
+  private Map<Long, FetchState> queryIdToState = new ConcurrentHashMap<>();
+
+  // the bytes of result batches that are being returned to clients
+  private AtomicLong reservedResultMemory = new AtomicLong();
+
+  FetchSizeController() {
+  }
+
+  public static FetchSizeController getInstance() {
+    return FetchSizeControllerHolder.INSTANCE;
+  }
+
+  /**
+   * Decide the number of rows of the next batch of a query.
+   *
+   * @param clientFetchSize the fetch size of the client, the upper bound of the rows
+   * @param dataTypes       data types of the value columns, used to estimate the size of a row
+   */
+  public int getFetchSize(long queryId, int clientFetchSize, List<TSDataType> dataTypes) {
+    if (!config.isEnableAdaptiveFetchSize()) {
+      return clientFetchSize;
+    }
+    FetchState state = queryIdToState
+        .computeIfAbsent(queryId, id -> new FetchState(estimateRowSize(dataTypes),
+            config.getFetchTargetSizeInByte()));
+    // the batch returned last time has been received by the client
+    releaseReserved(state);
+
+    long now = System.nanoTime();
+    if (state.lastReturnTime > 0) {
+      state.roundTripTime = now - state.lastReturnTime;
+      if (state.roundTripTime > state.fillCost) {
+        state.budget = Math.min(state.budget * 2, config.getFetchMaxSizeInByte());
+      } else {
+        state.budget = Math.max(state.budget / 2, config.getFetchTargetSizeInByte());
+      }
+    }
+
+    long budget = Math.min(state.budget,
+        config.getMaxResultMemoryInByte() - reservedResultMemory.get());
+    long rows = (long) (budget / state.rowSize);
+    // at least one row is returned, or the client will think the query has ended
+    return (int) Math.max(1, Math.min(rows, clientFetchSize));
+  }
+
+  /**
+   * Record a batch of a query which is going to be returned to the client.
+   *
+   * @param fillCost the time in nanoseconds spent filling this batch
+   */
+  public void onBatchFilled(long queryId, int rowCount, long byteSize, long fillCost) {
+    FetchState state = queryIdToState.get(queryId);
+    if (state == null) {
+      return;
+    }
+    if (rowCount > 0) {
+      state.rowSize = (double) byteSize / rowCount;
+    }
+    state.fillCost = fillCost;
+    state.reserved = byteSize;
+    reservedResultMemory.addAndGet(byteSize);
+    state.lastReturnTime = System.nanoTime();
+    state.batchNum++;
+
+    if (config.isEnablePerformanceTracing()) {
+      try {
+        TracingManager.getInstance().writeFetchInfo(queryId, state.batchNum, rowCount, byteSize,
+            state.budget, state.roundTripTime / 1000_000);
+      } catch (IOException e) {
+        logger.error("Error while writing performance info to {}, {}",
+            config.getTracingDir() + File.separator + IoTDBConstant.TRACING_LOG, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Whenever a query ends, this method must be invoked to release the memory of its last batch.
+   */
+  public void endQuery(long queryId) {
+    FetchState state = queryIdToState.remove(queryId);
+    if (state != null) {
+      releaseReserved(state);
+    }
+  }
+
+  long getReservedResultMemory() {
+    return reservedResultMemory.get();
+  }
+
+  private void releaseReserved(FetchState state) {
+    reservedResultMemory.addAndGet(-state.reserved);
+    state.reserved = 0;
+  }
+
+  private static double estimateRowSize(List<TSDataType> dataTypes) {
+    // time column
+    double rowSize = 8;
+    if (dataTypes == null) {
+      return rowSize;
+    }
+    for (TSDataType dataType : dataTypes) {
+      // one bit in the bitmap for each value
+      rowSize += 0.125;
+      switch (dataType) {
+        case BOOLEAN:
+          rowSize += 1;
+          break;
+        case INT32:
+        case FLOAT:
+          rowSize += 4;
+          break;
+        case INT64:
+        case DOUBLE:
+          rowSize += 8;
+          break;
+        case TEXT:
+        default:
+          rowSize += 4 + ESTIMATED_TEXT_SIZE;
+          break;
+      }
+    }
+    return rowSize;
+  }
+
+  public static long getByteSize(TSQueryDataSet dataSet) {
+    long size = dataSet.time.remaining();
+    size += getByteSize(dataSet.getValueList());
+    size += getByteSize(dataSet.getBitmapList());
+    return size;
+  }
+
+  public static long getByteSize(TSQueryNonAlignDataSet dataSet) {
+    return getByteSize(dataSet.getTimeList()) + getByteSize(dataSet.getValueList());
+  }
+
+  private static long getByteSize(List<ByteBuffer> buffers) {
+    long size = 0;
+    if (buffers != null) {
+      for (ByteBuffer buffer : buffers) {
+        size += buffer.remaining();
+      }
+    }
+    return size;
+  }
+
+  private static class FetchState {
+
+    private double rowSize;
+    private long budget;
+    private long reserved;
+    private long fillCost;
+    private long roundTripTime;
+    private long lastReturnTime;
+    private int batchNum;
+
+    private FetchState(double rowSize, long budget) {
+      this.rowSize = rowSize;
+      this.budget = budget;
+    }
+  }
+
+  private static class FetchSizeControllerHolder {
+
+    private static final FetchSizeController INSTANCE = new FetchSizeController();
+
+    private FetchSizeControllerHolder() {
+    }
+  }
+}
@@ -24,12 +24,15 @@ import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.service.IService;
 import org.apache.iotdb.db.service.ServiceType;
 import org.apache.iotdb.tsfile.common.conf.TSFileConfig;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.UnClosedTsFileReader;
+import org.apache.iotdb.tsfile.read.reader.TsFileInput;
 import org.apache.iotdb.tsfile.v1.read.TsFileSequenceReaderForV1;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Map;
@@ -167,7 +170,7 @@ public class FileReaderManager implements IService {
         tsFileReader = new UnClosedTsFileReader(filePath);
       }
       else {
-        tsFileReader = new TsFileSequenceReader(filePath);
+        tsFileReader = createClosedFileReader(filePath);
         switch (tsFileReader.readVersionNumber()) {
           case TSFileConfig.VERSION_NUMBER_V1:
             tsFileReader.close();
@@ -187,6 +190,35 @@ public class FileReaderManager implements IService {
   }
 
 
+  /**
+   * A sealed file in the mmap data dirs is memory-mapped, and the mapping is released when its
+   * reader is closed, i.e., when the file has no reference or is removed.
+   */
+  private TsFileSequenceReader createClosedFileReader(String filePath) throws IOException {
+    if (isInMmapDataDirs(filePath)) {
+      TsFileInput input = FSFactoryProducer.getFileInputFactory().getMappedTsFileInput(filePath);
+      if (input != null) {
+        return new TsFileSequenceReader(filePath, input);
+      }
+    }
+    return new TsFileSequenceReader(filePath);
+  }
+
+  private boolean isInMmapDataDirs(String filePath) {
+    String[] mmapDataDirs = IoTDBDescriptor.getInstance().getConfig().getMmapDataDirs();
+    if (mmapDataDirs.length == 0) {
+      return false;
+    }
+    String absolutePath = FSFactoryProducer.getFSFactory().getFile(filePath).getAbsolutePath();
+    for (String mmapDataDir : mmapDataDirs) {
+      String dirPath = FSFactoryProducer.getFSFactory().getFile(mmapDataDir).getAbsolutePath();
+      if (absolutePath.startsWith(dirPath + File.separator)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Increase the reference count of the reader specified by filePath. Only when the reference count
    * of a reader equals zero, the reader can be closed and removed.
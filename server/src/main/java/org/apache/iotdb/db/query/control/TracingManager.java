@@ -113,6 +113,18 @@ public class TracingManager {
     writer.write(builder.toString());
   }
 
+  public void writeFetchInfo(long queryId, int batchNum, int rowCount, long byteSize, long budget,
+      long roundTripTime) throws IOException {
+    StringBuilder builder = new StringBuilder("Query Id: ").append(queryId)
+        .append(" - Fetch batch ").append(batchNum)
+        .append(": rows: ").append(rowCount)
+        .append(", size: ").append(byteSize)
+        .append(" byte, budget: ").append(budget)
+        .append(" byte, round trip time: ").append(roundTripTime)
+        .append(" ms\n");
+    writer.write(builder.toString());
+  }
+
   public void writeEndTime(long queryId) throws IOException {
     StringBuilder builder = new StringBuilder("Query Id: ").append(queryId)
         .append(" - End time: ")
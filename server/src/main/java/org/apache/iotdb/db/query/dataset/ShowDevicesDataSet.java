@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.dataset;
+
+import static org.apache.iotdb.db.conf.IoTDBConstant.COLUMN_DEVICES;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.qp.physical.sys.ShowDevicesPlan;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.common.Field;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.common.RowRecord;
+import org.apache.iotdb.tsfile.read.query.dataset.QueryDataSet;
+import org.apache.iotdb.tsfile.utils.Binary;
+
+/**
+ * ShowDevicesDataSet fetches the devices a page at a time when the previous page is consumed, so
+ * the result of SHOW DEVICES is never materialized as a whole.
+ */
+public class ShowDevicesDataSet extends QueryDataSet {
+
+  private final ShowDevicesPlan plan;
+  private List<String> devices = Collections.emptyList();
+  private int index = 0;
+  private boolean finished = false;
+
+  public ShowDevicesDataSet(ShowDevicesPlan plan) {
+    super(Collections.singletonList(new Path(COLUMN_DEVICES)),
+        Collections.singletonList(TSDataType.TEXT));
+    this.plan = plan;
+  }
+
+  @Override
+  protected boolean hasNextWithoutConstraint() throws IOException {
+    if (index == devices.size() && !finished) {
+      try {
+        devices = MManager.getInstance().getDevices(plan);
+      } catch (MetadataException e) {
+        throw new IOException(e);
+      }
+      index = 0;
+      finished = plan.getLimit() == 0 || devices.size() < plan.getLimit();
+    }
+    return index < devices.size();
+  }
+
+  @Override
+  protected RowRecord nextWithoutConstraint() {
+    RowRecord record = new RowRecord(0);
+    Field field = new Field(TSDataType.TEXT);
+    field.setBinaryV(new Binary(devices.get(index++)));
+    record.addField(field);
+    return record;
+  }
+}
@@ -57,6 +57,8 @@ public class ShowTimeseriesDataSet extends QueryDataSet {
   @Override
   protected boolean hasNextWithoutConstraint() throws IOException {
     if (index == result.size() && !hasLimit) {
+      // the next page is resumed from the cursor set by the previous page, the offset is only used
+      // when the result is sorted or the timeseries of the cursor is deleted
       plan.setOffset(plan.getOffset() + plan.getLimit());
       try {
         List<ShowTimeSeriesResult> showTimeSeriesResults = MManager.getInstance()
@@ -25,6 +25,7 @@ import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.metadata.LastCacheSnapshot;
 import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
 import org.apache.iotdb.db.qp.physical.crud.LastQueryPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
@@ -44,9 +45,16 @@ import org.apache.iotdb.tsfile.read.query.dataset.QueryDataSet;
 import org.apache.iotdb.tsfile.utils.Binary;
 import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import static org.apache.iotdb.db.conf.IoTDBConstant.COLUMN_TIMESERIES;
@@ -78,10 +86,29 @@ public class LastQueryExecutor {
         Arrays.asList(new Path(COLUMN_TIMESERIES), new Path(COLUMN_VALUE)),
             Arrays.asList(TSDataType.TEXT, TSDataType.TEXT));
 
+    // the series of the same device are calculated together
+    Map<String, List<Integer>> deviceToIndexes = new LinkedHashMap<>();
     for (int i = 0; i < selectedSeries.size(); i++) {
-      TimeValuePair lastTimeValuePair = calculateLastPairForOneSeries(
-              selectedSeries.get(i), dataTypes.get(i), context,
-              lastQueryPlan.getAllMeasurementsInDevice(selectedSeries.get(i).getDevice()));
+      deviceToIndexes.computeIfAbsent(selectedSeries.get(i).getDevice(), k -> new ArrayList<>())
+          .add(i);
+    }
+    TimeValuePair[] lastTimeValuePairs = new TimeValuePair[selectedSeries.size()];
+    for (Entry<String, List<Integer>> entry : deviceToIndexes.entrySet()) {
+      List<Path> seriesPaths = new ArrayList<>(entry.getValue().size());
+      List<TSDataType> seriesDataTypes = new ArrayList<>(entry.getValue().size());
+      for (int i : entry.getValue()) {
+        seriesPaths.add(selectedSeries.get(i));
+        seriesDataTypes.add(dataTypes.get(i));
+      }
+      List<TimeValuePair> pairs = calculateLastPairsForOneDevice(seriesPaths, seriesDataTypes,
+          context, lastQueryPlan.getAllMeasurementsInDevice(entry.getKey()));
+      for (int i = 0; i < pairs.size(); i++) {
+        lastTimeValuePairs[entry.getValue().get(i)] = pairs.get(i);
+      }
+    }
+
+    for (int i = 0; i < selectedSeries.size(); i++) {
+      TimeValuePair lastTimeValuePair = lastTimeValuePairs[i];
       if (lastTimeValuePair.getValue() != null) {
         RowRecord resultRecord = new RowRecord(lastTimeValuePair.getTimestamp());
         Field pathField = new Field(TSDataType.TEXT);
@@ -103,10 +130,14 @@ public class LastQueryExecutor {
     return dataSet;
   }
 
-  protected TimeValuePair calculateLastPairForOneSeries(
-      Path seriesPath, TSDataType tsDataType, QueryContext context, Set<String> deviceMeasurements)
+  /**
+   * @param seriesPaths the series of one device
+   * @return the last results in the order of the series
+   */
+  protected List<TimeValuePair> calculateLastPairsForOneDevice(List<Path> seriesPaths,
+      List<TSDataType> dataTypes, QueryContext context, Set<String> deviceMeasurements)
       throws IOException, QueryProcessException, StorageEngineException {
-    return calculateLastPairForOneSeriesLocally(seriesPath, tsDataType, context,
+    return calculateLastPairsForOneDeviceLocally(seriesPaths, dataTypes, context,
         deviceMeasurements);
   }
 
@@ -119,83 +150,205 @@ public class LastQueryExecutor {
   public static TimeValuePair calculateLastPairForOneSeriesLocally(
       Path seriesPath, TSDataType tsDataType, QueryContext context, Set<String> deviceMeasurements)
       throws IOException, QueryProcessException, StorageEngineException {
+    return calculateLastPairsForOneDeviceLocally(Collections.singletonList(seriesPath),
+        Collections.singletonList(tsDataType), context, deviceMeasurements).get(0);
+  }
 
-    // Retrieve last value from MNode
-    MeasurementMNode node = null;
-    try {
-      node = (MeasurementMNode) IoTDB.metaManager.getNodeByPath(seriesPath.toString());
-    } catch (MetadataException e) {
-      TimeValuePair timeValuePair = IoTDB.metaManager.getLastCache(seriesPath.getFullPath());
-      if (timeValuePair != null) {
-        return timeValuePair;
+  /**
+   * get last results for the series of one device. A series is answered by the cached last value
+   * of its MNode, or the one persisted before the restart if it is still valid, otherwise the
+   * remaining series are calculated from the data files together: each file is visited once for
+   * all of them, and their TimeseriesMetadata are read from it in one pass.
+   *
+   * @param seriesPaths the series of one device
+   * @param deviceMeasurements the other measurements of the device whose TimeseriesMetadata should
+   * be read along, as they are going to be queried
+   * @return the last results in the order of the series
+   */
+  public static List<TimeValuePair> calculateLastPairsForOneDeviceLocally(
+      List<Path> seriesPaths, List<TSDataType> dataTypes, QueryContext context,
+      Set<String> deviceMeasurements)
+      throws IOException, QueryProcessException, StorageEngineException {
+    int size = seriesPaths.size();
+    TimeValuePair[] resultPairs = new TimeValuePair[size];
+    MeasurementMNode[] nodes = new MeasurementMNode[size];
+    QueryDataSource[] dataSources = new QueryDataSource[size];
+    List<Integer> unresolved = new ArrayList<>();
+
+    for (int i = 0; i < size; i++) {
+      Path seriesPath = seriesPaths.get(i);
+      // Retrieve last value from MNode
+      try {
+        nodes[i] = (MeasurementMNode) IoTDB.metaManager.getNodeByPath(seriesPath.toString());
+      } catch (MetadataException e) {
+        TimeValuePair timeValuePair = IoTDB.metaManager.getLastCache(seriesPath.getFullPath());
+        if (timeValuePair != null) {
+          resultPairs[i] = timeValuePair;
+          continue;
+        }
       }
-    }
 
-    if (node != null && node.getCachedLast() != null) {
-      return node.getCachedLast();
-    }
+      if (nodes[i] != null && nodes[i].getCachedLast() != null) {
+        resultPairs[i] = nodes[i].getCachedLast();
+        continue;
+      }
 
-    QueryDataSource dataSource =
-        QueryResourceManager.getInstance().getQueryDataSource(seriesPath, context, null);
+      dataSources[i] =
+          QueryResourceManager.getInstance().getQueryDataSource(seriesPath, context, null);
 
-    List<TsFileResource> seqFileResources = dataSource.getSeqResources();
-    List<TsFileResource> unseqFileResources = dataSource.getUnseqResources();
+      // Retrieve last value persisted before the restart
+      LastCacheSnapshot.Entry persisted =
+          nodes[i] == null ? null : IoTDB.metaManager.pollPersistedLastCache(nodes[i]);
+      if (persisted != null
+          && isPersistedLastValid(persisted, seriesPath.getDevice(), dataSources[i])) {
+        resultPairs[i] = persisted.getTimeValuePair();
+        IoTDB.metaManager.updateLastCache(seriesPath.getFullPath(),
+            resultPairs[i], false, Long.MIN_VALUE, nodes[i]);
+        continue;
+      }
+
+      resultPairs[i] = new TimeValuePair(Long.MIN_VALUE, null);
+      unresolved.add(i);
+    }
 
-    TimeValuePair resultPair = new TimeValuePair(Long.MIN_VALUE, null);
+    if (!unresolved.isEmpty()) {
+      calculateFromSeqFiles(seriesPaths, dataTypes, context, deviceMeasurements, dataSources,
+          unresolved, resultPairs);
+      calculateFromUnseqFiles(seriesPaths, dataTypes, context, deviceMeasurements, dataSources,
+          unresolved, resultPairs);
+
+      // Update cached last value with low priority
+      for (int i : unresolved) {
+        IoTDB.metaManager.updateLastCache(seriesPaths.get(i).getFullPath(),
+            resultPairs[i], false, Long.MIN_VALUE, nodes[i]);
+      }
+    }
+    return Arrays.asList(resultPairs);
+  }
 
-    if (!seqFileResources.isEmpty()) {
-      for (int i = seqFileResources.size() - 1; i >= 0; i--) {
+  /**
+   * the seq files of a device are the same for all its series, they are visited from the newest
+   * one, and a series is resolved by the first file that contains it
+   */
+  private static void calculateFromSeqFiles(List<Path> seriesPaths, List<TSDataType> dataTypes,
+      QueryContext context, Set<String> deviceMeasurements, QueryDataSource[] dataSources,
+      List<Integer> unresolved, TimeValuePair[] resultPairs) throws IOException {
+    List<Integer> remaining = unresolved;
+    for (int k = 0; !remaining.isEmpty(); k++) {
+      Set<String> allSensors = getAllSensors(seriesPaths, remaining, deviceMeasurements);
+      List<Integer> nextRemaining = new ArrayList<>();
+      for (int i : remaining) {
+        List<TsFileResource> seqFileResources = dataSources[i].getSeqResources();
+        if (k >= seqFileResources.size()) {
+          continue;
+        }
         TimeseriesMetadata timeseriesMetadata = FileLoaderUtils.loadTimeSeriesMetadata(
-                seqFileResources.get(i), seriesPath, context, null, deviceMeasurements);
+            seqFileResources.get(seqFileResources.size() - 1 - k), seriesPaths.get(i), context,
+            null, allSensors);
+        TimeValuePair pair = null;
         if (timeseriesMetadata != null) {
           if (!timeseriesMetadata.isModified()) {
             Statistics timeseriesMetadataStats = timeseriesMetadata.getStatistics();
-            resultPair = constructLastPair(
-                    timeseriesMetadataStats.getEndTime(),
-                    timeseriesMetadataStats.getLastValue(),
-                    tsDataType);
-            break;
+            pair = constructLastPair(
+                timeseriesMetadataStats.getEndTime(),
+                timeseriesMetadataStats.getLastValue(),
+                dataTypes.get(i));
           } else {
             List<ChunkMetadata> chunkMetadataList = timeseriesMetadata.loadChunkMetadataList();
             if (!chunkMetadataList.isEmpty()) {
               ChunkMetadata lastChunkMetaData = chunkMetadataList.get(chunkMetadataList.size() - 1);
               Statistics chunkStatistics = lastChunkMetaData.getStatistics();
-              resultPair =
-                  constructLastPair(
-                      chunkStatistics.getEndTime(), chunkStatistics.getLastValue(), tsDataType);
-              break;
+              pair = constructLastPair(
+                  chunkStatistics.getEndTime(), chunkStatistics.getLastValue(), dataTypes.get(i));
             }
           }
         }
+        if (pair != null) {
+          resultPairs[i] = pair;
+        } else {
+          nextRemaining.add(i);
+        }
       }
+      remaining = nextRemaining;
     }
+  }
 
-    long version = 0;
-    for (TsFileResource resource : unseqFileResources) {
-      if (resource.getEndTime(seriesPath.getDevice()) < resultPair.getTimestamp()) {
-        continue;
-      }
-      TimeseriesMetadata timeseriesMetadata =
-          FileLoaderUtils.loadTimeSeriesMetadata(resource, seriesPath, context, null, deviceMeasurements);
-      if (timeseriesMetadata != null) {
-        for (ChunkMetadata chunkMetaData : timeseriesMetadata.loadChunkMetadataList()) {
-          if (chunkMetaData.getEndTime() > resultPair.getTimestamp()
-              || (chunkMetaData.getEndTime() == resultPair.getTimestamp()
-              && chunkMetaData.getVersion() > version)) {
-            Statistics chunkStatistics = chunkMetaData.getStatistics();
-            resultPair =
-                constructLastPair(
-                    chunkStatistics.getEndTime(), chunkStatistics.getLastValue(), tsDataType);
-            version = chunkMetaData.getVersion();
+  /**
+   * the unseq files are visited in the same order for all the series, and each of them may hold a
+   * newer point of any series
+   */
+  private static void calculateFromUnseqFiles(List<Path> seriesPaths, List<TSDataType> dataTypes,
+      QueryContext context, Set<String> deviceMeasurements, QueryDataSource[] dataSources,
+      List<Integer> unresolved, TimeValuePair[] resultPairs) throws IOException {
+    Set<String> allSensors = getAllSensors(seriesPaths, unresolved, deviceMeasurements);
+    long[] versions = new long[resultPairs.length];
+    boolean hasMore = true;
+    for (int k = 0; hasMore; k++) {
+      hasMore = false;
+      for (int i : unresolved) {
+        List<TsFileResource> unseqFileResources = dataSources[i].getUnseqResources();
+        if (k >= unseqFileResources.size()) {
+          continue;
+        }
+        hasMore = true;
+        TsFileResource resource = unseqFileResources.get(k);
+        if (resource.getEndTime(seriesPaths.get(i).getDevice())
+            < resultPairs[i].getTimestamp()) {
+          continue;
+        }
+        TimeseriesMetadata timeseriesMetadata = FileLoaderUtils
+            .loadTimeSeriesMetadata(resource, seriesPaths.get(i), context, null, allSensors);
+        if (timeseriesMetadata != null) {
+          for (ChunkMetadata chunkMetaData : timeseriesMetadata.loadChunkMetadataList()) {
+            if (chunkMetaData.getEndTime() > resultPairs[i].getTimestamp()
+                || (chunkMetaData.getEndTime() == resultPairs[i].getTimestamp()
+                && chunkMetaData.getVersion() > versions[i])) {
+              Statistics chunkStatistics = chunkMetaData.getStatistics();
+              resultPairs[i] = constructLastPair(
+                  chunkStatistics.getEndTime(), chunkStatistics.getLastValue(), dataTypes.get(i));
+              versions[i] = chunkMetaData.getVersion();
+            }
           }
         }
       }
     }
+  }
+
+  /**
+   * @return the measurements whose TimeseriesMetadata are read together from a file
+   */
+  private static Set<String> getAllSensors(List<Path> seriesPaths, List<Integer> indexes,
+      Set<String> deviceMeasurements) {
+    Set<String> allSensors = new HashSet<>(deviceMeasurements);
+    for (int i : indexes) {
+      allSensors.add(seriesPaths.get(i).getMeasurement());
+    }
+    return allSensors;
+  }
 
-    // Update cached last value with low priority
-    IoTDB.metaManager.updateLastCache(seriesPath.getFullPath(),
-      resultPair, false, Long.MIN_VALUE, node);
-    return resultPair;
+  /**
+   * a persisted last value is still valid if none of the data files that may hold a newer point
+   * of the device, or a deletion of the value, is modified after the snapshot of the value
+   */
+  private static boolean isPersistedLastValid(LastCacheSnapshot.Entry persisted, String device,
+      QueryDataSource dataSource) {
+    long timestamp = persisted.getTimeValuePair().getTimestamp();
+    // the modification time of some file systems is only precise to a second
+    long snapshotTime = persisted.getSnapshotTime() - 1000;
+    for (List<TsFileResource> resources : Arrays
+        .asList(dataSource.getSeqResources(), dataSource.getUnseqResources())) {
+      for (TsFileResource resource : resources) {
+        if (!resource.isClosed()) {
+          return false;
+        }
+        if (resource.getEndTime(device) >= timestamp
+            && (resource.getTsFile().lastModified() >= snapshotTime
+            || new File(resource.getModFile().getFilePath()).lastModified() >= snapshotTime)) {
+          return false;
+        }
+      }
+    }
+    return true;
   }
 
   private static TimeValuePair constructLastPair(long timestamp, Object value, TSDataType dataType) {
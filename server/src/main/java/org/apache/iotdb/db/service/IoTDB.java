@@ -29,6 +29,7 @@ import org.apache.iotdb.db.engine.StorageEngine;
 import org.apache.iotdb.db.engine.cache.CacheHitRatioMonitor;
 import org.apache.iotdb.db.engine.flush.FlushManager;
 import org.apache.iotdb.db.engine.merge.manage.MergeManager;
+import org.apache.iotdb.db.engine.throttle.IORateLimiter;
 import org.apache.iotdb.db.exception.StartupException;
 import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.monitor.StatMonitor;
@@ -89,12 +90,14 @@ public class IoTDB implements IoTDBMBean {
 
   private void setUp() throws StartupException {
     logger.info("Setting up IoTDB...");
+    long startTime = System.currentTimeMillis();
 
     Runtime.getRuntime().addShutdownHook(new IoTDBShutdownHook());
     setUncaughtExceptionHandler();
     logger.info("recover the schema...");
     initMManager();
     registerManager.register(JMXService.getInstance());
+    registerManager.register(IORateLimiter.getInstance());
     registerManager.register(FlushManager.getInstance());
     registerManager.register(MultiFileLogNodeManager.getInstance());
     registerManager.register(Monitor.getInstance());
@@ -123,6 +126,7 @@ public class IoTDB implements IoTDBMBean {
 
     logger.info("IoTDB is set up, now may some sgs are not ready, please wait several seconds...");
 
+    long waitStartTime = System.currentTimeMillis();
     while (!StorageEngine.getInstance().isAllSgReady()) {
       try {
         Thread.sleep(1000);
@@ -132,10 +136,14 @@ public class IoTDB implements IoTDBMBean {
       }
     }
 
+    StartupPhaseTimer.getInstance()
+        .record("wait for storage groups", System.currentTimeMillis() - waitStartTime);
+
     registerManager.register(SyncServerManager.getInstance());
     registerManager.register(UpgradeSevice.getINSTANCE());
     registerManager.register(MergeManager.getINSTANCE());
 
+    StartupPhaseTimer.getInstance().report(System.currentTimeMillis() - startTime);
     logger.info("Congratulation, IoTDB is set up successfully. Now, enjoy yourself!");
   }
 
@@ -146,11 +154,16 @@ public class IoTDB implements IoTDBMBean {
     logger.info("IoTDB is deactivated.");
   }
 
-  private void initMManager() {
+  private void initMManager() throws StartupException {
     long time = System.currentTimeMillis();
-    IoTDB.metaManager.init();
+    try {
+      IoTDB.metaManager.init();
+    } catch (IllegalStateException e) {
+      throw new StartupException(e);
+    }
     long end = System.currentTimeMillis() - time;
     logger.info("spend {}ms to recover schema.", end);
+    StartupPhaseTimer.getInstance().record("recover schema", end);
     IoTDBConfigDynamicAdapter.getInstance().setInitialized(true);
     logger.info(
         "After initializing, max memTable num is {}, tsFile threshold is {}, memtableSize is {}",
@@ -167,9 +180,10 @@ public class IoTDB implements IoTDBMBean {
 
   public void shutdown() throws Exception {
     logger.info("Deactivating IoTDB...");
-    IoTDB.metaManager.clear();
     TracingManager.getInstance().close();
     registerManager.shutdownAll();
+    // cleared after the data files are closed, so the persisted last cache is newer than them
+    IoTDB.metaManager.clear();
     JMXService.deregisterMBean(mbeanName);
     logger.info("IoTDB is deactivated.");
   }
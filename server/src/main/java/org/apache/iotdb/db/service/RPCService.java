@@ -18,11 +18,15 @@
  */
 package org.apache.iotdb.db.service;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import org.apache.iotdb.db.concurrent.ThreadName;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.throttle.IORateLimiter;
 import org.apache.iotdb.db.service.thrift.ThriftService;
 import org.apache.iotdb.db.service.thrift.ThriftServiceThread;
+import org.apache.iotdb.service.rpc.thrift.TSIService;
 import org.apache.iotdb.service.rpc.thrift.TSIService.Processor;
 
 /**
@@ -54,7 +58,26 @@ public class RPCService extends ThriftService implements RPCServiceMBean {
   public void initTProcessor() throws ClassNotFoundException,IllegalAccessException,InstantiationException{
       impl = (TSServiceImpl) Class.forName(IoTDBDescriptor.getInstance().getConfig()
           .getRpcImplClassName()).newInstance();
-      processor = new Processor<>(impl);
+      processor = new Processor<>(recordLatency(impl));
+  }
+
+  /**
+   * @return the service that reports the latency of each RPC to IORateLimiter, so that the merges
+   * back off when any kind of foreground operation slows down
+   */
+  private static TSIService.Iface recordLatency(TSIService.Iface service) {
+    return (TSIService.Iface) Proxy.newProxyInstance(TSIService.Iface.class.getClassLoader(),
+        new Class<?>[]{TSIService.Iface.class}, (proxy, method, args) -> {
+          long startTime = System.currentTimeMillis();
+          try {
+            return method.invoke(service, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          } finally {
+            IORateLimiter.getInstance()
+                .recordForegroundLatency(System.currentTimeMillis() - startTime);
+          }
+        });
   }
 
   @Override
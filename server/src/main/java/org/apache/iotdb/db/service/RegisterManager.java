@@ -47,7 +47,10 @@ public class RegisterManager {
       }
     }
     iServices.add(service);
+    long startTime = System.currentTimeMillis();
     service.start();
+    StartupPhaseTimer.getInstance()
+        .record("start " + service.getID().getName(), System.currentTimeMillis() - startTime);
   }
 
   /**
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * StartupPhaseTimer collects how long each phase of the startup takes, and logs them as a report
+ * when the startup is finished, so it can be told which phase a slow restart is spent on. A phase
+ * recorded more than once, e.g., the recovery of the TsFiles of each storage group, is summed up,
+ * so a phase run by several threads may take longer than the whole startup.
+ */
+public class StartupPhaseTimer {
+
+  private static final Logger logger = LoggerFactory.getLogger(StartupPhaseTimer.class);
+
+  // phase -> {the summed time in ms, the times of recording}, in the order of the first recording
+  private final Map<String, long[]> phases = new LinkedHashMap<>();
+
+  private StartupPhaseTimer() {
+    // singleton
+  }
+
+  public static StartupPhaseTimer getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  public synchronized void record(String phase, long timeCostMs) {
+    long[] cost = phases.computeIfAbsent(phase, p -> new long[2]);
+    cost[0] += timeCostMs;
+    cost[1]++;
+  }
+
+  /**
+   * @return the summed time of the phase in ms, or -1 if it is not recorded
+   */
+  public synchronized long getTimeCost(String phase) {
+    long[] cost = phases.get(phase);
+    return cost == null ? -1 : cost[0];
+  }
+
+  /**
+   * log the recorded phases and clear them, so the next startup, e.g., of a test, reports only
+   * its own phases
+   */
+  public synchronized void report(long totalTimeCostMs) {
+    StringBuilder report = new StringBuilder("startup takes ").append(totalTimeCostMs)
+        .append("ms");
+    for (Entry<String, long[]> entry : phases.entrySet()) {
+      report.append(System.lineSeparator()).append("  ").append(entry.getKey()).append(": ")
+          .append(entry.getValue()[0]).append("ms");
+      if (entry.getValue()[1] > 1) {
+        report.append(" (").append(entry.getValue()[1]).append(" times)");
+      }
+    }
+    logger.info("{}", report);
+    phases.clear();
+  }
+
+  private static class InstanceHolder {
+
+    private static final StartupPhaseTimer INSTANCE = new StartupPhaseTimer();
+
+    private InstanceHolder() {
+    }
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.iotdb.db.service;
 import static org.apache.iotdb.db.conf.IoTDBConfig.PATH_PATTERN;
 import static org.apache.iotdb.db.qp.physical.sys.ShowPlan.ShowContentType.TIMESERIES;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.sql.SQLException;
@@ -46,6 +47,7 @@ import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.cost.statistic.Measurement;
 import org.apache.iotdb.db.cost.statistic.Operation;
+import org.apache.iotdb.db.engine.load.BulkLoadManager;
 import org.apache.iotdb.db.exception.BatchInsertionException;
 import org.apache.iotdb.db.exception.QueryInBatchStatementException;
 import org.apache.iotdb.db.exception.StorageEngineException;
@@ -64,6 +66,7 @@ import org.apache.iotdb.db.qp.physical.crud.AggregationPlan;
 import org.apache.iotdb.db.qp.physical.crud.AlignByDevicePlan;
 import org.apache.iotdb.db.qp.physical.crud.AlignByDevicePlan.MeasurementType;
 import org.apache.iotdb.db.qp.physical.crud.DeletePlan;
+import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.db.qp.physical.crud.LastQueryPlan;
@@ -72,10 +75,13 @@ import org.apache.iotdb.db.qp.physical.sys.AuthorPlan;
 import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
 import org.apache.iotdb.db.qp.physical.sys.DeleteStorageGroupPlan;
 import org.apache.iotdb.db.qp.physical.sys.DeleteTimeSeriesPlan;
+import org.apache.iotdb.db.qp.physical.sys.OperateFilePlan;
 import org.apache.iotdb.db.qp.physical.sys.SetStorageGroupPlan;
+import org.apache.iotdb.db.qp.physical.sys.ShowDevicesPlan;
 import org.apache.iotdb.db.qp.physical.sys.ShowPlan;
 import org.apache.iotdb.db.qp.physical.sys.ShowTimeSeriesPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.control.FetchSizeController;
 import org.apache.iotdb.db.query.control.QueryResourceManager;
 import org.apache.iotdb.db.query.control.TracingManager;
 import org.apache.iotdb.db.query.dataset.AlignByDeviceDataSet;
@@ -89,6 +95,7 @@ import org.apache.iotdb.db.utils.SchemaUtils;
 import org.apache.iotdb.rpc.RpcUtils;
 import org.apache.iotdb.rpc.TSStatusCode;
 import org.apache.iotdb.service.rpc.thrift.ServerProperties;
+import org.apache.iotdb.service.rpc.thrift.TSBulkLoadReq;
 import org.apache.iotdb.service.rpc.thrift.TSCancelOperationReq;
 import org.apache.iotdb.service.rpc.thrift.TSCloseOperationReq;
 import org.apache.iotdb.service.rpc.thrift.TSCloseSessionReq;
@@ -96,6 +103,7 @@ import org.apache.iotdb.service.rpc.thrift.TSCreateMultiTimeseriesReq;
 import org.apache.iotdb.service.rpc.thrift.TSCreateTimeseriesReq;
 import org.apache.iotdb.service.rpc.thrift.TSDeleteDataReq;
 import org.apache.iotdb.service.rpc.thrift.TSExecuteBatchStatementReq;
+import org.apache.iotdb.service.rpc.thrift.TSExecutePreparedStatementReq;
 import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementReq;
 import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementResp;
 import org.apache.iotdb.service.rpc.thrift.TSFetchMetadataReq;
@@ -112,6 +120,8 @@ import org.apache.iotdb.service.rpc.thrift.TSInsertTabletReq;
 import org.apache.iotdb.service.rpc.thrift.TSInsertTabletsReq;
 import org.apache.iotdb.service.rpc.thrift.TSOpenSessionReq;
 import org.apache.iotdb.service.rpc.thrift.TSOpenSessionResp;
+import org.apache.iotdb.service.rpc.thrift.TSPrepareStatementReq;
+import org.apache.iotdb.service.rpc.thrift.TSPrepareStatementResp;
 import org.apache.iotdb.service.rpc.thrift.TSProtocolVersion;
 import org.apache.iotdb.service.rpc.thrift.TSQueryDataSet;
 import org.apache.iotdb.service.rpc.thrift.TSQueryNonAlignDataSet;
@@ -253,6 +263,7 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
     }
 
     sessionIdZoneIdMap.remove(sessionId);
+    BulkLoadManager.getInstance().abort(sessionId);
     List<Exception> exceptions = new ArrayList<>();
     Set<Long> statementIds = sessionId2StatementId.getOrDefault(sessionId, Collections.emptySet());
     for (long statementId : statementIds) {
@@ -324,6 +335,7 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
   protected void releaseQueryResource(long queryId) throws StorageEngineException {
     // remove the corresponding Physical Plan
     queryId2DataSet.remove(queryId);
+    FetchSizeController.getInstance().endQuery(queryId);
     QueryResourceManager.getInstance().endQuery(queryId);
   }
 
@@ -467,24 +479,64 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
 
   @Override
   public TSExecuteStatementResp executeStatement(TSExecuteStatementReq req) {
+    return executeStatement(req.getSessionId(), req.getStatement(), null, req.statementId,
+        req.fetchSize);
+  }
+
+  @Override
+  public TSPrepareStatementResp prepareStatement(TSPrepareStatementReq req) {
+    if (!checkLogin(req.getSessionId())) {
+      logger.info(INFO_NOT_LOGIN, IoTDBConstant.GLOBAL_DB_NAME);
+      return new TSPrepareStatementResp(RpcUtils.getStatus(TSStatusCode.NOT_LOGIN_ERROR));
+    }
     try {
-      if (!checkLogin(req.getSessionId())) {
+      int parameterCount = processor
+          .prepareStatement(req.getStatement(), sessionIdZoneIdMap.get(req.getSessionId()));
+      TSPrepareStatementResp resp = new TSPrepareStatementResp(
+          RpcUtils.getStatus(TSStatusCode.SUCCESS_STATUS));
+      resp.setParameterCount(parameterCount);
+      return resp;
+    } catch (QueryProcessException e) {
+      logger.info(ERROR_PARSING_SQL, e.getMessage());
+      return new TSPrepareStatementResp(
+          RpcUtils.getStatus(TSStatusCode.SQL_PARSE_ERROR, e.getMessage()));
+    } catch (Exception e) {
+      logger.error("{}: server Internal Error: ", IoTDBConstant.GLOBAL_DB_NAME, e);
+      return new TSPrepareStatementResp(
+          RpcUtils.getStatus(TSStatusCode.INTERNAL_SERVER_ERROR, e.getMessage()));
+    }
+  }
+
+  @Override
+  public TSExecuteStatementResp executePreparedStatement(TSExecutePreparedStatementReq req) {
+    return executeStatement(req.getSessionId(), req.getStatement(), req.getParameters(),
+        req.statementId, req.fetchSize);
+  }
+
+  /**
+   * @param parameters values of the parameters of a prepared statement, or null if the statement
+   *                   is not prepared
+   */
+  private TSExecuteStatementResp executeStatement(long sessionId, String statement,
+      List<String> parameters, long statementId, int fetchSize) {
+    try {
+      if (!checkLogin(sessionId)) {
         logger.info(INFO_NOT_LOGIN, IoTDBConstant.GLOBAL_DB_NAME);
         return RpcUtils.getTSExecuteStatementResp(TSStatusCode.NOT_LOGIN_ERROR);
       }
-      String statement = req.getStatement();
 
-      PhysicalPlan physicalPlan =
-          processor.parseSQLToPhysicalPlan(statement, sessionIdZoneIdMap.get(req.getSessionId()));
+      ZoneId zoneId = sessionIdZoneIdMap.get(sessionId);
+      PhysicalPlan physicalPlan = parameters == null
+          ? processor.parseSQLToPhysicalPlan(statement, zoneId)
+          : processor.parseSQLToPhysicalPlan(statement, zoneId, parameters);
       if (physicalPlan.isQuery()) {
-        return internalExecuteQueryStatement(statement, req.statementId, physicalPlan,
-            req.fetchSize,
-            sessionIdUsernameMap.get(req.getSessionId()));
+        return internalExecuteQueryStatement(statement, statementId, physicalPlan, fetchSize,
+            sessionIdUsernameMap.get(sessionId));
       } else {
-        return executeUpdateStatement(physicalPlan, req.getSessionId());
+        return executeUpdateStatement(physicalPlan, sessionId);
       }
     } catch (ParseCancellationException e) {
-      logger.warn(ERROR_PARSING_SQL, req.getStatement() + " " + e.getMessage());
+      logger.warn(ERROR_PARSING_SQL, statement + " " + e.getMessage());
       return RpcUtils.getTSExecuteStatementResp(TSStatusCode.SQL_PARSE_ERROR, e.getMessage());
     } catch (SQLParserException e) {
       logger.error("check metadata error: ", e);
@@ -567,6 +619,9 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         } else {
           ((ShowTimeSeriesPlan) plan).setHasLimit(true);
         }
+      } else if (plan instanceof ShowDevicesPlan) {
+        // the devices are fetched from the MTree a page at a time
+        ((ShowDevicesPlan) plan).setLimit(fetchSize);
       }
       if (plan instanceof QueryPlan && !((QueryPlan) plan).isAlignByTime()) {
         if (plan.getOperatorType() == OperatorType.AGGREGATION) {
@@ -600,7 +655,8 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       QueryDataSet newDataSet = createQueryDataSet(queryId, plan);
       if (plan instanceof QueryPlan && !((QueryPlan) plan).isAlignByTime()
           && newDataSet instanceof NonAlignEngineDataSet) {
-        TSQueryNonAlignDataSet result = fillRpcNonAlignReturnData(fetchSize, newDataSet, username);
+        TSQueryNonAlignDataSet result = fillRpcNonAlignReturnData(queryId, fetchSize, newDataSet,
+            username);
         resp.setNonAlignQueryDataSet(result);
       } else {
         if (plan instanceof ShowPlan && ((ShowPlan) plan).getShowContentType() == TIMESERIES) {
@@ -609,7 +665,7 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
           resp.setDataTypeList(
               newDataSet.getDataTypes().stream().map(Enum::toString).collect(Collectors.toList()));
         }
-        TSQueryDataSet result = fillRpcReturnData(fetchSize, newDataSet, username);
+        TSQueryDataSet result = fillRpcReturnData(queryId, fetchSize, newDataSet, username);
         resp.setQueryDataSet(result);
       }
       resp.setQueryId(queryId);
@@ -861,7 +917,8 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       QueryDataSet queryDataSet = queryId2DataSet.get(req.queryId);
       if (req.isAlign) {
         TSQueryDataSet result =
-            fillRpcReturnData(req.fetchSize, queryDataSet, sessionIdUsernameMap.get(req.sessionId));
+            fillRpcReturnData(req.queryId, req.fetchSize, queryDataSet,
+                sessionIdUsernameMap.get(req.sessionId));
         boolean hasResultSet = result.bufferForTime().limit() != 0;
         if (!hasResultSet) {
           releaseQueryResource(req.queryId);
@@ -873,8 +930,8 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         return resp;
       } else {
         TSQueryNonAlignDataSet nonAlignResult =
-            fillRpcNonAlignReturnData(
-                req.fetchSize, queryDataSet, sessionIdUsernameMap.get(req.sessionId));
+            fillRpcNonAlignReturnData(req.queryId, req.fetchSize, queryDataSet,
+                sessionIdUsernameMap.get(req.sessionId));
         boolean hasResultSet = false;
         for (ByteBuffer timeBuffer : nonAlignResult.getTimeList()) {
           if (timeBuffer.limit() != 0) {
@@ -884,6 +941,7 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         }
         if (!hasResultSet) {
           queryId2DataSet.remove(req.queryId);
+          FetchSizeController.getInstance().endQuery(req.queryId);
         }
         TSFetchResultsResp resp = RpcUtils.getTSFetchResultsResp(TSStatusCode.SUCCESS_STATUS);
         resp.setHasResultSet(hasResultSet);
@@ -903,8 +961,11 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
   }
 
   private TSQueryDataSet fillRpcReturnData(
-      int fetchSize, QueryDataSet queryDataSet, String userName)
+      long queryId, int fetchSize, QueryDataSet queryDataSet, String userName)
       throws TException, AuthException, IOException, InterruptedException {
+    long startTime = System.nanoTime();
+    fetchSize = FetchSizeController.getInstance()
+        .getFetchSize(queryId, fetchSize, queryDataSet.getDataTypes());
     IAuthorizer authorizer;
     try {
       authorizer = BasicAuthorizer.getInstance();
@@ -936,12 +997,17 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         result = QueryDataSetUtils.convertQueryDataSetByFetchSize(queryDataSet, fetchSize);
       }
     }
+    FetchSizeController.getInstance().onBatchFilled(queryId, result.time.remaining()
+        / Long.BYTES, FetchSizeController.getByteSize(result), System.nanoTime() - startTime);
     return result;
   }
 
   private TSQueryNonAlignDataSet fillRpcNonAlignReturnData(
-      int fetchSize, QueryDataSet queryDataSet, String userName)
+      long queryId, int fetchSize, QueryDataSet queryDataSet, String userName)
       throws TException, AuthException, InterruptedException {
+    long startTime = System.nanoTime();
+    fetchSize = FetchSizeController.getInstance()
+        .getFetchSize(queryId, fetchSize, queryDataSet.getDataTypes());
     IAuthorizer authorizer;
     try {
       authorizer = BasicAuthorizer.getInstance();
@@ -963,6 +1029,12 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
     } else {
       result = ((NonAlignEngineDataSet) queryDataSet).fillBuffer(fetchSize, null);
     }
+    int rowCount = 0;
+    for (ByteBuffer timeBuffer : result.getTimeList()) {
+      rowCount = Math.max(rowCount, timeBuffer.remaining() / Long.BYTES);
+    }
+    FetchSizeController.getInstance().onBatchFilled(queryId, rowCount,
+        FetchSizeController.getByteSize(result), System.nanoTime() - startTime);
     return result;
   }
 
@@ -1122,10 +1194,11 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       return RpcUtils.getStatus(TSStatusCode.NOT_LOGIN_ERROR);
     }
 
-    List<TSStatus> statusList = new ArrayList<>();
-    InsertRowPlan plan = new InsertRowPlan();
+    TSStatus[] statuses = new TSStatus[req.deviceIds.size()];
+    List<InsertRowPlan> plans = new ArrayList<>(req.deviceIds.size());
     for (int i = 0; i < req.deviceIds.size(); i++) {
       try {
+        InsertRowPlan plan = new InsertRowPlan();
         plan.setDeviceId(req.getDeviceIds().get(i));
         plan.setTime(req.getTimestamps().get(i));
         plan.setMeasurements(req.getMeasurementsList().get(i).toArray(new String[0]));
@@ -1133,19 +1206,16 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         plan.setValues(new Object[plan.getMeasurements().length]);
         plan.fillValues(req.valuesList.get(i));
         plan.setNeedInferType(false);
-        TSStatus status = checkAuthority(plan, req.getSessionId());
-        if (status != null) {
-          statusList.add(status);
-        } else {
-          statusList.add(executeNonQueryPlan(plan));
-        }
+        statuses[i] = checkAuthority(plan, req.getSessionId());
+        plans.add(statuses[i] == null ? plan : null);
       } catch (Exception e) {
         logger.error("meet error when insert in batch", e);
-        statusList.add(RpcUtils.getStatus(TSStatusCode.INTERNAL_SERVER_ERROR));
+        statuses[i] = RpcUtils.getStatus(TSStatusCode.INTERNAL_SERVER_ERROR);
+        plans.add(null);
       }
     }
 
-    return RpcUtils.getStatus(statusList);
+    return executeInsertPlans(plans, statuses);
   }
 
   @Override
@@ -1160,10 +1230,11 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       return RpcUtils.getStatus(TSStatusCode.NOT_LOGIN_ERROR);
     }
 
-    List<TSStatus> statusList = new ArrayList<>();
-    InsertRowPlan plan = new InsertRowPlan();
+    TSStatus[] statuses = new TSStatus[req.deviceIds.size()];
+    List<InsertRowPlan> plans = new ArrayList<>(req.deviceIds.size());
     for (int i = 0; i < req.deviceIds.size(); i++) {
       try {
+        InsertRowPlan plan = new InsertRowPlan();
         plan.setDeviceId(req.getDeviceIds().get(i));
         plan.setTime(req.getTimestamps().get(i));
         plan.setMeasurements(req.getMeasurementsList().get(i).toArray(new String[0]));
@@ -1171,19 +1242,41 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         plan.setValues(
             req.getValuesList().get(i).toArray(new Object[req.getValuesList().get(i).size()]));
         plan.setNeedInferType(true);
-        TSStatus status = checkAuthority(plan, req.getSessionId());
-        if (status != null) {
-          statusList.add(status);
-        } else {
-          statusList.add(executeNonQueryPlan(plan));
-        }
+        statuses[i] = checkAuthority(plan, req.getSessionId());
+        plans.add(statuses[i] == null ? plan : null);
       } catch (Exception e) {
         logger.error("meet error when insert in batch", e);
-        statusList.add(RpcUtils.getStatus(TSStatusCode.INTERNAL_SERVER_ERROR));
+        statuses[i] = RpcUtils.getStatus(TSStatusCode.INTERNAL_SERVER_ERROR);
+        plans.add(null);
+      }
+    }
+
+    return executeInsertPlans(plans, statuses);
+  }
+
+  /**
+   * execute the insertions of a batch request after the timeseries missing in them are created
+   * together
+   *
+   * @param plans    the insertions, null for the ones that are rejected
+   * @param statuses the statuses of the rejected insertions, filled with the statuses of the
+   *                 executed ones
+   */
+  private TSStatus executeInsertPlans(List<? extends InsertPlan> plans, TSStatus[] statuses) {
+    List<InsertPlan> acceptedPlans = new ArrayList<>(plans.size());
+    for (InsertPlan plan : plans) {
+      if (plan != null) {
+        acceptedPlans.add(plan);
       }
     }
+    IoTDB.metaManager.autoCreateTimeseries(acceptedPlans);
 
-    return RpcUtils.getStatus(statusList);
+    for (int i = 0; i < statuses.length; i++) {
+      if (plans.get(i) != null) {
+        statuses[i] = executeNonQueryPlan(plans.get(i));
+      }
+    }
+    return RpcUtils.getStatus(Arrays.asList(statuses));
   }
 
   @Override
@@ -1306,6 +1399,47 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
     return new TSStatus(executeNonQueryPlan(plan));
   }
 
+  @Override
+  public TSStatus bulkLoad(TSBulkLoadReq req) {
+    long sessionId = req.getSessionId();
+    if (!checkLogin(sessionId)) {
+      logger.info(INFO_NOT_LOGIN, IoTDBConstant.GLOBAL_DB_NAME);
+      return RpcUtils.getStatus(TSStatusCode.NOT_LOGIN_ERROR);
+    }
+    OperateFilePlan plan = new OperateFilePlan(new File(req.getFileName()),
+        OperatorType.LOAD_FILES,
+        !req.isSetAutoCreateSchema() || req.isAutoCreateSchema(),
+        req.isSetSgLevel() ? req.getSgLevel() : config.getDefaultStorageGroupLevel());
+    if (req.getOffset() == 0) {
+      TSStatus status = checkAuthority(plan, sessionId);
+      if (status != null) {
+        return status;
+      }
+    }
+
+    File file;
+    try {
+      file = BulkLoadManager.getInstance()
+          .receive(sessionId, req.getFileName(), req.getOffset(), req.bufferForData(),
+              req.isIsLast());
+    } catch (IOException e) {
+      logger.error("Can not receive the chunk of {} at {}", req.getFileName(), req.getOffset(), e);
+      return RpcUtils.getStatus(TSStatusCode.LOAD_FILE_ERROR, e.getMessage());
+    }
+    if (file == null) {
+      return RpcUtils.getStatus(TSStatusCode.SUCCESS_STATUS);
+    }
+
+    auditLogger.info("Session {} bulk loads {} of {} bytes", sessionId, req.getFileName(),
+        file.length());
+    TSStatus status = executeNonQueryPlan(
+        new OperateFilePlan(file, OperatorType.LOAD_FILES, plan.isAutoCreateSchema(),
+            plan.getSgLevel()));
+    // the file has been moved into the storage group if it is loaded successfully
+    BulkLoadManager.getInstance().clean(file);
+    return status;
+  }
+
   @Override
   public TSStatus insertTablet(TSInsertTabletReq req) {
     long t1 = System.currentTimeMillis();
@@ -1347,7 +1481,8 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         return RpcUtils.getStatus(TSStatusCode.NOT_LOGIN_ERROR);
       }
 
-      List<TSStatus> statusList = new ArrayList<>();
+      TSStatus[] statuses = new TSStatus[req.deviceIds.size()];
+      List<InsertTabletPlan> plans = new ArrayList<>(req.deviceIds.size());
       for (int i = 0; i < req.deviceIds.size(); i++) {
         InsertTabletPlan insertTabletPlan = new InsertTabletPlan(req.deviceIds.get(i),
             req.measurementsList.get(i));
@@ -1360,15 +1495,10 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         insertTabletPlan.setRowCount(req.sizeList.get(i));
         insertTabletPlan.setDataTypes(req.typesList.get(i));
 
-        TSStatus status = checkAuthority(insertTabletPlan, req.getSessionId());
-        if (status != null) {
-          statusList.add(status);
-          continue;
-        }
-
-        statusList.add(executeNonQueryPlan(insertTabletPlan));
+        statuses[i] = checkAuthority(insertTabletPlan, req.getSessionId());
+        plans.add(statuses[i] == null ? insertTabletPlan : null);
       }
-      return RpcUtils.getStatus(statusList);
+      return executeInsertPlans(plans, statuses);
     } catch (Exception e) {
       logger.error("{}: error occurs when insertTablets", IoTDBConstant.GLOBAL_DB_NAME, e);
       return RpcUtils
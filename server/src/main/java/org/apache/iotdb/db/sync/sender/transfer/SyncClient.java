@@ -58,6 +58,8 @@ import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.exception.SyncConnectionException;
 import org.apache.iotdb.db.exception.SyncDeviceOwnerConflictException;
+import org.apache.iotdb.db.metadata.MLogReader;
+import org.apache.iotdb.db.metadata.MLogWriter;
 import org.apache.iotdb.db.metadata.MetadataConstant;
 import org.apache.iotdb.db.sync.conf.SyncConstant;
 import org.apache.iotdb.db.sync.conf.SyncSenderConfig;
@@ -343,7 +345,7 @@ public class SyncClient implements ISyncClient {
       return;
     }
     int retryCount = 0;
-    serviceClient.initSyncData(MetadataConstant.METADATA_LOG);
+    serviceClient.initSyncData(MetadataConstant.METADATA_TXT_LOG);
     while (true) {
       if (retryCount > config.getMaxNumOfSyncFileRetry()) {
         throw new SyncConnectionException(String
@@ -360,19 +362,23 @@ public class SyncClient implements ISyncClient {
   private boolean tryToSyncSchema() {
     int schemaPos = readSyncSchemaPos(getSchemaPosFile());
 
-    // start to sync file data and get md5 of this file.
-    try (BufferedReader br = new BufferedReader(new FileReader(getSchemaLogFile()));
+    // start to sync file data and get md5 of this file. The binary log is transferred as the
+    // lines of the text log, which are applied by the receiver.
+    try (MLogReader reader = new MLogReader(getSchemaLogFile());
         ByteArrayOutputStream bos = new ByteArrayOutputStream(SyncConstant.DATA_CHUNK_SIZE)) {
       schemaFileLinePos = 0;
-      while (schemaFileLinePos < schemaPos) {
-        br.readLine();
+      while (schemaFileLinePos < schemaPos && reader.hasNext()) {
+        reader.next();
         schemaFileLinePos++;
       }
       MessageDigest md = MessageDigest.getInstance(SyncConstant.MESSAGE_DIGIT_NAME);
-      String line;
       int cntLine = 0;
-      while ((line = br.readLine()) != null) {
+      while (reader.hasNext()) {
+        String line = MLogWriter.toTxtOperation(reader.next());
         schemaFileLinePos++;
+        if (line == null) {
+          continue;
+        }
         byte[] singleLineData = BytesUtils.stringToBytes(line);
         bos.write(singleLineData);
         bos.write("\r\n".getBytes());
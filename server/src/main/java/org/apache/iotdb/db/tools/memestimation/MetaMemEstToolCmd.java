@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.tools.memestimation;
+
+import io.airlift.airline.Command;
+import io.airlift.airline.Option;
+import org.apache.iotdb.db.concurrent.WrappedRunnable;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+
+@Command(name = "calmeta", description = "measure the heap used by the metadata of the given number of storage groups, devices and timeseries")
+public class MetaMemEstToolCmd extends WrappedRunnable {
+
+  @Option(title = "storage group number", name = {"-sg",
+      "--storagegroup"}, description = "Storage group number")
+  private String sgNumString = "10";
+
+  @Option(title = "total timeseries number", name = {"-ts",
+      "--timeseries"}, description = "Total timeseries number")
+  private String tsNumString = "1000000";
+
+  @Option(title = "timeseries per device", name = {"-m",
+      "--measurement"}, description = "Timeseries number of each device")
+  private String measurementNumString = "100";
+
+  @Override
+  public void runMayThrow() throws Exception {
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    config.setEnableParameterAdapter(false);
+
+    long sgNum = Long.parseLong(sgNumString);
+    long tsNum = Long.parseLong(tsNumString);
+    long measurementNum = Long.parseLong(measurementNumString);
+
+    // the MManager is not initialized, like in calmem, so that the existing schema is not loaded
+    // and the created timeseries are not written into the mlog of the server
+    long before = usedMemory();
+    long start = System.currentTimeMillis();
+    for (long i = 0; i < sgNum; i++) {
+      IoTDB.metaManager.setStorageGroup("root.sg" + i);
+    }
+    long deviceNum = (tsNum + measurementNum - 1) / measurementNum;
+    long created = 0;
+    for (long device = 0; device < deviceNum; device++) {
+      String devicePath = "root.sg" + (device % sgNum) + ".d" + device;
+      for (long m = 0; m < measurementNum && created < tsNum; m++, created++) {
+        IoTDB.metaManager
+            .createTimeseries(devicePath + ".s" + m, TSDataType.DOUBLE, TSEncoding.GORILLA,
+                CompressionType.SNAPPY, null);
+      }
+      if (device % 1000 == 0) {
+        System.out.print(String.format("Memory estimation progress : %d%%\r",
+            created * 100 / tsNum));
+      }
+    }
+    long used = usedMemory() - before;
+    System.out.println(String.format("Memory for metadata: %dMB, SG: %d, TS: %d, "
+            + "%d bytes per timeseries", used / 1024 / 1024, sgNum, created,
+        used / Math.max(created, 1)));
+    System.out.println(String.format("Creating metadata consumes: %dms",
+        (System.currentTimeMillis() - start)));
+    IoTDB.metaManager.clear();
+  }
+
+  private static long usedMemory() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -18,10 +18,13 @@
  */
 package org.apache.iotdb.db.utils;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.engine.cache.TimeSeriesMetadataCache;
 import org.apache.iotdb.db.engine.modification.Modification;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
@@ -42,9 +45,13 @@ import org.apache.iotdb.tsfile.read.filter.basic.Filter;
 import org.apache.iotdb.tsfile.read.reader.IChunkReader;
 import org.apache.iotdb.tsfile.read.reader.IPageReader;
 import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class FileLoaderUtils {
 
+  private static final Logger logger = LoggerFactory.getLogger(FileLoaderUtils.class);
+
   private FileLoaderUtils() {
 
   }
@@ -56,6 +63,11 @@ public class FileLoaderUtils {
           tsFileResource.getTsFile().getAbsolutePath())) {
         updateTsFileResource(reader, tsFileResource);
       }
+      if (tsFileResource.getHistoricalVersions() == null) {
+        // use the version in file name as the historical version, like the files of old versions
+        tsFileResource.setHistoricalVersions(
+            Collections.singleton(getVersionInFileName(tsFileResource.getTsFile())));
+      }
       // write .resource file
       tsFileResource.serialize();
     } else {
@@ -64,6 +76,23 @@ public class FileLoaderUtils {
     tsFileResource.setClosed(true);
   }
 
+  /**
+   * @return the version in the name of the file, or 0 if the file is not named as
+   * {time}-{version}-{mergeCnt}.tsfile, e.g., a file generated by a user
+   */
+  static long getVersionInFileName(File tsFile) {
+    String[] names = tsFile.getName().split(IoTDBConstant.FILE_NAME_SEPARATOR);
+    if (names.length > 1) {
+      try {
+        return Long.parseLong(names[1]);
+      } catch (NumberFormatException e) {
+        // fall through
+      }
+    }
+    logger.warn("Cannot get the version from the name of {}, use 0 instead", tsFile);
+    return 0;
+  }
+
   public static void updateTsFileResource(TsFileSequenceReader reader,
       TsFileResource tsFileResource) throws IOException {
     for (Entry<String, List<TimeseriesMetadata>> entry : reader.getAllTimeseriesMetadata()
@@ -20,6 +20,7 @@
 package org.apache.iotdb.db.utils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -28,13 +29,23 @@ import java.util.PriorityQueue;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
 import org.apache.iotdb.db.engine.modification.Modification;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.compress.IUnCompressor;
+import org.apache.iotdb.tsfile.encoding.decoder.Decoder;
+import org.apache.iotdb.tsfile.file.header.ChunkHeader;
+import org.apache.iotdb.tsfile.file.header.PageHeader;
 import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Chunk;
 import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
 import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReader;
+import org.apache.iotdb.tsfile.read.reader.page.PageBufferPool;
+import org.apache.iotdb.tsfile.read.reader.page.PageReader;
 import org.apache.iotdb.tsfile.write.chunk.IChunkWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -226,6 +237,62 @@ public class MergeUtils {
         && !isLastChunk);
   }
 
+  /**
+   * @return true if all points of the page are deleted
+   */
+  public static boolean isPageDeleted(PageHeader pageHeader, List<TimeRange> deleteIntervalList) {
+    if (deleteIntervalList != null) {
+      for (TimeRange range : deleteIntervalList) {
+        if (range.contains(pageHeader.getStartTime(), pageHeader.getEndTime())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if some points of the page are deleted, so it cannot be copied as it is
+   */
+  public static boolean isPageModified(PageHeader pageHeader, List<TimeRange> deleteIntervalList) {
+    if (deleteIntervalList != null) {
+      TimeRange pageRange = new TimeRange(pageHeader.getStartTime(), pageHeader.getEndTime());
+      for (TimeRange range : deleteIntervalList) {
+        if (range.overlaps(pageRange)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * decompress and decode a page of a chunk, the deleted points are not returned.
+   *
+   * @param compressedPage the compressed data of the page, which is consumed
+   */
+  public static BatchData readPage(ChunkHeader chunkHeader, PageHeader pageHeader,
+      ByteBuffer compressedPage, List<TimeRange> deleteIntervalList) throws IOException {
+    ByteBuffer compressed = compressedPage.slice();
+    compressed.limit(pageHeader.getCompressedSize());
+    compressedPage.position(compressedPage.position() + pageHeader.getCompressedSize());
+    byte[] uncompressed = PageBufferPool.getInstance().allocate(pageHeader.getUncompressedSize());
+    ByteBuffer pageData = ByteBuffer.wrap(uncompressed, 0, pageHeader.getUncompressedSize());
+    IUnCompressor.getUnCompressor(chunkHeader.getCompressionType())
+        .uncompress(compressed, pageData);
+    pageData.flip();
+    Decoder timeDecoder = Decoder.getDecoderByType(
+        TSEncoding.valueOf(TSFileDescriptor.getInstance().getConfig().getTimeEncoder()),
+        TSDataType.INT64);
+    Decoder valueDecoder = Decoder.getDecoderByType(chunkHeader.getEncodingType(),
+        chunkHeader.getDataType());
+    PageReader pageReader = new PageReader(pageHeader, pageData,
+        chunkHeader.getDataType(), valueDecoder, timeDecoder, null);
+    pageReader.setDeleteIntervalList(deleteIntervalList);
+    pageReader.setPooledBuffer(uncompressed);
+    return pageReader.getAllSatisfiedPageData();
+  }
+
   public static List<List<Path>> splitPathsByDevice(List<Path> paths) {
     if (paths.isEmpty()) {
       return Collections.emptyList();
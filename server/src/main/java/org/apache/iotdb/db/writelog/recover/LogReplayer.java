@@ -19,6 +19,8 @@
 
 package org.apache.iotdb.db.writelog.recover;
 
+import org.apache.iotdb.db.concurrent.IoTDBThreadPoolFactory;
+import org.apache.iotdb.db.concurrent.ThreadName;
 import org.apache.iotdb.db.engine.memtable.IMemTable;
 import org.apache.iotdb.db.engine.modification.Deletion;
 import org.apache.iotdb.db.engine.modification.ModificationFile;
@@ -34,6 +36,7 @@ import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.db.qp.physical.crud.UpdatePlan;
 import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.service.StartupPhaseTimer;
 import org.apache.iotdb.db.writelog.io.ILogReader;
 import org.apache.iotdb.db.writelog.manager.MultiFileLogNodeManager;
 import org.apache.iotdb.db.writelog.node.WriteLogNode;
@@ -44,9 +47,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * LogReplayer finds the logNode of the TsFile given by insertFilePath and logNodePrefix, reads the
@@ -54,6 +63,12 @@ import java.util.Map;
  */
 public class LogReplayer {
 
+  // the number of plans in a decoded batch
+  private static final int DECODED_BATCH_SIZE = 1024;
+  // the number of decoded batches that are waiting for replay
+  private static final int DECODED_BATCH_NUM = 4;
+  private static final List<PhysicalPlan> END_OF_LOGS = Collections.emptyList();
+
   private Logger logger = LoggerFactory.getLogger(LogReplayer.class);
   private String logNodePrefix;
   private String insertFilePath;
@@ -82,31 +97,36 @@ public class LogReplayer {
 
   /**
    * finds the logNode of the TsFile given by insertFilePath and logNodePrefix, reads the WALs from
-   * the logNode and redoes them into a given MemTable and ModificationFile.
+   * the logNode and redoes them into a given MemTable and ModificationFile. The WALs are decoded
+   * by another thread in batches, so decoding the next batch overlaps with redoing the current
+   * one. The thread is created for each replay and is stopped when the replay ends, so no thread is
+   * left after the recovery.
    */
   public void replayLogs() {
     WriteLogNode logNode = MultiFileLogNodeManager.getInstance().getNode(
         logNodePrefix + FSFactoryProducer.getFSFactory().getFile(insertFilePath).getName());
 
+    long startTime = System.currentTimeMillis();
     ILogReader logReader = logNode.getLogReader();
+    BlockingQueue<List<PhysicalPlan>> batches = new ArrayBlockingQueue<>(DECODED_BATCH_NUM);
+    ExecutorService decodeThread = IoTDBThreadPoolFactory
+        .newSingleThreadExecutor(ThreadName.WAL_DECODE.getName());
+    decodeThread.submit(() -> decodeLogs(logReader, batches));
     try {
-      while (logReader.hasNext()) {
-        try {
-          PhysicalPlan plan = logReader.next();
-          if (plan instanceof InsertPlan) {
-            replayInsert((InsertPlan) plan);
-          } else if (plan instanceof DeletePlan) {
-            replayDelete((DeletePlan) plan);
-          } else if (plan instanceof UpdatePlan) {
-            replayUpdate((UpdatePlan) plan);
-          }
-        } catch (Exception e) {
-          logger.error("recover wal of {} failed", insertFilePath, e);
+      List<PhysicalPlan> batch;
+      while ((batch = batches.take()) != END_OF_LOGS) {
+        for (PhysicalPlan plan : batch) {
+          replayLog(plan);
         }
       }
-    } catch (IOException e) {
-      logger.error("meet error when redo wal of {}", insertFilePath, e);
+    } catch (InterruptedException e) {
+      logger.error("interrupted when redo wal of {}", insertFilePath);
+      Thread.currentThread().interrupt();
     } finally {
+      // the decoding has ended unless the replay is interrupted, and then it is stopped and waited
+      // for, so the reader is no longer used when it is closed
+      decodeThread.shutdownNow();
+      awaitDecoding(decodeThread);
       logReader.close();
       try {
         modFile.close();
@@ -116,6 +136,66 @@ public class LogReplayer {
     }
     tempStartTimeMap.forEach((k, v) -> currentTsFileResource.updateStartTime(k, v));
     tempEndTimeMap.forEach((k, v) -> currentTsFileResource.updateEndTime(k, v));
+    StartupPhaseTimer.getInstance()
+        .record("replay WALs", System.currentTimeMillis() - startTime);
+  }
+
+  private void awaitDecoding(ExecutorService decodeThread) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        if (decodeThread.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+          break;
+        }
+      } catch (InterruptedException e) {
+        // the reader can not be closed before the decoding stops, so keep waiting
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * reads the WALs into batches of DECODED_BATCH_SIZE plans and puts them into the queue, which
+   * always ends with END_OF_LOGS unless the decoding is cancelled
+   */
+  private void decodeLogs(ILogReader logReader, BlockingQueue<List<PhysicalPlan>> batches) {
+    try {
+      List<PhysicalPlan> batch = new ArrayList<>(DECODED_BATCH_SIZE);
+      try {
+        while (logReader.hasNext()) {
+          batch.add(logReader.next());
+          if (batch.size() == DECODED_BATCH_SIZE) {
+            batches.put(batch);
+            batch = new ArrayList<>(DECODED_BATCH_SIZE);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        logger.error("meet error when redo wal of {}", insertFilePath, e);
+      }
+      if (!batch.isEmpty()) {
+        batches.put(batch);
+      }
+      batches.put(END_OF_LOGS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void replayLog(PhysicalPlan plan) {
+    try {
+      if (plan instanceof InsertPlan) {
+        replayInsert((InsertPlan) plan);
+      } else if (plan instanceof DeletePlan) {
+        replayDelete((DeletePlan) plan);
+      } else if (plan instanceof UpdatePlan) {
+        replayUpdate((UpdatePlan) plan);
+      }
+    } catch (Exception e) {
+      logger.error("recover wal of {} failed", insertFilePath, e);
+    }
   }
 
   private void replayDelete(DeletePlan deletePlan) throws IOException {
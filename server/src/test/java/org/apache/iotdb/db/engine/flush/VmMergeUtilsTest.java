@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.flush;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReader;
+import org.apache.iotdb.tsfile.write.chunk.ChunkWriterImpl;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.apache.iotdb.tsfile.write.writer.RestorableTsFileIOWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VmMergeUtilsTest {
+
+  private static final String DEVICE = "root.sg.d0";
+  private static final String MEASUREMENT = "s0";
+
+  private MeasurementSchema schema = new MeasurementSchema(MEASUREMENT, TSDataType.INT64,
+      TSEncoding.RLE);
+  private List<RestorableTsFileIOWriter> writers = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    new File(TestConstant.OUTPUT_DATA_DIR).mkdirs();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (RestorableTsFileIOWriter writer : writers) {
+      writer.close();
+    }
+    EnvironmentUtils.cleanDir(TestConstant.OUTPUT_DATA_DIR);
+  }
+
+  @Test
+  public void testUnseqMerge() throws IOException {
+    // vm0 has [1, 100] and [200, 300], vm1 overwrites [50, 250] with a higher version, and the
+    // later chunk of vm2 overwrites [240, 260] with the same version as the earlier one
+    RestorableTsFileIOWriter vm0 = newWriter("vm0");
+    writeChunkGroup(vm0, 1, 1, 100, 1);
+    writeChunkGroup(vm0, 1, 200, 300, 1);
+    RestorableTsFileIOWriter vm1 = newWriter("vm1");
+    writeChunkGroup(vm1, 2, 50, 250, 10);
+    RestorableTsFileIOWriter vm2 = newWriter("vm2");
+    writeChunkGroup(vm2, 3, 230, 260, 100);
+    writeChunkGroup(vm2, 3, 240, 260, 1000);
+
+    RestorableTsFileIOWriter target = newWriter("target");
+    VmMergeUtils.merge(target, Arrays.asList(vm0, vm1, vm2), "root.sg", null,
+        Collections.emptySet(), false);
+
+    List<String> expected = new ArrayList<>();
+    for (long time = 1; time <= 300; time++) {
+      long value;
+      if (time >= 240 && time <= 260) {
+        value = time * 1000;
+      } else if (time >= 230 && time <= 260) {
+        value = time * 100;
+      } else if (time >= 50 && time <= 250) {
+        value = time * 10;
+      } else if (time <= 100 || time >= 200) {
+        value = time;
+      } else {
+        continue;
+      }
+      expected.add(time + "," + value);
+    }
+    assertEquals(expected, readPoints(target));
+  }
+
+  @Test
+  public void testSeqMerge() throws IOException {
+    RestorableTsFileIOWriter vm0 = newWriter("vm0");
+    writeChunkGroup(vm0, 1, 1, 100, 1);
+    RestorableTsFileIOWriter vm1 = newWriter("vm1");
+    writeChunkGroup(vm1, 2, 101, 200, 1);
+    writeChunkGroup(vm1, 2, 201, 300, 1);
+
+    RestorableTsFileIOWriter target = newWriter("target");
+    VmMergeUtils.merge(target, Arrays.asList(vm0, vm1), "root.sg", null,
+        Collections.emptySet(), true);
+
+    List<String> expected = new ArrayList<>();
+    for (long time = 1; time <= 300; time++) {
+      expected.add(time + "," + time);
+    }
+    assertEquals(expected, readPoints(target));
+    // the chunks are merged into one
+    List<ChunkMetadata> chunkMetadataList = target.getVisibleMetadataList(DEVICE, MEASUREMENT,
+        TSDataType.INT64);
+    assertEquals(1, chunkMetadataList.size());
+    assertEquals(300, chunkMetadataList.get(0).getNumOfPoints());
+  }
+
+  private RestorableTsFileIOWriter newWriter(String name) throws IOException {
+    RestorableTsFileIOWriter writer = new RestorableTsFileIOWriter(
+        new File(TestConstant.OUTPUT_DATA_DIR, name + ".tsfile"));
+    writers.add(writer);
+    return writer;
+  }
+
+  private void writeChunkGroup(RestorableTsFileIOWriter writer, long version, long startTime,
+      long endTime, long factor) throws IOException {
+    writer.startChunkGroup(DEVICE);
+    ChunkWriterImpl chunkWriter = new ChunkWriterImpl(schema);
+    for (long time = startTime; time <= endTime; time++) {
+      chunkWriter.write(time, time * factor);
+    }
+    chunkWriter.writeToFileWriter(writer);
+    writer.writeVersion(version);
+    writer.endChunkGroup();
+  }
+
+  private List<String> readPoints(RestorableTsFileIOWriter writer) throws IOException {
+    writer.makeMetadataVisible();
+    List<String> points = new ArrayList<>();
+    try (TsFileSequenceReader reader = new TsFileSequenceReader(
+        writer.getFile().getPath())) {
+      for (ChunkMetadata chunkMetadata : writer.getVisibleMetadataList(DEVICE, MEASUREMENT,
+          TSDataType.INT64)) {
+        ChunkReader chunkReader = new ChunkReader(reader.readMemChunk(chunkMetadata), null);
+        while (chunkReader.hasNextSatisfiedPage()) {
+          BatchData batchData = chunkReader.nextPageData();
+          for (int i = 0; i < batchData.length(); i++) {
+            points.add(batchData.getTimeByIndex(i) + "," + batchData.getLongByIndex(i));
+          }
+        }
+      }
+    }
+    return points;
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.load;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.exception.StorageEngineException;
+import org.apache.iotdb.db.exception.metadata.StorageGroupNotSetException;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.qp.executor.PlanExecutor;
+import org.apache.iotdb.db.qp.logical.Operator.OperatorType;
+import org.apache.iotdb.db.qp.physical.sys.OperateFilePlan;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.LongDataPoint;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkLoadManagerTest {
+
+  private File uploadDir = new File("target" + File.separator + "bulk-load-test");
+  private BulkLoadManager manager;
+
+  @Before
+  public void setUp() {
+    EnvironmentUtils.envSetUp();
+    manager = new BulkLoadManager(uploadDir);
+  }
+
+  @After
+  public void tearDown() throws IOException, StorageEngineException {
+    FileUtils.deleteDirectory(uploadDir);
+    EnvironmentUtils.cleanEnv();
+  }
+
+  @Test
+  public void testReceiveInChunks() throws IOException {
+    byte[] content = new byte[100];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    assertNull(manager.receive(1, "1-1-0.tsfile", 0, ByteBuffer.wrap(content, 0, 60), false));
+    File file = manager
+        .receive(1, "1-1-0.tsfile", 60, ByteBuffer.wrap(content, 60, 40), true);
+    assertEquals("1-1-0.tsfile", file.getName());
+    assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+
+    manager.clean(file);
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void testUnexpectedChunk() throws IOException {
+    manager.receive(1, "1-1-0.tsfile", 0, ByteBuffer.wrap(new byte[10]), false);
+    try {
+      // a chunk is lost
+      manager.receive(1, "1-1-0.tsfile", 20, ByteBuffer.wrap(new byte[10]), true);
+      fail();
+    } catch (IOException e) {
+      assertEquals("Unexpected chunk of 1-1-0.tsfile at 20, the upload should be restarted",
+          e.getMessage());
+    }
+    // the upload is discarded
+    assertFalse(new File(uploadDir, "1" + File.separator + "1-1-0.tsfile").exists());
+
+    try {
+      manager.receive(1, "data.csv", 0, ByteBuffer.wrap(new byte[10]), true);
+      fail();
+    } catch (IOException e) {
+      assertEquals("data.csv is not a TsFile", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testUploadStaysInDir() throws IOException {
+    File file = manager.receive(2, ".." + File.separator + ".." + File.separator + "1-1-0.tsfile",
+        0, ByteBuffer.wrap(new byte[10]), true);
+    assertEquals(new File(uploadDir, "2").getAbsolutePath(),
+        file.getParentFile().getAbsolutePath());
+  }
+
+  @Test
+  public void testLoadReceivedFile()
+      throws IOException, WriteProcessException, QueryProcessException,
+      StorageEngineException, StorageGroupNotSetException {
+    File tsFile = new File("target" + File.separator + System.currentTimeMillis() + "-1-0.tsfile");
+    try (TsFileWriter writer = new TsFileWriter(tsFile)) {
+      writer.registerTimeseries(new Path("root.sg.d1", "s1"),
+          new MeasurementSchema("s1", TSDataType.INT64));
+      for (long time = 1; time <= 100; time++) {
+        TSRecord record = new TSRecord(time, "root.sg.d1");
+        record.addTuple(new LongDataPoint("s1", time));
+        writer.write(record);
+      }
+    }
+    byte[] content = Files.readAllBytes(tsFile.toPath());
+    Files.delete(tsFile.toPath());
+
+    int half = content.length / 2;
+    manager.receive(3, tsFile.getName(), 0, ByteBuffer.wrap(content, 0, half), false);
+    File file = manager.receive(3, tsFile.getName(), half,
+        ByteBuffer.wrap(content, half, content.length - half), true);
+    new PlanExecutor()
+        .processNonQuery(new OperateFilePlan(file, OperatorType.LOAD_FILES, true, 1));
+
+    assertTrue(IoTDB.metaManager.isPathExist("root.sg.d1.s1"));
+    // the file is moved into the storage group
+    assertFalse(file.exists());
+    assertFalse(new File(file.getPath() + TsFileResource.RESOURCE_SUFFIX).exists());
+  }
+}
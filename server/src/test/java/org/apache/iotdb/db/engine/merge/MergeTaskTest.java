@@ -30,7 +30,11 @@ import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.reader.series.SeriesRawDataBatchReader;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Path;
 import org.apache.iotdb.tsfile.read.reader.IBatchReader;
@@ -44,6 +48,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MergeTaskTest extends MergeTest {
 
@@ -214,6 +219,94 @@ public class MergeTaskTest extends MergeTest {
     tsFilesReader.close();
   }
 
+  @Test
+  public void testMergeWithPageCopy() throws Exception {
+    int prevMaxPointsInPage = TSFileDescriptor.getInstance().getConfig()
+        .getMaxNumberOfPointsInPage();
+    TSFileDescriptor.getInstance().getConfig().setMaxNumberOfPointsInPage(5);
+    try {
+      // the chunks of the seq file have 4 pages, and the unseq file only overlaps a page
+      prepareFile(seqResources.get(0), 0, ptNum, 0);
+      prepareFile(unseqResources.get(0), 32, 3, 10000);
+    } finally {
+      TSFileDescriptor.getInstance().getConfig().setMaxNumberOfPointsInPage(prevMaxPointsInPage);
+    }
+    MergeTask mergeTask =
+        new MergeTask(new MergeResource(seqResources, unseqResources.subList(0, 1)),
+            tempSGDir.getPath(), (k, v, l) -> {
+        }, "test", false, 1, MERGE_TEST_SG);
+    mergeTask.call();
+
+    QueryContext context = new QueryContext();
+    Path path = new Path(deviceIds[0], measurementSchemas[0].getMeasurementId());
+    List<TsFileResource> resources = new ArrayList<>();
+    resources.add(seqResources.get(0));
+    IBatchReader tsFilesReader = new SeriesRawDataBatchReader(path,
+        measurementSchemas[0].getType(), context, resources, new ArrayList<>(), null, null);
+    int count = 0;
+    while (tsFilesReader.hasNextBatch()) {
+      BatchData batchData = tsFilesReader.nextBatch();
+      for (int i = 0; i < batchData.length(); i++) {
+        long time = batchData.getTimeByIndex(i);
+        double expected = time >= 32 && time < 35 ? time + 10000.0 : time;
+        assertEquals(expected, batchData.getDoubleByIndex(i), 0.001);
+        count++;
+      }
+    }
+    assertEquals(ptNum, count);
+    tsFilesReader.close();
+  }
+
+  @Test
+  public void testMergeColdDataRecompression() throws Exception {
+    long prevColdDataAge = IoTDBDescriptor.getInstance().getConfig().getColdDataAgeInMs();
+    // the test data are written at the very beginning of the epoch, so all of them are cold
+    IoTDBDescriptor.getInstance().getConfig().setColdDataAgeInMs(1);
+    try {
+      MergeTask mergeTask =
+          new MergeTask(new MergeResource(seqResources, unseqResources.subList(0, 1)),
+              tempSGDir.getPath(), (k, v, l) -> {
+          }, "test", false, 1, MERGE_TEST_SG);
+      mergeTask.call();
+    } finally {
+      IoTDBDescriptor.getInstance().getConfig().setColdDataAgeInMs(prevColdDataAge);
+    }
+
+    int chunkNum = 0;
+    try (TsFileSequenceReader reader = new TsFileSequenceReader(
+        seqResources.get(0).getTsFile().getPath())) {
+      for (String device : reader.getAllDevices()) {
+        for (List<ChunkMetadata> chunkMetadataList : reader.readChunkMetadataInDevice(device)
+            .values()) {
+          for (ChunkMetadata chunkMetadata : chunkMetadataList) {
+            assertEquals(CompressionType.GZIP,
+                reader.readMemChunk(chunkMetadata).getHeader().getCompressionType());
+            chunkNum++;
+          }
+        }
+      }
+    }
+    assertTrue(chunkNum > 0);
+
+    QueryContext context = new QueryContext();
+    Path path = new Path(deviceIds[0], measurementSchemas[0].getMeasurementId());
+    List<TsFileResource> resources = new ArrayList<>();
+    resources.add(seqResources.get(0));
+    IBatchReader tsFilesReader = new SeriesRawDataBatchReader(path,
+        measurementSchemas[0].getType(), context, resources, new ArrayList<>(), null, null);
+    while (tsFilesReader.hasNextBatch()) {
+      BatchData batchData = tsFilesReader.nextBatch();
+      for (int i = 0; i < batchData.length(); i++) {
+        if (batchData.getTimeByIndex(i) < 20) {
+          assertEquals(batchData.getTimeByIndex(i) + 10000.0, batchData.getDoubleByIndex(i), 0.001);
+        } else {
+          assertEquals(batchData.getTimeByIndex(i) + 0.0, batchData.getDoubleByIndex(i), 0.001);
+        }
+      }
+    }
+    tsFilesReader.close();
+  }
+
   @Test
   public void mergeWithDeletionTest() throws Exception {
     try {
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.qp.Planner;
+import org.apache.iotdb.db.qp.executor.IPlanExecutor;
+import org.apache.iotdb.db.qp.executor.PlanExecutor;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactionSchedulerTest {
+
+  private IPlanExecutor queryExecutor = new PlanExecutor();
+  private Planner processor = new Planner();
+
+  public CompactionSchedulerTest() throws QueryProcessException {
+  }
+
+  @Before
+  public void setUp() {
+    EnvironmentUtils.envSetUp();
+    StorageEngine.setEnablePartition(true);
+    StorageEngine.setTimePartitionInterval(100);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    EnvironmentUtils.cleanEnv();
+    StorageEngine.setEnablePartition(false);
+    StorageEngine.setTimePartitionInterval(-1);
+  }
+
+  @Test
+  public void testLeveledPolicy() {
+    ICompactionPolicy policy = new LeveledCompactionPolicy();
+    // the unsequence files are small and few
+    assertFalse(policy.needsCompaction(status(1000, true, 10, 10)));
+    // the unsequence files are large
+    assertTrue(policy.needsCompaction(status(1000, true, 50, 50)));
+    // too many unsequence files overlap
+    assertTrue(policy.needsCompaction(status(1000, true, 1, 1, 1, 1)));
+    // nothing overlaps
+    assertFalse(policy.needsCompaction(status(1000, false, 500, 500)));
+  }
+
+  @Test
+  public void testSizeTieredPolicy() {
+    ICompactionPolicy policy = new SizeTieredCompactionPolicy();
+    assertFalse(policy.needsCompaction(status(1000, true, 10, 20, 40, 80)));
+    assertTrue(policy.needsCompaction(status(1000, true, 10, 100, 110, 150, 200, 1000)));
+    assertFalse(policy.needsCompaction(status(1000, false, 10, 10, 10, 10)));
+  }
+
+  @Test
+  public void testTimeWindowPolicy() {
+    ICompactionPolicy policy = new TimeWindowCompactionPolicy();
+    PartitionCompactionStatus status = status(1000, true, 10);
+    assertTrue(policy.needsCompaction(status));
+    status.setLatest(true);
+    assertFalse(policy.needsCompaction(status));
+  }
+
+  @Test
+  public void testSelectCandidates() {
+    CompactionScheduler scheduler = new CompactionScheduler(new TimeWindowCompactionPolicy(), 0,
+        1000);
+    PartitionCompactionStatus p0 = status(1000, true, 10);
+    PartitionCompactionStatus p1 = status(1000, true, 10, 10, 10);
+    PartitionCompactionStatus p2 = status(1000, true, 10, 20);
+    PartitionCompactionStatus p3 = status(1000, true, 10, 10, 10, 10);
+    p3.setLatest(true);
+    PartitionCompactionStatus p4 = status(1000, true, 10, 30);
+
+    List<PartitionCompactionStatus> candidates = scheduler
+        .selectCandidates(Arrays.asList(p0, p1, p2, p3, p4));
+    // the most read-amplified first
+    assertEquals(Arrays.asList(p1, p4, p2, p0), candidates);
+    assertEquals(4, scheduler.getMaxReadAmplification());
+    assertEquals(150, scheduler.getCompactionDebt());
+  }
+
+  @Test
+  public void testThroughputBudget() {
+    // 100B/s, refilled to at most 1000B
+    CompactionScheduler scheduler = new CompactionScheduler(new LeveledCompactionPolicy(), 100,
+        10_000);
+    long now = System.currentTimeMillis();
+    assertTrue(scheduler.hasBudget(now));
+    scheduler.consume(1500);
+    assertFalse(scheduler.hasBudget(now + 1000));
+    assertTrue(scheduler.hasBudget(now + 6000));
+    scheduler.consume(100);
+    // the refill is capped
+    assertTrue(scheduler.hasBudget(now + 1_000_000));
+    scheduler.consume(1000);
+    assertFalse(scheduler.hasBudget(now + 1_000_000));
+
+    CompactionScheduler unlimited = new CompactionScheduler(new LeveledCompactionPolicy(), 0,
+        10_000);
+    unlimited.consume(Long.MAX_VALUE);
+    assertTrue(unlimited.hasBudget(now));
+
+    unlimited.recordCompaction(4096, 2000);
+    assertEquals(2048, unlimited.getCompactionThroughput());
+  }
+
+  @Test
+  public void testScheduleTimePartitions() throws Exception {
+    execute("SET STORAGE GROUP TO root.sg",
+        "insert into root.sg.d0(timestamp,s0) values(10,10)",
+        "insert into root.sg.d0(timestamp,s0) values(50,50)",
+        "insert into root.sg.d0(timestamp,s0) values(110,110)",
+        "insert into root.sg.d0(timestamp,s0) values(150,150)",
+        "flush",
+        "insert into root.sg.d0(timestamp,s0) values(20,20)",
+        "insert into root.sg.d0(timestamp,s0) values(120,120)",
+        "flush");
+
+    List<PartitionCompactionStatus> statuses = StorageEngine.getInstance().getCompactionStatus();
+    assertEquals(2, statuses.size());
+    for (PartitionCompactionStatus status : statuses) {
+      assertEquals(1, status.getSeqFileNum());
+      assertEquals(1, status.getUnseqFileNum());
+      assertEquals(1, status.getOverlappedUnseqFileNum());
+      assertEquals(status.getTimePartition() == 1, status.isLatest());
+    }
+
+    // only the partition 0 is merged as the partition 1 is the latest one
+    CompactionScheduler scheduler = new CompactionScheduler(new TimeWindowCompactionPolicy(), 0,
+        1000);
+    scheduler.schedule(true, 1);
+    assertEquals(0, scheduler.getPendingCompactionNum());
+
+    long deadline = System.currentTimeMillis() + 30_000;
+    while (true) {
+      statuses = StorageEngine.getInstance().getCompactionStatus();
+      PartitionCompactionStatus p0 = statuses.get(0);
+      if (p0.getSeqFileNum() == 1 && p0.getUnseqFileNum() == 0) {
+        break;
+      }
+      if (System.currentTimeMillis() > deadline) {
+        fail("The merge does not end: " + statuses);
+      }
+      Thread.sleep(100);
+    }
+    assertEquals(1, statuses.get(1).getUnseqFileNum());
+  }
+
+  private PartitionCompactionStatus status(long seqFileSize, boolean overlapped,
+      long... unseqFileSizes) {
+    PartitionCompactionStatus status = new PartitionCompactionStatus("root.sg", 0);
+    status.addSeqFile(seqFileSize);
+    for (long size : unseqFileSizes) {
+      status.addUnseqFile(size, overlapped);
+    }
+    return status;
+  }
+
+  private void execute(String... sqls) throws Exception {
+    for (String sql : sqls) {
+      queryExecutor.processNonQuery(processor.parseSQLToPhysicalPlan(sql));
+    }
+  }
+}
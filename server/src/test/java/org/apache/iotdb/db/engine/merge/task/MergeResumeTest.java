@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.engine.merge.task;
+
+import static org.apache.iotdb.db.conf.IoTDBConstant.PATH_SEPARATOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.cache.ChunkCache;
+import org.apache.iotdb.db.engine.cache.ChunkMetadataCache;
+import org.apache.iotdb.db.engine.cache.TimeSeriesMetadataCache;
+import org.apache.iotdb.db.engine.merge.manage.MergeContext;
+import org.apache.iotdb.db.engine.merge.manage.MergeManager;
+import org.apache.iotdb.db.engine.merge.manage.MergeResource;
+import org.apache.iotdb.db.engine.merge.recover.LogAnalyzer;
+import org.apache.iotdb.db.engine.merge.recover.LogAnalyzer.Status;
+import org.apache.iotdb.db.engine.merge.recover.MergeLogger;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.control.FileReaderManager;
+import org.apache.iotdb.db.query.reader.series.SeriesRawDataBatchReader;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.reader.IBatchReader;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.DataPoint;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MergeResumeTest {
+
+  private static final String SG = "root.mergeResumeTest";
+  private static final String DEVICE = SG + PATH_SEPARATOR + "device0";
+  private static final int SEQ_FILE_NUM = 3;
+  private static final long PT_NUM = 100;
+  private static final long FLUSH_INTERVAL = 20;
+  private static final long UNSEQ_VALUE_OFFSET = 10000;
+
+  private MeasurementSchema[] measurementSchemas = new MeasurementSchema[2];
+  private List<Path> paths = new ArrayList<>();
+  private List<TsFileResource> seqResources = new ArrayList<>();
+  private List<TsFileResource> unseqResources = new ArrayList<>();
+  private File sgDir;
+  private int prevMergeChunkThreshold;
+
+  @Before
+  public void setUp() throws Exception {
+    IoTDB.metaManager.init();
+    prevMergeChunkThreshold =
+        IoTDBDescriptor.getInstance().getConfig().getChunkMergePointThreshold();
+    IoTDBDescriptor.getInstance().getConfig().setChunkMergePointThreshold(-1);
+    IoTDB.metaManager.setStorageGroup(SG);
+    for (int i = 0; i < measurementSchemas.length; i++) {
+      measurementSchemas[i] = new MeasurementSchema("sensor" + i, TSDataType.DOUBLE,
+          TSEncoding.PLAIN, CompressionType.UNCOMPRESSED);
+      Path path = new Path(DEVICE, measurementSchemas[i].getMeasurementId());
+      IoTDB.metaManager.createTimeseries(path.getFullPath(), TSDataType.DOUBLE, TSEncoding.PLAIN,
+          CompressionType.UNCOMPRESSED, Collections.emptyMap());
+      paths.add(path);
+    }
+    sgDir = new File(TestConstant.BASE_OUTPUT_PATH.concat("tempSG"));
+    sgDir.mkdirs();
+    MergeManager.getINSTANCE().start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    for (TsFileResource resource : seqResources) {
+      resource.remove();
+      // a failed test may leave the merged files, which would be resumed by the next test
+      new File(resource.getTsFilePath() + MergeTask.MERGE_SUFFIX).delete();
+      new File(resource.getTsFilePath() + MergeTask.MERGE_COPY_SUFFIX).delete();
+    }
+    for (TsFileResource resource : unseqResources) {
+      resource.remove();
+    }
+    FileReaderManager.getInstance().closeAndRemoveAllOpenedReaders();
+    FileReaderManager.getInstance().stop();
+    FileUtils.deleteDirectory(sgDir);
+    IoTDBDescriptor.getInstance().getConfig().setChunkMergePointThreshold(prevMergeChunkThreshold);
+    // the files of each test have the same names
+    ChunkMetadataCache.getInstance().clear();
+    ChunkCache.getInstance().clear();
+    TimeSeriesMetadataCache.getInstance().clear();
+    IoTDB.metaManager.clear();
+    EnvironmentUtils.cleanAllDir();
+    MergeManager.getINSTANCE().stop();
+  }
+
+  @Test
+  public void testResumeUnfinishedSeries() throws Exception {
+    // the unseq data overlap all seqFiles
+    prepareFiles(SEQ_FILE_NUM * PT_NUM);
+
+    // the system stops after the series are merged into 2 seqFiles
+    MergeResource resource = new MergeResource(new ArrayList<>(seqResources),
+        new ArrayList<>(unseqResources));
+    Map<Path, MeasurementSchema> schemas = new HashMap<>();
+    for (int i = 0; i < paths.size(); i++) {
+      schemas.put(paths.get(i), measurementSchemas[i]);
+    }
+    resource.setMeasurementSchemaMap(schemas);
+    MergeLogger mergeLogger = new StoppingMergeLogger(sgDir.getPath(), 2);
+    mergeLogger.logFiles(resource);
+    mergeLogger.logMergeStart();
+    MergeMultiChunkTask mergeChunkTask = new MergeMultiChunkTask(new MergeContext(), "test",
+        mergeLogger, resource, false, paths, paths.size(), SG);
+    try {
+      mergeChunkTask.mergeSeries();
+      fail("the merge should be stopped");
+    } catch (IOException e) {
+      // expected
+    }
+    mergeLogger.close();
+    resource.clear();
+
+    File logFile = new File(sgDir, MergeLogger.MERGE_LOG_NAME);
+    LogAnalyzer analyzer = new LogAnalyzer(new MergeResource(new ArrayList<>(seqResources),
+        new ArrayList<>(unseqResources)), "test", logFile, SG);
+    assertEquals(Status.MERGE_START, analyzer.analyze());
+    assertEquals(paths, analyzer.getUnfinishedPaths());
+    assertEquals(2, analyzer.getUnfinishedSeqFileIdx());
+    assertEquals(Collections.emptyList(), analyzer.getMergedPaths());
+
+    RecoverMergeTask recoverMergeTask = new RecoverMergeTask(new ArrayList<>(seqResources),
+        new ArrayList<>(unseqResources), sgDir.getPath(), (seqFiles, unseqFiles, log) -> {
+    }, "test", false, SG);
+    recoverMergeTask.recoverMerge(true);
+
+    checkSeqData(SEQ_FILE_NUM * PT_NUM);
+  }
+
+  @Test
+  public void testMoveMergedToCopy() throws Exception {
+    // only the first chunk of the first seqFile is overlapped, so the merged chunk is moved to
+    // the copy of the seqFile
+    prepareFiles(FLUSH_INTERVAL);
+    File oldFile = seqResources.get(0).getTsFile();
+
+    MergeTask mergeTask = new MergeTask(new MergeResource(new ArrayList<>(seqResources),
+        new ArrayList<>(unseqResources)), sgDir.getPath(), (seqFiles, unseqFiles, log) -> {
+    }, "test", false, 1, SG);
+    mergeTask.call();
+
+    assertFalse(oldFile.exists());
+    assertFalse(new File(oldFile.getPath() + MergeTask.MERGE_COPY_SUFFIX).exists());
+    checkSeqData(FLUSH_INTERVAL);
+  }
+
+  @Test
+  public void testStaleMergeFile() throws Exception {
+    // a complete merge file left by an earlier merge is not appended to
+    prepareFiles(SEQ_FILE_NUM * PT_NUM);
+    for (TsFileResource seqFile : seqResources) {
+      FileUtils.copyFile(seqFile.getTsFile(),
+          new File(seqFile.getTsFilePath() + MergeTask.MERGE_SUFFIX));
+    }
+
+    MergeTask mergeTask = new MergeTask(new MergeResource(new ArrayList<>(seqResources),
+        new ArrayList<>(unseqResources)), sgDir.getPath(), (seqFiles, unseqFiles, log) -> {
+    }, "test", false, 1, SG);
+    mergeTask.call();
+
+    checkSeqData(SEQ_FILE_NUM * PT_NUM);
+  }
+
+  @Test
+  public void testReplaceCompletedCopy() throws Exception {
+    // the merged chunk is moved to the copy of the first seqFile, and the system stops after the
+    // end of the copy is logged, before the copy replaces the seqFile
+    prepareFiles(FLUSH_INTERVAL);
+    File oldFile = seqResources.get(0).getTsFile();
+    File copyFile = new File(oldFile.getPath() + MergeTask.MERGE_COPY_SUFFIX);
+
+    MergeResource resource = new MergeResource(new ArrayList<>(seqResources),
+        new ArrayList<>(unseqResources));
+    Map<Path, MeasurementSchema> schemas = new HashMap<>();
+    for (int i = 0; i < paths.size(); i++) {
+      schemas.put(paths.get(i), measurementSchemas[i]);
+    }
+    resource.setMeasurementSchemaMap(schemas);
+    MergeLogger mergeLogger = new StoppingMergeLogger(sgDir.getPath(), -1);
+    mergeLogger.logFiles(resource);
+    mergeLogger.logMergeStart();
+    MergeContext context = new MergeContext();
+    MergeMultiChunkTask mergeChunkTask = new MergeMultiChunkTask(context, "test",
+        mergeLogger, resource, false, paths, paths.size(), SG);
+    mergeChunkTask.mergeSeries();
+    MergeFileTask mergeFileTask = new MergeFileTask("test", context, mergeLogger, resource,
+        resource.getSeqFiles());
+    try {
+      mergeFileTask.mergeFiles();
+      fail("the merge should be stopped");
+    } catch (IOException e) {
+      // expected
+    }
+    mergeLogger.close();
+    resource.clear();
+    assertTrue(oldFile.exists());
+    assertTrue(copyFile.exists());
+
+    RecoverMergeTask recoverMergeTask = new RecoverMergeTask(new ArrayList<>(seqResources),
+        new ArrayList<>(unseqResources), sgDir.getPath(), (seqFiles, unseqFiles, log) -> {
+    }, "test", false, SG);
+    recoverMergeTask.recoverMerge(true);
+
+    assertFalse(oldFile.exists());
+    assertFalse(copyFile.exists());
+    assertFalse(new File(oldFile.getPath() + MergeTask.MERGE_SUFFIX).exists());
+    checkSeqData(FLUSH_INTERVAL);
+  }
+
+  /**
+   * @param unseqPtNum the unseq data are from 0 to unseqPtNum, and newer than the seq data
+   */
+  private void prepareFiles(long unseqPtNum) throws Exception {
+    for (int i = 0; i < SEQ_FILE_NUM; i++) {
+      seqResources.add(prepareFile(i + "seq", i, i * PT_NUM, PT_NUM, 0));
+    }
+    unseqResources.add(prepareFile("0unseq", SEQ_FILE_NUM, 0, unseqPtNum, UNSEQ_VALUE_OFFSET));
+  }
+
+  private TsFileResource prepareFile(String prefix, int version, long timeOffset, long ptNum,
+      long valueOffset) throws Exception {
+    File file = new File(TestConstant.BASE_OUTPUT_PATH.concat(
+        prefix + IoTDBConstant.FILE_NAME_SEPARATOR + version + IoTDBConstant.FILE_NAME_SEPARATOR
+            + version + IoTDBConstant.FILE_NAME_SEPARATOR + 0 + ".tsfile"));
+    TsFileResource resource = new TsFileResource(file);
+    resource.setClosed(true);
+    resource.setHistoricalVersions(Collections.singleton((long) version));
+    TsFileWriter fileWriter = new TsFileWriter(file);
+    for (MeasurementSchema measurementSchema : measurementSchemas) {
+      fileWriter.registerTimeseries(new Path(DEVICE, measurementSchema.getMeasurementId()),
+          measurementSchema);
+    }
+    for (long time = timeOffset; time < timeOffset + ptNum; time++) {
+      TSRecord record = new TSRecord(time, DEVICE);
+      for (MeasurementSchema measurementSchema : measurementSchemas) {
+        record.addTuple(DataPoint.getDataPoint(measurementSchema.getType(),
+            measurementSchema.getMeasurementId(), String.valueOf(time + valueOffset)));
+      }
+      fileWriter.write(record);
+      resource.updateStartTime(DEVICE, time);
+      resource.updateEndTime(DEVICE, time);
+      if ((time + 1) % FLUSH_INTERVAL == 0) {
+        fileWriter.flushAllChunkGroups();
+      }
+    }
+    fileWriter.close();
+    return resource;
+  }
+
+  /**
+   * each point of the seqFiles appears once, and the points before unseqPtNum are overwritten by
+   * the unseq data
+   */
+  private void checkSeqData(long unseqPtNum) throws IOException {
+    for (Path path : paths) {
+      IBatchReader reader = new SeriesRawDataBatchReader(path, TSDataType.DOUBLE,
+          new QueryContext(), seqResources, new ArrayList<>(), null, null);
+      long expectedTime = 0;
+      while (reader.hasNextBatch()) {
+        BatchData batchData = reader.nextBatch();
+        for (int i = 0; i < batchData.length(); i++) {
+          long time = batchData.getTimeByIndex(i);
+          assertEquals(expectedTime++, time);
+          double expectedValue = time < unseqPtNum ? time + UNSEQ_VALUE_OFFSET : time;
+          assertEquals(expectedValue, batchData.getDoubleByIndex(i), 0.001);
+        }
+      }
+      reader.close();
+      assertEquals(SEQ_FILE_NUM * PT_NUM, expectedTime);
+    }
+  }
+
+  /**
+   * stops the merge by throwing an exception after some merge file positions are logged, or after
+   * the end of the first merged file is logged if positionsBeforeStop is negative
+   */
+  private static class StoppingMergeLogger extends MergeLogger {
+
+    private int positionsBeforeStop;
+
+    StoppingMergeLogger(String storageGroupDir, int positionsBeforeStop) throws IOException {
+      super(storageGroupDir);
+      this.positionsBeforeStop = positionsBeforeStop;
+    }
+
+    @Override
+    public void logFilePosition(File file) throws IOException {
+      super.logFilePosition(file);
+      if (--positionsBeforeStop == 0) {
+        throw new IOException("the system stops");
+      }
+    }
+
+    @Override
+    public void logFileMergeEnd() throws IOException {
+      super.logFileMergeEnd();
+      if (positionsBeforeStop < 0) {
+        throw new IOException("the system stops");
+      }
+    }
+  }
+}
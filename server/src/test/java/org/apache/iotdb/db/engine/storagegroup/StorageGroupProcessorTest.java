@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.adapter.ActiveTimeSeriesCounter;
 import org.apache.iotdb.db.constant.TestConstant;
 import org.apache.iotdb.db.engine.MetadataManagerHelper;
@@ -43,6 +44,7 @@ import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
 import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.service.StartupPhaseTimer;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
@@ -304,6 +306,48 @@ public class StorageGroupProcessorTest {
     }
   }
 
+  @Test
+  public void testParallelRecover()
+      throws WriteProcessException, StorageGroupProcessorException, IOException {
+    for (int j = 1; j <= 10; j++) {
+      TSRecord record = new TSRecord(j, deviceId);
+      record.addTuple(DataPoint.getDataPoint(TSDataType.INT32, measurementId, String.valueOf(j)));
+      insertToStorageGroupProcessor(record);
+      processor.asyncCloseAllWorkingTsFileProcessors();
+    }
+    processor.syncCloseAllWorkingTsFileProcessors();
+    // the last file is flushed but not sealed
+    TSRecord record = new TSRecord(11, deviceId);
+    record.addTuple(DataPoint.getDataPoint(TSDataType.INT32, measurementId, "11"));
+    insertToStorageGroupProcessor(record);
+    for (TsFileProcessor tsFileProcessor : processor.getWorkSequenceTsFileProcessors()) {
+      tsFileProcessor.syncFlush();
+    }
+    List<TsFileResource> seqFiles = processor.getSequenceFileTreeSet();
+
+    int prevRecoveryThread = IoTDBDescriptor.getInstance().getConfig()
+        .getConcurrentRecoveryThread();
+    IoTDBDescriptor.getInstance().getConfig().setConcurrentRecoveryThread(4);
+    try {
+      StorageGroupProcessor recovered = new DummySGP(systemDir, storageGroup);
+      List<TsFileResource> recoveredSeqFiles = recovered.getSequenceFileTreeSet();
+      Assert.assertEquals(seqFiles.size(), recoveredSeqFiles.size());
+      for (int i = 0; i < seqFiles.size(); i++) {
+        Assert.assertEquals(seqFiles.get(i).getTsFile().getName(),
+            recoveredSeqFiles.get(i).getTsFile().getName());
+        Assert.assertEquals(i < seqFiles.size() - 1, recoveredSeqFiles.get(i).isClosed());
+      }
+      Assert.assertEquals(1, recovered.getWorkSequenceTsFileProcessors().size());
+      Assert.assertEquals(11,
+          recoveredSeqFiles.get(recoveredSeqFiles.size() - 1).getEndTime(deviceId));
+      Assert.assertTrue(
+          StartupPhaseTimer.getInstance().getTimeCost("recover TsFiles") >= 0);
+      recovered.syncCloseAllWorkingTsFileProcessors();
+    } finally {
+      IoTDBDescriptor.getInstance().getConfig().setConcurrentRecoveryThread(prevRecoveryThread);
+    }
+  }
+
   class DummySGP extends StorageGroupProcessor {
 
     DummySGP(String systemInfoDir, String storageGroupName) throws StorageGroupProcessorException {
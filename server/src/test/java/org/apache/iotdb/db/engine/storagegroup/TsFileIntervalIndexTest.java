@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.iotdb.tsfile.read.filter.TimeFilter;
+import org.apache.iotdb.tsfile.read.filter.basic.Filter;
+import org.apache.iotdb.tsfile.read.filter.factory.FilterFactory;
+import org.junit.Test;
+
+public class TsFileIntervalIndexTest {
+
+  private TsFileResource createResource(int fileIndex, long startTime, long endTime,
+      boolean closed) {
+    TsFileResource resource = new TsFileResource(
+        new File(fileIndex + "-" + fileIndex + "-0.tsfile"));
+    resource.putStartTime("root.sg.d" + fileIndex % 3, startTime);
+    resource.putEndTime("root.sg.d" + fileIndex % 3, endTime);
+    resource.setClosed(closed);
+    return resource;
+  }
+
+  private List<TsFileResource> scan(List<TsFileResource> resources, Filter timeFilter) {
+    List<TsFileResource> result = new ArrayList<>();
+    for (TsFileResource resource : resources) {
+      if (timeFilter.satisfyStartEndTime(resource.getFileStartTime(),
+          resource.getFileEndTime())) {
+        result.add(resource);
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testQuery() {
+    Random random = new Random(1);
+    TsFileIntervalIndex index = new TsFileIntervalIndex();
+    List<TsFileResource> resources = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      long startTime = random.nextInt(100000);
+      TsFileResource resource = createResource(i, startTime, startTime + random.nextInt(1000),
+          true);
+      resources.add(resource);
+      index.add(resource);
+    }
+    // remove some files in the middle of the tree
+    for (int i = 0; i < 1000; i += 7) {
+      index.remove(resources.get(i));
+    }
+    resources.removeIf(r -> Integer.parseInt(r.getTsFile().getName().split("-")[0]) % 7 == 0);
+    assertEquals(resources.size(), index.size());
+
+    for (int i = 0; i < 100; i++) {
+      long startTime = random.nextInt(101000);
+      Filter timeFilter = FilterFactory.and(TimeFilter.gtEq(startTime),
+          TimeFilter.ltEq(startTime + random.nextInt(2000)));
+      assertEquals(scan(resources, timeFilter), index.query(timeFilter));
+    }
+    assertEquals(resources, index.query(null));
+  }
+
+  @Test
+  public void testUnsealedFile() {
+    TsFileIntervalIndex index = new TsFileIntervalIndex();
+    TsFileResource sealed = createResource(0, 100, 200, true);
+    TsFileResource unsealed = createResource(1, 300, 400, false);
+    index.add(sealed);
+    index.add(unsealed);
+
+    // the unsealed file may get any data
+    Filter timeFilter = FilterFactory.and(TimeFilter.gtEq(1000), TimeFilter.ltEq(2000));
+    assertEquals(1, index.query(timeFilter).size());
+    assertTrue(index.query(timeFilter).contains(unsealed));
+
+    // indexed again with its own time range when it is closed
+    unsealed.setClosed(true);
+    index.add(unsealed);
+    assertEquals(2, index.size());
+    assertTrue(index.query(timeFilter).isEmpty());
+    timeFilter = FilterFactory.and(TimeFilter.gtEq(150), TimeFilter.ltEq(350));
+    List<TsFileResource> result = index.query(timeFilter);
+    assertEquals(2, result.size());
+    // the files are returned in the order they are added
+    assertEquals(sealed, result.get(0));
+    assertEquals(unsealed, result.get(1));
+  }
+}
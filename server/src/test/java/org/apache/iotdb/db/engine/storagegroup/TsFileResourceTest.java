@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TsFileResourceTest {
+
+  private static final String DIR = TestConstant.BASE_OUTPUT_PATH.concat("resourceTest");
+  private static final int DEVICE_NUM = 10;
+
+  private long prevCacheSize;
+
+  @Before
+  public void setUp() {
+    prevCacheSize = IoTDBDescriptor.getInstance().getConfig().getResourceIndexCacheSize();
+    new File(DIR).mkdirs();
+    TsFileResourceIndexCache.getInstance().clear();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    IoTDBDescriptor.getInstance().getConfig().setResourceIndexCacheSize(prevCacheSize);
+    TsFileResourceIndexCache.getInstance().clear();
+    EnvironmentUtils.cleanDir(DIR);
+  }
+
+  private TsFileResource createResource(int fileIndex) throws IOException {
+    TsFileResource resource = new TsFileResource(
+        new File(DIR, System.currentTimeMillis() + "-" + fileIndex + "-0.tsfile"));
+    resource.setHistoricalVersions(Collections.singleton((long) fileIndex));
+    for (int i = 0; i < DEVICE_NUM; i++) {
+      resource.putStartTime("root.sg.d" + i, fileIndex * 100L + i);
+      resource.putEndTime("root.sg.d" + i, fileIndex * 100L + i + 10);
+    }
+    resource.serialize();
+    return resource;
+  }
+
+  @Test
+  public void testCompactIndex() throws IOException {
+    TsFileResource resource = createResource(0);
+    Map<String, Integer> unsealedIndex = resource.getDeviceToIndexMap();
+    resource.close();
+
+    Map<String, Integer> sealedIndex = resource.getDeviceToIndexMap();
+    assertTrue(sealedIndex instanceof CompactDeviceIndexMap);
+    assertEquals(unsealedIndex, sealedIndex);
+    assertNull(sealedIndex.get("root.sg.d" + DEVICE_NUM));
+    Iterator<Entry<String, Integer>> iterator = sealedIndex.entrySet().iterator();
+    for (int i = 0; i < DEVICE_NUM; i++) {
+      assertEquals(i, (int) iterator.next().getValue());
+    }
+    assertFalse(iterator.hasNext());
+    for (int i = 0; i < DEVICE_NUM; i++) {
+      assertEquals(i, resource.getStartTime("root.sg.d" + i));
+      assertEquals(i + 10, resource.getEndTime("root.sg.d" + i));
+    }
+    assertEquals(Long.MAX_VALUE, resource.getStartTime("root.sg.d" + DEVICE_NUM));
+
+    // a new device makes the index modifiable again
+    resource.putEndTime("root.sg.d" + DEVICE_NUM, 1000);
+    assertEquals(1000, resource.getEndTime("root.sg.d" + DEVICE_NUM));
+    assertEquals(DEVICE_NUM + 1, resource.getDeviceToIndexMap().size());
+    assertEquals(5, resource.getStartTime("root.sg.d5"));
+  }
+
+  @Test
+  public void testUnloadAndLoad() throws IOException {
+    IoTDBDescriptor.getInstance().getConfig().setResourceIndexCacheSize(3L * DEVICE_NUM);
+    List<TsFileResource> resources = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      TsFileResource resource = createResource(i);
+      resource.setClosed(true);
+      resources.add(resource);
+    }
+    // the earliest indexes are unloaded
+    assertFalse(resources.get(0).isTimeIndexLoaded());
+    assertFalse(resources.get(1).isTimeIndexLoaded());
+    for (int i = 2; i < 5; i++) {
+      assertTrue(resources.get(i).isTimeIndexLoaded());
+    }
+    assertEquals(3L * DEVICE_NUM, TsFileResourceIndexCache.getInstance().getLoadedDeviceNum());
+
+    // an unloaded index is loaded when used, with the same indexes
+    TsFileResource resource = resources.get(0);
+    assertEquals(3, resource.getStartTime("root.sg.d3"));
+    assertTrue(resource.isTimeIndexLoaded());
+    for (int i = 0; i < DEVICE_NUM; i++) {
+      int index = resource.getDeviceToIndexMap().get("root.sg.d" + i);
+      assertEquals(i, index);
+      assertEquals(i + 10, resource.getEndTime(index));
+    }
+    assertFalse(resources.get(2).isTimeIndexLoaded());
+  }
+
+  @Test
+  public void testModifiedIndexNotUnloaded() throws IOException {
+    IoTDBDescriptor.getInstance().getConfig().setResourceIndexCacheSize(DEVICE_NUM);
+    TsFileResource modified = createResource(0);
+    modified.setClosed(true);
+    modified.putStartTime("root.sg.d0", -1);
+
+    TsFileResource other = createResource(1);
+    other.setClosed(true);
+    assertTrue(modified.isTimeIndexLoaded());
+    assertEquals(-1, modified.getStartTime("root.sg.d0"));
+
+    // it can be unloaded after it is serialized
+    modified.serialize();
+    createResource(2).setClosed(true);
+    assertFalse(modified.isTimeIndexLoaded());
+    assertEquals(-1, modified.getStartTime("root.sg.d0"));
+  }
+
+  @Test
+  public void testRecentlyUsedIndexNotUnloaded() throws IOException {
+    IoTDBDescriptor.getInstance().getConfig().setResourceIndexCacheSize(2L * DEVICE_NUM);
+    TsFileResource used = createResource(0);
+    used.setClosed(true);
+    TsFileResource unused = createResource(1);
+    unused.setClosed(true);
+
+    // the earlier index is kept as it is used after the later one is loaded
+    assertEquals(0, used.getStartTime("root.sg.d0"));
+    createResource(2).setClosed(true);
+    assertTrue(used.isTimeIndexLoaded());
+    assertFalse(unused.isTimeIndexLoaded());
+    assertEquals(2L * DEVICE_NUM, TsFileResourceIndexCache.getInstance().getLoadedDeviceNum());
+  }
+
+  @Test
+  public void testLoadWithoutResourceFile() throws IOException {
+    IoTDBDescriptor.getInstance().getConfig().setResourceIndexCacheSize(DEVICE_NUM);
+    TsFileResource removed = createResource(0);
+    removed.setClosed(true);
+    TsFileResource moved = createResource(1);
+    moved.setClosed(true);
+    createResource(2).setClosed(true);
+    assertFalse(removed.isTimeIndexLoaded());
+    assertFalse(moved.isTimeIndexLoaded());
+
+    // a removed file has no device
+    removed.remove();
+    assertEquals(Long.MAX_VALUE, removed.getStartTime("root.sg.d0"));
+    assertEquals(Long.MIN_VALUE, removed.getEndTime("root.sg.d0"));
+
+    // a moved file keeps its index
+    File targetDir = new File(DIR, "moved");
+    targetDir.mkdirs();
+    moved.moveTo(targetDir);
+    createResource(3).setClosed(true);
+    assertTrue(moved.isTimeIndexLoaded());
+    assertEquals(100, moved.getStartTime("root.sg.d0"));
+  }
+
+  @Test
+  public void testFileTimeRangeWithoutIndex() throws IOException {
+    IoTDBDescriptor.getInstance().getConfig().setResourceIndexCacheSize(DEVICE_NUM);
+    TsFileResource resource = createResource(1);
+    resource.setClosed(true);
+    assertEquals(100, resource.getFileStartTime());
+    assertEquals(119, resource.getFileEndTime());
+
+    // the time range of the unloaded index is used without loading it
+    createResource(2).setClosed(true);
+    assertFalse(resource.isTimeIndexLoaded());
+    assertEquals(100, resource.getFileStartTime());
+    assertEquals(119, resource.getFileEndTime());
+    assertFalse(resource.isTimeIndexLoaded());
+
+    // an update of the index changes the time range
+    resource.putEndTime("root.sg.d0", 1000);
+    assertEquals(1000, resource.getFileEndTime());
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.throttle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.write.writer.TsFileIOWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IORateLimiterTest {
+
+  private IORateLimiter limiter = IORateLimiter.getInstance();
+  private int prevThroughput;
+  private long prevThreshold;
+
+  @Before
+  public void setUp() {
+    prevThroughput = IoTDBDescriptor.getInstance().getConfig().getBackgroundIOThroughputMbPerSec();
+    prevThreshold = IoTDBDescriptor.getInstance().getConfig().getMergeBackoffLatencyThresholdMs();
+    limiter.setThroughputMbPerSec(1);
+    limiter.setMergeBackoffLatencyThresholdMs(0);
+  }
+
+  @After
+  public void tearDown() {
+    IORateLimiter.setPriority(null);
+    limiter.setThroughputMbPerSec(prevThroughput);
+    limiter.setMergeBackoffLatencyThresholdMs(prevThreshold);
+  }
+
+  @Test
+  public void testForegroundNotLimited() throws IOException {
+    long flushBytes = limiter.getFlushBytes();
+    long mergeBytes = limiter.getMergeBytes();
+    long startTime = System.currentTimeMillis();
+    limiter.acquire(100 * 1024 * 1024);
+    assertTrue(System.currentTimeMillis() - startTime < 1000);
+    assertEquals(flushBytes, limiter.getFlushBytes());
+    assertEquals(mergeBytes, limiter.getMergeBytes());
+  }
+
+  @Test
+  public void testFlushPriority() throws IOException {
+    long startTime = System.currentTimeMillis();
+    IORateLimiter.setPriority(IOPriority.FLUSH);
+    // a flush never waits, even if it overdraws the bucket
+    limiter.acquire(2 * 1024 * 1024);
+    assertTrue(System.currentTimeMillis() - startTime < 1000);
+
+    // a merge waits until the bytes of the flush are paid off
+    IORateLimiter.setPriority(IOPriority.MERGE);
+    limiter.acquire(1);
+    assertTrue(System.currentTimeMillis() - startTime >= 900);
+  }
+
+  @Test
+  public void testMergeBackoff() {
+    limiter.setMergeBackoffLatencyThresholdMs(10);
+    for (int i = 0; i < 100; i++) {
+      limiter.recordForegroundLatency(100);
+    }
+    long time = System.currentTimeMillis();
+    limiter.take(0, time + 1000);
+    assertEquals(0.5, limiter.getMergeRateRatio(), 0.0001);
+    // adjusted at most once a second
+    limiter.take(0, time + 1500);
+    assertEquals(0.5, limiter.getMergeRateRatio(), 0.0001);
+    for (int i = 2; i <= 10; i++) {
+      limiter.take(0, time + i * 1000);
+    }
+    assertEquals(1.0 / 16, limiter.getMergeRateRatio(), 0.0001);
+
+    // recovers once the latency falls
+    for (int i = 0; i < 100; i++) {
+      limiter.recordForegroundLatency(0);
+    }
+    limiter.take(0, time + 11_000);
+    assertEquals(2.0 / 16, limiter.getMergeRateRatio(), 0.0001);
+
+    limiter.setMergeBackoffLatencyThresholdMs(0);
+    assertEquals(1.0, limiter.getMergeRateRatio(), 0.0001);
+  }
+
+  @Test
+  public void testConcurrentLatencyRecords() throws InterruptedException {
+    limiter.setMergeBackoffLatencyThresholdMs(10);
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          limiter.recordForegroundLatency(100);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // no record is lost, whatever the order is
+    assertEquals(100 * (1 - Math.pow(0.9, 4000)), limiter.getAverageLatency(), 0.0001);
+  }
+
+  @Test
+  public void testThrottledOutput() throws IOException {
+    limiter.setThroughputMbPerSec(0);
+    File file = new File("target", "IORateLimiterTest.tsfile");
+    FSFactoryProducer.setIOThrottle(limiter);
+    IORateLimiter.setPriority(IOPriority.MERGE);
+    try {
+      long mergeBytes = limiter.getMergeBytes();
+      TsFileIOWriter writer = new TsFileIOWriter(file);
+      writer.endFile();
+      assertEquals(file.length(), limiter.getMergeBytes() - mergeBytes);
+    } finally {
+      FSFactoryProducer.setIOThrottle(null);
+      assertTrue(file.delete());
+    }
+  }
+}
@@ -22,9 +22,7 @@ package org.apache.iotdb.db.integration;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
@@ -68,32 +66,13 @@ public class IoTDBCreateSnapshotIT {
 
       // create snapshot
       statement.execute("CREATE SNAPSHOT FOR SCHEMA");
-      File snapshotFile = new File(config.getSchemaDir() + File.separator + "mtree-1.snapshot");
+      File snapshotFile = new File(config.getSchemaDir() + File.separator + "mtree-2.snapshot");
 
       // test snapshot file exists
       Assert.assertTrue(snapshotFile.exists());
-
-      // test snapshot content correct
-      String[] exp = new String[]{
-          "2,s0,,1,2,1,,-1,0",
-          "2,s1,,2,2,1,,-1,0",
-          "2,s2,,3,2,1,,-1,0",
-          "2,s3,,5,0,1,,-1,0",
-          "2,s4,,0,0,1,,-1,0",
-          "1,d0,9223372036854775807,5",
-          "2,s0,,1,2,1,,-1,0",
-          "2,s1,,5,0,1,,-1,0",
-          "2,s2,,0,0,1,,-1,0",
-          "1,d1,9223372036854775807,3",
-          "0,vehicle,2",
-          "0,root,1"
-      };
-
-      try (BufferedReader br = new BufferedReader(new FileReader(snapshotFile))) {
-        for (String line : exp) {
-          Assert.assertEquals(line, br.readLine());
-        }
-      }
+      // the metadata log is cleared, so the restart below reads the snapshot only
+      Assert.assertEquals(0,
+          new File(config.getSchemaDir() + File.separator + "mlog.bin").length());
     } catch (Exception e) {
       e.printStackTrace();
       fail(e.getMessage());
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+
+/**
+ * Bench the auto creation of the schemas when many writers insert into new devices at the same
+ * time, with the missing timeseries created per device when each row is inserted, or in a batch per
+ * request.
+ */
+public class AutoCreateSchemaBenchmark {
+
+  private static int numOfWorker = 8;
+  private static int numOfRequestPerWorker = 200;
+  private static int numOfDevicePerRequest = 20;
+  private static int numOfMeasurement = 10;
+
+  private static String[] measurements = new String[numOfMeasurement];
+  private static String[] values = new String[numOfMeasurement];
+
+  static {
+    for (int i = 0; i < numOfMeasurement; i++) {
+      measurements[i] = "measurement_" + i;
+      values[i] = String.valueOf(i);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    for (boolean inBatch : new boolean[]{false, true}) {
+      EnvironmentUtils.envSetUp();
+      IoTDB.metaManager.setStorageGroup("root.bench");
+      long elapsed = run(inBatch);
+      System.out.println(String.format("%s: %d timeseries in %d ms",
+          inBatch ? "per request" : "per device",
+          (long) numOfWorker * numOfRequestPerWorker * numOfDevicePerRequest * numOfMeasurement,
+          elapsed));
+      EnvironmentUtils.cleanEnv();
+    }
+  }
+
+  private static long run(boolean inBatch) throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(numOfWorker);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < numOfWorker; i++) {
+      int worker = i;
+      new Thread(() -> {
+        try {
+          for (int r = 0; r < numOfRequestPerWorker; r++) {
+            insert(worker, r, inBatch);
+          }
+        } catch (Exception e) {
+          e.printStackTrace();
+        } finally {
+          latch.countDown();
+        }
+      }).start();
+    }
+    latch.await();
+    return System.currentTimeMillis() - start;
+  }
+
+  private static void insert(int worker, int request, boolean inBatch) throws Exception {
+    MManager manager = IoTDB.metaManager;
+    List<InsertRowPlan> plans = new ArrayList<>(numOfDevicePerRequest);
+    for (int d = 0; d < numOfDevicePerRequest; d++) {
+      String device = "root.bench.w" + worker + ".r" + request + ".d" + d;
+      plans.add(new InsertRowPlan(device, 1, measurements.clone(), values));
+    }
+    if (inBatch) {
+      manager.autoCreateTimeseries(plans);
+    }
+    for (InsertRowPlan plan : plans) {
+      manager.getSeriesSchemasAndReadLockDevice(plan.getDeviceId(), plan.getMeasurements(), plan);
+      manager.unlockDeviceReadLock(plan);
+    }
+  }
+}
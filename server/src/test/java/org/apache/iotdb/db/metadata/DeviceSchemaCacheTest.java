@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
+import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
+import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeviceSchemaCacheTest {
+
+  private MManager mManager;
+
+  @Before
+  public void setUp() throws Exception {
+    EnvironmentUtils.envSetUp();
+    mManager = IoTDB.metaManager;
+    mManager.setStorageGroup("root.sg");
+    mManager.createTimeseries("root.sg.d1.s1", TSDataType.INT64, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.emptyMap());
+    mManager.createTimeseries(new CreateTimeSeriesPlan(new Path("root.sg.d1.s2"),
+        TSDataType.DOUBLE, TSEncoding.GORILLA, CompressionType.SNAPPY, null, null, null,
+        "temperature"));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    EnvironmentUtils.cleanEnv();
+  }
+
+  @Test
+  public void testSharedSchemas() throws MetadataException {
+    MeasurementSchema[] schemas = getSchemas(rowPlan("s1", "temperature"));
+    InsertRowPlan plan = rowPlan("s1", "temperature");
+    MeasurementSchema[] cached = getSchemas(plan);
+    assertSame(schemas, cached);
+    assertEquals(TSDataType.DOUBLE, cached[1].getType());
+    // the alias is resolved by a hit too
+    assertArrayEquals(new String[]{"s1", "s2"}, plan.getMeasurements());
+
+    // the entry is keyed by the measurements in the insertion
+    schemas = getSchemas(rowPlan("s1", "s2"));
+    assertNotSame(cached, schemas);
+    InsertTabletPlan tabletPlan = new InsertTabletPlan("root.sg.d1", new String[]{"s1", "s2"});
+    tabletPlan.setDataTypes(new TSDataType[]{TSDataType.INT64, TSDataType.DOUBLE});
+    assertSame(schemas, getSchemas(tabletPlan));
+  }
+
+  @Test
+  public void testInvalidation() throws MetadataException {
+    MeasurementSchema[] schemas = getSchemas(rowPlan("s1", "s2"));
+    // a new timeseries does not change the resolved ones
+    mManager.createTimeseries("root.sg.d2.s1", TSDataType.INT64, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.emptyMap());
+    mManager.createTimeseries("root.sg.d1.s3", TSDataType.INT64, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.emptyMap());
+    assertSame(schemas, getSchemas(rowPlan("s1", "s2")));
+
+    // a changed alias may resolve to another timeseries
+    MeasurementSchema[] aliased = getSchemas(rowPlan("s1", "temperature"));
+    mManager.changeAlias("root.sg.d1.s2", "humidity");
+    assertNotSame(aliased, getSchemas(rowPlan("s1", "s2")));
+
+    mManager.deleteTimeseries("root.sg.d1.s2");
+    mManager.createTimeseries("root.sg.d1.s2", TSDataType.INT32, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.emptyMap());
+    InsertRowPlan plan = new InsertRowPlan("root.sg.d1", 1, new String[]{"s1", "s2"},
+        new TSDataType[]{TSDataType.INT64, TSDataType.INT32}, new Object[]{1L, 1});
+    MeasurementSchema[] afterDeletion = getSchemas(plan);
+    assertEquals(TSDataType.INT32, afterDeletion[1].getType());
+    assertNull(plan.getFailedMeasurements());
+  }
+
+  @Test
+  public void testTypeMismatch() throws MetadataException {
+    boolean enablePartialInsert = IoTDBDescriptor.getInstance().getConfig().isEnablePartialInsert();
+    IoTDBDescriptor.getInstance().getConfig().setEnablePartialInsert(true);
+    try {
+      MeasurementSchema[] schemas = getSchemas(rowPlan("s1", "s2"));
+      InsertRowPlan plan = new InsertRowPlan("root.sg.d1", 1, new String[]{"s1", "s2"},
+          new TSDataType[]{TSDataType.INT64, TSDataType.INT32}, new Object[]{1L, 1});
+      MeasurementSchema[] mismatched = getSchemas(plan);
+      assertNotSame(schemas, mismatched);
+      assertEquals(Collections.singletonList("s2"), plan.getFailedMeasurements());
+      // the cached schemas are not replaced by the failed plan
+      assertSame(schemas, getSchemas(rowPlan("s1", "s2")));
+    } finally {
+      IoTDBDescriptor.getInstance().getConfig().setEnablePartialInsert(enablePartialInsert);
+    }
+  }
+
+  private InsertRowPlan rowPlan(String... measurements) {
+    return new InsertRowPlan("root.sg.d1", 1, measurements,
+        new TSDataType[]{TSDataType.INT64, TSDataType.DOUBLE}, new Object[]{1L, 1.0});
+  }
+
+  private MeasurementSchema[] getSchemas(InsertPlan plan) throws MetadataException {
+    try {
+      return mManager
+          .getSeriesSchemasAndReadLockDevice(plan.getDeviceId(), plan.getMeasurements(), plan);
+    } finally {
+      mManager.unlockDeviceReadLock(plan);
+    }
+  }
+}
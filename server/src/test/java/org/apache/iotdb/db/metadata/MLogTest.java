@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.StorageEngineException;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MLogTest {
+
+  private File logDir = new File("target" + File.separator + "mlog-test");
+
+  @Before
+  public void setUp() {
+    EnvironmentUtils.envSetUp();
+  }
+
+  @After
+  public void tearDown() throws IOException, StorageEngineException {
+    FileUtils.deleteDirectory(logDir);
+    EnvironmentUtils.cleanEnv();
+  }
+
+  @Test
+  public void testReadWrittenPlans() throws IOException {
+    MLogWriter writer = new MLogWriter(logDir.getPath(), MetadataConstant.METADATA_LOG);
+    writer.setStorageGroup("root.sg");
+    writer.createTimeseries(new CreateTimeSeriesPlan(new Path("root.sg.d1.s1"), TSDataType.INT64,
+        TSEncoding.RLE, CompressionType.SNAPPY, Collections.singletonMap("max_point_number", "2"),
+        Collections.singletonMap("tag", "v"), null, "speed"), 100);
+    writer.changeAlias("root.sg.d1.s1", "velocity");
+    writer.setTTL("root.sg", 1000);
+    writer.deleteTimeseries("root.sg.d1.s1");
+    writer.close();
+
+    List<String> lines = new ArrayList<>();
+    try (MLogReader reader = new MLogReader(new File(logDir, MetadataConstant.METADATA_LOG))) {
+      while (reader.hasNext()) {
+        PhysicalPlan plan = reader.next();
+        if (plan instanceof CreateTimeSeriesPlan) {
+          assertEquals(100, ((CreateTimeSeriesPlan) plan).getTagOffset());
+          // the tags are read from the tag file
+          assertNull(((CreateTimeSeriesPlan) plan).getTags());
+        }
+        lines.add(MLogWriter.toTxtOperation(plan));
+      }
+      assertFalse(reader.isCorrupted());
+    }
+    assertEquals(5, lines.size());
+    assertEquals("2,root.sg", lines.get(0));
+    assertEquals("0,root.sg.d1.s1,2,2,1,max_point_number=2,speed,", lines.get(1));
+    assertEquals("13,root.sg.d1.s1,velocity", lines.get(2));
+    assertEquals("10,root.sg,1000", lines.get(3));
+    assertEquals("1,root.sg.d1.s1", lines.get(4));
+  }
+
+  @Test
+  public void testTornTail() throws IOException {
+    File logFile = new File(logDir, MetadataConstant.METADATA_LOG);
+    MLogWriter writer = new MLogWriter(logDir.getPath(), MetadataConstant.METADATA_LOG);
+    writer.setStorageGroup("root.sg1");
+    writer.setStorageGroup("root.sg2");
+    writer.close();
+    long validLength = logFile.length();
+    // a crash when writing the third entry
+    try (FileOutputStream outputStream = new FileOutputStream(logFile, true)) {
+      outputStream.write(new byte[]{0, 0, 0, 20, 3, 1});
+    }
+
+    try (MLogReader reader = new MLogReader(logFile)) {
+      assertTrue(reader.hasNext());
+      reader.next();
+      assertTrue(reader.hasNext());
+      reader.next();
+      assertFalse(reader.hasNext());
+      assertTrue(reader.isCorrupted());
+      assertEquals(validLength, reader.getValidLength());
+    }
+  }
+
+  @Test
+  public void testUndeserializableEntry() throws IOException {
+    File logFile = new File(logDir, MetadataConstant.METADATA_LOG);
+    MLogWriter writer = new MLogWriter(logDir.getPath(), MetadataConstant.METADATA_LOG);
+    writer.setStorageGroup("root.sg1");
+    writer.close();
+    appendUnrecognizedEntry(logFile);
+
+    try (MLogReader reader = new MLogReader(logFile)) {
+      assertTrue(reader.hasNext());
+      reader.next();
+      try {
+        reader.hasNext();
+        fail();
+      } catch (IOException e) {
+        assertFalse(reader.isCorrupted());
+      }
+    }
+  }
+
+  @Test
+  public void testNotTruncateUndeserializableEntry() throws MetadataException, IOException {
+    MManager manager = IoTDB.metaManager;
+    manager.setStorageGroup("root.sg1");
+    manager.clear();
+
+    File logFile = new File(IoTDBDescriptor.getInstance().getConfig().getSchemaDir(),
+        MetadataConstant.METADATA_LOG);
+    appendUnrecognizedEntry(logFile);
+    long length = logFile.length();
+    try {
+      manager.init();
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals(length, logFile.length());
+    }
+
+    // the entry is dropped manually, and the storage group written before it is recovered
+    try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+      channel.truncate(length - 2 - 2 * Integer.BYTES);
+    }
+    manager.init();
+    assertTrue(manager.isPathExist("root.sg1"));
+  }
+
+  /**
+   * append an entry of an unrecognized plan type, whose checksum is valid
+   */
+  private void appendUnrecognizedEntry(File logFile) throws IOException {
+    byte[] entry = new byte[]{Byte.MAX_VALUE, 0};
+    CRC32 crc32 = new CRC32();
+    crc32.update(entry, 0, entry.length);
+    try (DataOutputStream outputStream = new DataOutputStream(
+        new FileOutputStream(logFile, true))) {
+      outputStream.writeInt(entry.length);
+      outputStream.write(entry);
+      outputStream.writeInt((int) crc32.getValue());
+    }
+  }
+
+  @Test
+  public void testRecoverFromTornLog() throws MetadataException, IOException {
+    MManager manager = IoTDB.metaManager;
+    manager.setStorageGroup("root.sg1");
+    manager.createTimeseries("root.sg1.d1.s1", TSDataType.INT32, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.emptyMap());
+    manager.clear();
+
+    File logFile = new File(IoTDBDescriptor.getInstance().getConfig().getSchemaDir(),
+        MetadataConstant.METADATA_LOG);
+    try (FileOutputStream outputStream = new FileOutputStream(logFile, true)) {
+      outputStream.write(new byte[]{0, 0, 1});
+    }
+    manager.init();
+    assertTrue(manager.isPathExist("root.sg1.d1.s1"));
+
+    // the torn tail is truncated, so the new entries can be read after restarting
+    manager.createTimeseries("root.sg1.d1.s2", TSDataType.INT32, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.emptyMap());
+    manager.clear();
+    manager.init();
+    assertTrue(manager.isPathExist("root.sg1.d1.s1"));
+    assertTrue(manager.isPathExist("root.sg1.d1.s2"));
+  }
+
+  @Test
+  public void testConvertTxtMetadata() throws MetadataException, IOException {
+    MManager manager = IoTDB.metaManager;
+    manager.clear();
+    String schemaDir = IoTDBDescriptor.getInstance().getConfig().getSchemaDir();
+    FileUtils.deleteQuietly(new File(schemaDir, MetadataConstant.METADATA_LOG));
+    File txtSnapshot = new File(schemaDir, MetadataConstant.MTREE_TXT_SNAPSHOT);
+    File txtLog = new File(schemaDir, MetadataConstant.METADATA_TXT_LOG);
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(txtSnapshot))) {
+      writer.write("2,s1,speed,1,2,1,,-1,0\n");
+      writer.write("1,d1,1000,1\n");
+      writer.write("0,sg,1\n");
+      writer.write("0,root,1\n");
+    }
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(txtLog))) {
+      writer.write("0,root.sg.d1.s2,2,2,1,,,\n");
+      writer.write("2,root.sg2\n");
+    }
+
+    manager.init();
+    assertTrue(manager.isPathExist("root.sg.d1.s1"));
+    assertTrue(manager.isPathExist("root.sg.d1.s2"));
+    assertEquals("root.sg2", manager.getStorageGroupName("root.sg2.d1.s1"));
+    assertEquals("speed",
+        ((MeasurementMNode) manager.getNodeByPath("root.sg.d1.s1")).getAlias());
+    assertFalse(txtSnapshot.exists());
+    assertFalse(txtLog.exists());
+    assertTrue(new File(schemaDir, MetadataConstant.MTREE_SNAPSHOT).exists());
+
+    // the converted metadata is read from the binary snapshot
+    manager.clear();
+    manager.init();
+    assertTrue(manager.isPathExist("root.sg.d1.s2"));
+    assertEquals(1000, manager.getStorageGroupNode("root.sg.d1").getDataTTL());
+  }
+}
@@ -20,12 +20,17 @@ package org.apache.iotdb.db.metadata;
 
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
+import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
+import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
 import org.apache.iotdb.db.service.IoTDB;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.Path;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -406,4 +411,64 @@ public class MManagerBasicTest {
       fail(e.getMessage());
     }
   }
+
+  @Test
+  public void testAutoCreateTimeseriesInBatch() throws Exception {
+    MManager manager = IoTDB.metaManager;
+    manager.setStorageGroup("root.sg");
+    manager.createTimeseries("root.sg.d0.s0", TSDataType.INT64, TSEncoding.PLAIN,
+        compressionType, Collections.emptyMap());
+
+    List<InsertPlan> plans = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      plans.add(new InsertRowPlan("root.sg.d" + i, 1, new String[]{"s0", "s1"},
+          new String[]{"1", "true"}));
+    }
+    plans.add(new InsertTabletPlan("root.sg.d3", new String[]{"s0"},
+        Collections.singletonList(TSDataType.DOUBLE.ordinal())));
+    manager.autoCreateTimeseries(plans);
+
+    List<String> expected = Arrays.asList("root.sg.d0.s0", "root.sg.d0.s1", "root.sg.d1.s0",
+        "root.sg.d1.s1", "root.sg.d2.s0", "root.sg.d2.s1", "root.sg.d3.s0");
+    List<String> timeseries = manager.getAllTimeseriesName("root");
+    Collections.sort(timeseries);
+    assertEquals(expected, timeseries);
+    assertEquals(TSDataType.BOOLEAN, manager.getSeriesType("root.sg.d1.s1"));
+    assertEquals(TSDataType.DOUBLE, manager.getSeriesType("root.sg.d3.s0"));
+
+    // the timeseries created in the batch are logged
+    manager.clear();
+    manager.init();
+    timeseries = manager.getAllTimeseriesName("root");
+    Collections.sort(timeseries);
+    assertEquals(expected, timeseries);
+
+    Map<String, MetadataException> failures = manager.createTimeseries(Arrays.asList(
+        new CreateTimeSeriesPlan(new Path("sg.d4.s0"), TSDataType.INT32,
+            TSEncoding.PLAIN, compressionType, null, null, null, null),
+        new CreateTimeSeriesPlan(new Path("root.sg.d4.s0"), TSDataType.INT32,
+            TSEncoding.PLAIN, compressionType, null, null, null, null)));
+    assertEquals(Collections.singleton("sg.d4.s0"), failures.keySet());
+    assertTrue(manager.isPathExist("root.sg.d4.s0"));
+  }
+
+  @Test
+  public void testAutoCreateTimeseriesOfCachedDevice() throws Exception {
+    MManager manager = IoTDB.metaManager;
+    manager.setStorageGroup("root.sg");
+    InsertRowPlan plan = new InsertRowPlan("root.sg.d0", 1, new String[]{"s0", "s1"},
+        new String[]{"1", "2"});
+    manager.getSeriesSchemasAndReadLockDevice(plan.getDeviceId(), plan.getMeasurements(), plan);
+    manager.unlockDeviceReadLock(plan);
+
+    // the cached schemas are skipped
+    plan = new InsertRowPlan("root.sg.d0", 2, new String[]{"s0", "s1"}, new String[]{"1", "2"});
+    manager.autoCreateTimeseries(Collections.singletonList(plan));
+    assertEquals(2, manager.getAllTimeseriesName("root").size());
+
+    // the cached schemas are stale once a timeseries is deleted
+    manager.deleteTimeseries("root.sg.d0.s1");
+    manager.autoCreateTimeseries(Collections.singletonList(plan));
+    assertTrue(manager.isPathExist("root.sg.d0.s1"));
+  }
 }
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.junit.After;
+import org.junit.Test;
+
+public class MTreeSnapshotTest {
+
+  private File snapshot = new File("target" + File.separator + MetadataConstant.MTREE_SNAPSHOT);
+
+  @After
+  public void tearDown() {
+    snapshot.delete();
+  }
+
+  @Test
+  public void testSerializeAndDeserialize() throws MetadataException, IOException {
+    MTree mTree = new MTree();
+    for (int sg = 0; sg < 4; sg++) {
+      mTree.setStorageGroup("root.area.sg" + sg);
+      mTree.getStorageGroupNode("root.area.sg" + sg).setDataTTL(sg * 1000L);
+      for (int d = 0; d < 10; d++) {
+        for (int s = 0; s < 10; s++) {
+          mTree.createTimeseries("root.area.sg" + sg + ".d" + d + ".s" + s, TSDataType.INT64,
+              TSEncoding.RLE, CompressionType.SNAPPY,
+              s == 0 ? Collections.singletonMap("max_point_number", "3") : Collections.emptyMap(),
+              s == 1 ? "speed" + d : null);
+        }
+      }
+    }
+    ((MeasurementMNode) mTree.getNodeByPath("root.area.sg2.d3.s4")).setOffset(128);
+    mTree.setStorageGroup("root.other");
+    mTree.serializeTo(snapshot.getPath());
+
+    MTree recovered = MTree.deserializeFrom(snapshot);
+    assertEquals(mTree.getAllStorageGroupNames(), recovered.getAllStorageGroupNames());
+    assertEquals(mTree.getAllTimeseriesName("root"), recovered.getAllTimeseriesName("root"));
+    assertEquals(3000L, recovered.getStorageGroupNode("root.area.sg3").getDataTTL());
+    assertEquals(128L,
+        ((MeasurementMNode) recovered.getNodeByPath("root.area.sg2.d3.s4")).getOffset());
+
+    MeasurementMNode s0 = (MeasurementMNode) recovered.getNodeByPath("root.area.sg1.d2.s0");
+    assertEquals("3", s0.getSchema().getProps().get("max_point_number"));
+    assertEquals(TSDataType.INT64, s0.getSchema().getType());
+    // the schemas in the snapshot are shared
+    assertSame(((MeasurementMNode) recovered.getNodeByPath("root.area.sg0.d0.s2")).getSchema(),
+        ((MeasurementMNode) recovered.getNodeByPath("root.area.sg3.d9.s2")).getSchema());
+
+    MeasurementMNode s1 = (MeasurementMNode) recovered.getNodeByPath("root.area.sg0.d5.s1");
+    assertEquals("speed5", s1.getAlias());
+    assertSame(s1, recovered.getNodeByPath("root.area.sg0.d5.speed5"));
+    assertNull(s0.getAlias());
+    assertSame(recovered.getNodeByPath("root.area.sg1"), s0.getParent().getParent());
+  }
+
+  @Test
+  public void testTimeseriesCountsOfParallelStorageGroups() throws MetadataException, IOException {
+    MTree mTree = new MTree();
+    for (int sg = 0; sg < 8; sg++) {
+      mTree.setStorageGroup("root.area.sg" + sg);
+      for (int d = 0; d < 50; d++) {
+        for (int s = 0; s < 50; s++) {
+          mTree.createTimeseries("root.area.sg" + sg + ".d" + d + ".s" + s, TSDataType.INT64,
+              TSEncoding.RLE, CompressionType.SNAPPY, Collections.emptyMap(), null);
+        }
+      }
+    }
+    mTree.setStorageGroup("root.other");
+    mTree.serializeTo(snapshot.getPath());
+
+    // the storage groups under root.area are parsed in parallel
+    MTree recovered = MTree.deserializeFrom(snapshot);
+    assertEquals(20000, recovered.getAllTimeseriesCount("root"));
+    assertEquals(20000, recovered.getAllTimeseriesCount("root.area"));
+    for (int sg = 0; sg < 8; sg++) {
+      assertEquals(2500, recovered.getAllTimeseriesCount("root.area.sg" + sg));
+    }
+    assertEquals(0, recovered.getAllTimeseriesCount("root.other"));
+  }
+
+  @Test
+  public void testCorruptedSnapshot() throws MetadataException, IOException {
+    MTree mTree = new MTree();
+    mTree.setStorageGroup("root.sg");
+    mTree.createTimeseries("root.sg.d1.s1", TSDataType.INT64, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.emptyMap(), null);
+    mTree.serializeTo(snapshot.getPath());
+    try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+      file.seek(file.length() - 6);
+      file.write(0xff);
+    }
+    try {
+      MTree.deserializeFrom(snapshot);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("Checksum mismatch"));
+    }
+  }
+}
@@ -28,6 +28,9 @@ import java.util.Collections;
 import java.util.List;
 import org.apache.iotdb.db.exception.metadata.AliasAlreadyExistException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.qp.physical.sys.ShowDevicesPlan;
+import org.apache.iotdb.db.qp.physical.sys.ShowPlan.ShowContentType;
+import org.apache.iotdb.db.qp.physical.sys.ShowTimeSeriesPlan;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
@@ -447,4 +450,100 @@ public class MTreeTest {
     assertEquals(2, root.getAllTimeseriesName("root").size());
     assertEquals(2, root.getAllTimeseriesPath("root").size());
   }
+
+  @Test
+  public void testPagedTimeseries() throws MetadataException {
+    MTree root = new MTree();
+    root.setStorageGroup("root.sg1");
+    root.setStorageGroup("root.sg2");
+    for (int d = 0; d < 5; d++) {
+      for (int s = 0; s < 7; s++) {
+        root.createTimeseries("root.sg" + (d % 2 + 1) + ".d" + d + ".s" + s, TSDataType.INT32,
+            TSEncoding.RLE, CompressionType.SNAPPY, Collections.emptyMap(), null);
+      }
+    }
+    assertEquals(35, root.getAllTimeseriesCount("root"));
+    assertEquals(21, root.getAllTimeseriesCount("root.sg1.*"));
+    assertEquals(7, root.getAllTimeseriesCount("root.sg2.d3"));
+    assertEquals(35, root.getNodeByPath("root").getLeafCount());
+
+    for (String path : new String[]{"root", "root.*.*.s1", "root.sg2"}) {
+      List<String> all = root.getAllTimeseriesName(path);
+      // pages fetched by the cursor
+      ShowTimeSeriesPlan plan = new ShowTimeSeriesPlan(new Path(path), false, null, null, 4, 0,
+          false);
+      List<String> pages = new ArrayList<>();
+      List<String[]> page;
+      do {
+        page = root.getAllMeasurementSchema(plan);
+        for (String[] row : page) {
+          pages.add(row[0]);
+        }
+        plan.setOffset(plan.getOffset() + plan.getLimit());
+      } while (!page.isEmpty());
+      assertEquals(all, pages);
+
+      // pages fetched by the offset, which skip the subtrees by their leaf counts
+      for (int offset = 0; offset <= all.size(); offset += 3) {
+        plan = new ShowTimeSeriesPlan(new Path(path), false, null, null, 3, offset, false);
+        List<String> names = new ArrayList<>();
+        for (String[] row : root.getAllMeasurementSchema(plan)) {
+          names.add(row[0]);
+        }
+        assertEquals(all.subList(offset, Math.min(offset + 3, all.size())), names);
+      }
+    }
+
+    // the timeseries of the cursor is deleted, the next page is found by the offset
+    List<String> all = root.getAllTimeseriesName("root");
+    ShowTimeSeriesPlan plan = new ShowTimeSeriesPlan(new Path("root"), false, null, null, 10, 0,
+        false);
+    List<String[]> page = root.getAllMeasurementSchema(plan);
+    assertEquals(all.get(9), page.get(9)[0]);
+    root.deleteTimeseriesAndReturnEmptyStorageGroup(all.get(9));
+    plan.setOffset(9);
+    page = root.getAllMeasurementSchema(plan);
+    assertEquals(all.get(10), page.get(0)[0]);
+    assertEquals(34, root.getAllTimeseriesCount("root"));
+    root.deleteStorageGroup("root.sg2");
+    assertEquals(20, root.getAllTimeseriesCount("root"));
+  }
+
+  @Test
+  public void testPagedDevices() throws MetadataException {
+    MTree root = new MTree();
+    root.setStorageGroup("root.sg");
+    List<String> expected = new ArrayList<>();
+    for (int d = 0; d < 30; d++) {
+      // the devices are not created in the alphabetical order
+      String device = "root.sg.d" + (d * 7 % 30);
+      root.createTimeseries(device + ".s", TSDataType.INT32, TSEncoding.RLE,
+          CompressionType.SNAPPY, Collections.emptyMap(), null);
+      expected.add(device);
+      if (d % 10 == 0) {
+        root.createTimeseries(device + ".x.s", TSDataType.INT32, TSEncoding.RLE,
+            CompressionType.SNAPPY, Collections.emptyMap(), null);
+        expected.add(device + ".x");
+      }
+    }
+    Collections.sort(expected);
+    assertEquals(expected, new ArrayList<>(root.getDevices("root")));
+
+    ShowDevicesPlan plan = new ShowDevicesPlan(ShowContentType.DEVICES, new Path("root.sg"));
+    plan.setLimit(4);
+    List<String> devices = new ArrayList<>();
+    List<String> page;
+    do {
+      page = root.getDevices(plan);
+      devices.addAll(page);
+      // a device created after the cursor is in the next pages
+      if (devices.size() == 4) {
+        root.createTimeseries("root.sg.d5a.s", TSDataType.INT32, TSEncoding.RLE,
+            CompressionType.SNAPPY, Collections.emptyMap(), null);
+        expected.add("root.sg.d5a");
+        Collections.sort(expected);
+      }
+    } while (page.size() == plan.getLimit());
+    assertEquals(expected, devices);
+  }
 }
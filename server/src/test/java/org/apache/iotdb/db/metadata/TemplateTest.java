@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.db.qp.Planner;
+import org.apache.iotdb.db.qp.executor.IPlanExecutor;
+import org.apache.iotdb.db.qp.executor.PlanExecutor;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TemplateTest {
+
+  private IPlanExecutor queryExecutor = new PlanExecutor();
+  private Planner processor = new Planner();
+
+  public TemplateTest() throws QueryProcessException {
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    EnvironmentUtils.envSetUp();
+    execute("SET STORAGE GROUP TO root.sg",
+        "CREATE SCHEMA TEMPLATE t1 (s1 WITH DATATYPE=INT64, ENCODING=RLE, "
+            + "s2 WITH DATATYPE=DOUBLE, ENCODING=GORILLA, COMPRESSOR=UNCOMPRESSED)",
+        "SET SCHEMA TEMPLATE t1 TO root.sg");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    EnvironmentUtils.cleanEnv();
+  }
+
+  @Test
+  public void testActivateOnInsert() throws Exception {
+    assertEquals(0, IoTDB.metaManager.getAllTimeseriesCount("root"));
+    execute("insert into root.sg.d1(timestamp,s1) values(1,1)",
+        "insert into root.sg.d2(timestamp,s2,s3) values(1,1.5,2)");
+
+    assertEquals(5, IoTDB.metaManager.getAllTimeseriesCount("root"));
+    assertEquals(Arrays.asList("root.sg.d1.s1", "root.sg.d1.s2", "root.sg.d2.s1",
+        "root.sg.d2.s2", "root.sg.d2.s3"), sorted(IoTDB.metaManager.getAllTimeseriesName("root")));
+    MeasurementSchema schema = IoTDB.metaManager.getSeriesSchema("root.sg.d2", "s2");
+    assertEquals(TSDataType.DOUBLE, schema.getType());
+    assertEquals(TSEncoding.GORILLA, schema.getEncodingType());
+    assertEquals(CompressionType.UNCOMPRESSED, schema.getCompressor());
+    // the devices share the schema of the template
+    assertTrue(schema == IoTDB.metaManager.getSeriesSchema("root.sg.d1", "s2"));
+    assertTrue(((MeasurementMNode) IoTDB.metaManager.getNodeByPath("root.sg.d1.s1"))
+        .isFromTemplate());
+    assertFalse(((MeasurementMNode) IoTDB.metaManager.getNodeByPath("root.sg.d2.s3"))
+        .isFromTemplate());
+  }
+
+  @Test
+  public void testTemplateNodesCached() throws Exception {
+    execute("insert into root.sg.d1(timestamp,s1) values(1,1)");
+    MNode node = IoTDB.metaManager.getNodeByPath("root.sg.d1.s1");
+    assertSame(node, IoTDB.metaManager.getNodeByPath("root.sg.d1.s1"));
+    assertSame(node, IoTDB.metaManager.getNodeByPath("root.sg.d1").getChildren().values()
+        .iterator().next());
+  }
+
+  @Test
+  public void testLastCache() throws Exception {
+    execute("insert into root.sg.d1(timestamp,s1) values(1,1)");
+    IoTDB.metaManager.updateLastCache("root.sg.d1.s1",
+        new TimeValuePair(10, TsPrimitiveType.getByType(TSDataType.INT64, 10L)), false,
+        Long.MIN_VALUE, null);
+    IoTDB.metaManager.updateLastCache("root.sg.d1.s1",
+        new TimeValuePair(5, TsPrimitiveType.getByType(TSDataType.INT64, 5L)), false,
+        Long.MIN_VALUE, null);
+    assertEquals(10, IoTDB.metaManager.getLastCache("root.sg.d1.s1").getTimestamp());
+    assertNull(IoTDB.metaManager.getLastCache("root.sg.d1.s2"));
+  }
+
+  @Test
+  public void testDiverge() throws Exception {
+    execute("insert into root.sg.d1(timestamp,s1,s2) values(1,1,1.5)");
+    IoTDB.metaManager.updateLastCache("root.sg.d1.s1",
+        new TimeValuePair(1, TsPrimitiveType.getByType(TSDataType.INT64, 1L)), false,
+        Long.MIN_VALUE, null);
+    execute("ALTER TIMESERIES root.sg.d1.s1 ADD TAGS unit=c");
+    execute("DELETE TIMESERIES root.sg.d1.s2");
+
+    MeasurementMNode node = (MeasurementMNode) IoTDB.metaManager.getNodeByPath("root.sg.d1.s1");
+    assertFalse(node.isFromTemplate());
+    assertEquals(1, node.getCachedLast().getTimestamp());
+    assertEquals(Collections.singletonList("root.sg.d1.s1"),
+        IoTDB.metaManager.getAllTimeseriesName("root"));
+    assertEquals(1, IoTDB.metaManager.getAllTimeseriesCount("root"));
+  }
+
+  @Test
+  public void testRecover() throws Exception {
+    execute("insert into root.sg.d1(timestamp,s1) values(1,1)",
+        "insert into root.sg.d2(timestamp,s1) values(1,1)",
+        "DELETE TIMESERIES root.sg.d2.s2");
+    List<String> expected = Arrays.asList("root.sg.d1.s1", "root.sg.d1.s2", "root.sg.d2.s1");
+
+    // from the mlog
+    IoTDB.metaManager.clear();
+    IoTDB.metaManager.init();
+    assertEquals(expected, sorted(IoTDB.metaManager.getAllTimeseriesName("root")));
+    assertEquals(3, IoTDB.metaManager.getAllTimeseriesCount("root"));
+
+    // from the snapshot
+    IoTDB.metaManager.createMTreeSnapshot();
+    IoTDB.metaManager.clear();
+    IoTDB.metaManager.init();
+    assertEquals(expected, sorted(IoTDB.metaManager.getAllTimeseriesName("root")));
+    assertEquals(3, IoTDB.metaManager.getAllTimeseriesCount("root"));
+    assertTrue(((MeasurementMNode) IoTDB.metaManager.getNodeByPath("root.sg.d1.s2"))
+        .isFromTemplate());
+
+    // the template is still set after the restart
+    execute("insert into root.sg.d3(timestamp,s2) values(1,1.5)");
+    assertEquals(5, IoTDB.metaManager.getAllTimeseriesCount("root"));
+  }
+
+  @Test
+  public void testSetToPrefixWithTimeseries() throws Exception {
+    execute("CREATE TIMESERIES root.sg2.d1.s1 WITH DATATYPE=INT32, ENCODING=RLE");
+    try {
+      execute("SET SCHEMA TEMPLATE t1 TO root.sg2");
+      fail();
+    } catch (QueryProcessException e) {
+      // expected
+    }
+    try {
+      execute("SET SCHEMA TEMPLATE t2 TO root.sg3");
+      fail();
+    } catch (QueryProcessException e) {
+      // expected
+    }
+  }
+
+  private void execute(String... sqls) throws Exception {
+    for (String sql : sqls) {
+      queryExecutor.processNonQuery(processor.parseSQLToPhysicalPlan(sql));
+    }
+  }
+
+  private static List<String> sorted(List<String> names) {
+    List<String> sorted = new ArrayList<>(names);
+    Collections.sort(sorted);
+    return sorted;
+  }
+}
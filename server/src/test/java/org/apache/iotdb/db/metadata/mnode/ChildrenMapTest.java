@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.iotdb.db.exception.metadata.DeleteFailedException;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.junit.Test;
+
+public class ChildrenMapTest {
+
+  @Test
+  public void testSameAsLinkedHashMap() {
+    Map<String, MNode> expected = new LinkedHashMap<>();
+    ChildrenMap children = new ChildrenMap();
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      String name = "s" + random.nextInt(200);
+      if (random.nextInt(3) == 0) {
+        assertSame(expected.remove(name), children.remove(name));
+      } else {
+        MNode node = new MNode(null, name);
+        assertSame(expected.put(name, node), children.put(name, node));
+      }
+      assertEquals(expected.size(), children.size());
+      assertSame(expected.get(name), children.get(name));
+    }
+    // the insertion order is kept
+    assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(children.keySet()));
+    assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(children.values()));
+    assertEquals(expected, children);
+  }
+
+  @Test
+  public void testRemoveByIterator() {
+    ChildrenMap children = new ChildrenMap();
+    for (int i = 0; i < 100; i++) {
+      children.put("s" + i, new MNode(null, "s" + i));
+    }
+    Iterator<MNode> iterator = children.values().iterator();
+    while (iterator.hasNext()) {
+      if (Integer.parseInt(iterator.next().getName().substring(1)) % 3 != 0) {
+        iterator.remove();
+      }
+    }
+    assertEquals(34, children.size());
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 100; i += 3) {
+      names.add("s" + i);
+      assertTrue(children.containsKey("s" + i));
+    }
+    assertEquals(names, new ArrayList<>(children.keySet()));
+    assertNull(children.get("s1"));
+
+    // the holes are removed by a later remove
+    children.remove("s0");
+    children.put("s1", new MNode(null, "s1"));
+    assertEquals("s1", new ArrayList<>(children.keySet()).get(33));
+    children.clear();
+    assertTrue(children.isEmpty());
+    assertFalse(children.values().iterator().hasNext());
+  }
+
+  @Test
+  public void testSharedNamesAndSchemas() {
+    MNode device1 = new MNode(null, "d1");
+    MNode device2 = new MNode(null, "d2");
+    MeasurementMNode s1 = new MeasurementMNode(device1, new String("s1"), null,
+        TSDataType.INT64, TSEncoding.RLE, CompressionType.SNAPPY, Collections.emptyMap());
+    MeasurementMNode s2 = new MeasurementMNode(device2, new String("s1"), null,
+        TSDataType.INT64, TSEncoding.RLE, CompressionType.SNAPPY, null);
+    MeasurementMNode s3 = new MeasurementMNode(device2, "s2", null,
+        TSDataType.INT64, TSEncoding.RLE, CompressionType.SNAPPY,
+        Collections.singletonMap("max_point_number", "2"));
+    MeasurementMNode s4 = new MeasurementMNode(device1, "s2", null,
+        TSDataType.INT64, TSEncoding.RLE, CompressionType.SNAPPY, null);
+    assertSame(s1.getName(), s2.getName());
+    assertSame(s1.getSchema(), s2.getSchema());
+    // the props are different
+    assertNotSame(s3.getSchema(), s4.getSchema());
+    assertEquals("2", s3.getSchema().getProps().get("max_point_number"));
+  }
+
+  @Test
+  public void testMeasurementWithoutLock() throws DeleteFailedException {
+    MNode device = new MNode(null, "d1");
+    MeasurementMNode measurement = new MeasurementMNode(device, "s1", null, TSDataType.INT64,
+        TSEncoding.RLE, CompressionType.SNAPPY, null);
+    device.addChild("s1", measurement);
+    // a measurement is protected by the lock of its device
+    measurement.readLock();
+    measurement.readUnlock();
+    device.deleteChild("s1");
+    assertFalse(device.hasChild("s1"));
+  }
+}
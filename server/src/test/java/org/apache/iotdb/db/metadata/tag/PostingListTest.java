@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class PostingListTest {
+
+  @Test
+  public void testSameAsTreeSet() {
+    Random random = new Random(0);
+    PostingList postingList = new PostingList();
+    TreeSet<Integer> expected = new TreeSet<>();
+    // the first partition becomes dense and then sparse again
+    for (int i = 0; i < 20000; i++) {
+      int id = random.nextInt(10000);
+      assertEquals(expected.add(id), !postingList.contains(id));
+      postingList.add(id);
+    }
+    for (int i = 0; i < 1000; i++) {
+      int id = 70000 + random.nextInt(1 << 20);
+      expected.add(id);
+      postingList.add(id);
+    }
+    assertEquals(expected, toSet(postingList));
+    for (int i = 0; i < 30000; i++) {
+      int id = random.nextInt(10000);
+      assertEquals(expected.remove(id), postingList.remove(id));
+    }
+    assertEquals(expected, toSet(postingList));
+    assertEquals(expected.size(), postingList.getCardinality());
+  }
+
+  @Test
+  public void testAndOr() {
+    Random random = new Random(1);
+    for (int round = 0; round < 10; round++) {
+      // sparse and dense partitions are mixed
+      int bound = round % 2 == 0 ? 200000 : 20000;
+      PostingList left = new PostingList();
+      PostingList right = new PostingList();
+      TreeSet<Integer> leftSet = new TreeSet<>();
+      TreeSet<Integer> rightSet = new TreeSet<>();
+      for (int i = 0; i < 10000; i++) {
+        int id = random.nextInt(bound);
+        left.add(id);
+        leftSet.add(id);
+        id = random.nextInt(bound / (round + 1));
+        right.add(id);
+        rightSet.add(id);
+      }
+
+      TreeSet<Integer> and = new TreeSet<>(leftSet);
+      and.retainAll(rightSet);
+      TreeSet<Integer> or = new TreeSet<>(leftSet);
+      or.addAll(rightSet);
+      assertEquals(and, toSet(left.and(right)));
+      assertEquals(and, toSet(right.and(left)));
+      assertEquals(or, toSet(left.or(right)));
+      assertEquals(or, toSet(right.or(left)));
+      // the operands are not changed
+      assertEquals(leftSet, toSet(left));
+      assertEquals(rightSet, toSet(right));
+    }
+    assertTrue(new PostingList().and(new PostingList()).isEmpty());
+  }
+
+  @Test
+  public void testSerialization() throws IOException {
+    PostingList postingList = new PostingList();
+    for (int i = 0; i < 10000; i++) {
+      postingList.add(i * 3);
+    }
+    postingList.add(Integer.MAX_VALUE);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    postingList.serialize(new DataOutputStream(outputStream));
+    PostingList deserialized = PostingList.deserialize(
+        new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray())));
+    assertEquals(toSet(postingList), toSet(deserialized));
+    assertTrue(deserialized.contains(Integer.MAX_VALUE));
+    assertFalse(deserialized.contains(1));
+  }
+
+  private static TreeSet<Integer> toSet(PostingList postingList) {
+    List<Integer> ids = new ArrayList<>();
+    postingList.forEach(ids::add);
+    // the ids are visited in ascending order
+    assertEquals(new ArrayList<>(new TreeSet<>(ids)), ids);
+    return new TreeSet<>(ids);
+  }
+}
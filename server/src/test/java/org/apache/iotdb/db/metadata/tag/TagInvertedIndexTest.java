@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.metadata.MetadataConstant;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.qp.physical.sys.ShowTimeSeriesPlan;
+import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.dataset.ShowTimeSeriesResult;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TagInvertedIndexTest {
+
+  private MManager mManager;
+
+  @Before
+  public void setUp() throws Exception {
+    EnvironmentUtils.envSetUp();
+    mManager = IoTDB.metaManager;
+    mManager.setStorageGroup("root.sg");
+    // s0..s9 of d0 and d1, the unit is c for the even ones and f for the odd ones, and the
+    // description contains "turbine" for the ones of d1
+    for (int d = 0; d < 2; d++) {
+      for (int s = 0; s < 10; s++) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("unit", s % 2 == 0 ? "c" : "f");
+        tags.put("description", d == 1 ? "turbine " + s : "engine " + s);
+        mManager.createTimeseries(new CreateTimeSeriesPlan(new Path("root.sg.d" + d + ".s" + s),
+            TSDataType.DOUBLE, TSEncoding.GORILLA, CompressionType.SNAPPY, null, tags,
+            Collections.singletonMap("attr", "v"), null));
+      }
+    }
+    // a timeseries without tags
+    mManager.createTimeseries("root.sg.d2.s0", TSDataType.DOUBLE, TSEncoding.GORILLA,
+        CompressionType.SNAPPY, null);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    EnvironmentUtils.cleanEnv();
+  }
+
+  @Test
+  public void testAndOr() throws MetadataException {
+    TagFilter unitC = TagFilter.equal("unit", "c");
+    TagFilter turbine = TagFilter.contains("description", "turbine");
+    assertEquals(10, show(unitC, "root", 0, 0).size());
+    assertEquals(Arrays.asList("root.sg.d1.s0", "root.sg.d1.s2", "root.sg.d1.s4",
+        "root.sg.d1.s6", "root.sg.d1.s8"), show(TagFilter.and(Arrays.asList(unitC, turbine)),
+        "root", 0, 0));
+    assertEquals(15, show(TagFilter.or(Arrays.asList(unitC, turbine)), "root", 0, 0).size());
+    assertEquals(Arrays.asList("root.sg.d1.s1", "root.sg.d1.s3"),
+        show(TagFilter.and(Arrays.asList(turbine, TagFilter.or(Arrays.asList(
+            TagFilter.equal("description", "turbine 1"),
+            TagFilter.equal("description", "turbine 3"))))), "root", 0, 0));
+    // the prefix path restricts the result
+    assertEquals(5, show(unitC, "root.sg.d0", 0, 0).size());
+    assertTrue(show(TagFilter.equal("unit", "k"), "root", 0, 0).isEmpty());
+    try {
+      show(TagFilter.equal("color", "red"), "root", 0, 0);
+      fail();
+    } catch (MetadataException e) {
+      assertEquals("The key color is not a tag.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testPagination() throws MetadataException {
+    TagFilter unitF = TagFilter.equal("unit", "f");
+    List<String> all = show(unitF, "root", 0, 0);
+    assertEquals(10, all.size());
+    List<String> sorted = new ArrayList<>(all);
+    Collections.sort(sorted);
+    assertEquals(sorted, all);
+    List<String> pages = new ArrayList<>();
+    for (int offset = 0; offset < 10; offset += 3) {
+      pages.addAll(show(unitF, "root", 3, offset));
+    }
+    assertEquals(all, pages);
+    assertEquals(all.subList(8, 10), show(unitF, "root", 0, 8));
+  }
+
+  @Test
+  public void testUpdateAndDelete() throws Exception {
+    TagFilter unitC = TagFilter.equal("unit", "c");
+    mManager.setTagsOrAttributesValue(Collections.singletonMap("unit", "k"), "root.sg.d0.s0");
+    mManager.deleteTimeseries("root.sg.d0.s2");
+    mManager.addTags(Collections.singletonMap("unit", "c"), "root.sg.d2.s0");
+    List<String> expected = Arrays.asList("root.sg.d0.s4", "root.sg.d0.s6", "root.sg.d0.s8",
+        "root.sg.d1.s0", "root.sg.d1.s2", "root.sg.d1.s4", "root.sg.d1.s6", "root.sg.d1.s8",
+        "root.sg.d2.s0");
+    assertEquals(expected, show(unitC, "root", 0, 0));
+    assertEquals(Collections.singletonList("root.sg.d0.s0"),
+        show(TagFilter.equal("unit", "k"), "root", 0, 0));
+
+    // the index is persisted and loaded
+    mManager.clear();
+    File indexFile = new File(IoTDBDescriptor.getInstance().getConfig().getSchemaDir(),
+        MetadataConstant.TAG_INDEX);
+    assertTrue(indexFile.exists());
+    mManager.init();
+    assertFalse(indexFile.exists());
+    assertEquals(expected, show(unitC, "root", 0, 0));
+
+    // the index is rebuilt if it is not persisted, including the timeseries in the snapshot
+    mManager.createMTreeSnapshot();
+    mManager.deleteTimeseries("root.sg.d1.s8");
+    mManager.clear();
+    assertTrue(indexFile.delete());
+    mManager.init();
+    assertEquals(expected.subList(0, 7), show(unitC, "root", 0, 0).subList(0, 7));
+    assertEquals(Collections.singletonList("root.sg.d2.s0"), show(unitC, "root.sg.d2", 0, 0));
+    assertEquals(8, show(unitC, "root", 0, 0).size());
+  }
+
+  private List<String> show(TagFilter filter, String prefixPath, int limit, int offset)
+      throws MetadataException {
+    ShowTimeSeriesPlan plan = new ShowTimeSeriesPlan(new Path(prefixPath), false, null, null,
+        limit, offset, false);
+    plan.setTagFilter(filter);
+    List<String> names = new ArrayList<>();
+    for (ShowTimeSeriesResult result : mManager.showTimeseries(plan, new QueryContext())) {
+      names.add(result.getName());
+    }
+    return names;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.qp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
+import org.apache.iotdb.db.qp.physical.crud.RawDataQueryPlan;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlanCacheTest {
+
+  private Planner processor = new Planner();
+  private ZoneId zoneId = ZoneId.of("+08:00");
+
+  @Before
+  public void before() throws MetadataException {
+    processor.planCache = new PlanCache(10);
+    IoTDB.metaManager.init();
+    IoTDB.metaManager.setStorageGroup("root.vehicle");
+    IoTDB.metaManager
+        .createTimeseries("root.vehicle.d1.s1", TSDataType.FLOAT, TSEncoding.PLAIN,
+            CompressionType.UNCOMPRESSED, null);
+    IoTDB.metaManager
+        .createTimeseries("root.vehicle.d1.s2", TSDataType.TEXT, TSEncoding.PLAIN,
+            CompressionType.UNCOMPRESSED, null);
+  }
+
+  @After
+  public void clean() throws IOException {
+    IoTDB.metaManager.clear();
+    EnvironmentUtils.cleanAllDir();
+  }
+
+  @Test
+  public void testBindParameters() throws QueryProcessException {
+    String sql = "select s1 from root.vehicle.d1 where time > ? and (s1 < ? or s2 = ?)";
+    assertEquals(3, processor.prepareStatement(sql, zoneId));
+
+    RawDataQueryPlan plan = (RawDataQueryPlan) processor
+        .parseSQLToPhysicalPlan(sql, zoneId, Arrays.asList("10", "5.5", "'a?b'"));
+    RawDataQueryPlan expected = (RawDataQueryPlan) processor.parseSQLToPhysicalPlan(
+        "select s1 from root.vehicle.d1 where time > 10 and (s1 < 5.5 or s2 = 'a?b')", zoneId);
+    assertEquals(expected.getExpression().toString(), plan.getExpression().toString());
+
+    // the cached plan is bound again with other values
+    plan = (RawDataQueryPlan) processor
+        .parseSQLToPhysicalPlan(sql, zoneId, Arrays.asList("20", "1", "'c'"));
+    expected = (RawDataQueryPlan) processor.parseSQLToPhysicalPlan(
+        "select s1 from root.vehicle.d1 where time > 20 and (s1 < 1 or s2 = 'c')", zoneId);
+    assertEquals(expected.getExpression().toString(), plan.getExpression().toString());
+    assertEquals(1, processor.planCache.size());
+    assertEquals(2, processor.planCache.getHitCount());
+  }
+
+  @Test
+  public void testTimeParameter() throws QueryProcessException {
+    String sql = "select s1 from root.vehicle.d1 where time < ?";
+    RawDataQueryPlan plan = (RawDataQueryPlan) processor
+        .parseSQLToPhysicalPlan(sql, zoneId, Collections.singletonList("2017-11-01T00:13:00"));
+    RawDataQueryPlan expected = (RawDataQueryPlan) processor.parseSQLToPhysicalPlan(
+        "select s1 from root.vehicle.d1 where time < 2017-11-01T00:13:00", zoneId);
+    assertEquals(expected.getExpression().toString(), plan.getExpression().toString());
+  }
+
+  @Test
+  public void testNormalizedStatement() throws QueryProcessException {
+    processor.prepareStatement("select s1 from root.vehicle.d1 where s1 > ?", zoneId);
+    processor.prepareStatement("select s1\n  from root.vehicle.d1   where s1 > ?", zoneId);
+    assertEquals(1, processor.planCache.size());
+    assertEquals(1, processor.planCache.getHitCount());
+  }
+
+  @Test
+  public void testSchemaChange() throws QueryProcessException, MetadataException {
+    String sql = "select * from root.vehicle.d1 where s1 > ?";
+    RawDataQueryPlan plan = (RawDataQueryPlan) processor
+        .parseSQLToPhysicalPlan(sql, zoneId, Collections.singletonList("1"));
+    assertEquals(2, plan.getPaths().size());
+
+    // the cached plan was expanded from the wildcard before the new series exists
+    IoTDB.metaManager
+        .createTimeseries("root.vehicle.d1.s3", TSDataType.INT32, TSEncoding.PLAIN,
+            CompressionType.UNCOMPRESSED, null);
+    plan = (RawDataQueryPlan) processor
+        .parseSQLToPhysicalPlan(sql, zoneId, Collections.singletonList("1"));
+    assertEquals(3, plan.getPaths().size());
+    assertEquals(0, processor.planCache.getHitCount());
+  }
+
+  @Test
+  public void testSubstitutedStatement() throws QueryProcessException {
+    // parameters out of the where clause of a query are substituted into the statement
+    InsertRowPlan plan = (InsertRowPlan) processor.parseSQLToPhysicalPlan(
+        "insert into root.vehicle.d1(timestamp, s1) values(?, ?)", zoneId,
+        Arrays.asList("1", "2.5"));
+    assertEquals(1, plan.getTime());
+    assertEquals("2.5", plan.getValues()[0]);
+
+    RawDataQueryPlan queryPlan = (RawDataQueryPlan) processor.parseSQLToPhysicalPlan(
+        "select s1 from root.vehicle.d1 where time < now() and s1 > ?", zoneId,
+        Collections.singletonList("1"));
+    assertEquals(1, queryPlan.getPaths().size());
+  }
+
+  @Test
+  public void testMalformedStatement() throws QueryProcessException {
+    try {
+      processor.prepareStatement("select s1 form root.vehicle.d1 where s1 > ?", zoneId);
+      fail();
+    } catch (QueryProcessException e) {
+      // the statement is rejected instead of being cached
+      assertEquals(0, processor.planCache.size());
+    }
+
+    // a parameter out of the where clause is not a syntax error of the statement
+    assertEquals(2, processor
+        .prepareStatement("insert into root.vehicle.d1(timestamp, s1) values(?, ?)", zoneId));
+  }
+
+  @Test
+  public void testConcurrentBinding() throws InterruptedException, ExecutionException {
+    String sql = "select s1 from root.vehicle.d1 where s1 > ?";
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        String parameter = String.valueOf(i);
+        futures.add(pool.submit(() -> ((RawDataQueryPlan) processor
+            .parseSQLToPhysicalPlan(sql, zoneId, Collections.singletonList(parameter)))
+            .getExpression().toString()));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        // each execution only sees its own value
+        assertEquals("[root.vehicle.d1.s1:value > " + i + ".0]", futures.get(i).get());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWrongParameters() {
+    String sql = "select s1 from root.vehicle.d1 where s1 > ?";
+    try {
+      processor.parseSQLToPhysicalPlan(sql, zoneId, Collections.emptyList());
+      fail();
+    } catch (QueryProcessException e) {
+      assertEquals("The statement has 1 parameters but 0 are given", e.getMessage());
+    }
+    try {
+      // a parameter without a value
+      processor.parseSQLToPhysicalPlan(sql, zoneId);
+      fail();
+    } catch (QueryProcessException e) {
+      assertEquals(
+          "Parameter #1 of root.vehicle.d1.s1 is not bound, please use a prepared statement",
+          e.getMessage());
+    }
+  }
+}
@@ -875,4 +875,22 @@ public class PhysicalPlanTest {
     Assert.assertEquals(((DeletePlan) plan).getDeleteStartTime(), 1);
     Assert.assertEquals(((DeletePlan) plan).getDeleteEndTime(), 2);
   }
+
+  @Test
+  public void testShowTimeseriesWithTagFilter() throws QueryProcessException {
+    String sqlStr = "show timeseries root.vehicle where unit=c or (description contains 'turbine' "
+        + "and unit=f) limit 10";
+    ShowTimeSeriesPlan plan = (ShowTimeSeriesPlan) processor.parseSQLToPhysicalPlan(sqlStr);
+    assertEquals("(unit=c) or ((description contains turbine) and (unit=f))",
+        plan.getTagFilter().toString());
+    assertNull(plan.getKey());
+    assertEquals(10, plan.getLimit());
+
+    plan = (ShowTimeSeriesPlan) processor
+        .parseSQLToPhysicalPlan("show timeseries root.vehicle where unit=c");
+    assertEquals("unit", plan.getKey());
+    assertEquals("c", plan.getValue());
+    assertFalse(plan.isContains());
+    assertEquals("unit=c", plan.getTagFilter().toString());
+  }
 }
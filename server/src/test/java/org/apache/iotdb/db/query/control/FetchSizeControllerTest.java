@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FetchSizeControllerTest {
+
+  private IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+  private boolean enableAdaptiveFetchSize;
+  private long fetchTargetSize;
+  private long fetchMaxSize;
+  private long maxResultMemory;
+
+  @Before
+  public void setUp() {
+    enableAdaptiveFetchSize = config.isEnableAdaptiveFetchSize();
+    fetchTargetSize = config.getFetchTargetSizeInByte();
+    fetchMaxSize = config.getFetchMaxSizeInByte();
+    maxResultMemory = config.getMaxResultMemoryInByte();
+    config.setEnableAdaptiveFetchSize(true);
+    config.setFetchTargetSizeInByte(1024);
+    config.setFetchMaxSizeInByte(4096);
+    config.setMaxResultMemoryInByte(1024 * 1024);
+  }
+
+  @After
+  public void tearDown() {
+    config.setEnableAdaptiveFetchSize(enableAdaptiveFetchSize);
+    config.setFetchTargetSizeInByte(fetchTargetSize);
+    config.setFetchMaxSizeInByte(fetchMaxSize);
+    config.setMaxResultMemoryInByte(maxResultMemory);
+  }
+
+  @Test
+  public void testWideQueryIsBoundedByBytes() {
+    FetchSizeController controller = new FetchSizeController();
+    // 8 bytes of time + 16 * (8 bytes of value + 1 bit of bitmap) = 138 bytes per row
+    List<TSDataType> dataTypes = new ArrayList<>(Collections.nCopies(16, TSDataType.INT64));
+    assertEquals(7, controller.getFetchSize(1, 10000, dataTypes));
+
+    // narrow queries are still bounded by the fetch size of the client
+    assertEquals(10, controller.getFetchSize(2, 10,
+        Collections.singletonList(TSDataType.INT32)));
+  }
+
+  @Test
+  public void testBudgetGrowsWithRoundTrip() throws InterruptedException {
+    FetchSizeController controller = new FetchSizeController();
+    List<TSDataType> dataTypes = Collections.singletonList(TSDataType.INT64);
+    // 1024 / 16.125 bytes per row estimated from the data type
+    assertEquals(63, controller.getFetchSize(1, 10000, dataTypes));
+    // 16 bytes per row observed from the returned batch
+    controller.onBatchFilled(1, 63, 63 * 16, 0);
+    // the client spends more time than the server, so the budget doubles
+    Thread.sleep(2);
+    assertEquals(128, controller.getFetchSize(1, 10000, dataTypes));
+    controller.onBatchFilled(1, 128, 128 * 16, 0);
+    Thread.sleep(2);
+    assertEquals(256, controller.getFetchSize(1, 10000, dataTypes));
+    controller.onBatchFilled(1, 256, 256 * 16, 0);
+    // but never exceeds the max size
+    Thread.sleep(2);
+    assertEquals(256, controller.getFetchSize(1, 10000, dataTypes));
+    controller.endQuery(1);
+    assertEquals(0, controller.getReservedResultMemory());
+  }
+
+  @Test
+  public void testResultMemoryLimit() {
+    config.setMaxResultMemoryInByte(1024 + 160);
+    FetchSizeController controller = new FetchSizeController();
+    List<TSDataType> dataTypes = Collections.singletonList(TSDataType.INT64);
+    assertEquals(63, controller.getFetchSize(1, 10000, dataTypes));
+    controller.onBatchFilled(1, 63, 1024, 0);
+    assertEquals(1024, controller.getReservedResultMemory());
+
+    // only 160 bytes are left for another query
+    assertEquals(9, controller.getFetchSize(2, 10000, dataTypes));
+    controller.onBatchFilled(2, 9, 160, 0);
+    // nothing is left, but at least one row is returned
+    assertEquals(1, controller.getFetchSize(3, 10000, dataTypes));
+
+    // the next fetch of the first query releases its last batch
+    assertTrue(controller.getFetchSize(1, 10000, dataTypes) > 0);
+    assertEquals(160, controller.getReservedResultMemory());
+    controller.endQuery(2);
+    controller.endQuery(1);
+    controller.endQuery(3);
+    assertEquals(0, controller.getReservedResultMemory());
+  }
+
+  @Test
+  public void testDisabled() {
+    config.setEnableAdaptiveFetchSize(false);
+    FetchSizeController controller = new FetchSizeController();
+    assertEquals(10000, controller.getFetchSize(1, 10000,
+        Collections.nCopies(100, TSDataType.TEXT)));
+  }
+}
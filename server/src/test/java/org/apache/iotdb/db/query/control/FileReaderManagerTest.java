@@ -18,16 +18,28 @@
  */
 package org.apache.iotdb.db.query.control;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.constant.TestConstant;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
+import org.apache.iotdb.tsfile.read.common.Chunk;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.DataPoint;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -142,4 +154,44 @@ public class FileReaderManagerTest {
       }
     }
   }
+
+  @Test
+  public void testMappedReader() throws Exception {
+    File dir = SystemFileFactory.INSTANCE.getFile(TestConstant.BASE_OUTPUT_PATH.concat("mmap"));
+    File file = SystemFileFactory.INSTANCE.getFile(dir, "1-1-0.tsfile");
+    dir.mkdirs();
+    String[] prevMmapDataDirs = dbConfig.getMmapDataDirs();
+    dbConfig.setMmapDataDirs(new String[]{dir.getPath()});
+    try {
+      TsFileWriter writer = new TsFileWriter(file);
+      writer.registerTimeseries(new Path("root.sg.d1", "s1"),
+          new MeasurementSchema("s1", TSDataType.INT64, TSEncoding.PLAIN));
+      for (long time = 0; time < 100; time++) {
+        TSRecord record = new TSRecord(time, "root.sg.d1");
+        record.addTuple(DataPoint.getDataPoint(TSDataType.INT64, "s1", String.valueOf(time)));
+        writer.write(record);
+      }
+      writer.close();
+
+      TsFileSequenceReader mappedReader = FileReaderManager.getInstance()
+          .get(file.getPath(), true);
+      try (TsFileSequenceReader reader = new TsFileSequenceReader(file.getPath())) {
+        List<ChunkMetadata> chunkMetadataList = reader
+            .getChunkMetadataList(new Path("root.sg.d1", "s1"));
+        assertEquals(chunkMetadataList.size(),
+            mappedReader.getChunkMetadataList(new Path("root.sg.d1", "s1")).size());
+        for (ChunkMetadata chunkMetadata : chunkMetadataList) {
+          Chunk chunk = reader.readMemChunk(chunkMetadata);
+          Chunk mappedChunk = mappedReader.readMemChunk(chunkMetadata);
+          assertEquals(chunk.getData(), mappedChunk.getData());
+        }
+      }
+    } finally {
+      dbConfig.setMmapDataDirs(prevMmapDataDirs);
+      FileReaderManager.getInstance().closeAndRemoveAllOpenedReaders();
+      // the file can be deleted once its reader is closed
+      Assert.assertTrue(file.delete());
+      dir.delete();
+    }
+  }
 }
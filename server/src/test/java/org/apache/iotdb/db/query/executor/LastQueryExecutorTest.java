@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.executor;
+
+import static org.apache.iotdb.db.utils.EnvironmentUtils.TEST_QUERY_CONTEXT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.metadata.MetadataConstant;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.db.qp.Planner;
+import org.apache.iotdb.db.qp.executor.IPlanExecutor;
+import org.apache.iotdb.db.qp.executor.PlanExecutor;
+import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LastQueryExecutorTest {
+
+  private IPlanExecutor queryExecutor = new PlanExecutor();
+  private Planner processor = new Planner();
+  private List<Path> paths = Arrays.asList(new Path("root.sg.d0.s0"), new Path("root.sg.d0.s1"),
+      new Path("root.sg.d0.s2"), new Path("root.sg.d0.s3"));
+  private List<TSDataType> dataTypes = Arrays.asList(TSDataType.INT32, TSDataType.TEXT,
+      TSDataType.DOUBLE, TSDataType.BOOLEAN);
+
+  public LastQueryExecutorTest() throws QueryProcessException {
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    EnvironmentUtils.envSetUp();
+    execute("SET STORAGE GROUP TO root.sg",
+        "CREATE TIMESERIES root.sg.d0.s0 WITH DATATYPE=INT32, ENCODING=RLE",
+        "CREATE TIMESERIES root.sg.d0.s1 WITH DATATYPE=TEXT, ENCODING=PLAIN",
+        "CREATE TIMESERIES root.sg.d0.s2 WITH DATATYPE=DOUBLE, ENCODING=GORILLA",
+        "CREATE TIMESERIES root.sg.d0.s3 WITH DATATYPE=BOOLEAN, ENCODING=PLAIN");
+    for (int i = 1; i <= 10; i++) {
+      execute(String.format("insert into root.sg.d0(timestamp,s0,s1) values(%d,%d,'t%d')", i, i,
+          i));
+    }
+    StorageEngine.getInstance().syncCloseAllProcessor();
+    execute("insert into root.sg.d0(timestamp,s2) values(20,20.5)");
+    StorageEngine.getInstance().syncCloseAllProcessor();
+    // unseq data, s0 is overwritten at the same time
+    execute("insert into root.sg.d0(timestamp,s3) values(5,true)",
+        "insert into root.sg.d0(timestamp,s0) values(10,100)");
+    StorageEngine.getInstance().syncCloseAllProcessor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    EnvironmentUtils.cleanEnv();
+  }
+
+  @Test
+  public void testBatchedLastQuery() throws Exception {
+    List<String> expected = Arrays.asList("10,100", "10,t10", "20,20.5", "5,true");
+    resetCaches();
+    assertEquals(expected, toStrings(LastQueryExecutor.calculateLastPairsForOneDeviceLocally(
+        paths, dataTypes, TEST_QUERY_CONTEXT, Collections.emptySet())));
+    resetCaches();
+    List<TimeValuePair> pairs = new ArrayList<>();
+    for (int i = 0; i < paths.size(); i++) {
+      pairs.add(LastQueryExecutor.calculateLastPairForOneSeriesLocally(paths.get(i),
+          dataTypes.get(i), TEST_QUERY_CONTEXT, Collections.emptySet()));
+    }
+    assertEquals(expected, toStrings(pairs));
+    // from the cache, some series are cached and the others are not
+    resetCaches();
+    IoTDB.metaManager.updateLastCache("root.sg.d0.s1",
+        new TimeValuePair(10, TsPrimitiveType.getByType(TSDataType.TEXT,
+            new Binary("t10"))), false, Long.MIN_VALUE, null);
+    assertEquals(expected, toStrings(LastQueryExecutor.calculateLastPairsForOneDeviceLocally(
+        paths, dataTypes, TEST_QUERY_CONTEXT, Collections.emptySet())));
+  }
+
+  @Test
+  public void testWarmRestart() throws Exception {
+    List<String> expected = Arrays.asList("10,100", "10,t10", "20,20.5", "5,true");
+    assertEquals(expected, toStrings(LastQueryExecutor.calculateLastPairsForOneDeviceLocally(
+        paths, dataTypes, TEST_QUERY_CONTEXT, Collections.emptySet())));
+    // a value that is not in the data files, so it can only be answered by the persisted cache
+    IoTDB.metaManager.updateLastCache("root.sg.d0.s0",
+        new TimeValuePair(10, TsPrimitiveType.getByType(TSDataType.INT32, -1)), true,
+        Long.MIN_VALUE, null);
+    ageDataFiles();
+
+    File snapshotFile = new File(IoTDBDescriptor.getInstance().getConfig().getSchemaDir(),
+        MetadataConstant.LAST_CACHE_SNAPSHOT);
+    File backupFile = new File(snapshotFile.getPath() + ".bak");
+    IoTDB.metaManager.clear();
+    assertTrue(snapshotFile.exists());
+    Files.copy(snapshotFile.toPath(), backupFile.toPath());
+    IoTDB.metaManager.init();
+    assertEquals(Arrays.asList("10,-1", "10,t10", "20,20.5", "5,true"),
+        toStrings(LastQueryExecutor.calculateLastPairsForOneDeviceLocally(paths, dataTypes,
+            TEST_QUERY_CONTEXT, Collections.emptySet())));
+
+    // the data written after the snapshot invalidates the persisted values of the device, e.g.,
+    // the snapshot is not created again because of a crash
+    execute("insert into root.sg.d0(timestamp,s2) values(30,30.5)");
+    StorageEngine.getInstance().syncCloseAllProcessor();
+    IoTDB.metaManager.clear();
+    Files.move(backupFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    IoTDB.metaManager.init();
+    assertEquals(Arrays.asList("10,100", "10,t10", "30,30.5", "5,true"),
+        toStrings(LastQueryExecutor.calculateLastPairsForOneDeviceLocally(paths, dataTypes,
+            TEST_QUERY_CONTEXT, Collections.emptySet())));
+  }
+
+  private void execute(String... sqls) throws Exception {
+    for (String sql : sqls) {
+      queryExecutor.processNonQuery(processor.parseSQLToPhysicalPlan(sql));
+    }
+  }
+
+  private void resetCaches() throws Exception {
+    for (Path path : paths) {
+      ((MeasurementMNode) IoTDB.metaManager.getNodeByPath(path.getFullPath())).resetCache();
+    }
+  }
+
+  /**
+   * pretend that the data files are written long before the snapshot
+   */
+  private void ageDataFiles() throws IOException {
+    long time = System.currentTimeMillis() - 10_000;
+    for (String dataDir : IoTDBDescriptor.getInstance().getConfig().getDataDirs()) {
+      try (Stream<java.nio.file.Path> files = Files.walk(Paths.get(dataDir))) {
+        files.forEach(file -> assertTrue(file.toFile().setLastModified(time)));
+      }
+    }
+  }
+
+  private static List<String> toStrings(List<TimeValuePair> pairs) {
+    List<String> strings = new ArrayList<>();
+    for (TimeValuePair pair : pairs) {
+      strings.add(pair.getTimestamp() + "," + pair.getValue().getStringValue());
+    }
+    return strings;
+  }
+}
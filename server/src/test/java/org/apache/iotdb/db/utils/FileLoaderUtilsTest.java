@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import org.junit.Test;
+
+public class FileLoaderUtilsTest {
+
+  @Test
+  public void testVersionInFileName() {
+    assertEquals(12, FileLoaderUtils.getVersionInFileName(new File("1600000000000-12-0.tsfile")));
+    assertEquals(0, FileLoaderUtils.getVersionInFileName(new File("data.tsfile")));
+    assertEquals(0, FileLoaderUtils.getVersionInFileName(new File("data-a-0.tsfile")));
+  }
+}
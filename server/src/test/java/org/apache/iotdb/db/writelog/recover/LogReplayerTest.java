@@ -26,6 +26,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
+import org.apache.iotdb.db.concurrent.ThreadName;
 import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
 import org.apache.iotdb.db.engine.memtable.IMemTable;
 import org.apache.iotdb.db.engine.memtable.PrimitiveMemTable;
@@ -68,8 +69,8 @@ public class LogReplayerTest {
   }
 
   @Test
-  public void test()
-      throws IOException, StorageGroupProcessorException, QueryProcessException, MetadataException {
+  public void test() throws IOException, StorageGroupProcessorException, QueryProcessException,
+      MetadataException, InterruptedException {
     String logNodePrefix = "testLogNode";
     File tsFile = SystemFileFactory.INSTANCE.getFile("temp", "1-1-1.tsfile");
     File modF = SystemFileFactory.INSTANCE.getFile("test.mod");
@@ -118,6 +119,7 @@ public class LogReplayerTest {
       node.close();
 
       replayer.replayLogs();
+      assertFalse(hasDecodeThread());
 
       for (int i = 0; i < 5; i++) {
         ReadOnlyMemChunk memChunk = memTable
@@ -155,4 +157,51 @@ public class LogReplayerTest {
       tsFile.getParentFile().delete();
     }
   }
+
+  @Test
+  public void testInterruptedReplay() throws IOException, InterruptedException {
+    String logNodePrefix = "testLogNode";
+    File tsFile = SystemFileFactory.INSTANCE.getFile("temp", "1-1-1.tsfile");
+    File modF = SystemFileFactory.INSTANCE.getFile("test.mod");
+    ModificationFile modFile = new ModificationFile(modF.getPath());
+    try {
+      WriteLogNode node =
+          MultiFileLogNodeManager.getInstance().getNode(logNodePrefix + tsFile.getName());
+      for (int i = 0; i < 10_000; i++) {
+        node.write(new InsertRowPlan("root.sg.device0", i, "sensor0", TSDataType.INT64,
+            String.valueOf(i)));
+      }
+      node.close();
+
+      LogReplayer replayer = new LogReplayer(logNodePrefix, tsFile.getPath(), modFile,
+          null, new TsFileResource(tsFile), new PrimitiveMemTable(), false);
+      Thread.currentThread().interrupt();
+      replayer.replayLogs();
+      // the decoding is stopped and waited for before the reader is closed
+      assertTrue(Thread.interrupted());
+      assertFalse(hasDecodeThread());
+    } finally {
+      modFile.close();
+      MultiFileLogNodeManager.getInstance().deleteNode(logNodePrefix + tsFile.getName());
+      modF.delete();
+      tsFile.delete();
+      tsFile.getParentFile().delete();
+    }
+  }
+
+  /**
+   * @return whether a decoding thread is still alive, which may take a moment to exit after its
+   * executor is terminated
+   */
+  private boolean hasDecodeThread() throws InterruptedException {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().contains(ThreadName.WAL_DECODE.getName())) {
+        thread.join(10_000);
+        if (thread.isAlive()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
 }
@@ -19,6 +19,7 @@
 package org.apache.iotdb.rpc;
 
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementResp;
 import org.apache.iotdb.service.rpc.thrift.TSFetchResultsResp;
@@ -92,6 +93,34 @@ public class RpcUtils {
     return status;
   }
 
+  /**
+   * split a prepared statement by its parameters ('?'). The ones in quoted strings are skipped,
+   * where a backslash escapes the next character. The client and the server both use this so they
+   * agree on the parameters of a statement.
+   */
+  public static List<String> splitSqlByParameters(String sql) {
+    List<String> parts = new ArrayList<>();
+    char quote = 0;
+    int offset = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"') {
+        quote = c;
+      } else if (c == '?') {
+        parts.add(sql.substring(offset, i));
+        offset = i + 1;
+      }
+    }
+    parts.add(sql.substring(offset));
+    return parts;
+  }
+
   public static TSExecuteStatementResp getTSExecuteStatementResp(TSStatusCode tsStatusCode) {
     TSStatus status = getStatus(tsStatusCode);
     return getTSExecuteStatementResp(status);
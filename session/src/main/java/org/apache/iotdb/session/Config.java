@@ -24,5 +24,7 @@ public class Config {
   public static final String DEFAULT_PASSWORD = "password";
   public static final int DEFAULT_FETCH_SIZE = 10000;
   public static final int DEFAULT_TIMEOUT_MS = 0;
+  // the size of the chunks a TsFile is uploaded in by the bulk load
+  public static final int BULK_LOAD_CHUNK_SIZE = 4 * 1024 * 1024;
 
 }
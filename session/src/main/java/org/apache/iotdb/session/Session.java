@@ -18,7 +18,11 @@
  */
 package org.apache.iotdb.session;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,6 +33,7 @@ import org.apache.iotdb.rpc.BatchExecutionException;
 import org.apache.iotdb.rpc.IoTDBConnectionException;
 import org.apache.iotdb.rpc.RpcUtils;
 import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.service.rpc.thrift.TSBulkLoadReq;
 import org.apache.iotdb.service.rpc.thrift.TSInsertStringRecordReq;
 import org.apache.iotdb.service.rpc.thrift.TSInsertStringRecordsReq;
 import org.apache.iotdb.service.rpc.thrift.TSInsertTabletReq;
@@ -562,6 +567,41 @@ public class Session {
     return res;
   }
 
+  /**
+   * Upload a TsFile generated by TsFileWriter and load it into the storage groups of its devices,
+   * which is much cheaper than inserting its data. The file is streamed in chunks of
+   * Config.BULK_LOAD_CHUNK_SIZE and the schemas of its series are created if they do not exist.
+   * As the server relies on the name to load a TsFile, the file should be named like
+   * {time}-{version}-0.tsfile.
+   *
+   * @param file a closed TsFile, it is not modified
+   */
+  public void bulkLoadTsFile(File file)
+      throws IoTDBConnectionException, StatementExecutionException {
+    try (FileChannel channel = new FileInputStream(file).getChannel()) {
+      long size = channel.size();
+      long offset = 0;
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, Config.BULK_LOAD_CHUNK_SIZE));
+      do {
+        buffer.clear();
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+          // read until the buffer is full or the file ends
+        }
+        buffer.flip();
+        int length = buffer.remaining();
+        TSBulkLoadReq request = new TSBulkLoadReq(sessionId, file.getName(), offset, buffer,
+            offset + length >= size);
+        RpcUtils.verifySuccess(client.bulkLoad(request));
+        offset += length;
+      } while (offset < size);
+    } catch (IOException e) {
+      throw new StatementExecutionException(
+          String.format("Can not read %s because %s", file, e.getMessage()));
+    } catch (TException e) {
+      throw new IoTDBConnectionException(e);
+    }
+  }
+
   /**
    * This method NOT insert data into database and the server just return after accept the request,
    * this method should be used to test other time cost in client
@@ -0,0 +1,406 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.session.pool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.Session;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.write.record.Tablet;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AffinityLane sends the writes of some devices for a SessionPool in affinity mode. The writes
+ * routed to a lane are queued and sent in order by a single thread, which borrows a connection
+ * from the pool for each batch, so the writes of a device never arrive at the server from
+ * different connections at the same time. Before sending, the thread coalesces the consecutive
+ * requests in the queue:
+ * 1. records of the same device and measurements with data types are sent as one Tablet;
+ * 2. other records are sent by one insertRecords call;
+ * 3. tablets are sent one by one.
+ * If a coalesced batch is rejected, its requests are sent again one by one, so only the wrong
+ * ones fail.
+ */
+class AffinityLane {
+
+  private static final Logger logger = LoggerFactory.getLogger(AffinityLane.class);
+
+  private static final int RETRY = 3;
+  // how long the worker waits for a request before it checks whether the lane is closed
+  private static final long POLL_INTERVAL_MS = 100;
+
+  private final String name;
+  private final SessionSource sessionSource;
+  // the max number of records coalesced into one request
+  private final int maxBatchSize;
+  private final BlockingQueue<WriteRequest> requests = new LinkedBlockingQueue<>();
+
+  private Session session;
+  private Thread worker;
+  private volatile boolean closed = false;
+
+  AffinityLane(String name, SessionSource sessionSource, int maxBatchSize) {
+    this.name = name;
+    this.sessionSource = sessionSource;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  CompletableFuture<Void> insertRecord(String deviceId, long time, List<String> measurements,
+      List<TSDataType> types, List<Object> values) {
+    WriteRequest request = new WriteRequest(deviceId, time, measurements, types, values, null,
+        null, false);
+    // a wrong value is rejected alone instead of failing the requests coalesced with it
+    String error = checkValues(types, values);
+    if (error != null) {
+      request.future.completeExceptionally(new StatementExecutionException(error));
+      return request.future;
+    }
+    return submit(request);
+  }
+
+  CompletableFuture<Void> insertRecord(String deviceId, long time, List<String> measurements,
+      List<String> values) {
+    return submit(new WriteRequest(deviceId, time, measurements, null, null, values, null, false));
+  }
+
+  CompletableFuture<Void> insertTablet(Tablet tablet, boolean sorted) {
+    return submit(new WriteRequest(tablet.deviceId, 0, null, null, null, null, tablet, sorted));
+  }
+
+  private synchronized CompletableFuture<Void> submit(WriteRequest request) {
+    if (closed) {
+      request.future.completeExceptionally(
+          new IoTDBConnectionException(String.format("%s has been closed", name)));
+      return request.future;
+    }
+    if (worker == null) {
+      worker = new Thread(this::run, name);
+      worker.setDaemon(true);
+      worker.start();
+    }
+    requests.add(request);
+    return request.future;
+  }
+
+  /**
+   * reject new requests, wait for the thread to send the queued ones and give the connection back.
+   * The thread is not interrupted, as that may break the connection in the middle of a request.
+   */
+  synchronized void close() {
+    closed = true;
+    if (worker != null) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      worker = null;
+    }
+    releaseSession();
+    // only left if the thread was interrupted by others
+    WriteRequest request;
+    while ((request = requests.poll()) != null) {
+      request.future.completeExceptionally(
+          new IoTDBConnectionException(String.format("%s has been closed", name)));
+    }
+  }
+
+  private void run() {
+    List<WriteRequest> batch = new ArrayList<>();
+    while (true) {
+      WriteRequest request;
+      try {
+        request = requests.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (request == null) {
+        // no request is added after the lane is closed, so the queue is drained
+        if (closed) {
+          return;
+        }
+        continue;
+      }
+      batch.add(request);
+      // this is the only consumer, so the head of the queue can not be taken by others
+      WriteRequest next;
+      while (batch.size() < maxBatchSize && (next = requests.peek()) != null
+          && batch.get(0).canCoalesce(next)) {
+        batch.add(requests.poll());
+      }
+      write(batch);
+      batch.clear();
+    }
+  }
+
+  private void write(List<WriteRequest> batch) {
+    Exception exception = sendWithRetry(batch);
+    Exception[] exceptions = new Exception[batch.size()];
+    if (exception instanceof StatementExecutionException && batch.size() > 1) {
+      // the coalesced requests fail together, so send them one by one to fail only the wrong ones
+      for (int i = 0; i < batch.size(); i++) {
+        exceptions[i] = sendWithRetry(Collections.singletonList(batch.get(i)));
+      }
+    } else {
+      Arrays.fill(exceptions, exception);
+    }
+    // give the connection back after each batch, so the lanes do not keep all the sessions of the
+    // pool and starve the queries and the other operations while they are busy
+    releaseSession();
+    for (int i = 0; i < batch.size(); i++) {
+      if (exceptions[i] == null) {
+        batch.get(i).future.complete(null);
+      } else {
+        batch.get(i).future.completeExceptionally(exceptions[i]);
+      }
+    }
+  }
+
+  /**
+   * @return the exception if the requests are not written, otherwise null
+   */
+  private Exception sendWithRetry(List<WriteRequest> batch) {
+    Exception exception = null;
+    for (int i = 0; i < RETRY; i++) {
+      try {
+        if (session == null) {
+          session = sessionSource.acquire();
+        }
+        send(batch);
+        exception = null;
+        break;
+      } catch (IoTDBConnectionException e) {
+        // the connection is broken, get a new one and try again
+        logger.warn("{} failed to write {} requests, retry {}", name, batch.size(), i, e);
+        if (session != null) {
+          sessionSource.discard(session);
+          session = null;
+        }
+        exception = e;
+      } catch (StatementExecutionException | RuntimeException e) {
+        exception = e;
+        break;
+      }
+    }
+    return exception;
+  }
+
+  private void send(List<WriteRequest> batch)
+      throws IoTDBConnectionException, StatementExecutionException {
+    WriteRequest first = batch.get(0);
+    if (first.tablet != null) {
+      session.insertTablet(first.tablet, first.sorted);
+    } else if (batch.size() == 1) {
+      if (first.types != null) {
+        session.insertRecord(first.deviceId, first.time, first.measurements, first.types,
+            first.values);
+      } else {
+        session.insertRecord(first.deviceId, first.time, first.measurements, first.stringValues);
+      }
+    } else if (first.types != null && isOneTablet(batch)) {
+      session.insertTablet(toTablet(batch), false);
+    } else {
+      List<String> deviceIds = new ArrayList<>(batch.size());
+      List<Long> times = new ArrayList<>(batch.size());
+      List<List<String>> measurementsList = new ArrayList<>(batch.size());
+      for (WriteRequest request : batch) {
+        deviceIds.add(request.deviceId);
+        times.add(request.time);
+        measurementsList.add(request.measurements);
+      }
+      if (first.types != null) {
+        List<List<TSDataType>> typesList = new ArrayList<>(batch.size());
+        List<List<Object>> valuesList = new ArrayList<>(batch.size());
+        for (WriteRequest request : batch) {
+          typesList.add(request.types);
+          valuesList.add(request.values);
+        }
+        session.insertRecords(deviceIds, times, measurementsList, typesList, valuesList);
+      } else {
+        List<List<String>> valuesList = new ArrayList<>(batch.size());
+        for (WriteRequest request : batch) {
+          valuesList.add(request.stringValues);
+        }
+        session.insertRecords(deviceIds, times, measurementsList, valuesList);
+      }
+    }
+  }
+
+  private void releaseSession() {
+    if (session != null) {
+      sessionSource.release(session);
+      session = null;
+    }
+  }
+
+  /**
+   * @return the error if a value is null or does not match its data type, otherwise null
+   */
+  private static String checkValues(List<TSDataType> types, List<Object> values) {
+    if (types.size() != values.size()) {
+      return String.format("%d data types are given for %d values", types.size(), values.size());
+    }
+    for (int i = 0; i < types.size(); i++) {
+      Class<?> valueClass = getValueClass(types.get(i));
+      if (valueClass == null) {
+        return String.format("Data type %s is not supported.", types.get(i));
+      }
+      if (!valueClass.isInstance(values.get(i))) {
+        return String.format("Value %s does not match data type %s", values.get(i),
+            types.get(i));
+      }
+    }
+    return null;
+  }
+
+  private static Class<?> getValueClass(TSDataType type) {
+    switch (type) {
+      case BOOLEAN:
+        return Boolean.class;
+      case INT32:
+        return Integer.class;
+      case INT64:
+        return Long.class;
+      case FLOAT:
+        return Float.class;
+      case DOUBLE:
+        return Double.class;
+      case TEXT:
+        return String.class;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isOneTablet(List<WriteRequest> batch) {
+    WriteRequest first = batch.get(0);
+    for (WriteRequest request : batch) {
+      if (!request.deviceId.equals(first.deviceId)
+          || !request.measurements.equals(first.measurements)
+          || !request.types.equals(first.types)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Tablet toTablet(List<WriteRequest> batch) {
+    WriteRequest first = batch.get(0);
+    List<MeasurementSchema> schemas = new ArrayList<>(first.measurements.size());
+    for (int i = 0; i < first.measurements.size(); i++) {
+      schemas.add(new MeasurementSchema(first.measurements.get(i), first.types.get(i)));
+    }
+    Tablet tablet = new Tablet(first.deviceId, schemas, batch.size());
+    for (WriteRequest request : batch) {
+      int row = tablet.rowSize++;
+      tablet.timestamps[row] = request.time;
+      for (int i = 0; i < request.types.size(); i++) {
+        Object value = request.values.get(i);
+        switch (request.types.get(i)) {
+          case BOOLEAN:
+            ((boolean[]) tablet.values[i])[row] = (Boolean) value;
+            break;
+          case INT32:
+            ((int[]) tablet.values[i])[row] = (Integer) value;
+            break;
+          case INT64:
+            ((long[]) tablet.values[i])[row] = (Long) value;
+            break;
+          case FLOAT:
+            ((float[]) tablet.values[i])[row] = (Float) value;
+            break;
+          case DOUBLE:
+            ((double[]) tablet.values[i])[row] = (Double) value;
+            break;
+          default:
+            // the values are checked when the request is added, so this is TEXT
+            ((Binary[]) tablet.values[i])[row] = new Binary((String) value);
+            break;
+        }
+      }
+    }
+    return tablet;
+  }
+
+  /**
+   * where a lane borrows its connection, i.e., the SessionPool
+   */
+  interface SessionSource {
+
+    /**
+     * borrow a connection, which may wait until one is given back
+     */
+    Session acquire() throws IoTDBConnectionException;
+
+    /**
+     * give back a connection that works
+     */
+    void release(Session session);
+
+    /**
+     * close and drop a broken connection
+     */
+    void discard(Session session);
+  }
+
+  static class WriteRequest {
+
+    private final String deviceId;
+    private final long time;
+    private final List<String> measurements;
+    // null if the values are strings
+    private final List<TSDataType> types;
+    private final List<Object> values;
+    private final List<String> stringValues;
+    // not null if this is a tablet, which is never coalesced
+    private final Tablet tablet;
+    private final boolean sorted;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    @SuppressWarnings("squid:S107")
+    private WriteRequest(String deviceId, long time, List<String> measurements,
+        List<TSDataType> types, List<Object> values, List<String> stringValues, Tablet tablet,
+        boolean sorted) {
+      this.deviceId = deviceId;
+      this.time = time;
+      this.measurements = measurements;
+      this.types = types;
+      this.values = values;
+      this.stringValues = stringValues;
+      this.tablet = tablet;
+      this.sorted = sorted;
+    }
+
+    private boolean canCoalesce(WriteRequest other) {
+      return tablet == null && other.tablet == null && (types == null) == (other.types == null);
+    }
+  }
+}
@@ -18,17 +18,22 @@
  */
 package org.apache.iotdb.session.pool;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import org.apache.iotdb.rpc.BatchExecutionException;
 import org.apache.iotdb.rpc.IoTDBConnectionException;
 import org.apache.iotdb.rpc.StatementExecutionException;
 import org.apache.iotdb.session.Config;
 import org.apache.iotdb.session.Session;
 import org.apache.iotdb.session.SessionDataSet;
+import org.apache.iotdb.tsfile.common.constant.TsFileConstant;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
@@ -55,6 +60,15 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Another case that you have to manually call closeResultSet() is that when there is exception when
  * you call SessionDataSetWrapper.hasNext() or next()
+ * <p>
+ * In affinity mode, the inserts are not sent by the caller threads but by maxSize lanes, each of
+ * which sends its writes in order through a session borrowed from the pool for each batch, so the
+ * lanes and the other operations never open more than maxSize connections together, and the lanes
+ * do not keep the sessions from the other operations.
+ * The writes of a device (or of the devices sharing the first affinityKeyLevel nodes, e.g., a
+ * storage group) are always routed to the same lane, so they do not contend with each other on the
+ * server through different connections, and the consecutive small writes queued in a lane are
+ * coalesced into tablets. The insert methods still return after their data is written.
  */
 public class SessionPool {
 
@@ -73,6 +87,12 @@ public class SessionPool {
   private long timeout; //ms
   private static int FINAL_RETRY = RETRY - 1;
   private boolean enableCompression = false;
+  // the max number of records a lane coalesces into one request
+  private static final int AFFINITY_BATCH_SIZE = 1024;
+  // not null in affinity mode
+  private AffinityLane[] lanes;
+  // the number of leading nodes of a device path used to route its writes, -1 means the whole path
+  private int affinityKeyLevel = -1;
 
   public SessionPool(String ip, int port, String user, String password, int maxSize) {
     this(ip, port, user, password, maxSize, Config.DEFAULT_FETCH_SIZE, 60_000, false);
@@ -86,6 +106,16 @@ public class SessionPool {
   @SuppressWarnings("squid:S107")
   public SessionPool(String ip, int port, String user, String password, int maxSize, int fetchSize,
       long timeout, boolean enableCompression) {
+    this(ip, port, user, password, maxSize, fetchSize, timeout, enableCompression, false);
+  }
+
+  /**
+   * @param enableAffinity whether to route the inserts of a device to the same connection, see the
+   *                       affinity mode of SessionPool
+   */
+  @SuppressWarnings("squid:S107")
+  public SessionPool(String ip, int port, String user, String password, int maxSize, int fetchSize,
+      long timeout, boolean enableCompression, boolean enableAffinity) {
     this.maxSize = maxSize;
     this.ip = ip;
     this.port = port;
@@ -94,6 +124,75 @@ public class SessionPool {
     this.fetchSize = fetchSize;
     this.timeout = timeout;
     this.enableCompression = enableCompression;
+    if (enableAffinity) {
+      lanes = new AffinityLane[maxSize];
+      for (int i = 0; i < maxSize; i++) {
+        lanes[i] = new AffinityLane(String.format("SessionPool-%s:%d-lane-%d", ip, port, i),
+            new LaneSessionSource(), AFFINITY_BATCH_SIZE);
+      }
+    }
+  }
+
+  /**
+   * In affinity mode, route the writes by the first affinityKeyLevel nodes of the device paths
+   * instead of the whole paths, e.g., 2 routes the devices of storage group root.sg together.
+   */
+  public void setAffinityKeyLevel(int affinityKeyLevel) {
+    this.affinityKeyLevel = affinityKeyLevel;
+  }
+
+  AffinityLane getLane(String deviceId) {
+    return lanes[Math.floorMod(getAffinityKey(deviceId).hashCode(), lanes.length)];
+  }
+
+  private String getAffinityKey(String deviceId) {
+    if (affinityKeyLevel <= 0) {
+      return deviceId;
+    }
+    int index = -1;
+    for (int i = 0; i < affinityKeyLevel; i++) {
+      index = deviceId.indexOf(TsFileConstant.PATH_SEPARATOR, index + 1);
+      if (index < 0) {
+        return deviceId;
+      }
+    }
+    return deviceId.substring(0, index);
+  }
+
+  /**
+   * wait for the writes sent by the lanes and throw the first exception of them
+   */
+  private static void waitForLanes(List<CompletableFuture<Void>> futures)
+      throws IoTDBConnectionException, StatementExecutionException {
+    Throwable cause = null;
+    for (CompletableFuture<Void> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IoTDBConnectionException(e);
+      } catch (ExecutionException e) {
+        if (cause == null) {
+          cause = e.getCause();
+        }
+      }
+    }
+    if (cause instanceof StatementExecutionException) {
+      throw (StatementExecutionException) cause;
+    } else if (cause instanceof IoTDBConnectionException) {
+      throw (IoTDBConnectionException) cause;
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause != null) {
+      throw new IoTDBConnectionException(cause);
+    }
+  }
+
+  private static void waitForLane(CompletableFuture<Void> future)
+      throws IoTDBConnectionException, StatementExecutionException {
+    List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+    futures.add(future);
+    waitForLanes(futures);
   }
 
   //if this method throws an exception, either the server is broken, or the ip/port/user/password is incorrect.
@@ -135,15 +234,25 @@ public class SessionPool {
           return session;
         }
       }
-      if (logger.isDebugEnabled()) {
-        logger.debug("Create a new Session {}, {}, {}, {}", ip, port, user, password);
+      try {
+        return createSession();
+      } catch (IoTDBConnectionException e) {
+        // the session is not created, so it does not count
+        removeSession();
+        throw e;
       }
-      session = new Session(ip, port, user, password, fetchSize);
-      session.open(enableCompression);
-      return session;
     }
   }
 
+  private Session createSession() throws IoTDBConnectionException {
+    if (logger.isDebugEnabled()) {
+      logger.debug("Create a new Session {}, {}, {}, {}", ip, port, user, password);
+    }
+    Session session = new Session(ip, port, user, password, fetchSize);
+    session.open(enableCompression);
+    return session;
+  }
+
   public int currentAvailableSize() {
     return queue.size();
   }
@@ -166,23 +275,53 @@ public class SessionPool {
   /**
    * close all connections in the pool
    */
-  public synchronized void close() {
-    for (Session session : queue) {
-      try {
-        session.close();
-      } catch (IoTDBConnectionException e) {
-        //do nothing
+  public void close() {
+    // not under the lock, as the lanes borrow sessions while sending their queued writes
+    if (lanes != null) {
+      for (AffinityLane lane : lanes) {
+        lane.close();
       }
     }
-    for (Session session : occupied.keySet()) {
-      try {
-        session.close();
-      } catch (IoTDBConnectionException e) {
-        //do nothing
+    synchronized (this) {
+      for (Session session : queue) {
+        try {
+          session.close();
+        } catch (IoTDBConnectionException e) {
+          //do nothing
+        }
+      }
+      for (Session session : occupied.keySet()) {
+        try {
+          session.close();
+        } catch (IoTDBConnectionException e) {
+          //do nothing
+        }
       }
+      queue.clear();
+      occupied.clear();
+    }
+  }
+
+  /**
+   * lends the sessions of the pool to the lanes in affinity mode
+   */
+  private class LaneSessionSource implements AffinityLane.SessionSource {
+
+    @Override
+    public Session acquire() throws IoTDBConnectionException {
+      return getSession();
+    }
+
+    @Override
+    public void release(Session session) {
+      putBack(session);
+    }
+
+    @Override
+    public void discard(Session session) {
+      closeSession(session);
+      removeSession();
     }
-    queue.clear();
-    occupied.clear();
   }
 
   public void closeResultSet(SessionDataSetWrapper wrapper) {
@@ -265,6 +404,10 @@ public class SessionPool {
    */
   public void insertTablet(Tablet tablet, boolean sorted)
       throws IoTDBConnectionException, StatementExecutionException {
+    if (lanes != null) {
+      waitForLane(getLane(tablet.deviceId).insertTablet(tablet, sorted));
+      return;
+    }
     for (int i = 0; i < RETRY; i++) {
       Session session = getSession();
       try {
@@ -299,6 +442,14 @@ public class SessionPool {
    */
   public void insertTablets(Map<String, Tablet> tablets, boolean sorted)
       throws IoTDBConnectionException, StatementExecutionException {
+    if (lanes != null) {
+      List<CompletableFuture<Void>> futures = new ArrayList<>(tablets.size());
+      for (Tablet tablet : tablets.values()) {
+        futures.add(getLane(tablet.deviceId).insertTablet(tablet, sorted));
+      }
+      waitForLanes(futures);
+      return;
+    }
     for (int i = 0; i < RETRY; i++) {
       Session session = getSession();
       try {
@@ -325,6 +476,15 @@ public class SessionPool {
   public void insertRecords(List<String> deviceIds, List<Long> times,
       List<List<String>> measurementsList, List<List<TSDataType>> typesList,
       List<List<Object>> valuesList) throws IoTDBConnectionException, StatementExecutionException {
+    if (lanes != null) {
+      List<CompletableFuture<Void>> futures = new ArrayList<>(deviceIds.size());
+      for (int i = 0; i < deviceIds.size(); i++) {
+        futures.add(getLane(deviceIds.get(i)).insertRecord(deviceIds.get(i), times.get(i),
+            measurementsList.get(i), typesList.get(i), valuesList.get(i)));
+      }
+      waitForLanes(futures);
+      return;
+    }
     for (int i = 0; i < RETRY; i++) {
       Session session = getSession();
       try {
@@ -352,6 +512,15 @@ public class SessionPool {
   public void insertRecords(List<String> deviceIds, List<Long> times,
       List<List<String>> measurementsList, List<List<String>> valuesList)
       throws IoTDBConnectionException, StatementExecutionException {
+    if (lanes != null) {
+      List<CompletableFuture<Void>> futures = new ArrayList<>(deviceIds.size());
+      for (int i = 0; i < deviceIds.size(); i++) {
+        futures.add(getLane(deviceIds.get(i)).insertRecord(deviceIds.get(i), times.get(i),
+            measurementsList.get(i), valuesList.get(i)));
+      }
+      waitForLanes(futures);
+      return;
+    }
     for (int i = 0; i < RETRY; i++) {
       Session session = getSession();
       try {
@@ -378,6 +547,10 @@ public class SessionPool {
   public void insertRecord(String deviceId, long time, List<String> measurements,
       List<TSDataType> types, List<Object> values)
       throws IoTDBConnectionException, StatementExecutionException {
+    if (lanes != null) {
+      waitForLane(getLane(deviceId).insertRecord(deviceId, time, measurements, types, values));
+      return;
+    }
     for (int i = 0; i < RETRY; i++) {
       Session session = getSession();
       try {
@@ -404,6 +577,10 @@ public class SessionPool {
   public void insertRecord(String deviceId, long time, List<String> measurements,
       List<String> values)
       throws IoTDBConnectionException, StatementExecutionException {
+    if (lanes != null) {
+      waitForLane(getLane(deviceId).insertRecord(deviceId, time, measurements, values));
+      return;
+    }
     for (int i = 0; i < RETRY; i++) {
       Session session = getSession();
       try {
@@ -420,6 +597,29 @@ public class SessionPool {
     }
   }
 
+  /**
+   * upload a TsFile and load it into the storage groups of its devices
+   *
+   * @see Session#bulkLoadTsFile(File)
+   */
+  public void bulkLoadTsFile(File file)
+      throws IoTDBConnectionException, StatementExecutionException {
+    for (int i = 0; i < RETRY; i++) {
+      Session session = getSession();
+      try {
+        session.bulkLoadTsFile(file);
+        putBack(session);
+        return;
+      } catch (IoTDBConnectionException e) {
+        // TException means the connection is broken, remove it and get a new one.
+        cleanSessionAndMayThrowConnectionException(session, i, e);
+      } catch (StatementExecutionException e) {
+        putBack(session);
+        throw e;
+      }
+    }
+  }
+
   /**
    * This method NOT insert data into database and the server just return after accept the request,
    * this method should be used to test other time cost in client
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.session.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.Session;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.write.record.Tablet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class AffinityLaneTest {
+
+  private static final List<String> MEASUREMENTS = Arrays.asList("s1", "s2");
+  private static final List<TSDataType> TYPES = Arrays.asList(TSDataType.INT64, TSDataType.TEXT);
+
+  private Session session;
+  private CountingSessionSource sessionSource;
+  private AffinityLane lane;
+  private CountDownLatch firstWrite;
+  private CountDownLatch firstWriteStarted;
+
+  @Before
+  public void setUp() throws IoTDBConnectionException, StatementExecutionException {
+    session = mock(Session.class);
+    sessionSource = new CountingSessionSource();
+    lane = new AffinityLane("test-lane", sessionSource, 1024);
+    // hold the first write, so the following ones are queued and coalesced
+    firstWrite = new CountDownLatch(1);
+    firstWriteStarted = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      firstWriteStarted.countDown();
+      firstWrite.await();
+      return null;
+    }).when(session).insertRecord(anyString(), anyLong(), anyListOf(String.class),
+        anyListOf(TSDataType.class), anyListOf(Object.class));
+  }
+
+  @After
+  public void tearDown() {
+    firstWrite.countDown();
+    lane.close();
+  }
+
+  @Test
+  public void testCoalesceIntoTablet() throws Exception {
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    futures.add(lane.insertRecord("root.sg.d1", 0, MEASUREMENTS, TYPES, Arrays.asList(0L, "a")));
+    firstWriteStarted.await();
+    for (long time = 1; time <= 3; time++) {
+      futures.add(
+          lane.insertRecord("root.sg.d1", time, MEASUREMENTS, TYPES, Arrays.asList(time, "b")));
+    }
+    firstWrite.countDown();
+    for (CompletableFuture<Void> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+
+    ArgumentCaptor<Tablet> captor = ArgumentCaptor.forClass(Tablet.class);
+    verify(session).insertTablet(captor.capture(), anyBoolean());
+    Tablet tablet = captor.getValue();
+    assertEquals("root.sg.d1", tablet.deviceId);
+    assertEquals(3, tablet.rowSize);
+    assertEquals(3, tablet.timestamps[2]);
+    assertEquals(2L, ((long[]) tablet.values[0])[1]);
+    assertEquals("b", ((Binary[]) tablet.values[1])[2].getStringValue());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCoalesceIntoRecords() throws Exception {
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    futures.add(lane.insertRecord("root.sg.d1", 0, MEASUREMENTS, TYPES, Arrays.asList(0L, "a")));
+    firstWriteStarted.await();
+    // records of different devices can not be a tablet, and a tablet is never coalesced
+    futures.add(lane.insertRecord("root.sg.d1", 1, MEASUREMENTS, TYPES, Arrays.asList(1L, "b")));
+    futures.add(lane.insertRecord("root.sg.d2", 1, MEASUREMENTS, TYPES, Arrays.asList(1L, "c")));
+    futures.add(lane.insertTablet(new Tablet("root.sg.d1", new ArrayList<>()), true));
+    futures.add(lane.insertRecord("root.sg.d1", 2, MEASUREMENTS, Arrays.asList("2", "d")));
+    futures.add(lane.insertRecord("root.sg.d2", 2, MEASUREMENTS, Arrays.asList("2", "e")));
+    firstWrite.countDown();
+    for (CompletableFuture<Void> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+
+    ArgumentCaptor<List> deviceIds = ArgumentCaptor.forClass(List.class);
+    verify(session).insertRecords(deviceIds.capture(), anyListOf(Long.class), any(List.class),
+        any(List.class), any(List.class));
+    assertEquals(Arrays.asList("root.sg.d1", "root.sg.d2"), deviceIds.getValue());
+    verify(session).insertTablet(any(Tablet.class), anyBoolean());
+    verify(session).insertRecords(deviceIds.capture(), anyListOf(Long.class), any(List.class),
+        any(List.class));
+    assertEquals(Arrays.asList("root.sg.d1", "root.sg.d2"), deviceIds.getValue());
+  }
+
+  @Test
+  public void testStatementError() throws Exception {
+    firstWrite.countDown();
+    doThrow(new StatementExecutionException("wrong type")).when(session)
+        .insertRecord(anyString(), anyLong(), anyListOf(String.class), anyListOf(String.class));
+    try {
+      lane.insertRecord("root.sg.d1", 1, MEASUREMENTS, Arrays.asList("1", "a"))
+          .get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof StatementExecutionException);
+    }
+    // a statement error does not break the connection
+    verify(session, times(1))
+        .insertRecord(anyString(), anyLong(), anyListOf(String.class), anyListOf(String.class));
+  }
+
+  @Test
+  public void testRetryCoalescedRequestsAlone() throws Exception {
+    doAnswer(invocation -> {
+      if ((long) invocation.getArguments()[1] == 2) {
+        throw new StatementExecutionException("wrong value");
+      }
+      firstWriteStarted.countDown();
+      firstWrite.await();
+      return null;
+    }).when(session).insertRecord(anyString(), anyLong(), anyListOf(String.class),
+        anyListOf(TSDataType.class), anyListOf(Object.class));
+    doThrow(new StatementExecutionException("wrong value")).when(session)
+        .insertTablet(any(Tablet.class), anyBoolean());
+
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    futures.add(lane.insertRecord("root.sg.d1", 0, MEASUREMENTS, TYPES, Arrays.asList(0L, "a")));
+    firstWriteStarted.await();
+    for (long time = 1; time <= 3; time++) {
+      futures.add(
+          lane.insertRecord("root.sg.d1", time, MEASUREMENTS, TYPES, Arrays.asList(time, "b")));
+    }
+    firstWrite.countDown();
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        futures.get(i).get(10, TimeUnit.SECONDS);
+        assertTrue(i != 2);
+      } catch (ExecutionException e) {
+        assertEquals(2, i);
+        assertTrue(e.getCause() instanceof StatementExecutionException);
+      }
+    }
+    verify(session).insertTablet(any(Tablet.class), anyBoolean());
+    verify(session, times(4)).insertRecord(anyString(), anyLong(), anyListOf(String.class),
+        anyListOf(TSDataType.class), anyListOf(Object.class));
+    // the session is given back after the first batch though the second one is queued
+    assertEquals(2, sessionSource.acquired.get());
+    assertEquals(2, sessionSource.released.get());
+  }
+
+  @Test
+  public void testReconnect() throws Exception {
+    firstWrite.countDown();
+    doThrow(new IoTDBConnectionException("broken")).doAnswer(invocation -> null).when(session)
+        .insertRecord(anyString(), anyLong(), anyListOf(String.class), anyListOf(String.class));
+    lane.insertRecord("root.sg.d1", 1, MEASUREMENTS, Arrays.asList("1", "a"))
+        .get(10, TimeUnit.SECONDS);
+    assertEquals(2, sessionSource.acquired.get());
+    assertEquals(1, sessionSource.discarded.get());
+  }
+
+  @Test
+  public void testReleaseWhenIdle() throws Exception {
+    firstWrite.countDown();
+    lane.insertRecord("root.sg.d1", 1, MEASUREMENTS, TYPES, Arrays.asList(1L, "a"))
+        .get(10, TimeUnit.SECONDS);
+    lane.insertRecord("root.sg.d1", 2, MEASUREMENTS, TYPES, Arrays.asList(2L, "b"))
+        .get(10, TimeUnit.SECONDS);
+    // the session is given back to the pool after each write as the queue is empty
+    assertEquals(2, sessionSource.acquired.get());
+    assertEquals(2, sessionSource.released.get());
+  }
+
+  @Test
+  public void testCloseSendsQueuedWrites() throws Exception {
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    futures.add(lane.insertRecord("root.sg.d1", 0, MEASUREMENTS, TYPES, Arrays.asList(0L, "a")));
+    firstWriteStarted.await();
+    futures.add(lane.insertRecord("root.sg.d1", 1, MEASUREMENTS, Arrays.asList("1", "b")));
+    Thread closer = new Thread(lane::close);
+    closer.start();
+    firstWrite.countDown();
+    closer.join(10_000);
+    for (CompletableFuture<Void> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    verify(session)
+        .insertRecord(anyString(), anyLong(), anyListOf(String.class), anyListOf(String.class));
+    assertEquals(sessionSource.acquired.get(), sessionSource.released.get());
+    try {
+      lane.insertRecord("root.sg.d1", 2, MEASUREMENTS, Arrays.asList("2", "c"))
+          .get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IoTDBConnectionException);
+    }
+  }
+
+  @Test
+  public void testRejectMismatchedValue() throws Exception {
+    firstWrite.countDown();
+    try {
+      lane.insertRecord("root.sg.d1", 1, MEASUREMENTS, TYPES, Arrays.asList("1", "a"))
+          .get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof StatementExecutionException);
+    }
+    assertEquals(0, sessionSource.acquired.get());
+  }
+
+  @Test
+  public void testRouting() {
+    SessionPool pool = new SessionPool("127.0.0.1", 6667, "root", "root", 4, 1024, 60_000, false,
+        true);
+    pool.setAffinityKeyLevel(2);
+    AffinityLane lane = pool.getLane("root.sg1.d1");
+    assertSame(lane, pool.getLane("root.sg1.d2"));
+    assertSame(lane, pool.getLane("root.sg1.d1.s"));
+    assertSame(lane, pool.getLane("root.sg1"));
+    pool.close();
+  }
+
+  private class CountingSessionSource implements AffinityLane.SessionSource {
+
+    private AtomicInteger acquired = new AtomicInteger();
+    private AtomicInteger released = new AtomicInteger();
+    private AtomicInteger discarded = new AtomicInteger();
+
+    @Override
+    public Session acquire() {
+      acquired.incrementAndGet();
+      return session;
+    }
+
+    @Override
+    public void release(Session session) {
+      released.incrementAndGet();
+    }
+
+    @Override
+    public void discard(Session session) {
+      discarded.incrementAndGet();
+    }
+  }
+}
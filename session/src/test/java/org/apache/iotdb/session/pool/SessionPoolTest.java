@@ -79,6 +79,36 @@ public class SessionPoolTest {
     pool.close();
   }
 
+  @Test
+  public void insertWithAffinity() {
+    SessionPool pool = new SessionPool("127.0.0.1", 6667, "root", "root", 2, 1024, 60_000, false,
+        true);
+    ExecutorService service = Executors.newFixedThreadPool(10);
+    for (int i = 0; i < 10; i++) {
+      final int no = i;
+      service.submit(() -> {
+        try {
+          pool.insertRecord("root.sg1.d" + no, 1, Collections.singletonList("s1"),
+              Collections.singletonList(TSDataType.INT64), Collections.singletonList(3L));
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+          fail();
+        }
+      });
+    }
+    service.shutdown();
+    try {
+      assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+      fail();
+    }
+    // the lanes borrow their sessions from the pool
+    assertTrue(pool.currentAvailableSize() <= 2);
+    assertEquals(0, pool.currentOccupiedSize());
+    correctQuery(pool);
+    pool.close();
+  }
+
   @Test
   public void incorrectSQL() {
     SessionPool pool = new SessionPool("127.0.0.1", 6667, "root", "root", 3);
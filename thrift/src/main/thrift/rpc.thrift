@@ -93,6 +93,34 @@ struct TSExecuteStatementReq {
   4: optional i32 fetchSize
 }
 
+struct TSPrepareStatementReq {
+  1: required i64 sessionId
+
+  // The statement to be prepared, whose parameters are marked by '?'
+  2: required string statement
+}
+
+struct TSPrepareStatementResp {
+  1: required TSStatus status
+
+  // The number of parameters in the statement
+  2: optional i32 parameterCount
+}
+
+struct TSExecutePreparedStatementReq {
+  1: required i64 sessionId
+
+  // The prepared statement, whose parameters are marked by '?'
+  2: required string statement
+
+  // The values of the parameters in the order they occur, written as they are in SQL
+  3: required list<string> parameters
+
+  4: required i64 statementId
+
+  5: optional i32 fetchSize
+}
+
 struct TSExecuteBatchStatementReq{
   // The session to execute the statement against
   1: required i64 sessionId
@@ -199,6 +227,19 @@ struct TSInsertTabletsReq {
     7: required list<i32> sizeList
 }
 
+// A chunk of a TsFile uploaded by the bulk load, the chunks of a file are sent in order
+struct TSBulkLoadReq {
+    1: required i64 sessionId
+    2: required string fileName
+    // The position of this chunk in the file
+    3: required i64 offset
+    4: required binary data
+    // The file is loaded into the storage groups once its last chunk is received
+    5: required bool isLast
+    6: optional bool autoCreateSchema
+    7: optional i32 sgLevel
+}
+
 struct TSInsertRecordsReq {
     1: required i64 sessionId
     2: required list<string> deviceIds
@@ -281,6 +322,10 @@ service TSIService {
 
 	TSExecuteStatementResp executeUpdateStatement(1:TSExecuteStatementReq req);
 
+	TSPrepareStatementResp prepareStatement(1:TSPrepareStatementReq req);
+
+	TSExecuteStatementResp executePreparedStatement(1:TSExecutePreparedStatementReq req);
+
 	TSFetchResultsResp fetchResults(1:TSFetchResultsReq req)
 
 	TSFetchMetadataResp fetchMetadata(1:TSFetchMetadataReq req)
@@ -313,6 +358,8 @@ service TSIService {
 
   TSStatus insertTablets(1:TSInsertTabletsReq req);
 
+  TSStatus bulkLoad(1:TSBulkLoadReq req);
+
 	TSStatus insertRecords(1:TSInsertRecordsReq req);
 
 	TSStatus insertStringRecords(1:TSInsertStringRecordsReq req);
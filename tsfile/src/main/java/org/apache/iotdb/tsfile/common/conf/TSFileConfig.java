@@ -138,6 +138,26 @@ public class TSFileConfig implements Serializable {
    * value is UNCOMPRESSED which means no compression
    */
   private CompressionType compressor = CompressionType.SNAPPY;
+  /**
+   * Compression level of GZIP, from 0 (no compression) to 9 (best compression).
+   */
+  private int gzipCompressionLevel = 6;
+  /**
+   * Whether the first page of each chunk is compressed by SNAPPY, LZ4 and GZIP and the chunk uses
+   * the one selected by adaptiveCompressionMinRatioGain and adaptiveCompressionCpuBudget, instead
+   * of the compressor of the schema.
+   */
+  private boolean enableAdaptiveCompression = false;
+  /**
+   * In adaptive compression, a slower compressor is only selected if its compression ratio is at
+   * least this times the ratio of the faster one.
+   */
+  private double adaptiveCompressionMinRatioGain = 1.1;
+  /**
+   * In adaptive compression, a compressor taking more than this times the CPU time of the fastest
+   * one on the page is not selected.
+   */
+  private double adaptiveCompressionCpuBudget = 4;
   /**
    * Line count threshold for checking page memory occupied size.
    */
@@ -344,6 +364,38 @@ public class TSFileConfig implements Serializable {
     this.compressor = CompressionType.valueOf(compressor);
   }
 
+  public int getGzipCompressionLevel() {
+    return gzipCompressionLevel;
+  }
+
+  public void setGzipCompressionLevel(int gzipCompressionLevel) {
+    this.gzipCompressionLevel = gzipCompressionLevel;
+  }
+
+  public boolean isEnableAdaptiveCompression() {
+    return enableAdaptiveCompression;
+  }
+
+  public void setEnableAdaptiveCompression(boolean enableAdaptiveCompression) {
+    this.enableAdaptiveCompression = enableAdaptiveCompression;
+  }
+
+  public double getAdaptiveCompressionMinRatioGain() {
+    return adaptiveCompressionMinRatioGain;
+  }
+
+  public void setAdaptiveCompressionMinRatioGain(double adaptiveCompressionMinRatioGain) {
+    this.adaptiveCompressionMinRatioGain = adaptiveCompressionMinRatioGain;
+  }
+
+  public double getAdaptiveCompressionCpuBudget() {
+    return adaptiveCompressionCpuBudget;
+  }
+
+  public void setAdaptiveCompressionCpuBudget(double adaptiveCompressionCpuBudget) {
+    this.adaptiveCompressionCpuBudget = adaptiveCompressionCpuBudget;
+  }
+
   public int getPageCheckSizeThreshold() {
     return pageCheckSizeThreshold;
   }
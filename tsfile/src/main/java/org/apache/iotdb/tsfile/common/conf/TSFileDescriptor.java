@@ -130,6 +130,16 @@ public class TSFileDescriptor {
       conf.setTimeEncoder(properties.getProperty("time_encoder", conf.getTimeEncoder()));
       conf.setValueEncoder(properties.getProperty("value_encoder", conf.getValueEncoder()));
       conf.setCompressor(properties.getProperty("compressor", conf.getCompressor().toString()));
+      conf.setGzipCompressionLevel(Integer.parseInt(properties.getProperty("gzip_compression_level",
+          Integer.toString(conf.getGzipCompressionLevel()))));
+      conf.setEnableAdaptiveCompression(Boolean.parseBoolean(properties.getProperty(
+          "enable_adaptive_compression", Boolean.toString(conf.isEnableAdaptiveCompression()))));
+      conf.setAdaptiveCompressionMinRatioGain(Double.parseDouble(properties.getProperty(
+          "adaptive_compression_min_ratio_gain",
+          Double.toString(conf.getAdaptiveCompressionMinRatioGain()))));
+      conf.setAdaptiveCompressionCpuBudget(Double.parseDouble(properties.getProperty(
+          "adaptive_compression_cpu_budget",
+          Double.toString(conf.getAdaptiveCompressionCpuBudget()))));
       conf.setBatchSize(Integer.parseInt(properties.getProperty("batch_size",
           Integer.toString(conf.getBatchSize()))));
     } catch (IOException e) {
@@ -22,8 +22,11 @@ package org.apache.iotdb.tsfile.compress;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
 import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Factory;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.exception.compress.CompressionTypeNotSupportedException;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.xerial.snappy.Snappy;
@@ -54,6 +57,9 @@ public interface ICompressor extends Serializable {
         return new SnappyCompressor();
       case LZ4:
         return new IOTDBLZ4Compressor();
+      case GZIP:
+        return new GZIPCompressor(
+            TSFileDescriptor.getInstance().getConfig().getGzipCompressionLevel());
       default:
         throw new CompressionTypeNotSupportedException(name.toString());
     }
@@ -181,4 +187,100 @@ public interface ICompressor extends Serializable {
       return CompressionType.LZ4;
     }
   }
+
+  /**
+   * GZIPCompressor deflates data with the JDK Deflater in the zlib format.
+   */
+  class GZIPCompressor implements ICompressor {
+
+    private int level;
+
+    public GZIPCompressor(int level) {
+      this.level = level;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) throws IOException {
+      if (data == null) {
+        return new byte[0];
+      }
+      byte[] compressed = new byte[getMaxBytesForCompression(data.length)];
+      int length = deflate(data, 0, data.length, compressed, 0, compressed.length);
+      return Arrays.copyOf(compressed, length);
+    }
+
+    @Override
+    public int compress(byte[] data, int offset, int length, byte[] compressed) throws IOException {
+      return deflate(data, offset, length, compressed, 0, compressed.length);
+    }
+
+    /**
+     * compress the remaining bytes of data into compressed from its position. Either of them can
+     * be a heap or a direct buffer. Afterwards, data has no remaining bytes and the position of
+     * compressed is moved to the end of the compressed data.
+     */
+    @Override
+    public int compress(ByteBuffer data, ByteBuffer compressed) throws IOException {
+      byte[] input;
+      int inputOffset;
+      int inputLength = data.remaining();
+      if (data.hasArray()) {
+        input = data.array();
+        inputOffset = data.arrayOffset() + data.position();
+      } else {
+        input = new byte[inputLength];
+        data.duplicate().get(input);
+        inputOffset = 0;
+      }
+
+      int length;
+      if (compressed.hasArray()) {
+        length = deflate(input, inputOffset, inputLength, compressed.array(),
+            compressed.arrayOffset() + compressed.position(), compressed.remaining());
+        compressed.position(compressed.position() + length);
+      } else {
+        byte[] output = new byte[Math.min(compressed.remaining(),
+            getMaxBytesForCompression(inputLength))];
+        length = deflate(input, inputOffset, inputLength, output, 0, output.length);
+        compressed.put(output, 0, length);
+      }
+      data.position(data.limit());
+      return length;
+    }
+
+    private int deflate(byte[] data, int offset, int length, byte[] compressed, int outOffset,
+        int outLength) throws IOException {
+      Deflater deflater = new Deflater(level);
+      try {
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+          if (compressedLength == outLength) {
+            throw new IOException(
+                "tsfile-compression GZIPCompressor: the output is too small for the compressed data");
+          }
+          compressedLength += deflater.deflate(compressed, outOffset + compressedLength,
+              outLength - compressedLength);
+        }
+        return compressedLength;
+      } finally {
+        deflater.end();
+      }
+    }
+
+    /**
+     * the bound of zlib for any compression level, including the 6 bytes of the zlib wrapper.
+     */
+    @Override
+    public int getMaxBytesForCompression(int uncompressedDataSize) {
+      return uncompressedDataSize + ((uncompressedDataSize + 7) >> 3)
+          + ((uncompressedDataSize + 63) >> 6) + 5 + 6;
+    }
+
+    @Override
+    public CompressionType getType() {
+      return CompressionType.GZIP;
+    }
+  }
 }
@@ -19,8 +19,12 @@
 
 package org.apache.iotdb.tsfile.compress;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4SafeDecompressor;
@@ -52,6 +56,8 @@ public interface IUnCompressor {
         return new SnappyUnCompressor();
       case LZ4:
         return new LZ4UnCompressor();
+      case GZIP:
+        return new GZIPUnCompressor();
       default:
         throw new CompressionTypeNotSupportedException(name.toString());
     }
@@ -88,10 +94,12 @@ public interface IUnCompressor {
       throws IOException;
 
   /**
-   * if the data is large, using this function is better.
+   * uncompress the remaining bytes of compressed into uncompressed from its position. Either of
+   * them can be a heap or a direct buffer. Afterwards, compressed has no remaining bytes and the
+   * position of uncompressed is moved to the end of the uncompressed data.
    *
-   * @param compressed   MUST be DirectByteBuffer
-   * @param uncompressed MUST be DirectByteBuffer
+   * @param uncompressed must have enough remaining space for the uncompressed data
+   * @return the length of the uncompressed data
    */
   int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException;
 
@@ -121,8 +129,10 @@ public interface IUnCompressor {
     }
 
     @Override
-    public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
-      throw new IOException("NoUnCompressor does not support this method.");
+    public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) {
+      int length = compressed.remaining();
+      uncompressed.put(compressed);
+      return length;
     }
 
     @Override
@@ -167,18 +177,46 @@ public interface IUnCompressor {
     }
 
     @Override
-    public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) {
+    public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
       if (compressed == null || !compressed.hasRemaining()) {
         return 0;
       }
 
-      try {
-        return Snappy.uncompress(compressed, uncompressed);
-      } catch (IOException e) {
-        logger.error(
-            "tsfile-compression SnappyUnCompressor: errors occurs when uncompress input byte", e);
+      int length;
+      if (compressed.isDirect() && uncompressed.isDirect()) {
+        // Snappy sets the limit of uncompressed and moves neither of the positions
+        int limit = uncompressed.limit();
+        length = Snappy.uncompress(compressed, uncompressed);
+        uncompressed.limit(limit);
+      } else {
+        byte[] input = getArray(compressed);
+        int inputOffset = compressed.hasArray() ? compressed.arrayOffset() + compressed.position()
+            : 0;
+        if (uncompressed.hasArray()) {
+          length = Snappy.uncompress(input, inputOffset, compressed.remaining(),
+              uncompressed.array(), uncompressed.arrayOffset() + uncompressed.position());
+        } else {
+          byte[] output = Snappy.uncompress(Arrays.copyOfRange(input, inputOffset,
+              inputOffset + compressed.remaining()));
+          length = output.length;
+          uncompressed.duplicate().put(output);
+        }
       }
-      return 0;
+      compressed.position(compressed.limit());
+      uncompressed.position(uncompressed.position() + length);
+      return length;
+    }
+
+    /**
+     * @return the backing array of the buffer, or a copy of its remaining bytes if it has none
+     */
+    private static byte[] getArray(ByteBuffer buffer) {
+      if (buffer.hasArray()) {
+        return buffer.array();
+      }
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.duplicate().get(bytes);
+      return bytes;
     }
 
     @Override
@@ -234,7 +272,7 @@ public interface IUnCompressor {
     public int uncompress(byte[] byteArray, int offset, int length, byte[] output, int outOffset)
         throws IOException {
       try {
-        return decompressor.decompress(byteArray, offset, length, output, offset);
+        return decompressor.decompress(byteArray, offset, length, output, outOffset);
       }
       catch (RuntimeException e){
         logger.error(
@@ -250,8 +288,14 @@ public interface IUnCompressor {
       }
 
       try {
-        decompressor.decompress(compressed, uncompressed);
-        return compressed.limit();
+        int position = uncompressed.position();
+        ByteBuffer output = withoutArrayOffset(uncompressed);
+        int outputPosition = output.position();
+        decompressor.decompress(withoutArrayOffset(compressed), output);
+        int length = output.position() - outputPosition;
+        compressed.position(compressed.limit());
+        uncompressed.position(position + length);
+        return length;
       } catch (RuntimeException e) {
         logger.error(
             "tsfile-compression LZ4UnCompressor: errors occurs when uncompress input byte", e);
@@ -259,9 +303,131 @@ public interface IUnCompressor {
       }
     }
 
+    /**
+     * lz4 ignores the array offset of a heap buffer, e.g., a page sliced from a chunk, so the
+     * buffer is wrapped again over its whole array with the same remaining bytes.
+     */
+    private static ByteBuffer withoutArrayOffset(ByteBuffer buffer) {
+      if (!buffer.hasArray() || buffer.arrayOffset() == 0) {
+        return buffer;
+      }
+      return ByteBuffer.wrap(buffer.array(), buffer.arrayOffset() + buffer.position(),
+          buffer.remaining());
+    }
+
     @Override
     public CompressionType getCodecName() {
       return CompressionType.LZ4;
     }
   }
+
+  class GZIPUnCompressor implements IUnCompressor {
+
+    @Override
+    public int getUncompressedLength(byte[] array, int offset, int length) throws IOException {
+      throw new UnsupportedOperationException("unsupported get uncompress length");
+    }
+
+    @Override
+    public int getUncompressedLength(ByteBuffer buffer) throws IOException {
+      throw new UnsupportedOperationException("unsupported get uncompress length");
+    }
+
+    /**
+     * We don't recommend using this method because the uncompressed size is unknown and the
+     * output has to grow, you can use other method if you know the uncompressed size
+     */
+    @Override
+    public byte[] uncompress(byte[] bytes) throws IOException {
+      if (bytes == null) {
+        return new byte[0];
+      }
+
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(bytes);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 2);
+        byte[] buffer = new byte[Math.max(bytes.length, 1024)];
+        while (!inflater.finished()) {
+          int length = inflater.inflate(buffer);
+          if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            throw new IOException(
+                "tsfile-compression GZIPUnCompressor: the compressed data is incomplete");
+          }
+          out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      } finally {
+        inflater.end();
+      }
+    }
+
+    @Override
+    public int uncompress(byte[] byteArray, int offset, int length, byte[] output, int outOffset)
+        throws IOException {
+      return inflate(byteArray, offset, length, output, outOffset, output.length - outOffset);
+    }
+
+    @Override
+    public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+      if (compressed == null || !compressed.hasRemaining()) {
+        return 0;
+      }
+
+      byte[] input;
+      int inputOffset;
+      if (compressed.hasArray()) {
+        input = compressed.array();
+        inputOffset = compressed.arrayOffset() + compressed.position();
+      } else {
+        input = new byte[compressed.remaining()];
+        compressed.duplicate().get(input);
+        inputOffset = 0;
+      }
+
+      int length;
+      if (uncompressed.hasArray()) {
+        length = inflate(input, inputOffset, compressed.remaining(), uncompressed.array(),
+            uncompressed.arrayOffset() + uncompressed.position(), uncompressed.remaining());
+        uncompressed.position(uncompressed.position() + length);
+      } else {
+        byte[] output = new byte[uncompressed.remaining()];
+        length = inflate(input, inputOffset, compressed.remaining(), output, 0, output.length);
+        uncompressed.put(output, 0, length);
+      }
+      compressed.position(compressed.limit());
+      return length;
+    }
+
+    private int inflate(byte[] compressed, int offset, int length, byte[] output, int outOffset,
+        int outLength) throws IOException {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(compressed, offset, length);
+        int uncompressedLength = 0;
+        while (!inflater.finished()) {
+          int inflated = inflater.inflate(output, outOffset + uncompressedLength,
+              outLength - uncompressedLength);
+          if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()
+              || uncompressedLength == outLength)) {
+            throw new IOException("tsfile-compression GZIPUnCompressor: the compressed data is "
+                + "incomplete or the output is too small");
+          }
+          uncompressedLength += inflated;
+        }
+        return uncompressedLength;
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      } finally {
+        inflater.end();
+      }
+    }
+
+    @Override
+    public CompressionType getCodecName() {
+      return CompressionType.GZIP;
+    }
+  }
 }
@@ -56,6 +56,12 @@ public abstract class Decoder {
     // PLA and DFT encoding are not supported in current version
     if (type == TSEncoding.PLAIN) {
       return new PlainDecoder(EndianType.BIG_ENDIAN);
+    } else if (type == TSEncoding.PLAIN_DICTIONARY) {
+      if (dataType == TSDataType.TEXT) {
+        return new DictionaryDecoder();
+      }
+      throw new TsFileDecodingException(
+          "Decoder not found:" + type + " , DataType is :" + dataType);
     } else if (type == TSEncoding.RLE) {
       switch (dataType) {
         case BOOLEAN:
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.encoding.decoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.iotdb.tsfile.encoding.common.EndianType;
+import org.apache.iotdb.tsfile.encoding.encoder.DictionaryEncoder;
+import org.apache.iotdb.tsfile.exception.encoding.TsFileDecodingException;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.ReadWriteForEncodingUtils;
+
+/**
+ * Decoder for TEXT values encoded by {@linkplain DictionaryEncoder}. The dictionary of a page is
+ * read once and the same {@linkplain Binary} of an entry is returned for every value referring to
+ * it, so reading or filtering a page does not copy its values.
+ */
+public class DictionaryDecoder extends Decoder {
+
+  private IntRleDecoder codeDecoder = new IntRleDecoder(EndianType.BIG_ENDIAN);
+  private boolean isHeaderRead;
+  private byte mode;
+  private int remainingNum;
+  private Binary[] entries;
+
+  public DictionaryDecoder() {
+    super(TSEncoding.PLAIN_DICTIONARY);
+  }
+
+  @Override
+  public Binary readBinary(ByteBuffer buffer) {
+    if (!isHeaderRead) {
+      readHeader(buffer);
+    }
+    remainingNum--;
+    if (mode == DictionaryEncoder.PLAIN_MODE) {
+      int length = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer);
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new Binary(bytes);
+    }
+    return entries[codeDecoder.readInt(buffer)];
+  }
+
+  @Override
+  public boolean hasNext(ByteBuffer buffer) throws IOException {
+    if (!isHeaderRead) {
+      if (!buffer.hasRemaining()) {
+        return false;
+      }
+      readHeader(buffer);
+    }
+    if (remainingNum > 0) {
+      return true;
+    }
+    // the page is exhausted, the next one comes with its own dictionary
+    reset();
+    return buffer.hasRemaining();
+  }
+
+  @Override
+  public void reset() {
+    isHeaderRead = false;
+    remainingNum = 0;
+    entries = null;
+    codeDecoder.reset();
+  }
+
+  private void readHeader(ByteBuffer buffer) {
+    mode = buffer.get();
+    remainingNum = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer);
+    if (mode == DictionaryEncoder.DICTIONARY_MODE) {
+      entries = new Binary[ReadWriteForEncodingUtils.readUnsignedVarInt(buffer)];
+      for (int i = 0; i < entries.length; i++) {
+        byte[] bytes = new byte[ReadWriteForEncodingUtils.readUnsignedVarInt(buffer)];
+        buffer.get(bytes);
+        entries[i] = new Binary(bytes);
+      }
+    } else if (mode != DictionaryEncoder.PLAIN_MODE) {
+      throw new TsFileDecodingException(
+          String.format("tsfile-encoding DictionaryDecoder: unknown page mode %d", mode));
+    }
+    isHeaderRead = true;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.encoding.encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.iotdb.tsfile.common.conf.TSFileConfig;
+import org.apache.iotdb.tsfile.encoding.common.EndianType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.PublicBAOS;
+import org.apache.iotdb.tsfile.utils.ReadWriteForEncodingUtils;
+
+/**
+ * Encoder for TEXT values using a dictionary per page. The distinct values of a page are written
+ * once and each value is replaced by its code, which is encoded with {@linkplain IntRleEncoder}.
+ * When the page holds too many distinct values, or the dictionary would not be smaller than the
+ * values themselves, the page is written plainly instead.
+ *
+ * <p>A page is encoded as {@code [mode][value count][content]}:
+ * <ul>
+ * <li>{@code DICTIONARY_MODE}: {@code [dictionary size][length, bytes]...[rle codes]}</li>
+ * <li>{@code PLAIN_MODE}: {@code [length, bytes]...}</li>
+ * </ul>
+ * All counts and lengths are unsigned var ints.
+ */
+public class DictionaryEncoder extends Encoder {
+
+  public static final byte PLAIN_MODE = 0;
+  public static final byte DICTIONARY_MODE = 1;
+
+  public static final int DEFAULT_MAX_DICTIONARY_SIZE = 4096;
+
+  /**
+   * the max number of distinct values a page may have before it falls back to plain
+   */
+  private int maxDictionarySize;
+  private int maxStringLength;
+
+  private Map<Binary, Integer> entryIndex = new HashMap<>();
+  private List<Binary> entries = new ArrayList<>();
+  /**
+   * the bytes the entries take in the page
+   */
+  private long entrySize;
+
+  private int[] codes = new int[32];
+  private int codeNum;
+  /**
+   * the bytes the buffered values would take if the page is written plainly
+   */
+  private long plainSize;
+
+  /**
+   * not null once the page has fallen back to plain
+   */
+  private PublicBAOS plainOut;
+  private int plainNum;
+
+  public DictionaryEncoder(int maxDictionarySize, int maxStringLength) {
+    super(TSEncoding.PLAIN_DICTIONARY);
+    this.maxDictionarySize = maxDictionarySize;
+    this.maxStringLength = maxStringLength;
+  }
+
+  @Override
+  public void encode(Binary value, ByteArrayOutputStream out) {
+    if (plainOut != null) {
+      writePlain(value, plainOut);
+      plainNum++;
+      return;
+    }
+    Integer code = entryIndex.get(value);
+    if (code == null) {
+      if (entries.size() >= maxDictionarySize) {
+        fallBackToPlain();
+        writePlain(value, plainOut);
+        plainNum++;
+        return;
+      }
+      code = entries.size();
+      entryIndex.put(value, code);
+      entries.add(value);
+      entrySize += getPlainSize(value);
+    }
+    if (codeNum == codes.length) {
+      codes = Arrays.copyOf(codes, codes.length * 2);
+    }
+    codes[codeNum++] = code;
+    plainSize += getPlainSize(value);
+  }
+
+  @Override
+  public void flush(ByteArrayOutputStream out) throws IOException {
+    if (plainOut == null && codeNum > 0 && getDictionarySize() >= plainSize) {
+      // the values hardly repeat, the dictionary costs more than it saves
+      fallBackToPlain();
+    }
+    if (plainOut != null) {
+      out.write(PLAIN_MODE);
+      ReadWriteForEncodingUtils.writeUnsignedVarInt(plainNum, out);
+      plainOut.writeTo(out);
+    } else if (codeNum > 0) {
+      out.write(DICTIONARY_MODE);
+      ReadWriteForEncodingUtils.writeUnsignedVarInt(codeNum, out);
+      ReadWriteForEncodingUtils.writeUnsignedVarInt(entries.size(), out);
+      for (Binary entry : entries) {
+        writePlain(entry, out);
+      }
+      IntRleEncoder codeEncoder = new IntRleEncoder(EndianType.BIG_ENDIAN);
+      for (int i = 0; i < codeNum; i++) {
+        codeEncoder.encode(codes[i], out);
+      }
+      codeEncoder.flush(out);
+    }
+    reset();
+  }
+
+  @Override
+  public int getOneItemMaxSize() {
+    // a new entry in the dictionary, or a plain value, and its code
+    return 2 * 5 + TSFileConfig.BYTE_SIZE_PER_CHAR * maxStringLength;
+  }
+
+  @Override
+  public long getMaxByteSize() {
+    if (plainOut != null) {
+      return 1 + 5 + (long) plainOut.size();
+    }
+    if (codeNum == 0) {
+      return 0;
+    }
+    return 1 + 5 + Math.min(getDictionarySize(), plainSize);
+  }
+
+  /**
+   * @return an upper bound of the bytes the page takes with a dictionary. The rle codes take at
+   * most (bitWidth + 2) bytes for each group of 8 values, plus the length and the bit width.
+   */
+  private long getDictionarySize() {
+    int bitWidth = Math.max(1, 32 - Integer.numberOfLeadingZeros(entries.size() - 1));
+    return 5 + entrySize + (codeNum / TSFileConfig.RLE_MIN_REPEATED_NUM + 1) * (bitWidth + 2L)
+        + 5 + 1;
+  }
+
+  private void fallBackToPlain() {
+    plainOut = new PublicBAOS();
+    plainNum = codeNum;
+    for (int i = 0; i < codeNum; i++) {
+      writePlain(entries.get(codes[i]), plainOut);
+    }
+    clearDictionary();
+  }
+
+  private void clearDictionary() {
+    entryIndex.clear();
+    entries.clear();
+    entrySize = 0;
+    codeNum = 0;
+    plainSize = 0;
+  }
+
+  private void reset() {
+    clearDictionary();
+    plainOut = null;
+    plainNum = 0;
+  }
+
+  private static void writePlain(Binary value, ByteArrayOutputStream out) {
+    ReadWriteForEncodingUtils.writeUnsignedVarInt(value.getLength(), out);
+    out.write(value.getValues(), 0, value.getLength());
+  }
+
+  private static int getPlainSize(Binary value) {
+    int length = value.getLength();
+    int varIntSize = 1;
+    while ((length & ~0x7F) != 0) {
+      length >>>= 7;
+      varIntSize++;
+    }
+    return varIntSize + value.getLength();
+  }
+}
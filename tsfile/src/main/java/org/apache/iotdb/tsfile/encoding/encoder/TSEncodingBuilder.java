@@ -58,6 +58,8 @@ public abstract class TSEncodingBuilder {
     switch (type) {
       case PLAIN:
         return new PLAIN();
+      case PLAIN_DICTIONARY:
+        return new PLAIN_DICTIONARY();
       case RLE:
         return new RLE();
       case TS_2DIFF:
@@ -123,6 +125,38 @@ public abstract class TSEncodingBuilder {
     }
   }
 
+  /**
+   * for TEXT.
+   */
+  public static class PLAIN_DICTIONARY extends TSEncodingBuilder {
+
+    private int maxDictionarySize = DictionaryEncoder.DEFAULT_MAX_DICTIONARY_SIZE;
+
+    @Override
+    public Encoder getEncoder(TSDataType type) {
+      if (type == TSDataType.TEXT) {
+        return new DictionaryEncoder(maxDictionarySize, conf.getMaxStringLength());
+      }
+      throw new UnSupportedDataTypeException("PLAIN_DICTIONARY doesn't support data type: " + type);
+    }
+
+    @Override
+    public void initFromProps(Map<String, String> props) {
+      // set max dictionary size from initialized map or default value if not set
+      if (props == null || !props.containsKey(Encoder.MAX_DICTIONARY_SIZE)) {
+        maxDictionarySize = DictionaryEncoder.DEFAULT_MAX_DICTIONARY_SIZE;
+      } else {
+        maxDictionarySize = Integer.valueOf(props.get(Encoder.MAX_DICTIONARY_SIZE));
+        if (maxDictionarySize <= 0) {
+          maxDictionarySize = DictionaryEncoder.DEFAULT_MAX_DICTIONARY_SIZE;
+          logger.warn(
+              "cannot set max dictionary size to non-positive value, replaced with default value:{}",
+              maxDictionarySize);
+        }
+      }
+    }
+  }
+
   /**
    * for ENUMS, INT32, BOOLEAN, INT64, FLOAT, DOUBLE.
    */
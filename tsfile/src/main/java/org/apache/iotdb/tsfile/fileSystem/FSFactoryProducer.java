@@ -29,14 +29,21 @@ import org.apache.iotdb.tsfile.fileSystem.fileOutputFactory.LocalFSOutputFactory
 import org.apache.iotdb.tsfile.fileSystem.fsFactory.FSFactory;
 import org.apache.iotdb.tsfile.fileSystem.fsFactory.HDFSFactory;
 import org.apache.iotdb.tsfile.fileSystem.fsFactory.LocalFSFactory;
+import org.apache.iotdb.tsfile.read.reader.ThrottledTsFileInput;
+import org.apache.iotdb.tsfile.read.reader.TsFileInput;
+import org.apache.iotdb.tsfile.write.writer.ThrottledTsFileOutput;
+import org.apache.iotdb.tsfile.write.writer.TsFileOutput;
 
 public class FSFactoryProducer {
 
   private static FSType fSType = TSFileDescriptor.getInstance().getConfig().getTSFileStorageFs();
 
   private static FSFactory fsFactory;
-  private static FileInputFactory fileInputFactory;
-  private static FileOutputFactory fileOutputFactory;
+  private static volatile FileInputFactory fileInputFactory;
+  private static volatile FileOutputFactory fileOutputFactory;
+  // the factories of the file system, which are wrapped when an IOThrottle is set
+  private static FileInputFactory fsInputFactory;
+  private static FileOutputFactory fsOutputFactory;
 
   static {
     if (fSType.equals(FSType.HDFS)) {
@@ -48,6 +55,38 @@ public class FSFactoryProducer {
       fileInputFactory = new LocalFSInputFactory();
       fileOutputFactory = new LocalFSOutputFactory();
     }
+    fsInputFactory = fileInputFactory;
+    fsOutputFactory = fileOutputFactory;
+  }
+
+  /**
+   * Make the inputs and outputs got from the factories since now acquire the throttle for the
+   * bytes they read and write, or not throttled if the throttle is null. The inputs and outputs
+   * got before are not affected.
+   */
+  public static synchronized void setIOThrottle(IOThrottle throttle) {
+    if (throttle == null) {
+      fileInputFactory = fsInputFactory;
+      fileOutputFactory = fsOutputFactory;
+      return;
+    }
+    fileInputFactory = new FileInputFactory() {
+      @Override
+      public TsFileInput getTsFileInput(String filePath) {
+        TsFileInput input = fsInputFactory.getTsFileInput(filePath);
+        return input == null ? null : new ThrottledTsFileInput(input, throttle);
+      }
+
+      @Override
+      public TsFileInput getMappedTsFileInput(String filePath) {
+        TsFileInput input = fsInputFactory.getMappedTsFileInput(filePath);
+        return input == null ? null : new ThrottledTsFileInput(input, throttle);
+      }
+    };
+    fileOutputFactory = (filePath, append) -> {
+      TsFileOutput output = fsOutputFactory.getTsFileOutput(filePath, append);
+      return output == null ? null : new ThrottledTsFileOutput(output, throttle);
+    };
   }
 
   public static FSFactory getFSFactory() {
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.fileSystem;
+
+import java.io.IOException;
+
+/**
+ * IOThrottle is acquired by the TsFileInputs and TsFileOutputs for the bytes they read and write
+ * once it is set by FSFactoryProducer.setIOThrottle(), so the IO of a process can be limited as a
+ * whole.
+ */
+@FunctionalInterface
+public interface IOThrottle {
+
+  /**
+   * Acquire the permission to read or write some bytes, which may block.
+   *
+   * @throws java.io.InterruptedIOException if the thread is interrupted while waiting
+   */
+  void acquire(long bytes) throws IOException;
+}
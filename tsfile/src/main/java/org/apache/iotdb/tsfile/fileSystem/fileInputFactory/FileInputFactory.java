@@ -25,4 +25,12 @@ public interface FileInputFactory {
 
   TsFileInput getTsFileInput(String filePath);
 
+  /**
+   * @param filePath a file that is no longer written
+   * @return an input that memory-maps the file, or the one of getTsFileInput() if the file system
+   * does not support it
+   */
+  default TsFileInput getMappedTsFileInput(String filePath) {
+    return getTsFileInput(filePath);
+  }
 }
@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.iotdb.tsfile.read.reader.LocalTsFileInput;
+import org.apache.iotdb.tsfile.read.reader.MappedTsFileInput;
 import org.apache.iotdb.tsfile.read.reader.TsFileInput;
 
 public class LocalFSInputFactory implements FileInputFactory {
@@ -40,4 +41,14 @@ public class LocalFSInputFactory implements FileInputFactory {
       return null;
     }
   }
+
+  @Override
+  public TsFileInput getMappedTsFileInput(String filePath) {
+    try {
+      return new MappedTsFileInput(Paths.get(filePath));
+    } catch (IOException e) {
+      logger.error("Failed to get mapped TsFile input of file: {}, ", filePath, e);
+      return null;
+    }
+  }
 }
@@ -115,6 +115,18 @@ public class TsFileSequenceReader implements AutoCloseable {
     }
   }
 
+  /**
+   * Create a reader of the file which reads through the given input, e.g., the one that
+   * memory-maps the file.
+   *
+   * @param file  the data file
+   * @param input the input of the file
+   */
+  public TsFileSequenceReader(String file, TsFileInput input) throws IOException {
+    this(input, true);
+    this.file = file;
+  }
+
   // used in merge resource
   public TsFileSequenceReader(String file, boolean loadMetadata, boolean cacheDeviceMetadata)
       throws IOException {
@@ -712,14 +724,13 @@ public class TsFileSequenceReader implements AutoCloseable {
   private ByteBuffer readPage(PageHeader header, CompressionType type, long position)
       throws IOException {
     ByteBuffer buffer = readData(position, header.getCompressedSize());
-    IUnCompressor unCompressor = IUnCompressor.getUnCompressor(type);
-    ByteBuffer uncompressedBuffer = ByteBuffer.allocate(header.getUncompressedSize());
     if (type == CompressionType.UNCOMPRESSED) {
       return buffer;
-    }// FIXME if the buffer is not array-implemented.
-    unCompressor.uncompress(buffer.array(), buffer.position(), buffer.remaining(),
-        uncompressedBuffer.array(),
-        0);
+    }
+    IUnCompressor unCompressor = IUnCompressor.getUnCompressor(type);
+    ByteBuffer uncompressedBuffer = ByteBuffer.allocate(header.getUncompressedSize());
+    unCompressor.uncompress(buffer, uncompressedBuffer);
+    uncompressedBuffer.flip();
     return uncompressedBuffer;
   }
 
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.read.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A TsFileInput that memory-maps a file which is no longer written, so a positional read is a copy
+ * from the mapped memory instead of a system call. A file is mapped in segments, as a mapping can
+ * not be larger than 2GB, and the bytes appended after the file is mapped are read through the
+ * channel.
+ *
+ * The data read are always copied into the given buffers, as they may outlive the input (e.g., in
+ * the ChunkCache), and the mapping is released when the input is closed, after the ongoing reads
+ * finish. Sequential reads, and the channel and the stream the input is wrapped as, go through the
+ * channel.
+ */
+public class MappedTsFileInput implements TsFileInput {
+
+  private static final Logger logger = LoggerFactory.getLogger(MappedTsFileInput.class);
+
+  // a multiple of the page size
+  static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+  private final FileChannel channel;
+  private final int segmentSize;
+  private final MappedByteBuffer[] segments;
+  private final long mappedSize;
+
+  // the reads hold the read lock so the segments are not unmapped while they are copied
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private boolean closed = false;
+
+  public MappedTsFileInput(Path file) throws IOException {
+    this(file, DEFAULT_SEGMENT_SIZE);
+  }
+
+  MappedTsFileInput(Path file, int segmentSize) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.segmentSize = segmentSize;
+    try {
+      mappedSize = channel.size();
+      segments = new MappedByteBuffer[(int) ((mappedSize + segmentSize - 1) / segmentSize)];
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long) i * segmentSize;
+        segments[i] = channel.map(MapMode.READ_ONLY, start, Math.min(segmentSize,
+            mappedSize - start));
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public long size() throws IOException {
+    return channel.size();
+  }
+
+  @Override
+  public long position() throws IOException {
+    return channel.position();
+  }
+
+  @Override
+  public TsFileInput position(long newPosition) throws IOException {
+    channel.position(newPosition);
+    return this;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    long position = channel.position();
+    int readBytes = read(dst, position);
+    if (readBytes > 0) {
+      channel.position(position + readBytes);
+    }
+    return readBytes;
+  }
+
+  @Override
+  public int read(ByteBuffer dst, long position) throws IOException {
+    if (position < 0) {
+      throw new IllegalArgumentException("Negative position");
+    }
+    if (position >= mappedSize) {
+      return channel.read(dst, position);
+    }
+    int readBytes = 0;
+    closeLock.readLock().lock();
+    try {
+      if (closed) {
+        throw new ClosedChannelException();
+      }
+      while (dst.hasRemaining() && position < mappedSize) {
+        ByteBuffer segment = segments[(int) (position / segmentSize)].duplicate();
+        int offset = (int) (position % segmentSize);
+        int length = (int) Math.min(dst.remaining(), segment.limit() - (long) offset);
+        segment.position(offset);
+        segment.limit(offset + length);
+        dst.put(segment);
+        position += length;
+        readBytes += length;
+      }
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    if (dst.hasRemaining()) {
+      int remainingBytes = channel.read(dst, position);
+      if (remainingBytes > 0) {
+        readBytes += remainingBytes;
+      }
+    }
+    return readBytes;
+  }
+
+  @Override
+  public int read() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public FileChannel wrapAsFileChannel() throws IOException {
+    return channel;
+  }
+
+  @Override
+  public InputStream wrapAsInputStream() throws IOException {
+    return Channels.newInputStream(channel);
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeLock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      for (int i = 0; i < segments.length; i++) {
+        unmap(segments[i]);
+        segments[i] = null;
+      }
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    channel.close();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Release the mapping now instead of when the buffer is collected, so the space of a deleted
+   * file is reclaimed in time. The mapping is left to the GC if the JVM does not allow it.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner;
+      try {
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (NoSuchMethodException e) {
+        // before Java 9
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+        return;
+      }
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      invokeCleaner.invoke(theUnsafe.get(null), buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.debug("Cannot unmap the buffer, leave it to the GC", e);
+    }
+  }
+}
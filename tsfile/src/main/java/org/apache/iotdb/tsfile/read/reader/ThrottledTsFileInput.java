@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.read.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.apache.iotdb.tsfile.fileSystem.IOThrottle;
+
+/**
+ * A TsFileInput that acquires an IOThrottle for the bytes read from the underlying input. The
+ * reads through the channel or the stream it is wrapped as are not throttled.
+ */
+public class ThrottledTsFileInput implements TsFileInput {
+
+  private final TsFileInput input;
+  private final IOThrottle throttle;
+
+  public ThrottledTsFileInput(TsFileInput input, IOThrottle throttle) {
+    this.input = input;
+    this.throttle = throttle;
+  }
+
+  @Override
+  public long size() throws IOException {
+    return input.size();
+  }
+
+  @Override
+  public long position() throws IOException {
+    return input.position();
+  }
+
+  @Override
+  public TsFileInput position(long newPosition) throws IOException {
+    input.position(newPosition);
+    return this;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    return acquired(input.read(dst));
+  }
+
+  @Override
+  public int read(ByteBuffer dst, long position) throws IOException {
+    return acquired(input.read(dst, position));
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = input.read();
+    if (b >= 0) {
+      throttle.acquire(1);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    return acquired(input.read(b, off, len));
+  }
+
+  /**
+   * the bytes are acquired after they are read, as how many are read is only known then
+   */
+  private int acquired(int readBytes) throws IOException {
+    if (readBytes > 0) {
+      throttle.acquire(readBytes);
+    }
+    return readBytes;
+  }
+
+  @Override
+  public FileChannel wrapAsFileChannel() throws IOException {
+    return input.wrapAsFileChannel();
+  }
+
+  @Override
+  public InputStream wrapAsInputStream() throws IOException {
+    return input.wrapAsInputStream();
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    int value = input.readInt();
+    throttle.acquire(Integer.BYTES);
+    return value;
+  }
+}
@@ -24,6 +24,7 @@ import org.apache.iotdb.tsfile.compress.IUnCompressor;
 import org.apache.iotdb.tsfile.encoding.decoder.Decoder;
 import org.apache.iotdb.tsfile.file.header.ChunkHeader;
 import org.apache.iotdb.tsfile.file.header.PageHeader;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.read.common.BatchData;
@@ -32,6 +33,7 @@ import org.apache.iotdb.tsfile.read.common.TimeRange;
 import org.apache.iotdb.tsfile.read.reader.IPageReader;
 import org.apache.iotdb.tsfile.read.filter.basic.Filter;
 import org.apache.iotdb.tsfile.read.reader.IChunkReader;
+import org.apache.iotdb.tsfile.read.reader.page.PageBufferPool;
 import org.apache.iotdb.tsfile.read.reader.page.PageReader;
 import org.apache.iotdb.tsfile.v1.file.utils.HeaderUtils;
 
@@ -148,7 +150,6 @@ public class ChunkReader implements IChunkReader {
   private PageReader constructPageReaderForNextPage(PageHeader pageHeader)
       throws IOException {
     int compressedPageBodyLength = pageHeader.getCompressedSize();
-    byte[] compressedPageBody = new byte[compressedPageBodyLength];
 
     // doesn't has a complete page body
     if (compressedPageBodyLength > chunkDataBuffer.remaining()) {
@@ -156,16 +157,27 @@ public class ChunkReader implements IChunkReader {
           + ". Actual:" + chunkDataBuffer.remaining());
     }
 
-    chunkDataBuffer.get(compressedPageBody);
+    ByteBuffer compressedPageBody = chunkDataBuffer.slice();
+    compressedPageBody.limit(compressedPageBodyLength);
+    skipBytesInStreamByLength(compressedPageBodyLength);
     Decoder valueDecoder = Decoder
             .getDecoderByType(chunkHeader.getEncodingType(), chunkHeader.getDataType());
-    byte[] uncompressedPageData = new byte[pageHeader.getUncompressedSize()];
-    unCompressor.uncompress(compressedPageBody,0, compressedPageBodyLength,
-        uncompressedPageData, 0);
-    ByteBuffer pageData = ByteBuffer.wrap(uncompressedPageData);
+    ByteBuffer pageData;
+    byte[] pooledBuffer = null;
+    if (chunkHeader.getCompressionType() == CompressionType.UNCOMPRESSED) {
+      // the page is read from the chunk directly, which is not changed by the readers
+      pageData = compressedPageBody;
+    } else {
+      int uncompressedSize = pageHeader.getUncompressedSize();
+      pooledBuffer = PageBufferPool.getInstance().allocate(uncompressedSize);
+      pageData = ByteBuffer.wrap(pooledBuffer, 0, uncompressedSize);
+      unCompressor.uncompress(compressedPageBody, pageData);
+      pageData.flip();
+    }
     PageReader reader = new PageReader(pageHeader, pageData, chunkHeader.getDataType(),
         valueDecoder, timeDecoder, filter);
     reader.setDeleteIntervalList(deleteIntervalList);
+    reader.setPooledBuffer(pooledBuffer);
     return reader;
   }
 
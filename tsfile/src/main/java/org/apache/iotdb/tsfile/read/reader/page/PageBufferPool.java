@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.read.reader.page;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PageBufferPool keeps the byte arrays the pages are uncompressed into, so that reading a page
+ * does not allocate a new array each time. The arrays are grouped into size classes, the powers of
+ * 2 from 1KB to 4MB, and each class keeps at most MAX_POOLED_BYTES_PER_CLASS bytes of arrays. An
+ * array larger than the largest class is neither pooled nor reused.
+ *
+ * An array should be released only when none of its data will be read any more. An array that is
+ * not released is simply collected by the GC.
+ */
+public class PageBufferPool {
+
+  private static final int MIN_CLASS_SHIFT = 10;
+  private static final int MAX_CLASS_SHIFT = 22;
+  private static final int MAX_POOLED_BYTES_PER_CLASS = 4 * 1024 * 1024;
+
+  private final Queue<byte[]>[] pools;
+  private final AtomicInteger[] pooledNums;
+
+  @SuppressWarnings("unchecked")
+  private PageBufferPool() {
+    int classNum = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+    pools = new Queue[classNum];
+    pooledNums = new AtomicInteger[classNum];
+    for (int i = 0; i < classNum; i++) {
+      pools[i] = new ConcurrentLinkedQueue<>();
+      pooledNums[i] = new AtomicInteger();
+    }
+  }
+
+  public static PageBufferPool getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * @return an array of at least the given size, whose content is undefined
+   */
+  public byte[] allocate(int size) {
+    int sizeClass = sizeClassOf(size);
+    if (sizeClass < 0) {
+      return new byte[size];
+    }
+    byte[] array = pools[sizeClass].poll();
+    if (array == null) {
+      return new byte[1 << (sizeClass + MIN_CLASS_SHIFT)];
+    }
+    pooledNums[sizeClass].decrementAndGet();
+    return array;
+  }
+
+  /**
+   * give back an array got from allocate(), which must not be used by the caller any more
+   */
+  public void release(byte[] array) {
+    int sizeClass = sizeClassOf(array.length);
+    if (sizeClass < 0 || array.length != 1 << (sizeClass + MIN_CLASS_SHIFT)) {
+      return;
+    }
+    int maxPooledNum = Math.max(1, MAX_POOLED_BYTES_PER_CLASS >> (sizeClass + MIN_CLASS_SHIFT));
+    if (pooledNums[sizeClass].incrementAndGet() > maxPooledNum) {
+      pooledNums[sizeClass].decrementAndGet();
+      return;
+    }
+    pools[sizeClass].offer(array);
+  }
+
+  /**
+   * @return the index of the smallest class that can hold the size, or -1 if no class can
+   */
+  private static int sizeClassOf(int size) {
+    if (size > 1 << MAX_CLASS_SHIFT) {
+      return -1;
+    }
+    int shift = size <= 1 << MIN_CLASS_SHIFT ? MIN_CLASS_SHIFT
+        : 32 - Integer.numberOfLeadingZeros(size - 1);
+    return shift - MIN_CLASS_SHIFT;
+  }
+
+  int getPooledNum(int size) {
+    int sizeClass = sizeClassOf(size);
+    return sizeClass < 0 ? 0 : pooledNums[sizeClass].get();
+  }
+
+  private static class InstanceHolder {
+
+    private static final PageBufferPool INSTANCE = new PageBufferPool();
+
+    private InstanceHolder() {
+    }
+  }
+}
@@ -36,6 +36,8 @@ import java.nio.ByteBuffer;
 
 public class PageReader implements IPageReader {
 
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
   private PageHeader pageHeader;
 
   private TSDataType dataType;
@@ -69,6 +71,11 @@ public class PageReader implements IPageReader {
 
   private int deleteCursor = 0;
 
+  /**
+   * the array from the PageBufferPool that backs the time and value columns, or null
+   */
+  private byte[] pooledBuffer;
+
   public PageReader(ByteBuffer pageData, TSDataType dataType, Decoder valueDecoder,
       Decoder timeDecoder, Filter filter) {
     this(null, pageData, dataType, valueDecoder, timeDecoder, filter);
@@ -104,6 +111,14 @@ public class PageReader implements IPageReader {
    */
   @Override
   public BatchData getAllSatisfiedPageData() throws IOException {
+    try {
+      return readAllSatisfiedPageData();
+    } finally {
+      releasePooledBuffer();
+    }
+  }
+
+  private BatchData readAllSatisfiedPageData() throws IOException {
 
     BatchData pageData = new BatchData(dataType);
 
@@ -153,6 +168,26 @@ public class PageReader implements IPageReader {
     return pageData;
   }
 
+  /**
+   * @param pooledBuffer the array from the PageBufferPool that the page data is in, which is
+   *                     released after the page data is read
+   */
+  public void setPooledBuffer(byte[] pooledBuffer) {
+    this.pooledBuffer = pooledBuffer;
+  }
+
+  /**
+   * the page data is read only once, so the array can be reused once it is read
+   */
+  private void releasePooledBuffer() {
+    if (pooledBuffer != null) {
+      timeBuffer = EMPTY_BUFFER;
+      valueBuffer = EMPTY_BUFFER;
+      PageBufferPool.getInstance().release(pooledBuffer);
+      pooledBuffer = null;
+    }
+  }
+
   @Override
   public Statistics getStatistics() {
     return pageHeader.getStatistics();
@@ -22,11 +22,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.compress.ICompressor;
+import org.apache.iotdb.tsfile.compress.IUnCompressor;
 import org.apache.iotdb.tsfile.exception.write.PageException;
 import org.apache.iotdb.tsfile.file.header.ChunkHeader;
 import org.apache.iotdb.tsfile.file.header.PageHeader;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.utils.Binary;
@@ -43,8 +47,22 @@ public class ChunkWriterImpl implements IChunkWriter {
 
   private MeasurementSchema measurementSchema;
 
+  /**
+   * the compressors tried on the first page of each chunk if adaptive compression is enabled.
+   */
+  private static final CompressionType[] ADAPTIVE_COMPRESSION_TYPES = {CompressionType.SNAPPY,
+      CompressionType.LZ4, CompressionType.GZIP};
+
+  /**
+   * the compressor of the current chunk.
+   */
   private ICompressor compressor;
 
+  /**
+   * not null if the compressor of each chunk is selected by its first page.
+   */
+  private List<ICompressor> compressorCandidates;
+
   /**
    * all pages of this chunk.
    */
@@ -81,8 +99,23 @@ public class ChunkWriterImpl implements IChunkWriter {
    * @param schema schema of this measurement
    */
   public ChunkWriterImpl(MeasurementSchema schema) {
+    this(schema, TSFileDescriptor.getInstance().getConfig().isEnableAdaptiveCompression());
+  }
+
+  /**
+   * @param schema schema of this measurement
+   * @param adaptiveCompression whether each chunk is compressed by the compressor selected by the
+   * compression ratios and CPU times on its first page instead of the compressor of the schema
+   */
+  public ChunkWriterImpl(MeasurementSchema schema, boolean adaptiveCompression) {
     this.measurementSchema = schema;
     this.compressor = ICompressor.getCompressor(schema.getCompressor());
+    if (adaptiveCompression) {
+      compressorCandidates = new ArrayList<>();
+      for (CompressionType compressionType : ADAPTIVE_COMPRESSION_TYPES) {
+        compressorCandidates.add(ICompressor.getCompressor(compressionType));
+      }
+    }
     this.pageBuffer = new PublicBAOS();
 
     this.pageSizeThreshold = TSFileDescriptor.getInstance().getConfig().getPageSizeInByte();
@@ -201,7 +234,12 @@ public class ChunkWriterImpl implements IChunkWriter {
 
   private void writePageToPageBuffer() {
     try {
+      if (compressorCandidates != null && pageBuffer.size() == 0) {
+        // the first page of a chunk selects the compressor of the chunk
+        pageWriter.setCompressorCandidates(compressorCandidates);
+      }
       pageWriter.writePageHeaderAndDataIntoBuff(pageBuffer);
+      compressor = pageWriter.getCompressor();
 
       // update statistics of this chunk
       numOfPages++;
@@ -221,6 +259,7 @@ public class ChunkWriterImpl implements IChunkWriter {
 
     // reinit this chunk writer
     pageBuffer.reset();
+    numOfPages = 0;
     this.statistics = Statistics.getStatsByType(measurementSchema.getType());
   }
 
@@ -263,6 +302,21 @@ public class ChunkWriterImpl implements IChunkWriter {
   @Override
   public void writePageHeaderAndDataIntoBuff(ByteBuffer data, PageHeader header)
       throws PageException {
+    if (compressorCandidates != null) {
+      // the page is compressed by the compressor of the schema
+      if (pageBuffer.size() == 0) {
+        compressor = ICompressor.getCompressor(measurementSchema.getCompressor());
+        pageWriter.setCompressor(compressor);
+      } else if (compressor.getType() != measurementSchema.getCompressor()) {
+        try {
+          data = recompressPage(data, header);
+        } catch (IOException e) {
+          throw new PageException(e);
+        }
+        header = new PageHeader(header.getUncompressedSize(), data.remaining(),
+            header.getStatistics());
+      }
+    }
     numOfPages++;
 
     // write the page header to pageBuffer
@@ -287,6 +341,19 @@ public class ChunkWriterImpl implements IChunkWriter {
     }
   }
 
+  /**
+   * @return the page compressed by the compressor of the schema, compressed by the compressor of
+   * the current chunk
+   */
+  private ByteBuffer recompressPage(ByteBuffer data, PageHeader header) throws IOException {
+    byte[] uncompressed = new byte[header.getUncompressedSize()];
+    IUnCompressor.getUnCompressor(measurementSchema.getCompressor())
+        .uncompress(data.duplicate(), ByteBuffer.wrap(uncompressed));
+    byte[] compressed = new byte[compressor.getMaxBytesForCompression(uncompressed.length)];
+    int compressedSize = compressor.compress(uncompressed, 0, uncompressed.length, compressed);
+    return ByteBuffer.wrap(compressed, 0, compressedSize);
+  }
+
   /**
    * write the page to specified IOWriter.
    *
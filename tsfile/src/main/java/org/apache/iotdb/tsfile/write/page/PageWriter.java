@@ -22,10 +22,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.iotdb.tsfile.common.conf.TSFileConfig;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.compress.ICompressor;
 import org.apache.iotdb.tsfile.encoding.encoder.Encoder;
 import org.apache.iotdb.tsfile.file.header.PageHeader;
@@ -47,6 +52,12 @@ public class PageWriter {
 
   private ICompressor compressor;
 
+  /**
+   * if not null, the next page is compressed by each of them and the one selected by its
+   * compression ratio and CPU time replaces the compressor.
+   */
+  private List<ICompressor> compressorCandidates;
+
   // time
   private Encoder timeEncoder;
   private PublicBAOS timeOut;
@@ -244,7 +255,10 @@ public class PageWriter {
     int compressedPosition = 0;
     byte[] compressedBytes = null;
 
-    if (compressor.getType().equals(CompressionType.UNCOMPRESSED)) {
+    if (compressorCandidates != null) {
+      compressedBytes = compressByBestCandidate(pageData);
+      compressedSize = compressedBytes.length;
+    } else if (compressor.getType().equals(CompressionType.UNCOMPRESSED)) {
       compressedSize = pageData.remaining();
     } else {
       compressedBytes = new byte[compressor.getMaxBytesForCompression(uncompressedSize)];
@@ -269,6 +283,52 @@ public class PageWriter {
     logger.debug("start to flush a page data into buffer, buffer position {} ", pageBuffer.size());
   }
 
+  /**
+   * compress the page by each of the compressor candidates and keep the selected one as the
+   * compressor. From the fastest candidate to the slowest, a slower candidate replaces the selected
+   * one only if its compression ratio is adaptiveCompressionMinRatioGain times higher, and the
+   * candidates taking more than adaptiveCompressionCpuBudget times the CPU time of the fastest one
+   * are not considered, so a slightly better ratio or a noisy timing does not trade much CPU for
+   * little space.
+   *
+   * @return the page compressed by the selected compressor
+   */
+  private byte[] compressByBestCandidate(ByteBuffer pageData) throws IOException {
+    TSFileConfig config = TSFileDescriptor.getInstance().getConfig();
+    int uncompressedSize = pageData.remaining();
+    int candidateNum = compressorCandidates.size();
+    byte[][] compressed = new byte[candidateNum][];
+    long[] timeCosts = new long[candidateNum];
+    Integer[] candidateIndexes = new Integer[candidateNum];
+    for (int i = 0; i < candidateNum; i++) {
+      ICompressor candidate = compressorCandidates.get(i);
+      byte[] buffer = new byte[candidate.getMaxBytesForCompression(uncompressedSize)];
+      long startTime = System.nanoTime();
+      // data is never a directByteBuffer now, so we can use data.array()
+      int compressedSize = candidate
+          .compress(pageData.array(), pageData.position(), uncompressedSize, buffer);
+      timeCosts[i] = Math.max(1, System.nanoTime() - startTime);
+      compressed[i] = Arrays.copyOf(buffer, compressedSize);
+      candidateIndexes[i] = i;
+    }
+    Arrays.sort(candidateIndexes, Comparator.comparingLong(i -> timeCosts[i]));
+
+    int selected = candidateIndexes[0];
+    double maxTimeCost = timeCosts[selected] * config.getAdaptiveCompressionCpuBudget();
+    for (int i = 1; i < candidateNum && timeCosts[candidateIndexes[i]] <= maxTimeCost; i++) {
+      int candidate = candidateIndexes[i];
+      if (compressed[selected].length
+          >= compressed[candidate].length * config.getAdaptiveCompressionMinRatioGain()) {
+        selected = candidate;
+      }
+    }
+    compressor = compressorCandidates.get(selected);
+    logger.debug("{} is selected for the chunk with a compression ratio of {}",
+        compressor.getType(), (double) uncompressedSize / compressed[selected].length);
+    compressorCandidates = null;
+    return compressed[selected];
+  }
+
   /**
    * calculate max possible memory size it occupies, including time outputStream
    * and value outputStream, because size outputStream is never used until
@@ -297,6 +357,22 @@ public class PageWriter {
     this.valueEncoder = encoder;
   }
 
+  public ICompressor getCompressor() {
+    return compressor;
+  }
+
+  public void setCompressor(ICompressor compressor) {
+    this.compressor = compressor;
+  }
+
+  /**
+   * @param compressorCandidates the compressors to try on the next page, the best of them
+   * compresses it and the pages after it
+   */
+  public void setCompressorCandidates(List<ICompressor> compressorCandidates) {
+    this.compressorCandidates = compressorCandidates;
+  }
+
   public void initStatistics(TSDataType dataType) {
     statistics = Statistics.getStatsByType(dataType);
   }
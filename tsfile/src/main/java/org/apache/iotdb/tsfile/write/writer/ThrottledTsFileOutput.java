@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.write.writer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import org.apache.iotdb.tsfile.fileSystem.IOThrottle;
+
+/**
+ * A TsFileOutput that acquires an IOThrottle before writing to the underlying output, including
+ * the writes through the stream it is wrapped as.
+ */
+public class ThrottledTsFileOutput implements TsFileOutput {
+
+  private final TsFileOutput output;
+  private final IOThrottle throttle;
+  // the stream of the underlying output and its throttled wrapper
+  private OutputStream wrappedStream;
+  private OutputStream stream;
+
+  public ThrottledTsFileOutput(TsFileOutput output, IOThrottle throttle) {
+    this.output = output;
+    this.throttle = throttle;
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    throttle.acquire(b.length);
+    output.write(b);
+  }
+
+  @Override
+  public void write(ByteBuffer b) throws IOException {
+    throttle.acquire(b.remaining());
+    output.write(b);
+  }
+
+  @Override
+  public long getPosition() throws IOException {
+    return output.getPosition();
+  }
+
+  @Override
+  public void close() throws IOException {
+    output.close();
+  }
+
+  @Override
+  public OutputStream wrapAsStream() throws IOException {
+    OutputStream wrapped = output.wrapAsStream();
+    if (wrapped != wrappedStream) {
+      wrappedStream = wrapped;
+      stream = new ThrottledStream(wrapped);
+    }
+    return stream;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    output.flush();
+  }
+
+  @Override
+  public void truncate(long size) throws IOException {
+    output.truncate(size);
+  }
+
+  private class ThrottledStream extends FilterOutputStream {
+
+    ThrottledStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      throttle.acquire(1);
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      throttle.acquire(len);
+      out.write(b, off, len);
+    }
+  }
+}
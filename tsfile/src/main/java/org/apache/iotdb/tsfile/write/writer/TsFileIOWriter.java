@@ -206,6 +206,32 @@ public class TsFileIOWriter {
     }
   }
 
+  /**
+   * Write the chunks of a series in other files into this file as one chunk, whose pages are the
+   * pages of the chunks in order, so the pages are copied without being decoded. The chunks must
+   * have the same data type, encoding and compression.
+   *
+   * @param chunkMetadata the metadata whose statistics cover all the chunks
+   */
+  public void writeChunks(List<Chunk> chunks, ChunkMetadata chunkMetadata) throws IOException {
+    ChunkHeader firstHeader = chunks.get(0).getHeader();
+    int dataSize = 0;
+    int numOfPages = 0;
+    for (Chunk chunk : chunks) {
+      dataSize += chunk.getHeader().getDataSize();
+      numOfPages += chunk.getHeader().getNumOfPages();
+    }
+    currentChunkMetadata = new ChunkMetadata(firstHeader.getMeasurementID(),
+        firstHeader.getDataType(), out.getPosition(), chunkMetadata.getStatistics());
+    new ChunkHeader(firstHeader.getMeasurementID(), dataSize, firstHeader.getDataType(),
+        firstHeader.getCompressionType(), firstHeader.getEncodingType(), numOfPages)
+        .serializeTo(out.wrapAsStream());
+    for (Chunk chunk : chunks) {
+      out.write(chunk.getData());
+    }
+    endCurrentChunk();
+  }
+
   /**
    * end chunk and write some log.
    */
@@ -18,11 +18,15 @@
  */
 package org.apache.iotdb.tsfile.compress;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.utils.PublicBAOS;
 import org.junit.After;
 import org.junit.Before;
@@ -103,4 +107,104 @@ public class CompressTest {
     String result = new String(uncompressed, StandardCharsets.UTF_8);
     assertEquals(inputString, result);
   }
+
+  @Test
+  public void gzipCompressorTest1() throws IOException {
+    PublicBAOS out = new PublicBAOS();
+    out.write(inputString.getBytes(StandardCharsets.UTF_8));
+    ICompressor compressor = new ICompressor.GZIPCompressor(9);
+    IUnCompressor unCompressor = new IUnCompressor.GZIPUnCompressor();
+    byte[] compressed = compressor.compress(out.toByteArray());
+    byte[] uncompressed = unCompressor.uncompress(compressed);
+    String result = new String(uncompressed, StandardCharsets.UTF_8);
+    assertEquals(inputString, result);
+  }
+
+  @Test
+  public void gzipCompressorTest2() throws IOException {
+    // repeated data compresses well with any level
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      builder.append(inputString);
+    }
+    byte[] input = builder.toString().getBytes(StandardCharsets.UTF_8);
+    IUnCompressor unCompressor = new IUnCompressor.GZIPUnCompressor();
+    for (int level = 0; level <= 9; level++) {
+      ICompressor compressor = new ICompressor.GZIPCompressor(level);
+      byte[] compressed = new byte[compressor.getMaxBytesForCompression(input.length)];
+      int size = compressor.compress(input, 0, input.length, compressed);
+      if (level > 0) {
+        assertTrue(size < input.length / 10);
+      }
+      byte[] uncompressed = new byte[input.length];
+      assertEquals(input.length, unCompressor.uncompress(compressed, 0, size, uncompressed, 0));
+      assertArrayEquals(input, uncompressed);
+    }
+  }
+
+  @Test
+  public void gzipByteBufferCompressTest() throws IOException {
+    byte[] input = inputString.getBytes(StandardCharsets.UTF_8);
+    ICompressor compressor = ICompressor.getCompressor(CompressionType.GZIP);
+    for (boolean directInput : new boolean[]{false, true}) {
+      for (boolean directOutput : new boolean[]{false, true}) {
+        ByteBuffer data = directInput ? ByteBuffer.allocateDirect(input.length)
+            : ByteBuffer.allocate(input.length);
+        data.put(input);
+        data.flip();
+        int maxSize = compressor.getMaxBytesForCompression(input.length);
+        ByteBuffer compressed = directOutput ? ByteBuffer.allocateDirect(maxSize)
+            : ByteBuffer.allocate(maxSize);
+
+        int size = compressor.compress(data, compressed);
+        assertEquals(0, data.remaining());
+        assertEquals(size, compressed.position());
+        compressed.flip();
+        byte[] bytes = new byte[size];
+        compressed.get(bytes);
+        assertArrayEquals(input, IUnCompressor.getUnCompressor(CompressionType.GZIP)
+            .uncompress(bytes));
+      }
+    }
+  }
+
+  @Test
+  public void byteBufferUncompressTest() throws IOException {
+    byte[] input = inputString.getBytes(StandardCharsets.UTF_8);
+    CompressionType[] types = {CompressionType.UNCOMPRESSED, CompressionType.SNAPPY,
+        CompressionType.LZ4, CompressionType.GZIP};
+    for (CompressionType type : types) {
+      byte[] compressed = ICompressor.getCompressor(type).compress(input);
+      IUnCompressor unCompressor = IUnCompressor.getUnCompressor(type);
+      for (boolean directInput : new boolean[]{false, true}) {
+        for (boolean directOutput : new boolean[]{false, true}) {
+          // the data starts neither at the beginning of the buffers nor of their arrays, like the
+          // pages sliced from a chunk
+          ByteBuffer compressedBuffer = directInput
+              ? ByteBuffer.allocateDirect(compressed.length + 3)
+              : ByteBuffer.allocate(compressed.length + 3);
+          compressedBuffer.position(3);
+          compressedBuffer = compressedBuffer.slice();
+          compressedBuffer.put(compressed);
+          compressedBuffer.flip();
+          ByteBuffer uncompressedBuffer = directOutput
+              ? ByteBuffer.allocateDirect(input.length + 5)
+              : ByteBuffer.allocate(input.length + 5);
+          uncompressedBuffer.position(1);
+          uncompressedBuffer = uncompressedBuffer.slice();
+          uncompressedBuffer.position(2);
+
+          assertEquals(input.length, unCompressor.uncompress(compressedBuffer, uncompressedBuffer));
+          assertEquals(0, compressedBuffer.remaining());
+          assertEquals(input.length + 2, uncompressedBuffer.position());
+          uncompressedBuffer.flip();
+          uncompressedBuffer.position(2);
+          byte[] result = new byte[input.length];
+          uncompressedBuffer.get(result);
+          assertEquals(type + " " + directInput + " " + directOutput, inputString,
+              new String(result, StandardCharsets.UTF_8));
+        }
+      }
+    }
+  }
 }
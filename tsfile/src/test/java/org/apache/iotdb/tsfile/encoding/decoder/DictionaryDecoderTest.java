@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.encoding.decoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.iotdb.tsfile.encoding.encoder.DictionaryEncoder;
+import org.apache.iotdb.tsfile.encoding.encoder.Encoder;
+import org.apache.iotdb.tsfile.encoding.encoder.TSEncodingBuilder;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.utils.Binary;
+
+public class DictionaryDecoderTest {
+
+  private static final int MAX_STRING_LENGTH = 128;
+
+  @Test
+  public void testLowCardinality() throws IOException {
+    List<Binary> values = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      values.add(new Binary(i % 100 < 90 ? "RUNNING" : "FAULT_" + (i % 7)));
+    }
+    ByteBuffer page = encode(new DictionaryEncoder(16, MAX_STRING_LENGTH), values);
+    assertEquals(DictionaryEncoder.DICTIONARY_MODE, page.get(0));
+    // far smaller than the values written plainly
+    assertTrue(page.remaining() < 10000);
+
+    DictionaryDecoder decoder = new DictionaryDecoder();
+    Binary previous = null;
+    for (Binary value : values) {
+      assertTrue(decoder.hasNext(page));
+      Binary decoded = decoder.readBinary(page);
+      assertEquals(value, decoded);
+      if (previous != null && previous.equals(decoded)) {
+        // the entries of the dictionary are shared instead of copied
+        assertSame(previous, decoded);
+      }
+      previous = decoded;
+    }
+    assertFalse(decoder.hasNext(page));
+  }
+
+  @Test
+  public void testSingleValue() throws IOException {
+    List<Binary> values = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      values.add(new Binary("STOPPED"));
+    }
+    ByteBuffer page = encode(new DictionaryEncoder(16, MAX_STRING_LENGTH), values);
+    assertEquals(DictionaryEncoder.DICTIONARY_MODE, page.get(0));
+    assertDecoded(values, page);
+  }
+
+  @Test
+  public void testTooManyEntries() throws IOException {
+    List<Binary> values = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      values.add(new Binary("state_" + (i % 20)));
+    }
+    ByteBuffer page = encode(new DictionaryEncoder(16, MAX_STRING_LENGTH), values);
+    assertEquals(DictionaryEncoder.PLAIN_MODE, page.get(0));
+    assertDecoded(values, page);
+  }
+
+  @Test
+  public void testDistinctValues() throws IOException {
+    List<Binary> values = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      values.add(new Binary("value_" + i));
+    }
+    // every value enters the dictionary, which does not pay off
+    ByteBuffer page = encode(new DictionaryEncoder(1000, MAX_STRING_LENGTH), values);
+    assertEquals(DictionaryEncoder.PLAIN_MODE, page.get(0));
+    assertDecoded(values, page);
+  }
+
+  @Test
+  public void testMultiplePages() throws IOException {
+    Encoder encoder = TSEncodingBuilder.getEncodingBuilder(TSEncoding.PLAIN_DICTIONARY)
+        .getEncoder(TSDataType.TEXT);
+    Decoder decoder = Decoder.getDecoderByType(TSEncoding.PLAIN_DICTIONARY, TSDataType.TEXT);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    List<Binary> values = new ArrayList<>();
+    for (int page = 0; page < 3; page++) {
+      for (int i = 0; i < 500; i++) {
+        Binary value = new Binary("page" + page + "_" + (i % 3));
+        values.add(value);
+        encoder.encode(value, out);
+      }
+      encoder.flush(out);
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+    for (Binary value : values) {
+      assertTrue(decoder.hasNext(buffer));
+      assertEquals(value, decoder.readBinary(buffer));
+    }
+    assertFalse(decoder.hasNext(buffer));
+  }
+
+  @Test
+  public void testEmptyPage() throws IOException {
+    ByteBuffer page = encode(new DictionaryEncoder(16, MAX_STRING_LENGTH), new ArrayList<>());
+    assertEquals(0, page.remaining());
+    assertFalse(new DictionaryDecoder().hasNext(page));
+  }
+
+  private ByteBuffer encode(Encoder encoder, List<Binary> values) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (Binary value : values) {
+      encoder.encode(value, out);
+    }
+    long estimatedSize = encoder.getMaxByteSize();
+    encoder.flush(out);
+    assertTrue(estimatedSize >= out.size());
+    assertEquals(0, encoder.getMaxByteSize());
+    return ByteBuffer.wrap(out.toByteArray());
+  }
+
+  private void assertDecoded(List<Binary> values, ByteBuffer page) throws IOException {
+    Decoder decoder = new DictionaryDecoder();
+    for (Binary value : values) {
+      assertTrue(decoder.hasNext(page));
+      assertEquals(value, decoder.readBinary(page));
+    }
+    assertFalse(decoder.hasNext(page));
+  }
+}
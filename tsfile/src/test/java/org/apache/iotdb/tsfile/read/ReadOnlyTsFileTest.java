@@ -18,13 +18,17 @@
  */
 package org.apache.iotdb.tsfile.read;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.iotdb.tsfile.common.conf.TSFileConfig;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.read.ReadOnlyTsFile;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.common.Path;
@@ -41,6 +45,10 @@ import org.apache.iotdb.tsfile.read.filter.factory.FilterFactory;
 import org.apache.iotdb.tsfile.read.query.dataset.QueryDataSet;
 import org.apache.iotdb.tsfile.utils.Binary;
 import org.apache.iotdb.tsfile.utils.TsFileGeneratorForTest;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.StringDataPoint;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 
 public class ReadOnlyTsFileTest {
 
@@ -141,6 +149,48 @@ public class ReadOnlyTsFileTest {
     Assert.assertEquals(10647, cnt);
   }
 
+  @Test
+  public void testDictionaryEncodedText() throws Exception {
+    TSFileConfig config = TSFileDescriptor.getInstance().getConfig();
+    int maxNumberOfPointsInPage = config.getMaxNumberOfPointsInPage();
+    config.setMaxNumberOfPointsInPage(1000);
+    try {
+      File file = new File(FILE_PATH);
+      file.getParentFile().mkdirs();
+      try (TsFileWriter writer = new TsFileWriter(file)) {
+        writer.registerTimeseries(new Path("d1.s1"),
+            new MeasurementSchema("s1", TSDataType.TEXT, TSEncoding.PLAIN_DICTIONARY));
+        for (long time = 0; time < 10000; time++) {
+          TSRecord record = new TSRecord(time, "d1");
+          record.addTuple(new StringDataPoint("s1",
+              new Binary(time % 10 == 0 ? "FAULT_" + time % 3 : "RUNNING")));
+          writer.write(record);
+        }
+      }
+
+      fileReader = new TsFileSequenceReader(FILE_PATH);
+      tsFile = new ReadOnlyTsFile(fileReader);
+      QueryExpression queryExpression = QueryExpression.create()
+          .addSelectedPath(new Path("d1.s1"))
+          .setExpression(new SingleSeriesExpression(new Path("d1.s1"),
+              FilterFactory.and(TimeFilter.gtEq(5000L), ValueFilter.eq(new Binary("FAULT_1")))));
+      QueryDataSet queryDataSet = tsFile.query(queryExpression);
+      int count = 0;
+      while (queryDataSet.hasNext()) {
+        RowRecord rowRecord = queryDataSet.next();
+        Assert.assertEquals(1, rowRecord.getTimestamp() % 3);
+        Assert.assertEquals("FAULT_1", rowRecord.getFields().get(0).getStringValue());
+        count++;
+      }
+      // the multiples of 10 in [5000, 10000) whose remainder by 3 is 1
+      Assert.assertEquals(166, count);
+      tsFile.close();
+    } finally {
+      config.setMaxNumberOfPointsInPage(maxNumberOfPointsInPage);
+      TsFileGeneratorForTest.after();
+    }
+  }
+
   void queryNonExistPathTest() throws Exception {
     ArrayList<Path> paths = new ArrayList<>();
     paths.add(new Path("dr.s1"));
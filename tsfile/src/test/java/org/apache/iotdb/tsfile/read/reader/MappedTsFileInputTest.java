@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.read.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.iotdb.tsfile.constant.TestConstant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedTsFileInputTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+  private final File file = new File(TestConstant.BASE_OUTPUT_PATH.concat("mapped.tsfile"));
+  private byte[] data;
+
+  @Before
+  public void setUp() throws IOException {
+    data = new byte[SEGMENT_SIZE * 3 + 100];
+    new Random(1).nextBytes(data);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), data);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file.toPath());
+  }
+
+  @Test
+  public void testPositionalRead() throws IOException {
+    TsFileInput input = new MappedTsFileInput(file.toPath(), SEGMENT_SIZE);
+    try {
+      // across the segments
+      int[][] ranges = {{0, 10}, {SEGMENT_SIZE - 5, 10}, {100, SEGMENT_SIZE * 2 + 10},
+          {SEGMENT_SIZE * 3, 100}};
+      for (int[] range : ranges) {
+        ByteBuffer buffer = ByteBuffer.allocate(range[1]);
+        assertEquals(range[1], input.read(buffer, range[0]));
+        assertArrayEquals(Arrays.copyOfRange(data, range[0], range[0] + range[1]),
+            buffer.array());
+      }
+      assertEquals(0, input.position());
+
+      // beyond the end of the file
+      ByteBuffer buffer = ByteBuffer.allocate(200);
+      assertEquals(50, input.read(buffer, data.length - 50));
+      assertEquals(-1, input.read(ByteBuffer.allocate(10), data.length));
+    } finally {
+      input.close();
+    }
+  }
+
+  @Test
+  public void testSequentialRead() throws IOException {
+    TsFileInput input = new MappedTsFileInput(file.toPath(), SEGMENT_SIZE);
+    try {
+      input.position(SEGMENT_SIZE - 1);
+      ByteBuffer buffer = ByteBuffer.allocate(2);
+      assertEquals(2, input.read(buffer));
+      assertArrayEquals(Arrays.copyOfRange(data, SEGMENT_SIZE - 1, SEGMENT_SIZE + 1),
+          buffer.array());
+      assertEquals(SEGMENT_SIZE + 1, input.position());
+      // the stream reads from the same position
+      assertEquals(data[SEGMENT_SIZE + 1], (byte) input.wrapAsInputStream().read());
+    } finally {
+      input.close();
+    }
+  }
+
+  @Test
+  public void testAppendedData() throws IOException {
+    TsFileInput input = new MappedTsFileInput(file.toPath(), SEGMENT_SIZE);
+    try {
+      byte[] appended = {1, 2, 3, 4};
+      try (FileOutputStream outputStream = new FileOutputStream(file, true)) {
+        outputStream.write(appended);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(6);
+      assertEquals(6, input.read(buffer, data.length - 2));
+      assertArrayEquals(new byte[]{data[data.length - 2], data[data.length - 1], 1, 2, 3, 4},
+          buffer.array());
+    } finally {
+      input.close();
+    }
+  }
+
+  @Test
+  public void testReadAfterClose() throws IOException {
+    TsFileInput input = new MappedTsFileInput(file.toPath(), SEGMENT_SIZE);
+    input.close();
+    // closing twice is harmless
+    input.close();
+    try {
+      input.read(ByteBuffer.allocate(10), 0);
+      fail();
+    } catch (ClosedChannelException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.read.reader.page;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PageBufferPoolTest {
+
+  @Test
+  public void testReuse() {
+    PageBufferPool pool = PageBufferPool.getInstance();
+    byte[] array = pool.allocate(3000);
+    assertEquals(4096, array.length);
+    int pooledNum = pool.getPooledNum(4096);
+    pool.release(array);
+    assertEquals(pooledNum + 1, pool.getPooledNum(4096));
+
+    // any size of the same class gets the array back
+    byte[] reused = pool.allocate(2049);
+    if (pooledNum == 0) {
+      assertSame(array, reused);
+    }
+    assertEquals(pooledNum, pool.getPooledNum(4096));
+    pool.release(reused);
+  }
+
+  @Test
+  public void testNotPooled() {
+    PageBufferPool pool = PageBufferPool.getInstance();
+    // larger than the largest class
+    byte[] array = pool.allocate(5 * 1024 * 1024);
+    assertEquals(5 * 1024 * 1024, array.length);
+    pool.release(array);
+    assertNotSame(array, pool.allocate(5 * 1024 * 1024));
+
+    // not got from the pool
+    int pooledNum = pool.getPooledNum(1000);
+    pool.release(new byte[1000]);
+    assertEquals(pooledNum, pool.getPooledNum(1000));
+  }
+
+  @Test
+  public void testPooledBytesLimited() {
+    PageBufferPool pool = PageBufferPool.getInstance();
+    int size = 4 * 1024 * 1024;
+    // only one array of the largest class is kept
+    pool.release(new byte[size]);
+    pool.release(new byte[size]);
+    assertEquals(1, pool.getPooledNum(size));
+    pool.allocate(size);
+    assertEquals(0, pool.getPooledNum(size));
+  }
+}
@@ -19,18 +19,27 @@
 package org.apache.iotdb.tsfile.write;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.apache.iotdb.tsfile.common.conf.TSFileConfig;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.exception.write.PageException;
 import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
+import org.apache.iotdb.tsfile.file.header.PageHeader;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.read.ReadOnlyTsFile;
@@ -40,6 +49,9 @@ import org.apache.iotdb.tsfile.read.common.Path;
 import org.apache.iotdb.tsfile.read.common.RowRecord;
 import org.apache.iotdb.tsfile.read.expression.QueryExpression;
 import org.apache.iotdb.tsfile.read.query.dataset.QueryDataSet;
+import org.apache.iotdb.tsfile.utils.PublicBAOS;
+import org.apache.iotdb.tsfile.write.chunk.ChunkWriterImpl;
+import org.apache.iotdb.tsfile.write.page.PageWriter;
 import org.apache.iotdb.tsfile.write.record.TSRecord;
 import org.apache.iotdb.tsfile.write.record.datapoint.DataPoint;
 import org.apache.iotdb.tsfile.write.record.datapoint.DoubleDataPoint;
@@ -47,6 +59,7 @@ import org.apache.iotdb.tsfile.write.record.datapoint.FloatDataPoint;
 import org.apache.iotdb.tsfile.write.record.datapoint.IntDataPoint;
 import org.apache.iotdb.tsfile.write.record.datapoint.LongDataPoint;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.apache.iotdb.tsfile.write.writer.TsFileIOWriter;
 import org.apache.iotdb.tsfile.constant.TestConstant;
 
 public class TsFileReadWriteTest {
@@ -96,6 +109,29 @@ public class TsFileReadWriteTest {
     readData((i, field, delta) -> assertEquals(i, field.getDoubleV(), delta));
   }
 
+  @Test
+  public void lz4Test() throws IOException, WriteProcessException {
+    writeCompressedData(CompressionType.LZ4);
+    readData((i, field, delta) -> assertEquals(i, field.getLongV()));
+  }
+
+  private void writeCompressedData(CompressionType compressionType)
+      throws IOException, WriteProcessException {
+    try (TsFileWriter tsFileWriter = new TsFileWriter(f)) {
+      tsFileWriter.registerTimeseries(new Path("device_1", "sensor_1"),
+          new MeasurementSchema("sensor_1", TSDataType.INT64, TSEncoding.PLAIN, compressionType));
+      for (long i = 1; i < 100000; i++) {
+        TSRecord tsRecord = new TSRecord(i, "device_1");
+        tsRecord.addTuple(new LongDataPoint("sensor_1", i));
+        tsFileWriter.write(tsRecord);
+        if (i % 30000 == 0) {
+          // each flush writes a new chunk
+          tsFileWriter.flushAllChunkGroups();
+        }
+      }
+    }
+  }
+
   // If no dataPoint in "device_1.sensor_2", it will throws a nomeasurement
   // exception,
   // cause no schema in tsfilemetadata anymore.
@@ -140,6 +176,123 @@ public class TsFileReadWriteTest {
     TSFileDescriptor.getInstance().getConfig().setTimeEncoder("TS_2DIFF");
   }
 
+  @Test
+  public void gzipTest() throws IOException, WriteProcessException {
+    writeCompressedData(CompressionType.GZIP);
+    readData((i, field, delta) -> assertEquals(i, field.getLongV()));
+    for (CompressionType compressionType : readChunkCompressionTypes()) {
+      assertEquals(CompressionType.GZIP, compressionType);
+    }
+  }
+
+  @Test
+  public void adaptiveCompressionTest() throws IOException, WriteProcessException {
+    TSFileDescriptor.getInstance().getConfig().setEnableAdaptiveCompression(true);
+    try {
+      writeCompressedData(CompressionType.UNCOMPRESSED);
+    } finally {
+      TSFileDescriptor.getInstance().getConfig().setEnableAdaptiveCompression(false);
+    }
+    readData((i, field, delta) -> assertEquals(i, field.getLongV()));
+    List<CompressionType> compressionTypes = readChunkCompressionTypes();
+    assertFalse(compressionTypes.isEmpty());
+    for (CompressionType compressionType : compressionTypes) {
+      assertNotEquals(CompressionType.UNCOMPRESSED, compressionType);
+    }
+  }
+
+  @Test
+  public void adaptiveCompressionRatioGainTest() throws IOException, WriteProcessException {
+    TSFileConfig config = TSFileDescriptor.getInstance().getConfig();
+    double prevMinRatioGain = config.getAdaptiveCompressionMinRatioGain();
+    double prevCpuBudget = config.getAdaptiveCompressionCpuBudget();
+    // without a CPU budget, the compressor with the best ratio is selected
+    config.setEnableAdaptiveCompression(true);
+    config.setAdaptiveCompressionMinRatioGain(1);
+    config.setAdaptiveCompressionCpuBudget(Double.MAX_VALUE);
+    try {
+      writeCompressedData(CompressionType.UNCOMPRESSED);
+    } finally {
+      config.setEnableAdaptiveCompression(false);
+      config.setAdaptiveCompressionMinRatioGain(prevMinRatioGain);
+      config.setAdaptiveCompressionCpuBudget(prevCpuBudget);
+    }
+    readData((i, field, delta) -> assertEquals(i, field.getLongV()));
+    for (CompressionType compressionType : readChunkCompressionTypes()) {
+      assertEquals(CompressionType.GZIP, compressionType);
+    }
+  }
+
+  @Test
+  public void adaptiveCompressionCopiedPageTest() throws IOException, PageException {
+    MeasurementSchema schema = new MeasurementSchema("sensor_1", TSDataType.INT64,
+        TSEncoding.PLAIN, CompressionType.UNCOMPRESSED);
+    ChunkWriterImpl chunkWriter = new ChunkWriterImpl(schema, true);
+    for (long i = 1; i <= 1000; i++) {
+      chunkWriter.write(i, i);
+    }
+    chunkWriter.sealCurrentPage();
+
+    // a page compressed as the schema says is recompressed by the selected compressor
+    PageWriter pageWriter = new PageWriter(schema);
+    for (long i = 1001; i < 2000; i++) {
+      pageWriter.write(i, i);
+    }
+    PublicBAOS pageBuffer = new PublicBAOS();
+    pageWriter.writePageHeaderAndDataIntoBuff(pageBuffer);
+    ByteBuffer page = ByteBuffer.wrap(pageBuffer.toByteArray());
+    PageHeader pageHeader = PageHeader.deserializeFrom(page, TSDataType.INT64);
+    chunkWriter.writePageHeaderAndDataIntoBuff(page.slice(), pageHeader);
+
+    TsFileIOWriter writer = new TsFileIOWriter(f);
+    writer.startChunkGroup("device_1");
+    chunkWriter.writeToFileWriter(writer);
+    writer.endChunkGroup();
+    writer.endFile();
+    readData((i, field, delta) -> assertEquals(i, field.getLongV()));
+    assertNotEquals(CompressionType.UNCOMPRESSED, readChunkCompressionTypes().get(0));
+  }
+
+  @Test
+  public void reusedChunkWriterTest() throws IOException {
+    MeasurementSchema schema = new MeasurementSchema("sensor_1", TSDataType.INT64,
+        TSEncoding.PLAIN, CompressionType.UNCOMPRESSED);
+    ChunkWriterImpl chunkWriter = new ChunkWriterImpl(schema);
+    TsFileIOWriter writer = new TsFileIOWriter(f);
+    writer.startChunkGroup("device_1");
+    // each chunk only counts its own pages
+    for (long i = 1; i < 2000; i++) {
+      chunkWriter.write(i, i);
+      if (i % 500 == 0) {
+        chunkWriter.writeToFileWriter(writer);
+      }
+    }
+    chunkWriter.writeToFileWriter(writer);
+    writer.endChunkGroup();
+    writer.endFile();
+
+    readData((i, field, delta) -> assertEquals(i, field.getLongV()));
+    try (TsFileSequenceReader reader = new TsFileSequenceReader(path)) {
+      List<ChunkMetadata> chunkMetadataList = reader
+          .getChunkMetadataList(new Path("device_1.sensor_1"));
+      assertEquals(4, chunkMetadataList.size());
+      for (ChunkMetadata chunkMetadata : chunkMetadataList) {
+        assertEquals(1, reader.readMemChunk(chunkMetadata).getHeader().getNumOfPages());
+      }
+    }
+  }
+
+  private List<CompressionType> readChunkCompressionTypes() throws IOException {
+    List<CompressionType> compressionTypes = new ArrayList<>();
+    try (TsFileSequenceReader reader = new TsFileSequenceReader(path)) {
+      for (ChunkMetadata chunkMetadata : reader
+          .getChunkMetadataList(new Path("device_1.sensor_1"))) {
+        compressionTypes.add(reader.readMemChunk(chunkMetadata).getHeader().getCompressionType());
+      }
+    }
+    return compressionTypes;
+  }
+
   private void writeDataByTSRecord(TSDataType dataType, DataPointProxy proxy, TSEncoding encodingType)
       throws IOException, WriteProcessException {
     int floatCount = 1024 * 1024 * 13 + 1023;